@@ -0,0 +1,215 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.runtime.impl.server.netty.handler.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
+
+/**
+ * <code>HttpChunkInputStream</code> is an {@link InputStream} over the content of {@link org.jboss.netty.handler.codec.http.HttpChunk}s received
+ * on a {@link Channel}. Chunk contents are appended by the channel I/O thread and read by the thread that sends the request upstream.
+ * Flow control is applied on the channel : reads from the channel are suspended when the buffered content exceeds the buffer size and are
+ * resumed once the reader has consumed half of it. Memory used per streamed request is therefore bounded irrespective of the request size.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class HttpChunkInputStream extends InputStream {
+
+    /** The channel that chunks are received on*/
+    private final Channel channel;
+
+    /** The buffer size i.e. high water mark and the low water mark at which reads on the channel are resumed*/
+    private final int highWaterMark;
+    private final int lowWaterMark;
+
+    /** The max time to wait for content from the channel*/
+    private final long readTimeoutMillis;
+
+    /** The buffered chunk contents and the number of readable bytes in them*/
+    private final LinkedList<ChannelBuffer> chunks = new LinkedList<ChannelBuffer>();
+    private int bufferedBytes;
+
+    /** Lock and condition guarding the chunks*/
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition contentAvailable = lock.newCondition();
+
+    /** State of this stream*/
+    private boolean lastChunkReceived;
+    private boolean closed;
+    private IOException failure;
+
+    /**
+     * Constructor for this class
+     * @param channel the channel that chunks are received on
+     * @param bufferSize the max number of bytes buffered before reads on the channel are suspended
+     * @param readTimeoutMillis the max time to wait for content from the channel
+     */
+    public HttpChunkInputStream(Channel channel, int bufferSize, long readTimeoutMillis) {
+        this.channel = channel;
+        this.highWaterMark = bufferSize;
+        this.lowWaterMark = bufferSize / 2;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    /**
+     * Appends the specified chunk content to this stream. Called by the channel I/O thread
+     * @param content the chunk content
+     */
+    public void offer(ChannelBuffer content) {
+        this.lock.lock();
+        try {
+            if (this.closed || !content.readable()) {
+                return; // the reader is not interested anymore. Discard the content
+            }
+            this.chunks.add(content);
+            this.bufferedBytes += content.readableBytes();
+            if (this.bufferedBytes >= this.highWaterMark && this.channel.isReadable()) {
+                this.channel.setReadable(false);
+            }
+            this.contentAvailable.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Marks the end of this stream i.e. the last chunk has been received
+     */
+    public void end() {
+        this.lock.lock();
+        try {
+            this.lastChunkReceived = true;
+            this.contentAvailable.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Fails this stream. Pending and subsequent reads throw an IOException with the specified message
+     * @param message the failure message
+     */
+    public void fail(String message) {
+        this.lock.lock();
+        try {
+            this.failure = new IOException(message);
+            this.contentAvailable.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Interface method implementation. Reads a single byte
+     * @see java.io.InputStream#read()
+     */
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return this.read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    /**
+     * Overriden superclass method. Reads available chunk content, waiting for content if none is buffered
+     * @see java.io.InputStream#read(byte[], int, int)
+     */
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        this.lock.lock();
+        try {
+            long waitNanos = TimeUnit.MILLISECONDS.toNanos(this.readTimeoutMillis);
+            while (this.chunks.isEmpty()) {
+                if (this.failure != null) {
+                    throw this.failure;
+                }
+                if (this.lastChunkReceived || this.closed) {
+                    return -1;
+                }
+                if (waitNanos <= 0) {
+                    throw new SocketTimeoutException("Timed out waiting for request content after " + this.readTimeoutMillis + " ms");
+                }
+                try {
+                    waitNanos = this.contentAvailable.awaitNanos(waitNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for request content");
+                }
+            }
+            ChannelBuffer content = this.chunks.getFirst();
+            int read = Math.min(len, content.readableBytes());
+            content.readBytes(b, off, read);
+            if (!content.readable()) {
+                this.chunks.removeFirst();
+            }
+            this.bufferedBytes -= read;
+            this.resumeIfRequired();
+            return read;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Overriden superclass method. Returns the number of buffered bytes
+     * @see java.io.InputStream#available()
+     */
+    public int available() throws IOException {
+        this.lock.lock();
+        try {
+            return this.bufferedBytes;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Overriden superclass method. Discards buffered content and any content received subsequently
+     * @see java.io.InputStream#close()
+     */
+    public void close() throws IOException {
+        this.lock.lock();
+        try {
+            this.closed = true;
+            this.chunks.clear();
+            this.bufferedBytes = 0;
+            this.resumeIfRequired();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Helper method to resume reads on the channel when buffered content drops below the low water mark. Must be called holding the lock
+     */
+    private void resumeIfRequired() {
+        if (this.bufferedBytes <= this.lowWaterMark && !this.channel.isReadable() && this.channel.isOpen()) {
+            this.channel.setReadable(true);
+        }
+    }
+
+}
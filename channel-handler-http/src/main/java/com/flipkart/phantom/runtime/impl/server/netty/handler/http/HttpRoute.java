@@ -0,0 +1,136 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.runtime.impl.server.netty.handler.http;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+
+/**
+ * <code>HttpRoute</code> is a route in a {@link HttpRouteTable}. A route maps requests to the name of a HttpProxy and matches requests on:
+ * <pre>
+ * path    : a path template made up of literal segments, variable segments like <code>{id}</code> that match any one segment and an optional
+ *           trailing <code>**</code> segment that matches the remainder of the path. For e.g. <code>/users/{id}/orders/**</code>
+ * host    : optional. The Host header, excluding the port. May start with <code>*.</code> to match all sub-domains
+ * methods : optional. The set of request methods
+ * headers : optional. Header names and values that must be present on the request. The value <code>*</code> matches any value
+ * </pre>
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class HttpRoute {
+
+    /** The wildcard that matches any header value and the host prefix that matches sub-domains*/
+    public static final String ANY_VALUE = "*";
+    private static final String SUB_DOMAINS = "*.";
+
+    /** The path template, predicates and the proxy that requests are routed to*/
+    private String path;
+    private String host;
+    private Set<String> methods = new HashSet<String>();
+    private Map<String, String> headers = new HashMap<String, String>();
+    private String proxy;
+
+    /**
+     * Returns true if the host, method and header predicates of this route match the specified request. The path is matched by the
+     * {@link HttpRouteTable}
+     * @param request the HttpRequest
+     * @return true if this route matches the request, false otherwise
+     */
+    public boolean matches(HttpRequest request) {
+        if (!this.methods.isEmpty() && !this.methods.contains(request.getMethod().getName())) {
+            return false;
+        }
+        if (this.host != null && !this.matchesHost(HttpHeaders.getHost(request))) {
+            return false;
+        }
+        for (Map.Entry<String, String> header : this.headers.entrySet()) {
+            String value = request.getHeader(header.getKey());
+            if (value == null || (!ANY_VALUE.equals(header.getValue()) && !header.getValue().equals(value))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Helper method to match the specified Host header value, ignoring the port
+     */
+    private boolean matchesHost(String hostHeader) {
+        if (hostHeader == null) {
+            return false;
+        }
+        int portIndex = hostHeader.lastIndexOf(':');
+        String requestHost = portIndex > 0 && hostHeader.indexOf(']') < portIndex ? hostHeader.substring(0, portIndex) : hostHeader;
+        if (this.host.startsWith(SUB_DOMAINS)) {
+            return requestHost.length() > this.host.length() - 1 &&
+                    requestHost.regionMatches(true, requestHost.length() - this.host.length() + 1, this.host, 1, this.host.length() - 1);
+        }
+        return this.host.equalsIgnoreCase(requestHost);
+    }
+
+    /**
+     * Overriden superclass method. Returns a string representation of this route
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        return "HttpRoute[path=" + this.path + ", host=" + this.host + ", methods=" + this.methods + ", headers=" + this.headers + ", proxy=" + this.proxy + "]";
+    }
+
+    /** Start Getter/Setter methods */
+    public String getPath() {
+        return this.path;
+    }
+    public void setPath(String path) {
+        this.path = path;
+    }
+    public String getHost() {
+        return this.host;
+    }
+    public void setHost(String host) {
+        this.host = host;
+    }
+    public Set<String> getMethods() {
+        return this.methods;
+    }
+    public void setMethods(Set<String> methods) {
+        this.methods = new HashSet<String>();
+        for (String method : methods) {
+            this.methods.add(method.toUpperCase(Locale.ENGLISH));
+        }
+    }
+    public Map<String, String> getHeaders() {
+        return this.headers;
+    }
+    public void setHeaders(Map<String, String> headers) {
+        this.headers = headers;
+    }
+    public String getProxy() {
+        return this.proxy;
+    }
+    public void setProxy(String proxy) {
+        this.proxy = proxy;
+    }
+    /** End Getter/Setter methods */
+
+}
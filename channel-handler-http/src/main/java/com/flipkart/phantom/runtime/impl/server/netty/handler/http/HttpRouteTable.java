@@ -0,0 +1,195 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.runtime.impl.server.netty.handler.http;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+/**
+ * <code>HttpRouteTable</code> routes requests to HttpProxy instances using a list of {@link HttpRoute}s. The route paths are compiled, when this
+ * table is initialized, into a tree of path segments where each node has literal children, looked up by hash, and a single child for variable
+ * segments. A request path is therefore matched in a single walk of its segments, without regular expressions, irrespective of the number
+ * of routes.
+ * The most specific route wins : literal segments are preferred to variable segments, and exact paths to deeper <code>**</code> paths, to
+ * shallower ones. Routes with the same path are evaluated in the order specified, and the first route whose host, method and header
+ * predicates match is selected.
+ * Instances of this class are immutable once initialized and are meant to be shared by all {@link RouteTableHttpChannelHandler}s of a
+ * listener.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class HttpRouteTable implements InitializingBean {
+
+    /** The path segment separator, variable segment delimiters and the segment that matches the remainder of the path*/
+    private static final char SEPARATOR = '/';
+    private static final String VARIABLE_START = "{";
+    private static final String VARIABLE_END = "}";
+    private static final String REMAINING_PATH = "**";
+
+    /** The routes in order of evaluation*/
+    private List<HttpRoute> routes = new ArrayList<HttpRoute>();
+
+    /** The root of the compiled path tree*/
+    private Node root;
+
+    /**
+     * Interface method implementation. Compiles the routes into the path tree
+     * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
+     */
+    public void afterPropertiesSet() throws Exception {
+        Node compiled = new Node();
+        for (HttpRoute route : this.routes) {
+            Assert.notNull(route.getPath(), "The 'path' may not be null for route : " + route);
+            Assert.notNull(route.getProxy(), "The 'proxy' may not be null for route : " + route);
+            Node node = compiled;
+            boolean remainingPath = false;
+            String[] segments = route.getPath().split(String.valueOf(SEPARATOR));
+            for (int i = 0; i < segments.length; i++) {
+                String segment = segments[i];
+                if (segment.isEmpty()) {
+                    continue;
+                }
+                if (REMAINING_PATH.equals(segment)) {
+                    Assert.isTrue(i == segments.length - 1, "'" + REMAINING_PATH + "' must be the last path segment for route : " + route);
+                    remainingPath = true;
+                } else if (segment.startsWith(VARIABLE_START) && segment.endsWith(VARIABLE_END)) {
+                    if (node.variableChild == null) {
+                        node.variableChild = new Node();
+                    }
+                    node = node.variableChild;
+                } else {
+                    Node child = node.literalChildren.get(segment);
+                    if (child == null) {
+                        child = new Node();
+                        node.literalChildren.put(segment, child);
+                    }
+                    node = child;
+                }
+            }
+            if (remainingPath) {
+                node.remainingPathRoutes.add(route);
+            } else {
+                node.exactRoutes.add(route);
+            }
+        }
+        this.root = compiled;
+    }
+
+    /**
+     * Returns the most specific route that matches the specified request
+     * @param request the HttpRequest
+     * @return the matching HttpRoute or null if no route matches
+     */
+    public HttpRoute route(HttpRequest request) {
+        String uri = request.getUri();
+        int start = 0;
+        int schemeIndex = uri.indexOf("://");
+        if (schemeIndex > 0 && schemeIndex < uri.indexOf(SEPARATOR)) { // absolute form of the request URI
+            start = uri.indexOf(SEPARATOR, schemeIndex + 3);
+            start = start < 0 ? uri.length() : start;
+        }
+        int end = uri.length();
+        for (int i = start; i < end; i++) {
+            char c = uri.charAt(i);
+            if (c == '?' || c == '#') {
+                end = i;
+                break;
+            }
+        }
+        return this.match(this.root, request, uri, start, end);
+    }
+
+    /**
+     * Returns the distinct names of HttpProxy instances that requests are routed to
+     * @return set of proxy names
+     */
+    public Set<String> getProxies() {
+        Set<String> proxies = new LinkedHashSet<String>();
+        for (HttpRoute route : this.routes) {
+            proxies.add(route.getProxy());
+        }
+        return proxies;
+    }
+
+    /**
+     * Helper method to match the path from the specified position, starting at the specified node of the path tree
+     */
+    private HttpRoute match(Node node, HttpRequest request, String uri, int position, int end) {
+        while (position < end && uri.charAt(position) == SEPARATOR) {
+            position++;
+        }
+        if (position == end) {
+            HttpRoute route = this.firstMatch(node.exactRoutes, request);
+            return route != null ? route : this.firstMatch(node.remainingPathRoutes, request);
+        }
+        int segmentEnd = uri.indexOf(SEPARATOR, position);
+        segmentEnd = segmentEnd < 0 || segmentEnd > end ? end : segmentEnd;
+        HttpRoute route = null;
+        if (!node.literalChildren.isEmpty()) {
+            Node child = node.literalChildren.get(uri.substring(position, segmentEnd));
+            if (child != null) {
+                route = this.match(child, request, uri, segmentEnd, end);
+            }
+        }
+        if (route == null && node.variableChild != null) {
+            route = this.match(node.variableChild, request, uri, segmentEnd, end);
+        }
+        return route != null ? route : this.firstMatch(node.remainingPathRoutes, request);
+    }
+
+    /**
+     * Helper method to return the first of the specified routes whose predicates match the request
+     */
+    private HttpRoute firstMatch(List<HttpRoute> candidates, HttpRequest request) {
+        for (int i = 0; i < candidates.size(); i++) {
+            HttpRoute route = candidates.get(i);
+            if (route.matches(request)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A node in the compiled path tree
+     */
+    private static class Node {
+        private Map<String, Node> literalChildren = new HashMap<String, Node>();
+        private Node variableChild;
+        private List<HttpRoute> exactRoutes = new ArrayList<HttpRoute>();
+        private List<HttpRoute> remainingPathRoutes = new ArrayList<HttpRoute>();
+    }
+
+    /** Start Getter/Setter methods */
+    public List<HttpRoute> getRoutes() {
+        return this.routes;
+    }
+    public void setRoutes(List<HttpRoute> routes) {
+        this.routes = routes;
+    }
+    /** End Getter/Setter methods */
+
+}
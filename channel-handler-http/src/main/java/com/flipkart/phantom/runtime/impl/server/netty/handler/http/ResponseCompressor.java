@@ -0,0 +1,137 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.runtime.impl.server.netty.handler.http;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+
+import com.flipkart.phantom.http.impl.ContentEncoder;
+
+/**
+ * <code>ResponseCompressor</code> compresses response content using the gzip or deflate content coding. Content may be compressed all at once or
+ * incrementally, one chunk at a time, in which case only the compressed output of the chunk is held in memory.
+ * Instances are not thread-safe and compress the content of a single response.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+class ResponseCompressor {
+
+    /** The supported content codings*/
+    static final String GZIP = ContentEncoder.GZIP;
+    static final String DEFLATE = ContentEncoder.DEFLATE;
+
+    /** The content coding and the encoder of the content*/
+    private final String encoding;
+    private final ContentEncoder encoder;
+
+    /**
+     * Constructor for this class
+     * @param encoding the content coding, one of {@link #GZIP} or {@link #DEFLATE}
+     * @param level the compression level, 1 to 9
+     */
+    ResponseCompressor(String encoding, int level) {
+        this.encoding = encoding;
+        this.encoder = new ContentEncoder(encoding, level);
+    }
+
+    /**
+     * Returns the preferred content coding supported by this compressor that is acceptable as per the specified Accept-Encoding header
+     * @param acceptEncoding the Accept-Encoding request header value, may be null
+     * @return {@link #GZIP}, {@link #DEFLATE} or null if neither is acceptable
+     */
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        float gzipQuality = -1, deflateQuality = -1, anyQuality = -1;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase();
+            float quality = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Float.parseFloat(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (GZIP.equals(name) || "x-gzip".equals(name)) {
+                gzipQuality = quality;
+            } else if (DEFLATE.equals(name)) {
+                deflateQuality = quality;
+            } else if ("*".equals(name)) {
+                anyQuality = quality;
+            }
+        }
+        gzipQuality = gzipQuality < 0 ? anyQuality : gzipQuality;
+        deflateQuality = deflateQuality < 0 ? anyQuality : deflateQuality;
+        if (gzipQuality > 0 && gzipQuality >= deflateQuality) {
+            return GZIP;
+        }
+        return deflateQuality > 0 ? DEFLATE : null;
+    }
+
+    /**
+     * Compresses the specified content completely
+     * @param content the content to compress
+     * @return the compressed content
+     */
+    ChannelBuffer compress(byte[] content) {
+        byte[] compressed = this.encoder.encode(content, 0, content.length);
+        return ChannelBuffers.wrappedBuffer(ChannelBuffers.wrappedBuffer(compressed), ChannelBuffers.wrappedBuffer(this.encoder.finish()));
+    }
+
+    /**
+     * Compresses the specified chunk of content. The returned buffer may be empty if the deflater needs more input to produce output
+     * @param chunk the chunk of content
+     * @return the compressed output that is available
+     */
+    ChannelBuffer encode(ChannelBuffer chunk) {
+        if (chunk.hasArray()) {
+            return ChannelBuffers.wrappedBuffer(this.encoder.encode(chunk.array(), chunk.arrayOffset() + chunk.readerIndex(), chunk.readableBytes()));
+        }
+        byte[] input = new byte[chunk.readableBytes()];
+        chunk.getBytes(chunk.readerIndex(), input);
+        return ChannelBuffers.wrappedBuffer(this.encoder.encode(input, 0, input.length));
+    }
+
+    /**
+     * Completes compression and returns the remaining compressed output. Releases the deflater
+     * @return the remaining compressed output
+     */
+    ChannelBuffer finish() {
+        return ChannelBuffers.wrappedBuffer(this.encoder.finish());
+    }
+
+    /**
+     * Releases the deflater without completing compression, say when the response could not be written completely
+     */
+    void end() {
+        this.encoder.end();
+    }
+
+    /** Getter methods */
+    String getEncoding() {
+        return this.encoding;
+    }
+    /** Getter methods */
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.runtime.impl.server.netty.handler.http;
+
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.springframework.util.Assert;
+
+/**
+ * <code>RouteTableHttpChannelHandler</code> is a sub-type of {@link RoutingHttpChannelHandler} that routes requests using a {@link HttpRouteTable}
+ * i.e. on path, host, method and headers. This lets one listener serve many upstream services. Requests that do not match any route are sent
+ * to the default proxy.
+ * The route table is compiled once and should be a singleton shared by the handler instances created for each channel.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+
+public class RouteTableHttpChannelHandler extends RoutingHttpChannelHandler {
+
+	/** The route table*/
+	private HttpRouteTable routeTable;
+
+	/**
+	 * Overriden superclass method. Adds the proxies of all routes to the proxy map
+	 * @see com.flipkart.phantom.runtime.impl.server.netty.handler.http.RoutingHttpChannelHandler#afterPropertiesSet()
+	 */
+	public void afterPropertiesSet() throws Exception {
+		super.afterPropertiesSet();
+		Assert.notNull(this.routeTable, "The 'routeTable' may not be null");
+		for (String proxy : this.routeTable.getProxies()) {
+			this.getProxyMap().put(proxy, proxy);
+		}
+	}
+
+	/**
+	 * Abstract method implementation. Returns the name of the proxy of the matching route or {@link RoutingHttpChannelHandler#ALL_ROUTES} if none match
+	 * @see com.flipkart.phantom.runtime.impl.server.netty.handler.http.RoutingHttpChannelHandler#getRoutingKey(org.jboss.netty.handler.codec.http.HttpRequest)
+	 */
+	protected String getRoutingKey(HttpRequest request) {
+		HttpRoute route = this.routeTable.route(request);
+		return route == null ? RoutingHttpChannelHandler.ALL_ROUTES : route.getProxy();
+	}
+
+	/** Start Getter/Setter methods */
+	public HttpRouteTable getRouteTable() {
+		return this.routeTable;
+	}
+	public void setRouteTable(HttpRouteTable routeTable) {
+		this.routeTable = routeTable;
+	}
+	/** End Getter/Setter methods */
+
+}
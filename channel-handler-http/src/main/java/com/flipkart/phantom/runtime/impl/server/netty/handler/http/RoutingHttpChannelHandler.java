@@ -16,24 +16,34 @@
 
 package com.flipkart.phantom.runtime.impl.server.netty.handler.http;
 
+import java.io.InputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.net.SocketTimeoutException;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.client.utils.HttpClientUtils;
 import org.apache.http.protocol.HTTP;
 import org.apache.http.util.EntityUtils;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
-import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelHandlerContext;
@@ -43,11 +53,14 @@ import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.SimpleChannelHandler;
 import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
 import org.jboss.netty.channel.group.ChannelGroup;
+import org.jboss.netty.handler.codec.http.DefaultHttpChunk;
 import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
+import org.jboss.netty.handler.codec.http.HttpChunk;
 import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.jboss.netty.util.internal.DeadLockProofWorker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
@@ -55,11 +68,13 @@ import org.springframework.util.Assert;
 
 import com.flipkart.phantom.event.ServiceProxyEvent;
 import com.flipkart.phantom.event.ServiceProxyEventProducer;
+import com.flipkart.phantom.http.impl.AsyncHttpProxyExecutor;
 import com.flipkart.phantom.http.impl.HttpProxy;
 import com.flipkart.phantom.http.impl.HttpRequestWrapper;
 import com.flipkart.phantom.task.impl.collector.EventDispatchingSpanCollector;
 import com.flipkart.phantom.task.impl.interceptor.ServerRequestInterceptor;
 import com.flipkart.phantom.task.spi.Executor;
+import com.flipkart.phantom.task.spi.RequestHeaders;
 import com.flipkart.phantom.task.spi.RequestContext;
 import com.flipkart.phantom.task.spi.repository.ExecutorRepository;
 import com.github.kristofa.brave.Brave;
@@ -68,11 +83,35 @@ import com.github.kristofa.brave.ServerSpan;
 import com.github.kristofa.brave.ServerTracer;
 import com.github.kristofa.brave.TraceFilter;
 import com.google.common.base.Optional;
+import com.netflix.hystrix.exception.HystrixRuntimeException;
 
 import rx.Observable;
 
 /**
  * <code>RoutingHttpChannelHandler</code> is a sub-type of {@link SimpleChannelHandler} that routes Http requests to one or more {@link HttpProxy} instances.
+ * <p>
+ * Request and response content is fully buffered by default. Content may instead be streamed by turning on {@link #setStreaming(boolean)}.
+ * In streaming mode, the request is sent upstream as soon as the request headers are received and the content of subsequent {@link HttpChunk}s
+ * is piped to the upstream connection via a {@link HttpChunkInputStream} - reads on the channel are suspended when more than
+ * {@link #setStreamingBufferSize(int)} bytes are pending. The response content is written out in chunks of {@link #setStreamingChunkSize(int)}
+ * bytes as it is read from the upstream connection, waiting for the channel to drain when it is not writable. The channel pipeline must not
+ * contain a {@link org.jboss.netty.handler.codec.http.HttpChunkAggregator} for request content to be streamed. Content is streamed only for
+ * proxies using the blocking pool, as streams would otherwise be read and written by the I/O threads of an
+ * {@link com.flipkart.phantom.http.impl.AsyncHttpConnectionPool}. Responses of proxies using the non-blocking pool are written fully buffered, as
+ * that pool buffers them anyway, and streamed requests to these proxies are rejected with 501 Not Implemented.
+ * <p>
+ * Responses are written in the order in which requests were received on the channel, as required for pipelined Http/1.1 requests, and the
+ * channel is kept open unless the client has asked for it to be closed. Responses of proxies using the blocking pool are read from the upstream
+ * connection as they are written, and are never written by Netty I/O threads or by threads other than the one that executed the request : these
+ * are written using the {@link #setResponseWriterExecutor(ExecutorService)} instead. Failed requests are answered with an error response instead of closing
+ * the channel : 504 Gateway Timeout when the upstream request times out, 503 Service Unavailable when the request is rejected or the circuit
+ * is open and 502 Bad Gateway for other failures.
+ * <p>
+ * Response content may be compressed, using gzip or deflate, for clients that accept it by turning on {@link #setCompression(boolean)}. This
+ * offloads compression from the upstream services : the Accept-Encoding header is not forwarded and responses of the
+ * {@link #setCompressibleContentTypes(Set)} that are not already encoded and are at least {@link #setCompressionMinSize(int)} bytes long are
+ * compressed here. Streamed responses are compressed chunk by chunk and are never fully buffered. Brotli is not supported as there is no
+ * pure Java brotli encoder.
  *
  * @author Regunath B
  * @version 1.0, 6 Sep 2013
@@ -89,8 +128,8 @@ public abstract class RoutingHttpChannelHandler extends SimpleChannelUpstreamHan
     /** The empty routing key which is default*/
     public static final String ALL_ROUTES = "";
 
-    /** Set of Http headers that we want to remove */
-    public static final Set<String> REMOVE_HEADERS = new HashSet<String>();
+    /** Set of Http headers that we want to remove. Header names are matched ignoring case */
+    public static final Set<String> REMOVE_HEADERS = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
     static {
     	RoutingHttpChannelHandler.REMOVE_HEADERS.add(HTTP.TRANSFER_ENCODING);    	
     	RoutingHttpChannelHandler.REMOVE_HEADERS.add(HTTP.CONN_DIRECTIVE);
@@ -103,7 +142,29 @@ public abstract class RoutingHttpChannelHandler extends SimpleChannelUpstreamHan
 
     /** Event Type for publishing all events which are generated here */
     private final static String HTTP_HANDLER = "HTTP_HANDLER";
+
+    /** Defaults for streaming request and response content*/
+    private static final int DEFAULT_STREAMING_BUFFER_SIZE = 65536;
+    private static final int DEFAULT_STREAMING_CHUNK_SIZE = 8192;
+    private static final long DEFAULT_STREAMING_READ_TIMEOUT_MILLIS = 30000;
+
+    /** Defaults for response compression*/
+    private static final int DEFAULT_COMPRESSION_MIN_SIZE = 1024;
+    private static final int DEFAULT_COMPRESSION_LEVEL = 6;
+    private static final Set<String> DEFAULT_COMPRESSIBLE_CONTENT_TYPES = new LinkedHashSet<String>(Arrays.asList(
+            "text/html", "text/plain", "text/css", "text/xml", "text/javascript", "text/csv", "application/json", "application/javascript",
+            "application/xml", "image/svg+xml", "+json", "+xml"));
     
+    /** The default ExecutorService for writing responses that may block, shared by all channels. Its threads are daemons and exit when idle*/
+    private static final ExecutorService DEFAULT_RESPONSE_WRITER_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger threadCount = new AtomicInteger();
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "RoutingHttpChannelHandler-ResponseWriter-" + this.threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
     /** The default value for tracing frequency. This value indicates that tracing if OFF*/
     private static final TraceFilter NO_TRACING = new FixedSampleRateTraceFilter(-1);    
     
@@ -147,6 +208,32 @@ public abstract class RoutingHttpChannelHandler extends SimpleChannelUpstreamHan
     
     /** The EventDispatchingSpanCollector instance used in tracing requests*/
     private EventDispatchingSpanCollector eventDispatchingSpanCollector;    
+
+    /** Streaming mode and settings for request and response content*/
+    private boolean streaming;
+    private int streamingBufferSize = DEFAULT_STREAMING_BUFFER_SIZE;
+    private int streamingChunkSize = DEFAULT_STREAMING_CHUNK_SIZE;
+    private long streamingReadTimeoutMillis = DEFAULT_STREAMING_READ_TIMEOUT_MILLIS;
+
+    /** Response compression mode and settings*/
+    private boolean compression;
+    private int compressionMinSize = DEFAULT_COMPRESSION_MIN_SIZE;
+    private int compressionLevel = DEFAULT_COMPRESSION_LEVEL;
+    private Set<String> compressibleContentTypes = DEFAULT_COMPRESSIBLE_CONTENT_TYPES;
+
+    /** The stream of request content that is currently being received on the channel, in streaming mode*/
+    private HttpChunkInputStream requestContentStream;
+
+    /** The sequence number of the next request received on the channel and of the next response to be written to it*/
+    private int requestSequence;
+    private int responseSequence;
+
+    /** Responses that are ready but waiting for responses to earlier requests to be written, and whether a thread is writing responses*/
+    private final Map<Integer, PendingResponse> pendingResponses = new HashMap<Integer, PendingResponse>();
+    private boolean writingResponses;
+
+    /** The ExecutorService that writes responses which may block, when the thread that is writing responses may not block*/
+    private ExecutorService responseWriterExecutor = DEFAULT_RESPONSE_WRITER_EXECUTOR;
 	
     /**
      * Interface method implementation. Checks if all mandatory properties have been set
@@ -179,11 +266,27 @@ public abstract class RoutingHttpChannelHandler extends SimpleChannelUpstreamHan
 		this.defaultChannelGroup.add(event.getChannel());
     }
 
+    /**
+     * Overriden superclass method. Fails the request content stream, if any, that is being received on the channel
+     * @see org.jboss.netty.channel.SimpleChannelUpstreamHandler#channelClosed(org.jboss.netty.channel.ChannelHandlerContext, org.jboss.netty.channel.ChannelStateEvent)
+     */
+    public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent event) throws Exception {
+        if (this.requestContentStream != null) {
+            this.requestContentStream.fail("Channel closed before request content was received completely");
+            this.requestContentStream = null;
+        }
+        super.channelClosed(ctx, event);
+    }
+
     /**
      * Overridden method. Reads and processes Http commands sent to the service proxy. Expects data in the Http protocol.
      * @see org.jboss.netty.channel.SimpleChannelUpstreamHandler#messageReceived(org.jboss.netty.channel.ChannelHandlerContext, org.jboss.netty.channel.MessageEvent)
      */
     public void messageReceived(ChannelHandlerContext ctx, MessageEvent messageEvent) throws Exception {
+        if (messageEvent.getMessage() instanceof HttpChunk) {
+            this.processRequestChunk((HttpChunk) messageEvent.getMessage());
+            return;
+        }
         long receiveTime = System.currentTimeMillis();
         HttpRequest request = (HttpRequest) messageEvent.getMessage();
         
@@ -192,18 +295,34 @@ public abstract class RoutingHttpChannelHandler extends SimpleChannelUpstreamHan
 	        LOGGER.debug("Http Headers : " + request.getHeaders().toString());
         }
 
-        this.processRequestHeaders(request);
-
-        ChannelBuffer inputBuffer = request.getContent();
-        byte[] requestData = new byte[inputBuffer.readableBytes()];
-        inputBuffer.readBytes(requestData, 0, requestData.length);
+        final boolean keepAlive = HttpHeaders.isKeepAlive(request);
+        final int sequence = this.requestSequence++;
+        final Channel channel = messageEvent.getChannel();
+        // the headers forwarded upstream are collected once, in a container that is shared by tracing and the connection pool
+        RequestHeaders headers = new RequestHeaders();
+        this.processRequestHeaders(request, headers);
+        final String acceptEncoding = this.compression ? request.getHeader(HttpHeaders.Names.ACCEPT_ENCODING) : null;
+        if (this.compression) { // the response is compressed here, if at all. Have the upstream service send it uncompressed
+            headers.removeHeader(HttpHeaders.Names.ACCEPT_ENCODING);
+        }
 
         // Prepare request Wrapper
         HttpRequestWrapper executorHttpRequest = new HttpRequestWrapper();
-        executorHttpRequest.setData(requestData);
+        if (this.streaming && request.isChunked()) {
+            // the content will follow in HttpChunk messages. Pipe these to the upstream request
+            this.requestContentStream = new HttpChunkInputStream(messageEvent.getChannel(), this.streamingBufferSize, this.streamingReadTimeoutMillis);
+            executorHttpRequest.setData(new byte[0]);
+            executorHttpRequest.setDataStream(this.requestContentStream);
+            executorHttpRequest.setContentLength(HttpHeaders.getContentLength(request, -1));
+        } else {
+            ChannelBuffer inputBuffer = request.getContent();
+            byte[] requestData = new byte[inputBuffer.readableBytes()];
+            inputBuffer.readBytes(requestData, 0, requestData.length);
+            executorHttpRequest.setData(requestData);
+        }
         executorHttpRequest.setMethod(request.getMethod().toString());
         executorHttpRequest.setUri(request.getUri());
-        executorHttpRequest.setHeaders(request.getHeaders());
+        executorHttpRequest.setHeaders(headers);
         executorHttpRequest.setProtocol(request.getProtocolVersion().getProtocolName());
         executorHttpRequest.setMajorVersion(request.getProtocolVersion().getMajorVersion());
         executorHttpRequest.setMinorVersion(request.getProtocolVersion().getMinorVersion());
@@ -222,6 +341,21 @@ public abstract class RoutingHttpChannelHandler extends SimpleChannelUpstreamHan
 
     Executor<HttpRequestWrapper,HttpResponse> executor = this.repository.getExecutor(proxy, proxy, executorHttpRequest);
 
+    // streams must not be read or written by the I/O threads of the non-blocking pool
+    final boolean streamResponse = this.streaming && !(executor instanceof AsyncHttpProxyExecutor);
+    // responses of the blocking pool are read from the upstream connection while being written. The non-blocking pool buffers responses
+    final boolean blockingResponse = !(executor instanceof AsyncHttpProxyExecutor);
+    if (executorHttpRequest.getDataStream() != null && executor instanceof AsyncHttpProxyExecutor) {
+      RuntimeException runtimeException = new UnsupportedOperationException(
+          "Streamed request content is not supported by proxy : " + proxy + ", which uses a non-blocking connection pool");
+      LOGGER.warn(runtimeException.getMessage() + ". Rejecting request URI : " + request.getUri());
+      informReqTracer(receiveTime, request, serverRequestInterceptor, executor,
+                      Optional.of(runtimeException), null);
+      closeRequestContent(executorHttpRequest); // discards the rest of the content
+      writeInOrder(channel, sequence, false, () -> writeErrorResponse(channel, false, HttpResponseStatus.NOT_IMPLEMENTED));
+      return;
+    }
+
     Observable<HttpResponse> observableResponse;
     try {
       observableResponse = executor.observe();
@@ -232,22 +366,23 @@ public abstract class RoutingHttpChannelHandler extends SimpleChannelUpstreamHan
               "Error in executing HTTP request:" + proxy + " URI:" + request.getUri(), e);
       informReqTracer(receiveTime, request, serverRequestInterceptor, executor,
                       Optional.of(runtimeException), null);
-
-      throw runtimeException;
+      closeRequestContent(executorHttpRequest);
+      writeInOrder(channel, sequence, false, () -> writeErrorResponse(channel, keepAlive, runtimeException));
+      return;
     }
 
     final String finalProxy = proxy;
     observableResponse.subscribe(
         (response) -> {
-          try {
-            informReqTracer(receiveTime, request, serverRequestInterceptor, executor,
-                            Optional.absent(), response);
-            writeCommandExecutionResponse(ctx, messageEvent, request, response);
-          } catch (Exception e) {
-            LOGGER.error("Error while writing response", e.getMessage());
-            throw  new RuntimeException(
-                "Error in executing HTTP request:" + finalProxy + " URI:" + request.getUri(), e);
-          }
+          informReqTracer(receiveTime, request, serverRequestInterceptor, executor,
+                          Optional.absent(), response);
+          writeInOrder(channel, sequence, blockingResponse, () -> {
+            try {
+              writeCommandExecutionResponse(channel, request, keepAlive, acceptEncoding, streamResponse, response);
+            } finally {
+              closeRequestContent(executorHttpRequest);
+            }
+          });
         },
         (exception) -> {
           RuntimeException  
@@ -258,9 +393,10 @@ public abstract class RoutingHttpChannelHandler extends SimpleChannelUpstreamHan
           informReqTracer(receiveTime, request, serverRequestInterceptor, executor,
                           Optional.of(runtimeException), null);
 
-          //since the callback is handled by hystrix thread, we need to close the channel explicitly.
-          //This ensures that the connection is closed at client side, however we need to throw a relevant http error msg 
-          messageEvent.getChannel().close();
+          //since the callback is handled by hystrix thread, the error response is written here. The channel is kept open if the
+          //client requested keep-alive
+          closeRequestContent(executorHttpRequest);
+          writeInOrder(channel, sequence, false, () -> writeErrorResponse(channel, keepAlive, runtimeException));
         });
   }
 
@@ -304,14 +440,18 @@ public abstract class RoutingHttpChannelHandler extends SimpleChannelUpstreamHan
     protected abstract String getRoutingKey(HttpRequest request);
 
     /**
-     * Helper method to remove or otherwise modify Http request headers that we dont want to propagate. This implementation removes all headers specified
-     * under {@link RoutingHttpChannelHandler#REMOVE_HEADERS}. Sub-types may override this method to change this behavior
-     * @param request the HttpRequest that needs to be processed for remove headers 
+     * Helper method to collect the Http request headers that are to be propagated, leaving out or otherwise modifying headers that we dont want to
+     * propagate. This implementation adds all headers except those specified under {@link RoutingHttpChannelHandler#REMOVE_HEADERS}. The request
+     * itself is not modified. Sub-types may override this method to change this behavior
+     * @param request the HttpRequest whose headers are to be propagated
+     * @param headers the RequestHeaders to add the propagated headers to
      */
-    protected void processRequestHeaders(HttpRequest request) {
-        for (String header : RoutingHttpChannelHandler.REMOVE_HEADERS) {
-        	request.removeHeader(header);
-        }    	
+    protected void processRequestHeaders(HttpRequest request, RequestHeaders headers) {
+        for (Map.Entry<String, String> header : request.getHeaders()) {
+            if (!RoutingHttpChannelHandler.REMOVE_HEADERS.contains(header.getKey())) {
+                headers.addHeader(header.getKey(), header.getValue());
+            }
+        }
     }
     
     /**
@@ -338,17 +478,169 @@ public abstract class RoutingHttpChannelHandler extends SimpleChannelUpstreamHan
         return serverRequestInterceptor;
     }
 
+    /**
+     * Runs the specified response writer after the responses to all earlier requests on the channel have been written. Responses that are ready
+     * out of order are queued, and written by the thread that writes the response they wait for.
+     * @param channel the Channel to write to
+     * @param sequence the sequence number of the request on the channel
+     * @param blocking true if the response writer may block, reading the response from the upstream connection
+     * @param responseWriter the ResponseWriter for the request
+     */
+    private void writeInOrder(Channel channel, int sequence, boolean blocking, ResponseWriter responseWriter) {
+        synchronized (this.pendingResponses) {
+            this.pendingResponses.put(sequence, new PendingResponse(responseWriter, blocking, Thread.currentThread()));
+            if (this.writingResponses) {
+                return; // the thread writing responses will write this one when its turn comes
+            }
+            this.writingResponses = true;
+        }
+        this.writePendingResponses(channel, false);
+    }
+
+    /**
+     * Writes the queued responses, in order, until the response to the next request is not ready. A response that may block is written by the
+     * calling thread only if it executed the request and is not a Netty I/O thread, or is a thread of the {@link #responseWriterExecutor}.
+     * Writing is handed over to the responseWriterExecutor otherwise
+     * @param channel the Channel to write to
+     * @param onWriterThread true if called on a thread of the responseWriterExecutor
+     */
+    private void writePendingResponses(final Channel channel, boolean onWriterThread) {
+        while (true) {
+            PendingResponse nextResponse;
+            synchronized (this.pendingResponses) {
+                nextResponse = this.pendingResponses.get(this.responseSequence);
+                if (nextResponse == null) {
+                    this.writingResponses = false;
+                    return;
+                }
+                if (nextResponse.blocking && !onWriterThread &&
+                        (nextResponse.thread != Thread.currentThread() || DeadLockProofWorker.PARENT.get() != null)) {
+                    break; // hand over writing, which remains marked as in progress
+                }
+                this.pendingResponses.remove(this.responseSequence);
+                this.responseSequence++;
+            }
+            this.write(channel, nextResponse.responseWriter);
+        }
+        try {
+            this.responseWriterExecutor.execute(() -> writePendingResponses(channel, true));
+        } catch (RejectedExecutionException e) {
+            LOGGER.error("Response writer rejected. Closing the channel : " + e.getMessage(), e);
+            synchronized (this.pendingResponses) {
+                this.writingResponses = false;
+            }
+            channel.close();
+        }
+    }
+
+    /**
+     * Helper method to run the specified response writer. Closes the channel if writing fails, as the response may have been partially written
+     */
+    private void write(Channel channel, ResponseWriter responseWriter) {
+        try {
+            responseWriter.write();
+        } catch (Exception e) {
+            LOGGER.error("Error while writing response. Closing the channel : " + e.getMessage(), e);
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes an error response for the specified request execution failure
+     * @param channel the Channel to write to
+     * @param keepAlive true if the channel is to be kept open
+     * @param error the execution failure
+     */
+    private void writeErrorResponse(Channel channel, boolean keepAlive, Throwable error) {
+        this.writeErrorResponse(channel, keepAlive, this.getErrorStatus(error));
+    }
+
+    /**
+     * Writes an error response with the specified status
+     * @param channel the Channel to write to
+     * @param keepAlive true if the channel is to be kept open
+     * @param status the status of the error response
+     */
+    private void writeErrorResponse(Channel channel, boolean keepAlive, HttpResponseStatus status) {
+        org.jboss.netty.handler.codec.http.HttpResponse httpResponse = new DefaultHttpResponse(HttpVersion.HTTP_1_1, status);
+        byte[] responseData = status.toString().getBytes();
+        httpResponse.setHeader(HttpHeaders.Names.CONTENT_TYPE, "text/plain");
+        httpResponse.setHeader(HttpHeaders.Names.CONTENT_LENGTH, responseData.length);
+        httpResponse.setContent(ChannelBuffers.wrappedBuffer(responseData));
+        this.writeResponse(channel, keepAlive, httpResponse);
+    }
+
+    /**
+     * Returns the status of the error response for the specified request execution failure. Maps timeouts to 504 Gateway Timeout, rejected
+     * and short-circuited executions to 503 Service Unavailable and all other failures to 502 Bad Gateway. Sub-types may override this method
+     * to change this behavior
+     * @param error the execution failure
+     * @return the HttpResponseStatus to respond with
+     */
+    protected HttpResponseStatus getErrorStatus(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HystrixRuntimeException) {
+                switch (((HystrixRuntimeException) cause).getFailureType()) {
+                case TIMEOUT:
+                    return HttpResponseStatus.GATEWAY_TIMEOUT;
+                case SHORTCIRCUIT:
+                case REJECTED_THREAD_EXECUTION:
+                case REJECTED_SEMAPHORE_EXECUTION:
+                case REJECTED_SEMAPHORE_FALLBACK:
+                    return HttpResponseStatus.SERVICE_UNAVAILABLE;
+                default:
+                    break; // check the cause of the command failure
+                }
+            }
+            if (cause instanceof TimeoutException || cause instanceof SocketTimeoutException) {
+                return HttpResponseStatus.GATEWAY_TIMEOUT;
+            }
+        }
+        return HttpResponseStatus.BAD_GATEWAY;
+    }
+
+    /**
+     * Writes the specified response and closes the channel if it is not to be kept open. Sets the Connection header as appropriate
+     * @param channel the Channel to write to
+     * @param keepAlive true if the channel is to be kept open
+     * @param httpResponse the response to write
+     * @return ChannelFuture for the write
+     */
+    private ChannelFuture writeResponse(Channel channel, boolean keepAlive, org.jboss.netty.handler.codec.http.HttpResponse httpResponse) {
+        httpResponse.setHeader(HttpHeaders.Names.CONNECTION, keepAlive ? HttpHeaders.Values.KEEP_ALIVE : HttpHeaders.Values.CLOSE);
+        ChannelFuture channelFuture = channel.write(httpResponse);
+        if (!keepAlive) { // close the channel only if the client has requested
+            channelFuture.addListener(ChannelFutureListener.CLOSE);
+        }
+        return channelFuture;
+    }
+
     /**
      * Writes the specified TaskResult data to the channel output. Only the raw output data is written and rest of the TaskResult fields are ignored 
-     * @param ctx the ChannelHandlerContext
-     * @param event the ChannelEvent
+     * @param channel the Channel to write to
+     * @param request the HttpRequest
+     * @param keepAlive true if the channel is to be kept open
+     * @param acceptEncoding the Accept-Encoding request header if response compression is on, null otherwise
+     * @param streamResponse true if the response content is to be streamed
+     * @param response the upstream HttpResponse
      * @throws Exception in case of any errors
      */
-    private void writeCommandExecutionResponse(ChannelHandlerContext ctx, ChannelEvent event, HttpRequest request, HttpResponse response) throws Exception {
+    private void writeCommandExecutionResponse(Channel channel, HttpRequest request, boolean keepAlive, String acceptEncoding,
+            boolean streamResponse, HttpResponse response) throws Exception {
         // Don't write anything if the response is null
         if (response == null || response.getEntity() == null) {
             // write empty response
-            event.getChannel().write(new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.NO_CONTENT)).addListener(ChannelFutureListener.CLOSE);
+            org.jboss.netty.handler.codec.http.HttpResponse httpResponse = new DefaultHttpResponse(HttpVersion.HTTP_1_1,
+                    response == null ? HttpResponseStatus.NO_CONTENT : HttpResponseStatus.valueOf(response.getStatusLine().getStatusCode()));
+            if (response != null) {
+                for (Header header : response.getAllHeaders()) {
+                    if (!RoutingHttpChannelHandler.REMOVE_HEADERS.contains(header.getName())) {
+                        httpResponse.setHeader(header.getName(),header.getValue());
+                    }
+                }
+            }
+            httpResponse.setHeader(HTTP.CONTENT_LEN, 0);
+            this.writeResponse(channel, keepAlive, httpResponse);
             return;
         }
         org.jboss.netty.handler.codec.http.HttpResponse httpResponse = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.valueOf(response.getStatusLine().getStatusCode()));
@@ -361,25 +653,211 @@ public abstract class RoutingHttpChannelHandler extends SimpleChannelUpstreamHan
                 
         // write entity
         HttpEntity responseEntity = response.getEntity();
+        if (streamResponse) {
+            ResponseCompressor compressor = this.getResponseCompressor(acceptEncoding, response, responseEntity.getContentLength(), httpResponse);
+            this.writeStreamingResponse(channel, request, keepAlive, response, httpResponse, compressor);
+            return;
+        }
         byte[] responseData = EntityUtils.toByteArray(responseEntity);
-        
-        // add the content length response header since we send the complete response body
-        httpResponse.setHeader(HTTP.CONTENT_LEN,responseData.length);        
 
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("Http Response status : " + response.getStatusLine().toString());
         	LOGGER.debug("Http Response : " + new String(responseData));
         }
-        
-        httpResponse.setContent(ChannelBuffers.copiedBuffer(responseData));
+
+        ResponseCompressor compressor = this.getResponseCompressor(acceptEncoding, response, responseData.length, httpResponse);
+        ChannelBuffer content = compressor == null ? ChannelBuffers.wrappedBuffer(responseData) : compressor.compress(responseData);
+
+        // add the content length response header since we send the complete response body
+        httpResponse.setHeader(HTTP.CONTENT_LEN, content.readableBytes());
+        httpResponse.setContent(content);
         // write response
-        boolean keepAlive = HttpHeaders.isKeepAlive(request);
-        ChannelFuture channelFuture = event.getChannel().write(httpResponse);
-        if (!keepAlive) { // close the channel only if the client has requested
-        	channelFuture.addListener(ChannelFutureListener.CLOSE);
-        }
+        this.writeResponse(channel, keepAlive, httpResponse);
     }
     
+    /**
+     * Writes the response content to the channel output as it is read from the upstream connection. The response content is delimited
+     * using the upstream Content-Length if known, chunked transfer encoding for Http 1.1 clients and by closing the connection otherwise.
+     * @param channel the Channel to write to
+     * @param request the HttpRequest
+     * @param keepAlive true if the channel is to be kept open
+     * @param response the upstream HttpResponse
+     * @param httpResponse the response with status and headers set
+     * @param compressor the ResponseCompressor for the response content, null if the content is not to be compressed
+     * @throws Exception in case of any errors
+     */
+    private void writeStreamingResponse(Channel channel, HttpRequest request, boolean keepAlive, HttpResponse response,
+            org.jboss.netty.handler.codec.http.HttpResponse httpResponse, ResponseCompressor compressor) throws Exception {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Http Response status : " + response.getStatusLine().toString());
+        }
+        // the length of compressed content is not known until all of it has been compressed
+        long contentLength = compressor == null ? response.getEntity().getContentLength() : -1;
+        httpResponse.removeHeader(HTTP.CONTENT_LEN);
+        boolean chunked = false;
+        if (contentLength >= 0) {
+            httpResponse.setHeader(HTTP.CONTENT_LEN, contentLength);
+        } else if (request.getProtocolVersion().equals(HttpVersion.HTTP_1_1)) {
+            chunked = true;
+            httpResponse.setChunked(true);
+        } else {
+            keepAlive = false; // response content is delimited by closing the connection
+        }
+        httpResponse.setHeader(HttpHeaders.Names.CONNECTION, keepAlive ? HttpHeaders.Values.KEEP_ALIVE : HttpHeaders.Values.CLOSE);
+        ChannelFuture channelFuture = channel.write(httpResponse);
+        InputStream responseContent = response.getEntity().getContent();
+        boolean completed = false;
+        try {
+            while (channel.isConnected()) {
+                ChannelBuffer chunk = ChannelBuffers.buffer(this.streamingChunkSize);
+                if (chunk.writeBytes(responseContent, this.streamingChunkSize) < 0) {
+                    completed = true;
+                    break;
+                }
+                if (compressor != null) {
+                    chunk = compressor.encode(chunk);
+                    if (!chunk.readable()) { // the compressor needs more content to produce output
+                        continue;
+                    }
+                }
+                channelFuture = channel.write(new DefaultHttpChunk(chunk));
+                if (!channel.isWritable()) { // wait for the channel to drain. Streamed responses are never written by I/O threads
+                    channelFuture.awaitUninterruptibly();
+                }
+            }
+            if (completed && compressor != null) {
+                ChannelBuffer chunk = compressor.finish();
+                if (chunk.readable()) {
+                    channelFuture = channel.write(new DefaultHttpChunk(chunk));
+                }
+            }
+        } finally {
+            if (!completed && compressor != null) {
+                compressor.end();
+            }
+            if (channel.isConnected()) {
+                responseContent.close();
+            } else {
+                // the client has gone away. Release the upstream connection without reading the remaining content
+                HttpClientUtils.closeQuietly(response);
+            }
+        }
+        if (chunked) {
+            channelFuture = channel.write(HttpChunk.LAST_CHUNK);
+        }
+        if (!keepAlive) {
+            channelFuture.addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    /**
+     * Returns a ResponseCompressor for the specified response if response compression is on, the response content is compressible and the
+     * client accepts a supported content coding. Sets the Content-Encoding and Vary headers as appropriate
+     * @param acceptEncoding the Accept-Encoding request header, may be null
+     * @param response the upstream HttpResponse
+     * @param contentLength the length of the response content, -1 if not known
+     * @param httpResponse the response with status and headers set
+     * @return the ResponseCompressor or null if the response content is not to be compressed
+     */
+    private ResponseCompressor getResponseCompressor(String acceptEncoding, HttpResponse response, long contentLength,
+            org.jboss.netty.handler.codec.http.HttpResponse httpResponse) {
+        if (!this.compression || response.containsHeader(HttpHeaders.Names.CONTENT_ENCODING) || !this.isCompressible(response)) {
+            return null;
+        }
+        // the representation depends on the Accept-Encoding of the request. Tell caches so, irrespective of whether this one is compressed
+        String vary = httpResponse.getHeader(HttpHeaders.Names.VARY);
+        if (vary == null) {
+            httpResponse.setHeader(HttpHeaders.Names.VARY, HttpHeaders.Names.ACCEPT_ENCODING);
+        } else if (!vary.contains("*") && !vary.toLowerCase().contains(HttpHeaders.Names.ACCEPT_ENCODING.toLowerCase())) {
+            httpResponse.setHeader(HttpHeaders.Names.VARY, vary + ", " + HttpHeaders.Names.ACCEPT_ENCODING);
+        }
+        String encoding = ResponseCompressor.negotiate(acceptEncoding);
+        if (encoding == null || (contentLength >= 0 && contentLength < this.compressionMinSize)) {
+            return null;
+        }
+        httpResponse.setHeader(HttpHeaders.Names.CONTENT_ENCODING, encoding);
+        String eTag = httpResponse.getHeader(HttpHeaders.Names.ETAG);
+        if (eTag != null && !eTag.startsWith("W/")) { // the compressed content is not byte-for-byte identical to the upstream representation
+            httpResponse.setHeader(HttpHeaders.Names.ETAG, "W/" + eTag);
+        }
+        return new ResponseCompressor(encoding, this.compressionLevel);
+    }
+
+    /**
+     * Returns true if the content of the specified response is of one of the compressible content types. Content types that start with
+     * a '+' match the structured syntax suffix of the media type
+     * @param response the upstream HttpResponse
+     * @return true if the response content may be compressed
+     */
+    private boolean isCompressible(HttpResponse response) {
+        int status = response.getStatusLine().getStatusCode();
+        Header contentType = response.getFirstHeader(HttpHeaders.Names.CONTENT_TYPE);
+        if (status < 200 || status == 204 || status == 304 || contentType == null) {
+            return false;
+        }
+        String mediaType = contentType.getValue();
+        int parametersIndex = mediaType.indexOf(';');
+        mediaType = (parametersIndex < 0 ? mediaType : mediaType.substring(0, parametersIndex)).trim().toLowerCase();
+        for (String compressibleContentType : this.compressibleContentTypes) {
+            if (compressibleContentType.startsWith("+") ? mediaType.endsWith(compressibleContentType) : mediaType.equals(compressibleContentType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Handles the specified request chunk. Appends it to the current request content stream, if any
+     * @param chunk the HttpChunk received on the channel
+     */
+    private void processRequestChunk(HttpChunk chunk) {
+        if (this.requestContentStream == null) {
+            LOGGER.warn("Ignoring Http chunk received without a streamed request. Is the HttpChunkAggregator missing in the pipeline?");
+            return;
+        }
+        if (chunk.isLast()) {
+            this.requestContentStream.end();
+            this.requestContentStream = null;
+        } else {
+            this.requestContentStream.offer(chunk.getContent());
+        }
+    }
+
+    /**
+     * Closes the request content stream, if any, of the specified request. Discards any unread request content
+     * @param executorHttpRequest the Http request
+     */
+    private void closeRequestContent(HttpRequestWrapper executorHttpRequest) {
+        if (executorHttpRequest.getDataStream() != null) {
+            try {
+                executorHttpRequest.getDataStream().close();
+            } catch (Exception e) {
+                // ignore. There is nothing to release here
+            }
+        }
+    }
+
+    /**
+     * Writes a response to the channel
+     */
+    private interface ResponseWriter {
+        void write() throws Exception;
+    }
+
+    /**
+     * A response that is ready to be written, with the thread that executed its request
+     */
+    private static class PendingResponse {
+        private final ResponseWriter responseWriter;
+        private final boolean blocking;
+        private final Thread thread;
+        PendingResponse(ResponseWriter responseWriter, boolean blocking, Thread thread) {
+            this.responseWriter = responseWriter;
+            this.blocking = blocking;
+            this.thread = thread;
+        }
+    }
+
     /** Start Getter/Setter methods */
     public ChannelGroup getDefaultChannelGroup() {
         return this.defaultChannelGroup;
@@ -417,6 +895,42 @@ public abstract class RoutingHttpChannelHandler extends SimpleChannelUpstreamHan
 	public void setEventDispatchingSpanCollector(EventDispatchingSpanCollector eventDispatchingSpanCollector) {
 		this.eventDispatchingSpanCollector = eventDispatchingSpanCollector;
 	}
+	public boolean isStreaming() {
+		return this.streaming;
+	}
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+	public void setStreamingBufferSize(int streamingBufferSize) {
+		this.streamingBufferSize = streamingBufferSize;
+	}
+	public void setStreamingChunkSize(int streamingChunkSize) {
+		this.streamingChunkSize = streamingChunkSize;
+	}
+	public void setStreamingReadTimeoutMillis(long streamingReadTimeoutMillis) {
+		this.streamingReadTimeoutMillis = streamingReadTimeoutMillis;
+	}
+	public boolean isCompression() {
+		return this.compression;
+	}
+	public void setCompression(boolean compression) {
+		this.compression = compression;
+	}
+	public void setCompressionMinSize(int compressionMinSize) {
+		this.compressionMinSize = compressionMinSize;
+	}
+	public void setCompressionLevel(int compressionLevel) {
+		this.compressionLevel = compressionLevel;
+	}
+	public void setCompressibleContentTypes(Set<String> compressibleContentTypes) {
+		this.compressibleContentTypes = compressibleContentTypes;
+	}
+    public ExecutorService getResponseWriterExecutor() {
+        return this.responseWriterExecutor;
+    }
+    public void setResponseWriterExecutor(ExecutorService responseWriterExecutor) {
+        this.responseWriterExecutor = responseWriterExecutor;
+    }
     /** End Getter/Setter methods */
 
 }
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.runtime.impl.server.netty.handler.http;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link HttpChunkInputStream}
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class HttpChunkInputStreamTest {
+
+    private static final int BUFFER_SIZE = 8;
+
+    /** The readable state of the channel and the number of times it was changed*/
+    private volatile boolean readable;
+    private final AtomicInteger readableChanges = new AtomicInteger();
+
+    private Channel channel;
+
+    @Before
+    public void setUp() {
+        this.readable = true;
+        this.channel = (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(), new Class<?>[] {Channel.class}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("isReadable")) {
+                    return readable;
+                } else if (method.getName().equals("setReadable")) {
+                    readable = (Boolean) args[0];
+                    readableChanges.incrementAndGet();
+                    return null;
+                } else if (method.getName().equals("isOpen")) {
+                    return true;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    @Test
+    public void testReadsChunksInOrder() throws Exception {
+        HttpChunkInputStream stream = new HttpChunkInputStream(this.channel, 1024, 1000);
+        stream.offer(ChannelBuffers.wrappedBuffer("Hello, ".getBytes("UTF-8")));
+        stream.offer(ChannelBuffers.EMPTY_BUFFER);
+        stream.offer(ChannelBuffers.wrappedBuffer("World".getBytes("UTF-8")));
+        stream.end();
+        assertEquals("Hello, World", read(stream));
+        assertEquals(-1, stream.read());
+    }
+
+    @Test
+    public void testReadWaitsForContent() throws Exception {
+        final HttpChunkInputStream stream = new HttpChunkInputStream(this.channel, 1024, 5000);
+        final CountDownLatch reading = new CountDownLatch(1);
+        Thread sender = new Thread() {
+            public void run() {
+                try {
+                    reading.await();
+                    Thread.sleep(100);
+                    stream.offer(ChannelBuffers.wrappedBuffer(new byte[] {42}));
+                    stream.end();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        sender.start();
+        reading.countDown();
+        assertEquals(42, stream.read());
+        assertEquals(-1, stream.read());
+        sender.join();
+    }
+
+    @Test
+    public void testFlowControl() throws Exception {
+        HttpChunkInputStream stream = new HttpChunkInputStream(this.channel, BUFFER_SIZE, 1000);
+        stream.offer(ChannelBuffers.wrappedBuffer(new byte[6]));
+        assertTrue("Reads suspended below the buffer size", this.readable);
+        stream.offer(ChannelBuffers.wrappedBuffer(new byte[6]));
+        assertFalse("Reads not suspended at the buffer size", this.readable);
+        assertEquals(12, stream.available());
+        byte[] b = new byte[12];
+        assertEquals(6, stream.read(b, 0, 6));
+        assertFalse("Reads resumed above half the buffer size", this.readable);
+        assertEquals(2, stream.read(b, 0, 2));
+        assertTrue("Reads not resumed at half the buffer size", this.readable);
+        assertEquals(2, this.readableChanges.get());
+        assertEquals(4, stream.available());
+    }
+
+    @Test
+    public void testReadTimeout() throws Exception {
+        HttpChunkInputStream stream = new HttpChunkInputStream(this.channel, BUFFER_SIZE, 100);
+        long start = System.currentTimeMillis();
+        try {
+            stream.read();
+            fail("Read did not time out");
+        } catch (SocketTimeoutException e) {
+            assertTrue(System.currentTimeMillis() - start >= 100);
+        }
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        HttpChunkInputStream stream = new HttpChunkInputStream(this.channel, BUFFER_SIZE, 1000);
+        stream.offer(ChannelBuffers.wrappedBuffer(new byte[] {1}));
+        stream.fail("Client closed the connection");
+        assertEquals("Buffered content not readable before the failure", 1, stream.read());
+        try {
+            stream.read();
+            fail("Failure not reported");
+        } catch (IOException e) {
+            assertEquals("Client closed the connection", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testCloseDiscardsContent() throws Exception {
+        HttpChunkInputStream stream = new HttpChunkInputStream(this.channel, BUFFER_SIZE, 1000);
+        stream.offer(ChannelBuffers.wrappedBuffer(new byte[BUFFER_SIZE]));
+        assertFalse(this.readable);
+        stream.close();
+        assertTrue("Reads not resumed on close", this.readable);
+        stream.offer(ChannelBuffers.wrappedBuffer(new byte[BUFFER_SIZE]));
+        assertTrue("Content buffered after close", this.readable);
+        assertEquals(0, stream.available());
+        assertEquals(-1, stream.read());
+    }
+
+    /**
+     * Reads the specified stream to the end as an UTF-8 string
+     */
+    private static String read(HttpChunkInputStream stream) throws IOException {
+        StringBuilder content = new StringBuilder();
+        byte[] b = new byte[4];
+        int read;
+        while ((read = stream.read(b, 0, b.length)) != -1) {
+            content.append(new String(b, 0, read, "UTF-8"));
+        }
+        return content.toString();
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.runtime.impl.server.netty.handler.http;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.jboss.netty.handler.codec.http.DefaultHttpRequest;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for {@link HttpRouteTable}
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class HttpRouteTableTest {
+
+    private HttpRouteTable routeTable;
+
+    @Before
+    public void setUp() throws Exception {
+        List<HttpRoute> routes = new ArrayList<HttpRoute>();
+        routes.add(newRoute("/users/{id}", "userById"));
+        routes.add(newRoute("/users/me", "currentUser"));
+        routes.add(newRoute("/users/{id}/orders/**", "orders"));
+        routes.add(newRoute("/users/**", "users"));
+        routes.add(newRoute("/**", "default"));
+        HttpRoute postRoute = newRoute("/items", "itemWriter");
+        postRoute.setMethods(new HashSet<String>(Arrays.asList("POST", "PUT")));
+        routes.add(postRoute);
+        routes.add(newRoute("/items", "itemReader"));
+        HttpRoute hostRoute = newRoute("/search", "apiSearch");
+        hostRoute.setHost("*.example.com");
+        routes.add(hostRoute);
+        HttpRoute headerRoute = newRoute("/search", "betaSearch");
+        headerRoute.setHeaders(Collections.singletonMap("X-Beta", HttpRoute.ANY_VALUE));
+        routes.add(headerRoute);
+        routes.add(newRoute("/search", "search"));
+        this.routeTable = new HttpRouteTable();
+        this.routeTable.setRoutes(routes);
+        this.routeTable.afterPropertiesSet();
+    }
+
+    @Test
+    public void testPathSpecificity() {
+        assertEquals("Literal segment not preferred to a variable", "currentUser", this.route(HttpMethod.GET, "/users/me"));
+        assertEquals("userById", this.route(HttpMethod.GET, "/users/42"));
+        assertEquals("orders", this.route(HttpMethod.GET, "/users/42/orders/7/items"));
+        assertEquals("Exact path not preferred to '**'", "orders", this.route(HttpMethod.GET, "/users/42/orders"));
+        assertEquals("Deeper '**' not used after a partial match", "users", this.route(HttpMethod.GET, "/users/42/profile"));
+        assertEquals("default", this.route(HttpMethod.GET, "/other/path"));
+        assertEquals("default", this.route(HttpMethod.GET, "/"));
+    }
+
+    @Test
+    public void testRequestUri() {
+        assertEquals("Query not ignored", "userById", this.route(HttpMethod.GET, "/users/42?fields=name"));
+        assertEquals("Fragment not ignored", "currentUser", this.route(HttpMethod.GET, "/users/me#top"));
+        assertEquals("Repeated separators not ignored", "userById", this.route(HttpMethod.GET, "//users//42/"));
+        assertEquals("Absolute form not matched on its path", "currentUser", this.route(HttpMethod.GET, "http://localhost:8080/users/me?x=1"));
+    }
+
+    @Test
+    public void testPredicates() {
+        assertEquals("itemWriter", this.route(HttpMethod.POST, "/items"));
+        assertEquals("Routes with the same path not evaluated in order", "itemReader", this.route(HttpMethod.GET, "/items"));
+        HttpRequest request = newRequest(HttpMethod.GET, "/search");
+        request.setHeader(HttpHeaders.Names.HOST, "api.example.com:8080");
+        assertEquals("apiSearch", this.routeTable.route(request).getProxy());
+        request.setHeader(HttpHeaders.Names.HOST, "example.com");
+        assertEquals("Sub-domain wildcard matched the domain itself", "search", this.routeTable.route(request).getProxy());
+        request.setHeader("X-Beta", "1");
+        assertEquals("betaSearch", this.routeTable.route(request).getProxy());
+    }
+
+    @Test
+    public void testNoMatch() throws Exception {
+        HttpRouteTable table = new HttpRouteTable();
+        table.setRoutes(new ArrayList<HttpRoute>(Arrays.asList(newRoute("/users/{id}", "userById"))));
+        table.afterPropertiesSet();
+        assertNull(table.route(newRequest(HttpMethod.GET, "/users")));
+        assertNull(table.route(newRequest(HttpMethod.GET, "/users/42/orders")));
+        assertEquals(Collections.singleton("userById"), table.getProxies());
+    }
+
+    private String route(HttpMethod method, String uri) {
+        HttpRoute route = this.routeTable.route(newRequest(method, uri));
+        return route == null ? null : route.getProxy();
+    }
+
+    private static HttpRequest newRequest(HttpMethod method, String uri) {
+        return new DefaultHttpRequest(HttpVersion.HTTP_1_1, method, uri);
+    }
+
+    private static HttpRoute newRoute(String path, String proxy) {
+        HttpRoute route = new HttpRoute();
+        route.setPath(path);
+        route.setProxy(proxy);
+        return route;
+    }
+
+}
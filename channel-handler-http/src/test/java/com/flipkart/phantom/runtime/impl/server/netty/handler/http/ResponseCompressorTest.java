@@ -0,0 +1,119 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.runtime.impl.server.netty.handler.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ResponseCompressor}
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class ResponseCompressorTest {
+
+    @Test
+    public void testNegotiate() {
+        assertNull(ResponseCompressor.negotiate(null));
+        assertNull(ResponseCompressor.negotiate("identity"));
+        assertEquals(ResponseCompressor.GZIP, ResponseCompressor.negotiate("gzip, deflate"));
+        assertEquals(ResponseCompressor.GZIP, ResponseCompressor.negotiate("x-gzip"));
+        assertEquals(ResponseCompressor.DEFLATE, ResponseCompressor.negotiate("deflate"));
+        assertEquals("Quality values ignored", ResponseCompressor.DEFLATE, ResponseCompressor.negotiate("gzip;q=0.5, deflate;q=0.8"));
+        assertNull("Codings with quality 0 not refused", ResponseCompressor.negotiate("gzip;q=0, deflate;q=0"));
+        assertEquals(ResponseCompressor.GZIP, ResponseCompressor.negotiate("*"));
+        assertEquals("Explicit quality not preferred to '*'", ResponseCompressor.DEFLATE, ResponseCompressor.negotiate("gzip;q=0, *"));
+        assertNull(ResponseCompressor.negotiate("gzip;q=invalid"));
+    }
+
+    @Test
+    public void testCompress() throws Exception {
+        byte[] content = newContent(100000);
+        for (String encoding : new String[] {ResponseCompressor.GZIP, ResponseCompressor.DEFLATE}) {
+            ResponseCompressor compressor = new ResponseCompressor(encoding, 6);
+            assertEquals(encoding, compressor.getEncoding());
+            ChannelBuffer compressed = compressor.compress(content);
+            assertTrue("Content not compressed", compressed.readableBytes() < content.length);
+            assertArrayEquals(content, decompress(encoding, compressed));
+        }
+    }
+
+    @Test
+    public void testEncodeChunks() throws Exception {
+        byte[] content = newContent(100000);
+        for (String encoding : new String[] {ResponseCompressor.GZIP, ResponseCompressor.DEFLATE}) {
+            ResponseCompressor compressor = new ResponseCompressor(encoding, 6);
+            ChannelBuffer compressed = ChannelBuffers.dynamicBuffer();
+            for (int offset = 0; offset < content.length; offset += 3000) {
+                // chunks that are slices of a larger buffer, and direct buffers, are compressed from their readable bytes only
+                ChannelBuffer chunk = ChannelBuffers.wrappedBuffer(content, offset, Math.min(3000, content.length - offset));
+                if (offset % 2 == 0) {
+                    ChannelBuffer direct = ChannelBuffers.directBuffer(chunk.readableBytes());
+                    direct.writeBytes(chunk);
+                    chunk = direct;
+                }
+                compressed.writeBytes(compressor.encode(chunk));
+            }
+            compressed.writeBytes(compressor.finish());
+            assertArrayEquals(content, decompress(encoding, compressed));
+        }
+    }
+
+    /**
+     * Creates compressible content of the specified length
+     */
+    private static byte[] newContent(int length) {
+        Random random = new Random(42);
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte) ('a' + random.nextInt(8));
+        }
+        return content;
+    }
+
+    /**
+     * Decompresses the specified content
+     */
+    private static byte[] decompress(String encoding, ChannelBuffer compressed) throws IOException {
+        byte[] input = new byte[compressed.readableBytes()];
+        compressed.readBytes(input);
+        InputStream stream = ResponseCompressor.GZIP.equals(encoding) ? new GZIPInputStream(new ByteArrayInputStream(input)) :
+                new InflaterInputStream(new ByteArrayInputStream(input));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.runtime.impl.server.netty.handler.http;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelState;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelHandler;
+import org.jboss.netty.channel.group.DefaultChannelGroup;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.jboss.netty.handler.codec.http.DefaultHttpRequest;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.jboss.netty.util.CharsetUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.flipkart.phantom.event.ServiceProxyEvent;
+import com.flipkart.phantom.http.impl.HttpProxy;
+import com.flipkart.phantom.http.impl.HttpRequestWrapper;
+import com.flipkart.phantom.task.impl.collector.EventDispatchingSpanCollector;
+import com.flipkart.phantom.task.spi.Executor;
+import com.flipkart.phantom.task.spi.TaskContext;
+import com.flipkart.phantom.task.spi.interceptor.RequestInterceptor;
+import com.flipkart.phantom.task.spi.interceptor.ResponseInterceptor;
+import com.flipkart.phantom.task.spi.registry.AbstractHandlerRegistry;
+import com.flipkart.phantom.task.spi.repository.ExecutorRepository;
+import com.google.common.base.Optional;
+import com.netflix.hystrix.HystrixCommand;
+import com.netflix.hystrix.HystrixCommandGroupKey;
+import com.netflix.hystrix.HystrixCommandKey;
+import com.netflix.hystrix.HystrixCommandProperties;
+import com.netflix.hystrix.exception.HystrixRuntimeException;
+import com.netflix.hystrix.exception.HystrixRuntimeException.FailureType;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the error responses, keep-alive and pipelining behavior of {@link RoutingHttpChannelHandler}. Requests are sent to an
+ * embedded channel and the responses written by the handler are recorded as they are written
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class RoutingHttpChannelHandlerTest {
+
+    /** The latch that executions of "/slow" requests wait on*/
+    private static volatile CountDownLatch slowRequestLatch;
+
+    private RoutingHttpChannelHandler handler;
+    private DecoderEmbedder<Object> embedder;
+
+    /** The responses written by the handler and whether it requested the channel to be closed*/
+    private final BlockingQueue<org.jboss.netty.handler.codec.http.HttpResponse> responses =
+            new LinkedBlockingQueue<org.jboss.netty.handler.codec.http.HttpResponse>();
+    private volatile boolean closeRequested;
+
+    @Before
+    public void setUp() {
+        slowRequestLatch = new CountDownLatch(1);
+        this.handler = new HttpChannelHandler();
+        this.handler.setDefaultChannelGroup(new DefaultChannelGroup());
+        this.handler.setDefaultProxy("testProxy");
+        this.handler.setEventDispatchingSpanCollector(new EventDispatchingSpanCollector());
+        this.handler.setRepository(new ExecutorRepository<HttpRequestWrapper, HttpResponse, HttpProxy>() {
+            public Executor<HttpRequestWrapper, HttpResponse> getExecutor(String commandName, String proxyName, HttpRequestWrapper requestWrapper) {
+                return new TestExecutor(requestWrapper);
+            }
+            public AbstractHandlerRegistry<HttpProxy> getRegistry() {
+                return null;
+            }
+            public void setRegistry(AbstractHandlerRegistry<HttpProxy> registry) {
+            }
+            public TaskContext getTaskContext() {
+                return null;
+            }
+            public void setTaskContext(TaskContext taskContext) {
+            }
+        });
+        this.embedder = new DecoderEmbedder<Object>(new SimpleChannelHandler() {
+            public void handleDownstream(ChannelHandlerContext ctx, ChannelEvent e) throws Exception {
+                if (e instanceof MessageEvent) {
+                    responses.add((org.jboss.netty.handler.codec.http.HttpResponse) ((MessageEvent) e).getMessage());
+                    e.getFuture().setSuccess();
+                } else if (e instanceof ChannelStateEvent && ((ChannelStateEvent) e).getState() == ChannelState.OPEN
+                        && Boolean.FALSE.equals(((ChannelStateEvent) e).getValue())) {
+                    closeRequested = true;
+                } else {
+                    super.handleDownstream(ctx, e);
+                }
+            }
+        }, this.handler);
+    }
+
+    @After
+    public void tearDown() {
+        slowRequestLatch.countDown();
+    }
+
+    @Test
+    public void testResponse() throws Exception {
+        this.embedder.offer(newRequest("/ok/hello"));
+        org.jboss.netty.handler.codec.http.HttpResponse response = this.nextResponse();
+        assertEquals(HttpResponseStatus.OK, response.getStatus());
+        assertEquals("hello", content(response));
+        assertEquals(HttpHeaders.Values.KEEP_ALIVE, response.getHeader(HttpHeaders.Names.CONNECTION));
+        assertFalse(this.closeRequested);
+    }
+
+    @Test
+    public void testConnectionKeptAliveAfterErrors() throws Exception {
+        this.embedder.offer(newRequest("/fail"));
+        org.jboss.netty.handler.codec.http.HttpResponse response = this.nextResponse();
+        assertEquals(HttpResponseStatus.BAD_GATEWAY, response.getStatus());
+        assertEquals(HttpHeaders.Values.KEEP_ALIVE, response.getHeader(HttpHeaders.Names.CONNECTION));
+        assertEquals(String.valueOf(response.getContent().readableBytes()), response.getHeader(HttpHeaders.Names.CONTENT_LENGTH));
+
+        this.embedder.offer(newRequest("/timeout"));
+        assertEquals(HttpResponseStatus.GATEWAY_TIMEOUT, this.nextResponse().getStatus());
+
+        this.embedder.offer(newRequest("/empty"));
+        response = this.nextResponse();
+        assertEquals(HttpResponseStatus.NO_CONTENT, response.getStatus());
+        assertEquals("0", response.getHeader(HttpHeaders.Names.CONTENT_LENGTH));
+        assertEquals(HttpHeaders.Values.KEEP_ALIVE, response.getHeader(HttpHeaders.Names.CONNECTION));
+
+        this.embedder.offer(newRequest("/ok/hello"));
+        assertEquals(HttpResponseStatus.OK, this.nextResponse().getStatus());
+        assertFalse("Channel closed after an error response", this.closeRequested);
+    }
+
+    @Test
+    public void testConnectionClosedIfRequested() throws Exception {
+        HttpRequest request = newRequest("/fail");
+        request.setHeader(HttpHeaders.Names.CONNECTION, HttpHeaders.Values.CLOSE);
+        this.embedder.offer(request);
+        org.jboss.netty.handler.codec.http.HttpResponse response = this.nextResponse();
+        assertEquals(HttpResponseStatus.BAD_GATEWAY, response.getStatus());
+        assertEquals(HttpHeaders.Values.CLOSE, response.getHeader(HttpHeaders.Names.CONNECTION));
+        assertTrue("Channel not closed", this.closeRequested);
+    }
+
+    @Test
+    public void testPipelinedResponsesWrittenInOrder() throws Exception {
+        this.embedder.offer(newRequest("/slow/first"));
+        this.embedder.offer(newRequest("/ok/second"));
+        assertNull("Response written before the response to an earlier request", this.responses.poll(200, TimeUnit.MILLISECONDS));
+        slowRequestLatch.countDown();
+        assertEquals("first", content(this.nextResponse()));
+        assertEquals("second", content(this.nextResponse()));
+        assertFalse(this.closeRequested);
+    }
+
+    @Test
+    public void testErrorStatus() {
+        assertEquals(HttpResponseStatus.GATEWAY_TIMEOUT, this.handler.getErrorStatus(
+                new RuntimeException(new HystrixRuntimeException(FailureType.TIMEOUT, TestExecutor.class, "timed out", null, null))));
+        assertEquals(HttpResponseStatus.SERVICE_UNAVAILABLE, this.handler.getErrorStatus(
+                new HystrixRuntimeException(FailureType.SHORTCIRCUIT, TestExecutor.class, "short-circuited", null, null)));
+        assertEquals(HttpResponseStatus.SERVICE_UNAVAILABLE, this.handler.getErrorStatus(
+                new HystrixRuntimeException(FailureType.REJECTED_THREAD_EXECUTION, TestExecutor.class, "rejected", null, null)));
+        assertEquals(HttpResponseStatus.GATEWAY_TIMEOUT, this.handler.getErrorStatus(
+                new HystrixRuntimeException(FailureType.COMMAND_EXCEPTION, TestExecutor.class, "failed", new SocketTimeoutException(), null)));
+        assertEquals(HttpResponseStatus.BAD_GATEWAY, this.handler.getErrorStatus(
+                new HystrixRuntimeException(FailureType.COMMAND_EXCEPTION, TestExecutor.class, "failed", new IOException(), null)));
+    }
+
+    /**
+     * Returns the next response written by the handler, waiting for it if required
+     */
+    private org.jboss.netty.handler.codec.http.HttpResponse nextResponse() throws InterruptedException {
+        org.jboss.netty.handler.codec.http.HttpResponse response = this.responses.poll(5, TimeUnit.SECONDS);
+        assertTrue("No response written", response != null);
+        return response;
+    }
+
+    /**
+     * Returns the content of the specified response as an UTF-8 string
+     */
+    private static String content(org.jboss.netty.handler.codec.http.HttpResponse response) {
+        return response.getContent().toString(CharsetUtil.UTF_8);
+    }
+
+    /**
+     * Creates a keep-alive GET request for the specified URI
+     */
+    private static HttpRequest newRequest(String uri) {
+        return new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+    }
+
+    /**
+     * Executor that responds as specified by the request URI : "/ok/{content}" and "/slow/{content}" return the content, "/slow" after
+     * {@link RoutingHttpChannelHandlerTest#slowRequestLatch} is released, "/empty" returns no entity and "/fail" and "/timeout" fail.
+     * "/slow" requests are executed on a Hystrix thread and all others on the calling thread
+     */
+    private static class TestExecutor extends HystrixCommand<HttpResponse> implements Executor<HttpRequestWrapper, HttpResponse> {
+
+        private final HttpRequestWrapper requestWrapper;
+
+        TestExecutor(HttpRequestWrapper requestWrapper) {
+            super(Setter.withGroupKey(HystrixCommandGroupKey.Factory.asKey("RoutingHttpChannelHandlerTest"))
+                    .andCommandKey(HystrixCommandKey.Factory.asKey(requestWrapper.getUri().startsWith("/slow") ? "threadCommand" : "semaphoreCommand"))
+                    .andCommandPropertiesDefaults(HystrixCommandProperties.Setter()
+                            .withExecutionIsolationStrategy(requestWrapper.getUri().startsWith("/slow") ?
+                                    HystrixCommandProperties.ExecutionIsolationStrategy.THREAD :
+                                    HystrixCommandProperties.ExecutionIsolationStrategy.SEMAPHORE)
+                            .withExecutionTimeoutEnabled(false)
+                            .withCircuitBreakerEnabled(false)));
+            this.requestWrapper = requestWrapper;
+        }
+
+        protected HttpResponse run() throws Exception {
+            String uri = this.requestWrapper.getUri();
+            if (uri.equals("/fail")) {
+                throw new IOException("Connection reset");
+            } else if (uri.equals("/timeout")) {
+                throw new SocketTimeoutException("Read timed out");
+            }
+            HttpResponse response = new BasicHttpResponse(org.apache.http.HttpVersion.HTTP_1_1, 200, "OK");
+            if (uri.equals("/empty")) {
+                response.setStatusCode(204);
+                return response;
+            }
+            if (uri.startsWith("/slow/")) {
+                slowRequestLatch.await();
+            }
+            response.setEntity(new StringEntity(uri.substring(uri.lastIndexOf('/') + 1), "UTF-8"));
+            return response;
+        }
+
+        public ServiceProxyEvent.Builder getEventBuilder() {
+            return new ServiceProxyEvent.Builder(this.getCommandKey().name(), "TEST");
+        }
+        public void addRequestInterceptor(RequestInterceptor<HttpRequestWrapper> requestInterceptor) {
+        }
+        public void addResponseInterceptor(ResponseInterceptor<HttpResponse> responseInterceptor) {
+        }
+        public Optional<String> getServiceName() {
+            return Optional.absent();
+        }
+        public HttpRequestWrapper getRequestWrapper() {
+            return this.requestWrapper;
+        }
+    }
+}
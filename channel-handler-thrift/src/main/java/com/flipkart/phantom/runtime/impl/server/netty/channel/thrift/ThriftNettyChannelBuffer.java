@@ -85,12 +85,47 @@ public class ThriftNettyChannelBuffer extends TTransport {
         this.outputBuffer.writeBytes(buffer, offset, length);
     }
 
-    /** Start getter methods */
+    /**
+     * Overriden superclass method. Returns the array backing the input ChannelBuffer, if any, for reading without copying
+     * @see org.apache.thrift.transport.TTransport#getBuffer()
+     */
+    public byte[] getBuffer() {
+        return this.inputBuffer.hasArray() ? this.inputBuffer.array() : null;
+    }
+
+    /**
+     * Overriden superclass method. Returns the read position in the array backing the input ChannelBuffer
+     * @see org.apache.thrift.transport.TTransport#getBufferPosition()
+     */
+    public int getBufferPosition() {
+        return this.inputBuffer.hasArray() ? this.inputBuffer.arrayOffset() + this.inputBuffer.readerIndex() : 0;
+    }
+
+    /**
+     * Overriden superclass method. Returns the readable bytes of the input ChannelBuffer, or -1 if it is not backed by an array
+     * @see org.apache.thrift.transport.TTransport#getBytesRemainingInBuffer()
+     */
+    public int getBytesRemainingInBuffer() {
+        return this.inputBuffer.hasArray() ? this.inputBuffer.readableBytes() : -1;
+    }
+
+    /**
+     * Overriden superclass method. Skips the specified number of bytes in the input ChannelBuffer
+     * @see org.apache.thrift.transport.TTransport#consumeBuffer(int)
+     */
+    public void consumeBuffer(int length) {
+        this.inputBuffer.skipBytes(length);
+    }
+
+    /** Start getter/setter methods */
     public ChannelBuffer getInputBuffer() {
         return this.inputBuffer;
     }
+    public void setInputBuffer(ChannelBuffer inputBuffer) {
+        this.inputBuffer = inputBuffer;
+    }
     public ChannelBuffer getOutputBuffer() {
         return this.outputBuffer;
     }
-    /** End getter methods */
+    /** End getter/setter methods */
 }
\ No newline at end of file
@@ -15,67 +15,91 @@
  */
 package com.flipkart.phantom.runtime.impl.server.netty.decoder.thrift;
 
-import com.flipkart.phantom.runtime.impl.server.netty.channel.thrift.ThriftNettyChannelBuffer;
-import org.apache.thrift.protocol.*;
-import org.apache.thrift.transport.TTransportException;
+import com.flipkart.phantom.thrift.impl.ThriftProtocol;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.MessageEvent;
-import org.jboss.netty.handler.codec.replay.ReplayingDecoder;
-import org.jboss.netty.handler.codec.replay.VoidEnum;
+import org.jboss.netty.handler.codec.frame.CorruptedFrameException;
+import org.jboss.netty.handler.codec.frame.FrameDecoder;
+import org.jboss.netty.handler.codec.frame.TooLongFrameException;
 
 /**
- * <code>ThriftBufferDecoder</code> is an extension of the Netty {@link ReplayingDecoder} that ensures that all Thrift protocol bytes have been received
+ * <code>ThriftBufferDecoder</code> is an extension of the Netty {@link FrameDecoder} that ensures that all Thrift protocol bytes have been received
  * before the {@link MessageEvent} is constructed for use by other upstream channel handlers.
  * The Thrift protocol doesnot indicate in anyway (such as header bytes denoting length of byte stream ) the data size of protocol messages. This decoder
- * therefore attempts to read the Thrift message from the transport using the protocol. An unsuccessful read indicates that the bytes have not been fully 
- * received. This decoder returns a null object in {@link #decode(ChannelHandlerContext, Channel, ChannelBuffer, VoidEnum)} in such scenarios and the Netty
- * framework would then call it again when more bytes are received, eventually resulting in all required bytes becoming available. This decoder resets the
- * reader index on the input {@link ChannelBuffer} at the end of each {@link #decode(ChannelHandlerContext, Channel, ChannelBuffer, VoidEnum)} call to permit
- * byte consumption in upstream handlers. 
+ * therefore scans the Thrift message as its bytes are received, using a {@link ThriftMessageScanner} that remembers how far it has got. This decoder
+ * returns a null object in {@link #decode(ChannelHandlerContext, Channel, ChannelBuffer)} until the message has been fully received and the Netty
+ * framework would then call it again when more bytes are received, when scanning resumes from where it stopped. Large messages received in many
+ * pieces are therefore decoded in time linear to their size.
+ * Calls from clients using the framed transport are instead delimited using the frame size that precedes each call, and the frame size is stripped.
+ * The protocol of the clients, binary by default, may be configured.
  * 
  * @author Regunath B
  * @version 1.0, 3 April, 2013
  */
 
-public class ThriftBufferDecoder extends ReplayingDecoder<VoidEnum> {
+public class ThriftBufferDecoder extends FrameDecoder {
 
-	/** The Thrift binary protocol factory*/
-	private TProtocolFactory protocolFactory =  new TBinaryProtocol.Factory();
+	/** The largest frame accepted from clients, same as the Thrift default*/
+	private static final int DEFAULT_MAX_FRAME_SIZE = 16384000;
 
-	/**
-	 * Interface method implementation. Tries to read the Thrift protocol message. Returns null if unsuccessful, else returns the read byte array. Also
-	 * resets the {@link ChannelBuffer} reader index to nullify the effect of the read operation.
-	 * @see org.jboss.netty.handler.codec.replay.ReplayingDecoder#decode(org.jboss.netty.channel.ChannelHandlerContext, org.jboss.netty.channel.Channel, org.jboss.netty.buffer.ChannelBuffer, java.lang.Enum)
-	 */
-	protected Object decode(ChannelHandlerContext ctx, Channel channel, ChannelBuffer buffer, VoidEnum voidEnum) throws Exception {
-		ThriftNettyChannelBuffer ttransport = new ThriftNettyChannelBuffer(buffer, null); // we dont use the output buffer, so null is fine
-		TProtocol iprot = this.protocolFactory.getProtocol(ttransport);
-		int beginIndex = buffer.readerIndex();
-		buffer.markReaderIndex();
-
-	    iprot.readMessageBegin();
-	    TProtocolUtil.skip(iprot, TType.STRUCT);
-	    iprot.readMessageEnd();
+	/** The scanner of messages from clients that do not use the framed transport*/
+	private ThriftMessageScanner scanner = ThriftMessageScanner.forProtocol(ThriftProtocol.BINARY);
 
-	    int endIndex = buffer.readerIndex();
-	    buffer.resetReaderIndex();
+	/** Settings for clients using the framed transport. The maximum frame size applies to unframed messages too*/
+	private boolean framed;
+	private int maxFrameSize = DEFAULT_MAX_FRAME_SIZE;
 
-	    return buffer.readSlice(endIndex - beginIndex);		
-	}
-	
 	/**
-	 * Overriden superclass method. Returns the result of calling {@link #decode(ChannelHandlerContext, Channel, ChannelBuffer, VoidEnum)} or null
-	 * in case of {@link TTransportException} indicating that expected bytes have been received yet.
-	 * @see org.jboss.netty.handler.codec.replay.ReplayingDecoder#decodeLast(org.jboss.netty.channel.ChannelHandlerContext, org.jboss.netty.channel.Channel, org.jboss.netty.buffer.ChannelBuffer, java.lang.Enum)
+	 * Interface method implementation. Returns the Thrift protocol message once fully received, null otherwise. The message is copied out of the
+	 * cumulation buffer, as that buffer is compacted when more bytes are received while the call may still be in execution.
+	 * @see org.jboss.netty.handler.codec.frame.FrameDecoder#decode(org.jboss.netty.channel.ChannelHandlerContext, org.jboss.netty.channel.Channel, org.jboss.netty.buffer.ChannelBuffer)
 	 */
-	protected java.lang.Object decodeLast(ChannelHandlerContext ctx, Channel channel, ChannelBuffer buffer, VoidEnum voidEnum) throws Exception {
-		try {
-		    return decode(ctx, channel, buffer, voidEnum);
-		} catch (TTransportException te) {
-			return null; // return null to indicate that not all expected bytes have been received yet
+	protected Object decode(ChannelHandlerContext ctx, Channel channel, ChannelBuffer buffer) throws Exception {
+		if (this.framed) {
+			if (buffer.readableBytes() < 4) {
+				return null;
+			}
+			int frameSize = buffer.getInt(buffer.readerIndex());
+			if (frameSize < 0) {
+				throw new CorruptedFrameException("Invalid Thrift frame size : " + frameSize);
+			}
+			if (frameSize > this.maxFrameSize) {
+				throw new TooLongFrameException("Thrift frame size : " + frameSize + " exceeds the maximum of : " + this.maxFrameSize);
+			}
+			if (buffer.readableBytes() < frameSize + 4) {
+				return null;
+			}
+			buffer.skipBytes(4);
+			return buffer.readBytes(frameSize);
+		}
+		int messageSize = this.scanner.scan(buffer);
+		if (messageSize < 0) {
+			if (buffer.readableBytes() > this.maxFrameSize) {
+				throw new TooLongFrameException("Thrift message exceeds the maximum size of : " + this.maxFrameSize);
+			}
+			return null;
 		}
+		return buffer.readBytes(messageSize);
+	}
+
+	/** Start Getter/Setter methods */
+	public void setProtocol(ThriftProtocol protocol) {
+		this.scanner = ThriftMessageScanner.forProtocol(protocol);
+	}
+	public boolean isFramed() {
+		return this.framed;
+	}
+	public void setFramed(boolean framed) {
+		this.framed = framed;
+	}
+	public int getMaxFrameSize() {
+		return this.maxFrameSize;
+	}
+	public void setMaxFrameSize(int maxFrameSize) {
+		this.maxFrameSize = maxFrameSize;
 	}
+	/** End Getter/Setter methods */
 
 }
@@ -0,0 +1,485 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.runtime.impl.server.netty.decoder.thrift;
+
+import java.util.Arrays;
+
+import org.apache.thrift.protocol.TType;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.handler.codec.frame.CorruptedFrameException;
+
+import com.flipkart.phantom.thrift.impl.ThriftProtocol;
+
+/**
+ * <code>ThriftMessageScanner</code> finds the end of a Thrift message that is not preceded by its length, as sent by clients that do not use the
+ * framed transport. The message is scanned incrementally as its bytes are received: the position reached and the values still to be scanned are
+ * retained across calls to {@link #scan(ChannelBuffer)}, so that each byte is looked at once, unlike re-reading the message from the start each
+ * time more bytes are received. Values are skipped over and not decoded.
+ * Instances are stateful and must be used with a single channel.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+abstract class ThriftMessageScanner {
+
+    /** The kinds of items on the scan stack*/
+    static final int VALUE = 0; // a value of the type held in 'type'
+    static final int FIELDS = 1; // the fields of a struct, upto the stop field
+    static final int ELEMENTS = 2; // 'count' elements of the type held in 'type'
+    static final int MAP_ENTRIES = 3; // 'count' keys and values, alternately of the types held in 'type' and 'valueType'
+    static final int BYTES = 4; // 'count' bytes
+
+    /** The initial depth of the scan stack*/
+    private static final int INITIAL_STACK_DEPTH = 16;
+
+    /** The scan stack, as parallel arrays of the kind of item, the types and the count of the item*/
+    private int[] kind = new int[INITIAL_STACK_DEPTH];
+    private byte[] type = new byte[INITIAL_STACK_DEPTH];
+    private byte[] valueType = new byte[INITIAL_STACK_DEPTH];
+    private int[] count = new int[INITIAL_STACK_DEPTH];
+    private int depth;
+
+    /** The number of bytes of the current message scanned so far, and a flag to indicate that the message header has been scanned*/
+    int scanned;
+    private boolean headerScanned;
+
+    /**
+     * Creates a scanner for messages in the specified protocol
+     * @param protocol the Thrift protocol
+     * @return a ThriftMessageScanner
+     */
+    static ThriftMessageScanner forProtocol(ThriftProtocol protocol) {
+        switch (protocol) {
+            case COMPACT:
+                return new CompactMessageScanner();
+            default:
+                return new BinaryMessageScanner();
+        }
+    }
+
+    /**
+     * Scans the message that starts at the reader index of the specified buffer, from where the previous scan of the message stopped
+     * @param buffer the buffer holding the bytes received so far. The reader index is not moved
+     * @return the length of the message once all its bytes are received, -1 otherwise
+     * @throws CorruptedFrameException if the bytes are not a valid message in the protocol of this scanner
+     */
+    int scan(ChannelBuffer buffer) throws CorruptedFrameException {
+        int start = buffer.readerIndex();
+        int available = buffer.readableBytes();
+        if (!this.headerScanned) {
+            if (!this.scanHeader(buffer, start, available)) {
+                return -1;
+            }
+            this.headerScanned = true;
+        }
+        while (this.depth > 0) {
+            int top = this.depth - 1;
+            switch (this.kind[top]) {
+                case VALUE:
+                    this.depth--; // replaced by what is pushed when scanning the value
+                    if (!this.scanValue(buffer, start, available, this.type[top])) {
+                        this.push(VALUE, this.type[top], (byte) 0, 0);
+                        return -1;
+                    }
+                    break;
+                case FIELDS:
+                    if (!this.scanField(buffer, start, available)) {
+                        return -1;
+                    }
+                    break;
+                case ELEMENTS:
+                    if (this.count[top] == 0) {
+                        this.depth--;
+                    } else {
+                        this.count[top]--;
+                        this.push(VALUE, this.type[top], (byte) 0, 0);
+                    }
+                    break;
+                case MAP_ENTRIES:
+                    if (this.count[top] == 0) {
+                        this.depth--;
+                    } else {
+                        byte entryType = this.count[top] % 2 == 0 ? this.type[top] : this.valueType[top];
+                        this.count[top]--;
+                        this.push(VALUE, entryType, (byte) 0, 0);
+                    }
+                    break;
+                case BYTES:
+                    int skipped = Math.min(this.count[top], available - this.scanned);
+                    this.scanned += skipped;
+                    this.count[top] -= skipped;
+                    if (this.count[top] > 0) {
+                        return -1;
+                    }
+                    this.depth--;
+                    break;
+            }
+        }
+        int length = this.scanned;
+        this.reset();
+        return length;
+    }
+
+    /**
+     * Resets this scanner to scan the next message
+     */
+    void reset() {
+        this.depth = 0;
+        this.scanned = 0;
+        this.headerScanned = false;
+    }
+
+    /**
+     * Scans the message header and pushes the items of the message that follow it
+     * @return true if the header has been scanned, false if more bytes are needed
+     */
+    abstract boolean scanHeader(ChannelBuffer buffer, int start, int available) throws CorruptedFrameException;
+
+    /**
+     * Scans a value of the specified type, pushing the items it contains
+     * @return true if the value has been scanned, false if more bytes are needed. Nothing is consumed in the latter case
+     */
+    abstract boolean scanValue(ChannelBuffer buffer, int start, int available, byte itemType) throws CorruptedFrameException;
+
+    /**
+     * Scans a field header of the struct on top of the stack, popping the struct at the stop field and pushing the field value otherwise
+     * @return true if the field header has been scanned, false if more bytes are needed. Nothing is consumed in the latter case
+     */
+    abstract boolean scanField(ChannelBuffer buffer, int start, int available) throws CorruptedFrameException;
+
+    /**
+     * Pushes an item to scan
+     */
+    void push(int itemKind, byte itemType, byte itemValueType, int itemCount) {
+        if (this.depth == this.kind.length) {
+            int newDepth = this.depth * 2;
+            this.kind = Arrays.copyOf(this.kind, newDepth);
+            this.type = Arrays.copyOf(this.type, newDepth);
+            this.valueType = Arrays.copyOf(this.valueType, newDepth);
+            this.count = Arrays.copyOf(this.count, newDepth);
+        }
+        this.kind[this.depth] = itemKind;
+        this.type[this.depth] = itemType;
+        this.valueType[this.depth] = itemValueType;
+        this.count[this.depth] = itemCount;
+        this.depth++;
+    }
+
+    /**
+     * Pops the item on top of the stack
+     */
+    void pop() {
+        this.depth--;
+    }
+
+    /**
+     * Helper method to check that a size read from the message is valid
+     */
+    static int checkSize(int size) throws CorruptedFrameException {
+        if (size < 0) {
+            throw new CorruptedFrameException("Invalid size in Thrift message : " + size);
+        }
+        return size;
+    }
+
+    /**
+     * Scanner for the binary protocol
+     */
+    private static class BinaryMessageScanner extends ThriftMessageScanner {
+
+        /** The version mask and version of strictly written messages, same as in TBinaryProtocol*/
+        private static final int VERSION_MASK = 0xffff0000;
+        private static final int VERSION_1 = 0x80010000;
+
+        boolean scanHeader(ChannelBuffer buffer, int start, int available) throws CorruptedFrameException {
+            if (available < 4) {
+                return false;
+            }
+            int size = buffer.getInt(start);
+            // pushed in reverse order of occurence: the arguments struct follows the header
+            this.push(VALUE, TType.STRUCT, (byte) 0, 0);
+            this.push(BYTES, (byte) 0, (byte) 0, 4); // the sequence ID
+            if (size < 0) { // strict message: version and type, name, sequence ID
+                if ((size & VERSION_MASK) != VERSION_1) {
+                    throw new CorruptedFrameException("Bad version in Thrift message : " + size);
+                }
+                this.push(VALUE, TType.STRING, (byte) 0, 0);
+            } else { // old message: name, type, sequence ID
+                this.push(BYTES, (byte) 0, (byte) 0, 1);
+                this.push(BYTES, (byte) 0, (byte) 0, size);
+            }
+            this.scanned = 4;
+            return true;
+        }
+
+        boolean scanValue(ChannelBuffer buffer, int start, int available, byte itemType) throws CorruptedFrameException {
+            int remaining = available - this.scanned;
+            int position = start + this.scanned;
+            switch (itemType) {
+                case TType.BOOL:
+                case TType.BYTE:
+                    return this.skip(remaining, 1);
+                case TType.I16:
+                    return this.skip(remaining, 2);
+                case TType.I32:
+                    return this.skip(remaining, 4);
+                case TType.I64:
+                case TType.DOUBLE:
+                    return this.skip(remaining, 8);
+                case TType.STRING:
+                    if (remaining < 4) {
+                        return false;
+                    }
+                    this.push(BYTES, (byte) 0, (byte) 0, checkSize(buffer.getInt(position)));
+                    this.scanned += 4;
+                    return true;
+                case TType.STRUCT:
+                    this.push(FIELDS, (byte) 0, (byte) 0, 0);
+                    return true;
+                case TType.MAP:
+                    if (remaining < 6) {
+                        return false;
+                    }
+                    int entries = checkSize(buffer.getInt(position + 2));
+                    this.push(MAP_ENTRIES, buffer.getByte(position), buffer.getByte(position + 1), entries * 2);
+                    this.scanned += 6;
+                    return true;
+                case TType.SET:
+                case TType.LIST:
+                    if (remaining < 5) {
+                        return false;
+                    }
+                    this.push(ELEMENTS, buffer.getByte(position), (byte) 0, checkSize(buffer.getInt(position + 1)));
+                    this.scanned += 5;
+                    return true;
+                default:
+                    throw new CorruptedFrameException("Unknown type in Thrift message : " + itemType);
+            }
+        }
+
+        boolean scanField(ChannelBuffer buffer, int start, int available) throws CorruptedFrameException {
+            int remaining = available - this.scanned;
+            if (remaining < 1) {
+                return false;
+            }
+            byte fieldType = buffer.getByte(start + this.scanned);
+            if (fieldType == TType.STOP) {
+                this.pop();
+                this.scanned += 1;
+                return true;
+            }
+            if (remaining < 3) { // the type and the field ID
+                return false;
+            }
+            this.push(VALUE, fieldType, (byte) 0, 0);
+            this.scanned += 3;
+            return true;
+        }
+
+        /**
+         * Helper method to skip a fixed size value
+         */
+        private boolean skip(int remaining, int size) {
+            if (remaining < size) {
+                return false;
+            }
+            this.scanned += size;
+            return true;
+        }
+    }
+
+    /**
+     * Scanner for the compact protocol. Types are the compact protocol type codes, as found in the message
+     */
+    private static class CompactMessageScanner extends ThriftMessageScanner {
+
+        /** The protocol ID and version of messages, same as in TCompactProtocol*/
+        private static final byte PROTOCOL_ID = (byte) 0x82;
+        private static final byte VERSION = 1;
+        private static final byte VERSION_MASK = 0x1f;
+
+        /** The compact protocol type codes*/
+        private static final byte BOOLEAN_TRUE = 0x01;
+        private static final byte BOOLEAN_FALSE = 0x02;
+        private static final byte BYTE = 0x03;
+        private static final byte I16 = 0x04;
+        private static final byte I32 = 0x05;
+        private static final byte I64 = 0x06;
+        private static final byte DOUBLE = 0x07;
+        private static final byte BINARY = 0x08;
+        private static final byte LIST = 0x09;
+        private static final byte SET = 0x0A;
+        private static final byte MAP = 0x0B;
+        private static final byte STRUCT = 0x0C;
+
+        /** The maximum length of a varint encoded 64 bit integer*/
+        private static final int MAX_VARINT_LENGTH = 10;
+
+        /** The length and value of the varint last read by #readVarint()*/
+        private int varintLength;
+        private int varintValue;
+
+        boolean scanHeader(ChannelBuffer buffer, int start, int available) throws CorruptedFrameException {
+            if (available < 2) {
+                return false;
+            }
+            if (buffer.getByte(start) != PROTOCOL_ID) {
+                throw new CorruptedFrameException("Expected compact protocol ID in Thrift message but got : " + buffer.getByte(start));
+            }
+            if ((buffer.getByte(start + 1) & VERSION_MASK) != VERSION) {
+                throw new CorruptedFrameException("Bad version in compact Thrift message : " + (buffer.getByte(start + 1) & VERSION_MASK));
+            }
+            if (!this.readVarint(buffer, start + 2, available - 2)) { // the sequence ID
+                return false;
+            }
+            int seqidLength = this.varintLength;
+            if (!this.readVarint(buffer, start + 2 + seqidLength, available - 2 - seqidLength)) { // the name length
+                return false;
+            }
+            this.push(VALUE, STRUCT, (byte) 0, 0);
+            this.push(BYTES, (byte) 0, (byte) 0, checkSize(this.varintValue)); // the name
+            this.scanned = 2 + seqidLength + this.varintLength;
+            return true;
+        }
+
+        boolean scanValue(ChannelBuffer buffer, int start, int available, byte itemType) throws CorruptedFrameException {
+            int remaining = available - this.scanned;
+            int position = start + this.scanned;
+            switch (itemType) {
+                case BOOLEAN_TRUE:
+                case BOOLEAN_FALSE:
+                case BYTE:
+                    if (remaining < 1) {
+                        return false;
+                    }
+                    this.scanned += 1;
+                    return true;
+                case I16:
+                case I32:
+                case I64:
+                    if (!this.readVarint(buffer, position, remaining)) {
+                        return false;
+                    }
+                    this.scanned += this.varintLength;
+                    return true;
+                case DOUBLE:
+                    if (remaining < 8) {
+                        return false;
+                    }
+                    this.scanned += 8;
+                    return true;
+                case BINARY:
+                    if (!this.readVarint(buffer, position, remaining)) {
+                        return false;
+                    }
+                    this.push(BYTES, (byte) 0, (byte) 0, checkSize(this.varintValue));
+                    this.scanned += this.varintLength;
+                    return true;
+                case STRUCT:
+                    this.push(FIELDS, (byte) 0, (byte) 0, 0);
+                    return true;
+                case MAP:
+                    if (!this.readVarint(buffer, position, remaining)) {
+                        return false;
+                    }
+                    int entries = checkSize(this.varintValue);
+                    if (entries == 0) { // empty maps have no key and value types
+                        this.scanned += this.varintLength;
+                        return true;
+                    }
+                    if (remaining < this.varintLength + 1) {
+                        return false;
+                    }
+                    byte keyAndValueTypes = buffer.getByte(position + this.varintLength);
+                    this.push(MAP_ENTRIES, (byte) ((keyAndValueTypes >> 4) & 0x0f), (byte) (keyAndValueTypes & 0x0f), entries * 2);
+                    this.scanned += this.varintLength + 1;
+                    return true;
+                case SET:
+                case LIST:
+                    if (remaining < 1) {
+                        return false;
+                    }
+                    byte sizeAndType = buffer.getByte(position);
+                    int size = (sizeAndType >> 4) & 0x0f;
+                    int headerLength = 1;
+                    if (size == 15) { // the size follows
+                        if (!this.readVarint(buffer, position + 1, remaining - 1)) {
+                            return false;
+                        }
+                        size = checkSize(this.varintValue);
+                        headerLength += this.varintLength;
+                    }
+                    this.push(ELEMENTS, (byte) (sizeAndType & 0x0f), (byte) 0, size);
+                    this.scanned += headerLength;
+                    return true;
+                default:
+                    throw new CorruptedFrameException("Unknown type in compact Thrift message : " + itemType);
+            }
+        }
+
+        boolean scanField(ChannelBuffer buffer, int start, int available) throws CorruptedFrameException {
+            int remaining = available - this.scanned;
+            if (remaining < 1) {
+                return false;
+            }
+            int position = start + this.scanned;
+            byte fieldHeader = buffer.getByte(position);
+            if (fieldHeader == TType.STOP) {
+                this.pop();
+                this.scanned += 1;
+                return true;
+            }
+            int headerLength = 1;
+            if ((fieldHeader & 0xf0) == 0) { // the field ID follows, not being a delta from the previous one
+                if (!this.readVarint(buffer, position + 1, remaining - 1)) {
+                    return false;
+                }
+                headerLength += this.varintLength;
+            }
+            byte fieldType = (byte) (fieldHeader & 0x0f);
+            if (fieldType != BOOLEAN_TRUE && fieldType != BOOLEAN_FALSE) { // boolean field values are held in the field type
+                this.push(VALUE, fieldType, (byte) 0, 0);
+            }
+            this.scanned += headerLength;
+            return true;
+        }
+
+        /**
+         * Helper method to read a varint at the specified position, into {@link #varintLength} and {@link #varintValue}. The value is valid
+         * for 32 bit integers only, as needed for sizes
+         * @return true if the varint has been read, false if more bytes are needed
+         */
+        private boolean readVarint(ChannelBuffer buffer, int position, int remaining) throws CorruptedFrameException {
+            int value = 0;
+            for (int i = 0; i < Math.min(remaining, MAX_VARINT_LENGTH); i++) {
+                byte b = buffer.getByte(position + i);
+                if (i < 5) {
+                    value |= (b & 0x7f) << (7 * i);
+                }
+                if ((b & 0x80) == 0) {
+                    this.varintLength = i + 1;
+                    this.varintValue = value;
+                    return true;
+                }
+            }
+            if (remaining >= MAX_VARINT_LENGTH) {
+                throw new CorruptedFrameException("Invalid varint in compact Thrift message");
+            }
+            return false;
+        }
+    }
+
+}
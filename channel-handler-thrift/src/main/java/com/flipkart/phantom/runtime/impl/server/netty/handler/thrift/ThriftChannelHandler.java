@@ -18,17 +18,23 @@ package com.flipkart.phantom.runtime.impl.server.netty.handler.thrift;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.TException;
 import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
 import org.apache.thrift.protocol.TProtocol;
 import org.apache.thrift.protocol.TProtocolFactory;
 import org.apache.thrift.transport.TTransport;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ChannelStateEvent;
 import org.jboss.netty.channel.Channels;
@@ -51,6 +57,7 @@ import com.flipkart.phantom.task.spi.Executor;
 import com.flipkart.phantom.task.spi.RequestContext;
 import com.flipkart.phantom.task.spi.repository.ExecutorRepository;
 import com.flipkart.phantom.thrift.impl.ThriftProxy;
+import com.flipkart.phantom.thrift.impl.ThriftProtocol;
 import com.flipkart.phantom.thrift.impl.ThriftProxyExecutor;
 import com.flipkart.phantom.thrift.impl.ThriftRequestWrapper;
 import com.github.kristofa.brave.Brave;
@@ -59,12 +66,22 @@ import com.github.kristofa.brave.ServerSpan;
 import com.github.kristofa.brave.ServerTracer;
 import com.github.kristofa.brave.TraceFilter;
 import com.google.common.base.Optional;
+import com.netflix.hystrix.HystrixInvokableInfo;
 
 import rx.Observable;
 
 /**
  * <code>ThriftChannelHandler</code> is a sub-type of {@link SimpleChannelHandler} that acts as a proxy for Apache Thrift calls using the binary protocol.
+ * The compact protocol and the framed transport may be configured instead, and must match the configuration of the {@link com.flipkart.phantom.runtime.impl.server.netty.decoder.thrift.ThriftBufferDecoder}.
+ * The protocol and transport used with the target service are configured independently on the {@link ThriftProxy}.
  * It wraps the Thrift call using a {@link ThriftProxyExecutor} that provides useful features like monitoring, fallback etc.
+ * Calls to several services may be served by a single handler i.e. listener. Calls with method names prefixed by a service name, as sent by
+ * clients using the Thrift TMultiplexedProtocol e.g. "Calculator:add", are routed to the proxy mapped to the service name in {@link #setServiceProxies(Map)}
+ * and are relayed without the prefix. Other calls are routed to the proxy mapped to the method name in {@link #setMethodProxies(Map)}, if
+ * any, or else to the default {@link #setThriftProxy(String)}.
+ * Responses are written to buffers sized from a running average of the response sizes of each method, starting at {@link #setResponseSize(int)},
+ * so that they seldom need to grow. A few buffers are reused on each channel once their responses have been written, unless the response
+ * was written by a fallback which may race a timed-out execution still writing to the buffer.
  *
  * @author Regunath B
  * @version 1.0, 26 Mar 2013
@@ -80,9 +97,22 @@ public class ThriftChannelHandler extends SimpleChannelUpstreamHandler implement
     /** Event Type for publishing all events which are generated here */
     private final static String THRIFT_HANDLER = "THRIFT_HANDLER";
 
+    /** The separator between the service name and the method name in calls from multiplexing clients, same as in TMultiplexedProtocol*/
+    private static final String SERVICE_SEPARATOR = ":";
+
     /** The default response size for creating dynamic channel buffers*/
     private static final int DEFAULT_RESPONSE_SIZE = 4096;
 
+    /** The smallest response buffer allocated, and the number and largest size of buffers reused on a channel*/
+    private static final int MIN_RESPONSE_BUFFER_SIZE = 64;
+    private static final int MAX_POOLED_RESPONSE_BUFFERS = 2;
+    private static final int MAX_POOLED_RESPONSE_BUFFER_SIZE = 65536;
+
+    /** The response size estimates, by proxy and method name, and the max number of methods estimated per proxy. Shared by the handlers of all channels*/
+    private static final int MAX_RESPONSE_SIZE_ESTIMATES = 1024;
+    private static final ConcurrentMap<String, ConcurrentMap<String, ResponseSizeEstimate>> RESPONSE_SIZE_ESTIMATES =
+            new ConcurrentHashMap<String, ConcurrentMap<String, ResponseSizeEstimate>>();
+
     /** The default value for tracing frequency. This value indicates that tracing if OFF*/
     private static final TraceFilter NO_TRACING = new FixedSampleRateTraceFilter(-1);    
     
@@ -115,11 +145,18 @@ public class ThriftChannelHandler extends SimpleChannelUpstreamHandler implement
     /** The ThriftHandler of this channel  */
     private String thriftProxy;
 
+    /** The ThriftHandlers of this channel, mapped to service names and method names respectively. Optional*/
+    private Map<String, String> serviceProxies;
+    private Map<String, String> methodProxies;
+
     /** The dynamic buffer response size*/
     private int responseSize = DEFAULT_RESPONSE_SIZE;
 
-    /** The Thrift binary protocol factory*/
-    private TProtocolFactory protocolFactory =  new TBinaryProtocol.Factory();
+    /** The Thrift protocol factory*/
+    private TProtocolFactory protocolFactory = ThriftProtocol.BINARY.getProtocolFactory();
+
+    /** Writes responses using the framed transport. Calls are unframed by the decoder*/
+    private boolean framed;
 
 	/** The publisher used to broadcast events to Service Proxy Subscribers */
 	private ServiceProxyEventProducer eventProducer;
@@ -137,7 +174,8 @@ public class ThriftChannelHandler extends SimpleChannelUpstreamHandler implement
     public void afterPropertiesSet() throws Exception {
         Assert.notNull(this.defaultChannelGroup, "The 'defaultChannelGroup' may not be null");
         Assert.notNull(this.repository, "The 'repository' may not be null");
-        Assert.notNull(this.thriftProxy, "The 'thriftProxy' may not be null");
+        Assert.isTrue(this.thriftProxy != null || (this.serviceProxies != null && !this.serviceProxies.isEmpty()) ||
+                (this.methodProxies != null && !this.methodProxies.isEmpty()), "The 'thriftProxy' may not be null, if no 'serviceProxies' or 'methodProxies' are set");
         Assert.notNull(this.eventProducer, "The 'eventProducer' may not be null");
         Assert.notNull(this.eventDispatchingSpanCollector, "The 'eventDispatchingSpanCollector' may not be null");
     }
@@ -170,21 +208,45 @@ public class ThriftChannelHandler extends SimpleChannelUpstreamHandler implement
         long receiveTime = System.currentTimeMillis();
         if (MessageEvent.class.isAssignableFrom(event.getClass())) {
 
-            // Prepare input and output
+            // Prepare input
             ChannelBuffer input = (ChannelBuffer) ((MessageEvent) event).getMessage();
-            ChannelBuffer output = ChannelBuffers.dynamicBuffer(responseSize);
-            TTransport clientTransport = new ThriftNettyChannelBuffer(input, output);
+            final ChannelState channelState = this.getChannelState(ctx);
 
-            //Get command name
-            ThriftNettyChannelBuffer ttransport = new ThriftNettyChannelBuffer(input, null);
-            TProtocol iprot = this.protocolFactory.getProtocol(ttransport);
+            //Get command name, using the transport and protocol of this channel
             input.markReaderIndex();
-            TMessage message = iprot.readMessageBegin();
+            TMessage header = channelState.readMessageBegin(input);
+            int bodyIndex = input.readerIndex();
             input.resetReaderIndex();
 
+            //Get the proxy to route to
+            String proxyName = this.thriftProxy;
+            int separatorIndex = header.name.indexOf(SERVICE_SEPARATOR);
+            if (separatorIndex > 0 && this.serviceProxies != null && this.serviceProxies.containsKey(header.name.substring(0, separatorIndex))) {
+                proxyName = this.serviceProxies.get(header.name.substring(0, separatorIndex));
+                header = new TMessage(header.name.substring(separatorIndex + 1), header.type, header.seqid);
+                input = this.rewriteMessageHeader(input, header, bodyIndex);
+            } else if (this.methodProxies != null && this.methodProxies.containsKey(header.name)) {
+                proxyName = this.methodProxies.get(header.name);
+            }
+            if (proxyName == null) {
+                throw new RuntimeException("No ThriftProxy to route Thrift request to, for method : " + header.name);
+            }
+            final TMessage message = header;
+            final String thriftProxy = proxyName;
+
+            // Prepare output, sized for the expected response
+            final ResponseSizeEstimate responseSizeEstimate = getResponseSizeEstimate(thriftProxy, message.name);
+            final ChannelBuffer output = channelState.getOutputBuffer(responseSizeEstimate != null ?
+                    responseSizeEstimate.getBufferSize() : this.responseSize);
+            if (this.framed) {
+                output.writeInt(0); // the frame size, set once the response has been written
+            }
+            TTransport clientTransport = new ThriftNettyChannelBuffer(input, output);
+
             ThriftRequestWrapper thriftRequestWrapper = new ThriftRequestWrapper();
             thriftRequestWrapper.setClientSocket(clientTransport);
             thriftRequestWrapper.setMethodName(message.name);
+            thriftRequestWrapper.setProtocolFactory(this.protocolFactory);
             // set the service name for the request
             thriftRequestWrapper.setServiceName(Optional.of(this.serviceName));
 
@@ -192,7 +254,7 @@ public class ThriftChannelHandler extends SimpleChannelUpstreamHandler implement
             ServerRequestInterceptor<ThriftRequestWrapper, TTransport> serverRequestInterceptor = this.initializeServerTracing(thriftRequestWrapper);
 
       //Execute
-      Executor<ThriftRequestWrapper,TTransport> executor = this.repository.getExecutor(message.name, this.thriftProxy, thriftRequestWrapper);
+      Executor<ThriftRequestWrapper,TTransport> executor = this.repository.getExecutor(message.name, thriftProxy, thriftRequestWrapper);
       // set the service name for the request
       thriftRequestWrapper.setServiceName(executor.getServiceName());
 
@@ -202,21 +264,45 @@ public class ThriftChannelHandler extends SimpleChannelUpstreamHandler implement
         observableResponse = executor.observe();
       } catch (Exception e) {
         RuntimeException runtimeException = new RuntimeException("Error in executing Thrift request: " + thriftProxy + ":" + message.name, e);
-        informReqTracer(receiveTime, clientTransport, message, serverRequestInterceptor,
+        informReqTracer(thriftProxy, receiveTime, clientTransport, message, serverRequestInterceptor,
                         executor, Optional.of(runtimeException));
         throw runtimeException;
       }
 
       observableResponse.subscribe(
           (response) -> {
-            informReqTracer(receiveTime, clientTransport, message, serverRequestInterceptor,
+            informReqTracer(thriftProxy, receiveTime, clientTransport, message, serverRequestInterceptor,
                             executor, Optional.absent());
-            // write the result to the output channel buffer
-            Channels.write(ctx, event.getFuture(), ((ThriftNettyChannelBuffer) clientTransport).getOutputBuffer());
+            int responseLength = output.readableBytes() - (this.framed ? 4 : 0);
+            // a timed-out execution may still be writing to the output, so the buffer is reused only when the execution completed normally
+            boolean reuseOutput = ownsOutputBuffer(executor);
+            // fallback responses, and the exceptions returned for calls to unknown methods, say nothing of the size of the method's responses
+            if (reuseOutput && responseLength > 0 && isReply(channelState, output)) {
+              this.recordResponseSize(responseSizeEstimate, thriftProxy, message.name, responseLength);
+            }
+            if (responseLength == 0) { // a oneway call, which the client expects no response to
+              if (reuseOutput) {
+                channelState.reuseOutputBuffer(output);
+              }
+              return;
+            }
+            if (this.framed) {
+              output.setInt(0, responseLength);
+            }
+            // write the result to the output channel buffer, and reuse the buffer once written
+            ChannelFuture writeFuture = Channels.future(ctx.getChannel());
+            if (reuseOutput) {
+              writeFuture.addListener(future -> {
+                if (future.isSuccess()) {
+                  channelState.reuseOutputBuffer(output);
+                }
+              });
+            }
+            Channels.write(ctx, writeFuture, output);
           },
           (exception) -> {
             RuntimeException runtimeException = new RuntimeException("Error in executing Thrift request: " + thriftProxy + ":" + message.name, exception);
-            informReqTracer(receiveTime, clientTransport, message, serverRequestInterceptor,
+            informReqTracer(thriftProxy, receiveTime, clientTransport, message, serverRequestInterceptor,
                             executor, Optional.of(runtimeException));
 
             event.getChannel().close();
@@ -228,7 +314,7 @@ public class ThriftChannelHandler extends SimpleChannelUpstreamHandler implement
     }
   }
 
-  private void informReqTracer(long receiveTime, TTransport clientTransport, TMessage message,
+  private void informReqTracer(String thriftProxy, long receiveTime, TTransport clientTransport, TMessage message,
                                ServerRequestInterceptor<ThriftRequestWrapper, TTransport> serverRequestInterceptor,
                                Executor<ThriftRequestWrapper, TTransport> executor,
                                Optional<RuntimeException> transportError) {
@@ -249,6 +335,96 @@ public class ThriftChannelHandler extends SimpleChannelUpstreamHandler implement
     }
   }
 
+    /**
+     * Determines if the response of the specified executor was written by its own execution, which has completed and so no longer uses the
+     * output buffer. Responses written by a fallback, after a timeout in particular, may race an execution that still holds the client transport
+     * @param executor the Executor that wrote the response
+     * @return true if the output buffer is no longer used by the executor and may be reused, false otherwise
+     */
+    private static boolean ownsOutputBuffer(Executor<ThriftRequestWrapper, TTransport> executor) {
+        if (!HystrixInvokableInfo.class.isAssignableFrom(executor.getClass())) {
+            return false;
+        }
+        HystrixInvokableInfo<?> command = (HystrixInvokableInfo<?>) executor;
+        return !command.isResponseTimedOut() && !command.isResponseFromFallback();
+    }
+
+    /**
+     * Determines if the response in the specified output is a reply, as opposed to an exception such as the one returned for calls to unknown methods
+     * @param channelState the state of the channel the response is written to
+     * @param output the output containing the response
+     * @return true if the response is a reply, false otherwise or if the response header cannot be read
+     */
+    private boolean isReply(ChannelState channelState, ChannelBuffer output) {
+        ChannelBuffer response = output.slice(output.readerIndex() + (this.framed ? 4 : 0), output.readableBytes() - (this.framed ? 4 : 0));
+        try {
+            return channelState.readMessageBegin(response).type == TMessageType.REPLY;
+        } catch (TException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the state of the channel of the specified context, creating it if this is the first call on the channel
+     */
+    private ChannelState getChannelState(ChannelHandlerContext ctx) {
+        ChannelState channelState = (ChannelState) ctx.getAttachment();
+        if (channelState == null) {
+            channelState = new ChannelState(this.protocolFactory);
+            ctx.setAttachment(channelState);
+        }
+        return channelState;
+    }
+
+    /**
+     * Returns the response size estimate for the specified method, or null if no call to it has completed yet
+     */
+    private static ResponseSizeEstimate getResponseSizeEstimate(String thriftProxy, String methodName) {
+        ConcurrentMap<String, ResponseSizeEstimate> methodEstimates = RESPONSE_SIZE_ESTIMATES.get(thriftProxy);
+        return methodEstimates != null ? methodEstimates.get(methodName) : null;
+    }
+
+    /**
+     * Records the size of a response to the specified method. Estimates are created only for methods that have completed calls, and for no more
+     * than {@link #MAX_RESPONSE_SIZE_ESTIMATES} methods of a proxy, as method names are sent by clients and calls to unknown methods complete too
+     */
+    private void recordResponseSize(ResponseSizeEstimate responseSizeEstimate, String thriftProxy, String methodName, int size) {
+        if (responseSizeEstimate == null) {
+            ConcurrentMap<String, ResponseSizeEstimate> methodEstimates = RESPONSE_SIZE_ESTIMATES.get(thriftProxy);
+            if (methodEstimates == null) {
+                RESPONSE_SIZE_ESTIMATES.putIfAbsent(thriftProxy, new ConcurrentHashMap<String, ResponseSizeEstimate>());
+                methodEstimates = RESPONSE_SIZE_ESTIMATES.get(thriftProxy);
+            }
+            if (methodEstimates.size() >= MAX_RESPONSE_SIZE_ESTIMATES) {
+                return;
+            }
+            methodEstimates.putIfAbsent(methodName, new ResponseSizeEstimate(this.responseSize));
+            responseSizeEstimate = methodEstimates.get(methodName);
+        }
+        responseSizeEstimate.record(size);
+    }
+
+    /**
+     * Rewrites the header of the call in the specified input with the specified message header, which has a shorter method name. The header is
+     * rewritten in place, ending where the message body begins, if it fits. The call is copied otherwise
+     * @param input the input containing the call
+     * @param message the message header to write
+     * @param bodyIndex the index in the input at which the message body begins
+     * @return the input, with the rewritten call readable
+     * @throws TException in case of errors in writing the message header
+     */
+    private ChannelBuffer rewriteMessageHeader(ChannelBuffer input, TMessage message, int bodyIndex) throws TException {
+        ChannelBuffer header = ChannelBuffers.buffer(bodyIndex - input.readerIndex() + 8); // room for a strict binary header of an old-style call
+        this.protocolFactory.getProtocol(new ThriftNettyChannelBuffer(null, header)).writeMessageBegin(message);
+        int headerIndex = bodyIndex - header.readableBytes();
+        if (headerIndex < input.readerIndex()) {
+            return ChannelBuffers.wrappedBuffer(header, input.slice(bodyIndex, input.writerIndex() - bodyIndex));
+        }
+        input.setBytes(headerIndex, header, header.readableBytes());
+        input.readerIndex(headerIndex);
+        return input;
+    }
+
     /**
      * Interface method implementation. Closes the underlying channel after logging a warning message
      * @see org.jboss.netty.channel.SimpleChannelHandler#exceptionCaught(org.jboss.netty.channel.ChannelHandlerContext, org.jboss.netty.channel.ExceptionEvent)
@@ -283,6 +459,76 @@ public class ThriftChannelHandler extends SimpleChannelUpstreamHandler implement
         return serverRequestInterceptor;
     }
     
+    /**
+     * The state of a channel : the transport and protocol used to read the message header of calls, and the response buffers that may be reused.
+     * Calls on a channel are read one after the other, while responses may be written from other threads
+     */
+    private static class ChannelState {
+
+        private final ThriftNettyChannelBuffer headerTransport = new ThriftNettyChannelBuffer(null, null);
+        private final TProtocol headerProtocol;
+        private final ArrayDeque<ChannelBuffer> outputBuffers = new ArrayDeque<ChannelBuffer>(MAX_POOLED_RESPONSE_BUFFERS);
+
+        ChannelState(TProtocolFactory protocolFactory) {
+            this.headerProtocol = protocolFactory.getProtocol(this.headerTransport);
+        }
+
+        TMessage readMessageBegin(ChannelBuffer input) throws TException {
+            this.headerTransport.setInputBuffer(input);
+            try {
+                return this.headerProtocol.readMessageBegin();
+            } finally {
+                this.headerProtocol.reset();
+                this.headerTransport.setInputBuffer(null);
+            }
+        }
+
+        ChannelBuffer getOutputBuffer(int size) {
+            ChannelBuffer buffer;
+            synchronized (this.outputBuffers) {
+                buffer = this.outputBuffers.poll();
+            }
+            if (buffer == null) {
+                return ChannelBuffers.dynamicBuffer(Math.max(size, MIN_RESPONSE_BUFFER_SIZE));
+            }
+            buffer.ensureWritableBytes(size); // grows the buffer at once, if needed
+            return buffer;
+        }
+
+        void reuseOutputBuffer(ChannelBuffer buffer) {
+            if (buffer.capacity() > MAX_POOLED_RESPONSE_BUFFER_SIZE) {
+                return;
+            }
+            buffer.clear();
+            synchronized (this.outputBuffers) {
+                if (this.outputBuffers.size() < MAX_POOLED_RESPONSE_BUFFERS) {
+                    this.outputBuffers.add(buffer);
+                }
+            }
+        }
+    }
+
+    /**
+     * A running average of the response sizes of a method, weighing recent responses more. Concurrent updates may lose a sample, which is
+     * harmless for an estimate
+     */
+    private static class ResponseSizeEstimate {
+
+        private volatile int averageSize;
+
+        ResponseSizeEstimate(int initialSize) {
+            this.averageSize = initialSize;
+        }
+
+        void record(int size) {
+            this.averageSize += (size - this.averageSize) >> 2;
+        }
+
+        int getBufferSize() {
+            return this.averageSize + (this.averageSize >> 1); // room for responses larger than the average
+        }
+    }
+
     /** Start Getter/Setter methods*/
 	public ChannelGroup getDefaultChannelGroup() {
 		return this.defaultChannelGroup;
@@ -310,6 +556,27 @@ public class ThriftChannelHandler extends SimpleChannelUpstreamHandler implement
     }
     public void setThriftProxy(String thriftProxy) {
         this.thriftProxy = thriftProxy;
+    }
+    public Map<String, String> getServiceProxies() {
+        return this.serviceProxies;
+    }
+    public void setServiceProxies(Map<String, String> serviceProxies) {
+        this.serviceProxies = serviceProxies;
+    }
+    public Map<String, String> getMethodProxies() {
+        return this.methodProxies;
+    }
+    public void setMethodProxies(Map<String, String> methodProxies) {
+        this.methodProxies = methodProxies;
+    }
+    public void setProtocol(ThriftProtocol protocol) {
+        this.protocolFactory = protocol.getProtocolFactory();
+    }
+    public boolean isFramed() {
+        return this.framed;
+    }
+    public void setFramed(boolean framed) {
+        this.framed = framed;
     }
 	public void setEventProducer(ServiceProxyEventProducer eventProducer) {
 		this.eventProducer = eventProducer;
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.runtime.impl.server.netty.decoder.thrift;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TStruct;
+import org.apache.thrift.transport.TMemoryBuffer;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.embedder.CodecEmbedderException;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.jboss.netty.handler.codec.frame.CorruptedFrameException;
+import org.jboss.netty.handler.codec.frame.TooLongFrameException;
+import org.junit.Test;
+
+import com.flipkart.phantom.thrift.impl.ThriftProtocol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the framed and unframed decoding of calls by {@link ThriftBufferDecoder}
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class ThriftBufferDecoderTest {
+
+    @Test
+    public void testFramedCallsInPieces() throws Exception {
+        DecoderEmbedder<ChannelBuffer> embedder = newEmbedder(true, ThriftProtocol.BINARY, 1024);
+        ChannelBuffer call = newCall(ThriftProtocol.BINARY, "first");
+        ChannelBuffer next = newCall(ThriftProtocol.BINARY, "second");
+        ChannelBuffer frames = ChannelBuffers.dynamicBuffer();
+        frames.writeInt(call.readableBytes());
+        frames.writeBytes(call.duplicate());
+        frames.writeInt(next.readableBytes());
+        frames.writeBytes(next.duplicate());
+        embedder.offer(frames.readSlice(2));
+        assertNull("Decoded before the frame size was received", embedder.poll());
+        embedder.offer(frames.readSlice(call.readableBytes()));
+        assertNull("Decoded before the frame was received", embedder.poll());
+        embedder.offer(frames.readSlice(frames.readableBytes() - 1));
+        ChannelBuffer decoded = embedder.poll();
+        assertEquals("Frame size not stripped", call, decoded);
+        assertNull(embedder.poll());
+        embedder.offer(frames.readSlice(1));
+        assertEquals(next, embedder.poll());
+        assertEquals("Decoded call changed by bytes received later", call, decoded);
+    }
+
+    @Test
+    public void testFramedCallsInOneBuffer() throws Exception {
+        DecoderEmbedder<ChannelBuffer> embedder = newEmbedder(true, ThriftProtocol.COMPACT, 1024);
+        ChannelBuffer frames = ChannelBuffers.dynamicBuffer();
+        for (String method : new String[] {"first", "second"}) {
+            ChannelBuffer call = newCall(ThriftProtocol.COMPACT, method);
+            frames.writeInt(call.readableBytes());
+            frames.writeBytes(call);
+        }
+        embedder.offer(frames);
+        assertEquals(newCall(ThriftProtocol.COMPACT, "first"), embedder.poll());
+        assertEquals(newCall(ThriftProtocol.COMPACT, "second"), embedder.poll());
+    }
+
+    @Test
+    public void testFrameTooLong() throws Exception {
+        DecoderEmbedder<ChannelBuffer> embedder = newEmbedder(true, ThriftProtocol.BINARY, 16);
+        try {
+            embedder.offer(ChannelBuffers.wrappedBuffer(new byte[] {0, 0, 0, 17}));
+            fail("Frame larger than the maximum decoded");
+        } catch (CodecEmbedderException e) {
+            assertEquals(TooLongFrameException.class, e.getCause().getClass());
+        }
+    }
+
+    @Test
+    public void testInvalidFrameSize() throws Exception {
+        DecoderEmbedder<ChannelBuffer> embedder = newEmbedder(true, ThriftProtocol.BINARY, 16);
+        try {
+            embedder.offer(ChannelBuffers.wrappedBuffer(new byte[] {(byte) 0x80, 0, 0, 1}));
+            fail("Negative frame size accepted");
+        } catch (CodecEmbedderException e) {
+            assertEquals(CorruptedFrameException.class, e.getCause().getClass());
+        }
+    }
+
+    @Test
+    public void testUnframedCompactCalls() throws Exception {
+        DecoderEmbedder<ChannelBuffer> embedder = newEmbedder(false, ThriftProtocol.COMPACT, 1024);
+        ChannelBuffer call = newCall(ThriftProtocol.COMPACT, "first");
+        embedder.offer(call.slice(0, 3));
+        assertNull(embedder.poll());
+        embedder.offer(call.slice(3, call.readableBytes() - 3));
+        assertEquals(call, embedder.poll());
+    }
+
+    @Test
+    public void testUnframedMessageTooLong() throws Exception {
+        DecoderEmbedder<ChannelBuffer> embedder = newEmbedder(false, ThriftProtocol.BINARY, 16);
+        ChannelBuffer call = newCall(ThriftProtocol.BINARY, "aMethodNameLongerThanTheMaximum");
+        try {
+            embedder.offer(call.slice(0, call.readableBytes() - 1));
+            fail("Message larger than the maximum buffered");
+        } catch (CodecEmbedderException e) {
+            assertEquals(TooLongFrameException.class, e.getCause().getClass());
+        }
+    }
+
+    /**
+     * Creates an embedded channel with a decoder of the specified transport and protocol
+     */
+    private static DecoderEmbedder<ChannelBuffer> newEmbedder(boolean framed, ThriftProtocol protocol, int maxFrameSize) {
+        ThriftBufferDecoder decoder = new ThriftBufferDecoder();
+        decoder.setFramed(framed);
+        decoder.setProtocol(protocol);
+        decoder.setMaxFrameSize(maxFrameSize);
+        return new DecoderEmbedder<ChannelBuffer>(decoder);
+    }
+
+    /**
+     * Creates a call to the specified method, with no arguments, in the specified protocol
+     */
+    private static ChannelBuffer newCall(ThriftProtocol protocol, String methodName) throws TException {
+        TMemoryBuffer call = new TMemoryBuffer(64);
+        TProtocol out = protocol.getProtocolFactory().getProtocol(call);
+        out.writeMessageBegin(new TMessage(methodName, TMessageType.CALL, 1));
+        out.writeStructBegin(new TStruct());
+        out.writeFieldStop();
+        out.writeStructEnd();
+        out.writeMessageEnd();
+        return ChannelBuffers.wrappedBuffer(call.getArray(), 0, call.length());
+    }
+}
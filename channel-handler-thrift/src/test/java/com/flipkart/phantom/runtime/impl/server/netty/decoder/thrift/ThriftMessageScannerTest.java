@@ -0,0 +1,182 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.runtime.impl.server.netty.decoder.thrift;
+
+import java.util.Arrays;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TField;
+import org.apache.thrift.protocol.TList;
+import org.apache.thrift.protocol.TMap;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TSet;
+import org.apache.thrift.protocol.TStruct;
+import org.apache.thrift.protocol.TType;
+import org.apache.thrift.transport.TMemoryBuffer;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.frame.CorruptedFrameException;
+import org.junit.Test;
+
+import com.flipkart.phantom.thrift.impl.ThriftProtocol;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link ThriftMessageScanner}
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class ThriftMessageScannerTest {
+
+    @Test
+    public void testBinaryPartialMessages() throws Exception {
+        this.testPartialMessages(ThriftProtocol.BINARY);
+    }
+
+    @Test
+    public void testCompactPartialMessages() throws Exception {
+        this.testPartialMessages(ThriftProtocol.COMPACT);
+    }
+
+    @Test
+    public void testBinaryMessagesInOneBuffer() throws Exception {
+        this.testMessagesInOneBuffer(ThriftProtocol.BINARY);
+    }
+
+    @Test
+    public void testCompactMessagesInOneBuffer() throws Exception {
+        this.testMessagesInOneBuffer(ThriftProtocol.COMPACT);
+    }
+
+    @Test(expected = CorruptedFrameException.class)
+    public void testBinaryBadVersion() throws Exception {
+        ThriftMessageScanner.forProtocol(ThriftProtocol.BINARY).scan(ChannelBuffers.wrappedBuffer(new byte[] {(byte) 0x80, 0x02, 0, 1}));
+    }
+
+    @Test(expected = CorruptedFrameException.class)
+    public void testCompactBadProtocolId() throws Exception {
+        ThriftMessageScanner.forProtocol(ThriftProtocol.COMPACT).scan(ChannelBuffers.wrappedBuffer(new byte[] {0x12, 0x21, 0, 0}));
+    }
+
+    /**
+     * Feeds a message one byte at a time and checks that its length is known only once its last byte is received
+     */
+    private void testPartialMessages(ThriftProtocol protocol) throws Exception {
+        byte[] message = newMessage(protocol, "add", 1);
+        ThriftMessageScanner scanner = ThriftMessageScanner.forProtocol(protocol);
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+        for (int i = 0; i < message.length - 1; i++) {
+            buffer.writeByte(message[i]);
+            assertEquals("Message end found after " + (i + 1) + " of " + message.length + " bytes", -1, scanner.scan(buffer));
+        }
+        buffer.writeByte(message[message.length - 1]);
+        assertEquals(message.length, scanner.scan(buffer));
+        // the scanner is reset for the next message
+        buffer.skipBytes(message.length);
+        byte[] next = newMessage(protocol, "multiply", 2);
+        buffer.writeBytes(next, 0, next.length / 2);
+        assertEquals(-1, scanner.scan(buffer));
+        buffer.writeBytes(next, next.length / 2, next.length - next.length / 2);
+        assertEquals(next.length, scanner.scan(buffer));
+    }
+
+    /**
+     * Scans messages received together in a single buffer
+     */
+    private void testMessagesInOneBuffer(ThriftProtocol protocol) throws Exception {
+        byte[] first = newMessage(protocol, "add", 1);
+        byte[] second = newMessage(protocol, "subtract", 2);
+        ChannelBuffer buffer = ChannelBuffers.wrappedBuffer(first, second);
+        ThriftMessageScanner scanner = ThriftMessageScanner.forProtocol(protocol);
+        assertEquals(first.length, scanner.scan(buffer));
+        buffer.skipBytes(first.length);
+        assertEquals(second.length, scanner.scan(buffer));
+        buffer.skipBytes(second.length);
+        assertEquals(-1, scanner.scan(buffer));
+    }
+
+    /**
+     * Writes a call with arguments of all types, including nested and empty containers, in the specified protocol
+     */
+    private static byte[] newMessage(ThriftProtocol protocol, String name, int seqid) throws TException {
+        TMemoryBuffer transport = new TMemoryBuffer(256);
+        TProtocol out = protocol.getProtocolFactory().getProtocol(transport);
+        out.writeMessageBegin(new TMessage(name, TMessageType.CALL, seqid));
+        out.writeStructBegin(new TStruct("args"));
+        out.writeFieldBegin(new TField("flag", TType.BOOL, (short) 1));
+        out.writeBool(true);
+        out.writeFieldEnd();
+        out.writeFieldBegin(new TField("b", TType.BYTE, (short) 2));
+        out.writeByte((byte) 7);
+        out.writeFieldEnd();
+        out.writeFieldBegin(new TField("s", TType.I16, (short) 3));
+        out.writeI16((short) -300);
+        out.writeFieldEnd();
+        out.writeFieldBegin(new TField("i", TType.I32, (short) 4));
+        out.writeI32(Integer.MIN_VALUE);
+        out.writeFieldEnd();
+        out.writeFieldBegin(new TField("l", TType.I64, (short) 20));
+        out.writeI64(Long.MAX_VALUE);
+        out.writeFieldEnd();
+        out.writeFieldBegin(new TField("d", TType.DOUBLE, (short) 6));
+        out.writeDouble(1.5);
+        out.writeFieldEnd();
+        out.writeFieldBegin(new TField("name", TType.STRING, (short) 7));
+        out.writeString("phantom");
+        out.writeFieldEnd();
+        out.writeFieldBegin(new TField("values", TType.LIST, (short) 8));
+        out.writeListBegin(new TList(TType.STRUCT, 2));
+        for (int i = 0; i < 2; i++) {
+            out.writeStructBegin(new TStruct("value"));
+            out.writeFieldBegin(new TField("id", TType.I32, (short) 1));
+            out.writeI32(i);
+            out.writeFieldEnd();
+            out.writeFieldStop();
+            out.writeStructEnd();
+        }
+        out.writeListEnd();
+        out.writeFieldEnd();
+        out.writeFieldBegin(new TField("empty", TType.SET, (short) 9));
+        out.writeSetBegin(new TSet(TType.STRING, 0));
+        out.writeSetEnd();
+        out.writeFieldEnd();
+        out.writeFieldBegin(new TField("index", TType.MAP, (short) 10));
+        out.writeMapBegin(new TMap(TType.STRING, TType.LIST, 2));
+        for (int i = 0; i < 2; i++) {
+            out.writeString("key" + i);
+            out.writeListBegin(new TList(TType.I64, i));
+            for (int j = 0; j < i; j++) {
+                out.writeI64(j);
+            }
+            out.writeListEnd();
+        }
+        out.writeMapEnd();
+        out.writeFieldEnd();
+        out.writeFieldBegin(new TField("none", TType.MAP, (short) 11));
+        out.writeMapBegin(new TMap(TType.I32, TType.I32, 0));
+        out.writeMapEnd();
+        out.writeFieldEnd();
+        out.writeFieldStop();
+        out.writeStructEnd();
+        out.writeMessageEnd();
+        return Arrays.copyOf(transport.getArray(), transport.length());
+    }
+
+}
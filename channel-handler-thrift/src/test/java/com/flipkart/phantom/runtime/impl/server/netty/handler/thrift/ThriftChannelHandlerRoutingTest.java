@@ -0,0 +1,242 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.runtime.impl.server.netty.handler.thrift;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TField;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolFactory;
+import org.apache.thrift.protocol.TStruct;
+import org.apache.thrift.protocol.TType;
+import org.apache.thrift.transport.TMemoryBuffer;
+import org.apache.thrift.transport.TMemoryInputTransport;
+import org.apache.thrift.transport.TTransport;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.group.DefaultChannelGroup;
+import org.jboss.netty.handler.codec.embedder.CodecEmbedderException;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.junit.Test;
+
+import com.flipkart.phantom.event.ServiceProxyEvent;
+import com.flipkart.phantom.task.impl.collector.EventDispatchingSpanCollector;
+import com.flipkart.phantom.task.spi.Executor;
+import com.flipkart.phantom.task.spi.TaskContext;
+import com.flipkart.phantom.task.spi.interceptor.RequestInterceptor;
+import com.flipkart.phantom.task.spi.interceptor.ResponseInterceptor;
+import com.flipkart.phantom.task.spi.registry.AbstractHandlerRegistry;
+import com.flipkart.phantom.task.spi.repository.ExecutorRepository;
+import com.flipkart.phantom.thrift.impl.ThriftProtocol;
+import com.flipkart.phantom.thrift.impl.ThriftProxy;
+import com.flipkart.phantom.thrift.impl.ThriftRequestWrapper;
+import com.google.common.base.Optional;
+import com.netflix.hystrix.HystrixCommand;
+import com.netflix.hystrix.HystrixCommandGroupKey;
+import com.netflix.hystrix.HystrixCommandKey;
+import com.netflix.hystrix.HystrixCommandProperties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the routing of calls to the service, method and default proxies of a {@link ThriftChannelHandler}. The test executors respond
+ * with the proxy, the method name and the argument of the call, as received by the proxy
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class ThriftChannelHandlerRoutingTest {
+
+    @Test
+    public void testServiceCallsRoutedWithoutPrefix() throws Exception {
+        DecoderEmbedder<ChannelBuffer> embedder = newEmbedder(ThriftProtocol.BINARY, "defaultProxy");
+        assertEquals("calculatorProxy:add:1", call(embedder, new TBinaryProtocol.Factory(), "Calculator:add", "1"));
+        assertEquals("userProxy:getUser:2", call(embedder, new TBinaryProtocol.Factory(), "UserService:getUser", "2"));
+    }
+
+    @Test
+    public void testCompactServiceCallsRoutedWithoutPrefix() throws Exception {
+        DecoderEmbedder<ChannelBuffer> embedder = newEmbedder(ThriftProtocol.COMPACT, "defaultProxy");
+        assertEquals("calculatorProxy:add:1", call(embedder, ThriftProtocol.COMPACT.getProtocolFactory(), "Calculator:add", "1"));
+    }
+
+    @Test
+    public void testOldStyleServiceCallCopied() throws Exception {
+        DecoderEmbedder<ChannelBuffer> embedder = newEmbedder(ThriftProtocol.BINARY, "defaultProxy");
+        // the strict header written for the routed call is longer than the old-style header of the call with a one character service name
+        assertEquals("calculatorProxy:add:1", call(embedder, new TBinaryProtocol.Factory(false, false), "C:add", "1"));
+    }
+
+    @Test
+    public void testMethodCallsRouted() throws Exception {
+        DecoderEmbedder<ChannelBuffer> embedder = newEmbedder(ThriftProtocol.BINARY, "defaultProxy");
+        assertEquals("userProxy:getUser:1", call(embedder, new TBinaryProtocol.Factory(), "getUser", "1"));
+    }
+
+    @Test
+    public void testOtherCallsRoutedToDefaultProxy() throws Exception {
+        DecoderEmbedder<ChannelBuffer> embedder = newEmbedder(ThriftProtocol.BINARY, "defaultProxy");
+        assertEquals("defaultProxy:ping:1", call(embedder, new TBinaryProtocol.Factory(), "ping", "1"));
+        assertEquals("Call to an unmapped service not relayed as is", "defaultProxy:Other:ping:2",
+                call(embedder, new TBinaryProtocol.Factory(), "Other:ping", "2"));
+    }
+
+    @Test
+    public void testUnroutableCall() throws Exception {
+        DecoderEmbedder<ChannelBuffer> embedder = newEmbedder(ThriftProtocol.BINARY, null);
+        try {
+            call(embedder, new TBinaryProtocol.Factory(), "ping", "1");
+            fail("Call with no proxy to route to executed");
+        } catch (CodecEmbedderException e) {
+            assertTrue(e.getCause().getMessage().contains("ping"));
+        }
+    }
+
+    /**
+     * Creates an embedded channel with a ThriftChannelHandler that routes calls of the Calculator and UserService services, and of the getUser
+     * method, to their proxies and other calls to the specified default proxy
+     */
+    private static DecoderEmbedder<ChannelBuffer> newEmbedder(ThriftProtocol protocol, String thriftProxy) {
+        ThriftChannelHandler handler = new ThriftChannelHandler();
+        handler.setDefaultChannelGroup(new DefaultChannelGroup());
+        handler.setProtocol(protocol);
+        handler.setThriftProxy(thriftProxy);
+        Map<String, String> serviceProxies = new HashMap<String, String>();
+        serviceProxies.put("Calculator", "calculatorProxy");
+        serviceProxies.put("C", "calculatorProxy");
+        serviceProxies.put("UserService", "userProxy");
+        handler.setServiceProxies(serviceProxies);
+        Map<String, String> methodProxies = new HashMap<String, String>();
+        methodProxies.put("getUser", "userProxy");
+        handler.setMethodProxies(methodProxies);
+        handler.setEventDispatchingSpanCollector(new EventDispatchingSpanCollector());
+        handler.setRepository(new ExecutorRepository<ThriftRequestWrapper, TTransport, ThriftProxy>() {
+            public Executor<ThriftRequestWrapper, TTransport> getExecutor(String commandName, String proxyName, ThriftRequestWrapper requestWrapper) {
+                return new TestExecutor(commandName, proxyName, requestWrapper);
+            }
+            public AbstractHandlerRegistry<ThriftProxy> getRegistry() {
+                return null;
+            }
+            public void setRegistry(AbstractHandlerRegistry<ThriftProxy> registry) {
+            }
+            public TaskContext getTaskContext() {
+                return null;
+            }
+            public void setTaskContext(TaskContext taskContext) {
+            }
+        });
+        return new DecoderEmbedder<ChannelBuffer>(handler);
+    }
+
+    /**
+     * Sends a call to the specified method, with the specified argument, and returns the result of the response written by the handler
+     */
+    private static String call(DecoderEmbedder<ChannelBuffer> embedder, TProtocolFactory protocolFactory, String methodName, String argument)
+            throws TException {
+        TMemoryBuffer call = new TMemoryBuffer(64);
+        writeMessage(protocolFactory.getProtocol(call), new TMessage(methodName, TMessageType.CALL, 1), argument);
+        embedder.offer(ChannelBuffers.wrappedBuffer(call.getArray(), 0, call.length()));
+        ChannelBuffer response = embedder.poll();
+        byte[] bytes = new byte[response.readableBytes()];
+        response.readBytes(bytes);
+        TProtocol protocol = protocolFactory.getProtocol(new TMemoryInputTransport(bytes));
+        assertEquals(TMessageType.REPLY, protocol.readMessageBegin().type);
+        return readValue(protocol);
+    }
+
+    /**
+     * Writes a message with a struct holding the specified string value
+     */
+    private static void writeMessage(TProtocol protocol, TMessage message, String value) throws TException {
+        protocol.writeMessageBegin(message);
+        protocol.writeStructBegin(new TStruct());
+        protocol.writeFieldBegin(new TField("value", TType.STRING, (short) 1));
+        protocol.writeString(value);
+        protocol.writeFieldEnd();
+        protocol.writeFieldStop();
+        protocol.writeStructEnd();
+        protocol.writeMessageEnd();
+        protocol.getTransport().flush();
+    }
+
+    /**
+     * Reads the string value of a struct written by {@link #writeMessage(TProtocol, TMessage, String)}, after the message header
+     */
+    private static String readValue(TProtocol protocol) throws TException {
+        protocol.readStructBegin();
+        protocol.readFieldBegin();
+        String value = protocol.readString();
+        protocol.readFieldEnd();
+        protocol.readFieldBegin();
+        protocol.readStructEnd();
+        protocol.readMessageEnd();
+        return value;
+    }
+
+    /**
+     * Executor that reads the call from the client transport, as a ThriftProxyExecutor would, and replies with the proxy name, the method
+     * name and the argument of the call
+     */
+    private static class TestExecutor extends HystrixCommand<TTransport> implements Executor<ThriftRequestWrapper, TTransport> {
+
+        private final String proxyName;
+        private final ThriftRequestWrapper requestWrapper;
+
+        TestExecutor(String commandName, String proxyName, ThriftRequestWrapper requestWrapper) {
+            super(Setter.withGroupKey(HystrixCommandGroupKey.Factory.asKey("ThriftChannelHandlerRoutingTest"))
+                    .andCommandKey(HystrixCommandKey.Factory.asKey(commandName))
+                    .andCommandPropertiesDefaults(HystrixCommandProperties.Setter()
+                            .withExecutionIsolationStrategy(HystrixCommandProperties.ExecutionIsolationStrategy.SEMAPHORE)
+                            .withExecutionTimeoutEnabled(false)
+                            .withCircuitBreakerEnabled(false)
+                            .withFallbackEnabled(false)));
+            this.proxyName = proxyName;
+            this.requestWrapper = requestWrapper;
+        }
+
+        protected TTransport run() throws Exception {
+            TTransport transport = this.requestWrapper.getClientSocket();
+            TProtocol protocol = this.requestWrapper.getProtocolFactory().getProtocol(transport);
+            TMessage call = protocol.readMessageBegin();
+            assertEquals(this.requestWrapper.getMethodName(), call.name);
+            String value = readValue(protocol);
+            writeMessage(protocol, new TMessage(call.name, TMessageType.REPLY, call.seqid), this.proxyName + ":" + call.name + ":" + value);
+            return transport;
+        }
+
+        public ServiceProxyEvent.Builder getEventBuilder() {
+            return new ServiceProxyEvent.Builder(this.getCommandKey().name(), "TEST");
+        }
+        public void addRequestInterceptor(RequestInterceptor<ThriftRequestWrapper> requestInterceptor) {
+        }
+        public void addResponseInterceptor(ResponseInterceptor<TTransport> responseInterceptor) {
+        }
+        public Optional<String> getServiceName() {
+            return Optional.absent();
+        }
+        public ThriftRequestWrapper getRequestWrapper() {
+            return this.requestWrapper;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.runtime.impl.server.netty.handler.thrift;
+
+import org.apache.thrift.TApplicationException;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TField;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TStruct;
+import org.apache.thrift.protocol.TType;
+import org.apache.thrift.transport.TMemoryBuffer;
+import org.apache.thrift.transport.TTransport;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.group.DefaultChannelGroup;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.junit.Test;
+
+import com.flipkart.phantom.event.ServiceProxyEvent;
+import com.flipkart.phantom.task.impl.collector.EventDispatchingSpanCollector;
+import com.flipkart.phantom.task.spi.Executor;
+import com.flipkart.phantom.task.spi.TaskContext;
+import com.flipkart.phantom.task.spi.interceptor.RequestInterceptor;
+import com.flipkart.phantom.task.spi.interceptor.ResponseInterceptor;
+import com.flipkart.phantom.task.spi.registry.AbstractHandlerRegistry;
+import com.flipkart.phantom.task.spi.repository.ExecutorRepository;
+import com.flipkart.phantom.thrift.impl.ThriftProxy;
+import com.flipkart.phantom.thrift.impl.ThriftRequestWrapper;
+import com.google.common.base.Optional;
+import com.netflix.hystrix.HystrixCommand;
+import com.netflix.hystrix.HystrixCommandGroupKey;
+import com.netflix.hystrix.HystrixCommandKey;
+import com.netflix.hystrix.HystrixCommandProperties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the response buffer sizing of {@link ThriftChannelHandler}. The buffers written by the handler are not reused here, as writes
+ * to an embedded channel never complete, so the capacity of each response buffer is the one the handler sized it to
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class ThriftChannelHandlerTest {
+
+    private static final int RESPONSE_SIZE = 4096;
+
+    /** The kinds of response written by the test executors*/
+    private enum Response {REPLY, EXCEPTION, FALLBACK}
+
+    @Test
+    public void testReplySizeRecorded() throws Exception {
+        DecoderEmbedder<ChannelBuffer> embedder = newEmbedder("replyProxy", Response.REPLY);
+        assertEquals(RESPONSE_SIZE, call(embedder, "getUser").capacity());
+        assertTrue(call(embedder, "getUser").capacity() != RESPONSE_SIZE);
+    }
+
+    @Test
+    public void testExceptionSizeNotRecorded() throws Exception {
+        DecoderEmbedder<ChannelBuffer> embedder = newEmbedder("exceptionProxy", Response.EXCEPTION);
+        assertEquals(RESPONSE_SIZE, call(embedder, "unknownMethod").capacity());
+        assertEquals(RESPONSE_SIZE, call(embedder, "unknownMethod").capacity());
+    }
+
+    @Test
+    public void testFallbackSizeNotRecorded() throws Exception {
+        DecoderEmbedder<ChannelBuffer> embedder = newEmbedder("fallbackProxy", Response.FALLBACK);
+        assertEquals(RESPONSE_SIZE, call(embedder, "getUser").capacity());
+        assertEquals(RESPONSE_SIZE, call(embedder, "getUser").capacity());
+    }
+
+    @Test
+    public void testEstimatedMethodsBounded() throws Exception {
+        DecoderEmbedder<ChannelBuffer> embedder = newEmbedder("boundedProxy", Response.REPLY);
+        for (int i = 0; i < 1024; i++) {
+            call(embedder, "method" + i);
+        }
+        assertTrue(call(embedder, "method0").capacity() != RESPONSE_SIZE);
+        assertEquals(RESPONSE_SIZE, call(embedder, "method1024").capacity());
+        assertEquals(RESPONSE_SIZE, call(embedder, "method1024").capacity());
+    }
+
+    /**
+     * Creates an embedded channel with a ThriftChannelHandler routing to the specified proxy, whose executors write the specified response
+     */
+    private static DecoderEmbedder<ChannelBuffer> newEmbedder(String proxyName, final Response response) {
+        ThriftChannelHandler handler = new ThriftChannelHandler();
+        handler.setDefaultChannelGroup(new DefaultChannelGroup());
+        handler.setThriftProxy(proxyName);
+        handler.setResponseSize(RESPONSE_SIZE);
+        handler.setEventDispatchingSpanCollector(new EventDispatchingSpanCollector());
+        handler.setRepository(new ExecutorRepository<ThriftRequestWrapper, TTransport, ThriftProxy>() {
+            public Executor<ThriftRequestWrapper, TTransport> getExecutor(String commandName, String proxyName, ThriftRequestWrapper requestWrapper) {
+                return new TestExecutor(commandName, requestWrapper, response);
+            }
+            public AbstractHandlerRegistry<ThriftProxy> getRegistry() {
+                return null;
+            }
+            public void setRegistry(AbstractHandlerRegistry<ThriftProxy> registry) {
+            }
+            public TaskContext getTaskContext() {
+                return null;
+            }
+            public void setTaskContext(TaskContext taskContext) {
+            }
+        });
+        return new DecoderEmbedder<ChannelBuffer>(handler);
+    }
+
+    /**
+     * Sends a call to the specified method and returns the response buffer written by the handler
+     */
+    private static ChannelBuffer call(DecoderEmbedder<ChannelBuffer> embedder, String methodName) throws TException {
+        TMemoryBuffer call = new TMemoryBuffer(64);
+        TProtocol protocol = new TBinaryProtocol(call);
+        protocol.writeMessageBegin(new TMessage(methodName, TMessageType.CALL, 1));
+        protocol.writeStructBegin(new TStruct());
+        protocol.writeFieldStop();
+        protocol.writeStructEnd();
+        protocol.writeMessageEnd();
+        embedder.offer(ChannelBuffers.wrappedBuffer(call.getArray(), 0, call.length()));
+        ChannelBuffer response = embedder.poll();
+        assertTrue(response != null && response.readable());
+        return response;
+    }
+
+    /**
+     * Writes a reply to the specified method, with the method name as the result
+     */
+    private static void writeReply(TTransport transport, String methodName) throws TException {
+        TProtocol protocol = new TBinaryProtocol(transport);
+        protocol.writeMessageBegin(new TMessage(methodName, TMessageType.REPLY, 1));
+        protocol.writeStructBegin(new TStruct());
+        protocol.writeFieldBegin(new TField("success", TType.STRING, (short) 0));
+        protocol.writeString(methodName);
+        protocol.writeFieldEnd();
+        protocol.writeFieldStop();
+        protocol.writeStructEnd();
+        protocol.writeMessageEnd();
+        transport.flush();
+    }
+
+    /**
+     * Executor that writes a response to the client transport of the call, as a ThriftProxyExecutor would
+     */
+    private static class TestExecutor extends HystrixCommand<TTransport> implements Executor<ThriftRequestWrapper, TTransport> {
+
+        private final ThriftRequestWrapper requestWrapper;
+        private final Response response;
+
+        TestExecutor(String commandName, ThriftRequestWrapper requestWrapper, Response response) {
+            super(Setter.withGroupKey(HystrixCommandGroupKey.Factory.asKey("ThriftChannelHandlerTest"))
+                    .andCommandKey(HystrixCommandKey.Factory.asKey(commandName))
+                    .andCommandPropertiesDefaults(HystrixCommandProperties.Setter()
+                            .withExecutionIsolationStrategy(HystrixCommandProperties.ExecutionIsolationStrategy.SEMAPHORE)
+                            .withExecutionTimeoutEnabled(false)
+                            .withCircuitBreakerEnabled(false)));
+            this.requestWrapper = requestWrapper;
+            this.response = response;
+        }
+
+        protected TTransport run() throws Exception {
+            TTransport transport = this.requestWrapper.getClientSocket();
+            TProtocol in = new TBinaryProtocol(transport);
+            TMessage call = in.readMessageBegin();
+            if (this.response == Response.FALLBACK) {
+                throw new TException("Upstream unavailable");
+            }
+            if (this.response == Response.EXCEPTION) {
+                TProtocol out = new TBinaryProtocol(transport);
+                out.writeMessageBegin(new TMessage(call.name, TMessageType.EXCEPTION, call.seqid));
+                new TApplicationException(TApplicationException.UNKNOWN_METHOD, "Invalid method name: '" + call.name + "'").write(out);
+                out.writeMessageEnd();
+                transport.flush();
+            } else {
+                writeReply(transport, call.name);
+            }
+            return transport;
+        }
+
+        protected TTransport getFallback() {
+            try {
+                writeReply(this.requestWrapper.getClientSocket(), "fallback");
+            } catch (TException e) {
+                throw new RuntimeException(e);
+            }
+            return this.requestWrapper.getClientSocket();
+        }
+
+        public ServiceProxyEvent.Builder getEventBuilder() {
+            return new ServiceProxyEvent.Builder(this.getCommandKey().name(), "TEST");
+        }
+        public void addRequestInterceptor(RequestInterceptor<ThriftRequestWrapper> requestInterceptor) {
+        }
+        public void addResponseInterceptor(ResponseInterceptor<TTransport> responseInterceptor) {
+        }
+        public Optional<String> getServiceName() {
+            return Optional.absent();
+        }
+        public ThriftRequestWrapper getRequestWrapper() {
+            return this.requestWrapper;
+        }
+    }
+}
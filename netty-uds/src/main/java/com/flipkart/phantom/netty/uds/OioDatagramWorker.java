@@ -46,6 +46,7 @@ class OioDatagramWorker implements Runnable {
     public void run() {
         channel.workerThread = Thread.currentThread();
         final MulticastSocket socket = channel.socket;
+        byte[] buf = null;
 
         while (channel.isOpen()) {
             synchronized (channel.interestOpsLock) {
@@ -65,7 +66,11 @@ class OioDatagramWorker implements Runnable {
             ReceiveBufferSizePredictor predictor =
                 channel.getConfig().getReceiveBufferSizePredictor();
 
-            byte[] buf = new byte[predictor.nextReceiveBufferSize()];
+            // the receive array is reused across datagrams, and the received bytes are copied to a buffer of their size
+            int receiveBufferSize = predictor.nextReceiveBufferSize();
+            if (buf == null || buf.length != receiveBufferSize) {
+                buf = new byte[receiveBufferSize];
+            }
             DatagramPacket packet = new DatagramPacket(buf, buf.length);
             try {
                 socket.receive(packet);
@@ -80,9 +85,11 @@ class OioDatagramWorker implements Runnable {
                 break;
             }
 
+            ChannelBuffer buffer = channel.getConfig().getBufferFactory().getBuffer(packet.getLength());
+            buffer.writeBytes(buf, 0, packet.getLength());
             fireMessageReceived(
                     channel,
-                    channel.getConfig().getBufferFactory().getBuffer(buf, 0, packet.getLength()),
+                    buffer,
                     packet.getSocketAddress());
         }
 
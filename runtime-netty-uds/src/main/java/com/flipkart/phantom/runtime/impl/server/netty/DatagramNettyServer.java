@@ -0,0 +1,173 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.runtime.impl.server.netty;
+
+import com.flipkart.phantom.netty.uds.OioDatagramChannelFactory;
+import com.flipkart.phantom.runtime.impl.server.concurrent.NamedThreadFactory;
+import org.jboss.netty.bootstrap.Bootstrap;
+import org.jboss.netty.bootstrap.ConnectionlessBootstrap;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.FixedReceiveBufferSizePredictorFactory;
+import org.trpr.platform.core.impl.logging.LogFactory;
+import org.trpr.platform.core.spi.logging.Logger;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <code>DatagramNettyServer</code> is a concrete implementation of the {@link AbstractNettyNetworkServer} that receives Commands as datagrams
+ * using the {@link OioDatagramChannelFactory}. Intended for fire-and-forget commands (logging, metrics push etc.) sent by co-located clients :
+ * there is no connection set up per request and no response is written back. Each datagram must contain exactly one complete Command and is
+ * typically processed by the {@link com.flipkart.phantom.runtime.impl.server.netty.handler.command.AsyncCommandProcessingChannelHandler}.
+ * This server binds to the loopback interface by default.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class DatagramNettyServer extends AbstractNettyNetworkServer {
+
+    /** Logger for this class*/
+    private static final Logger LOGGER = LogFactory.getLogger(DatagramNettyServer.class);
+
+    /** The default counts (invalid one) for worker pool count*/
+    private static final int INVALID_POOL_SIZE = -1;
+
+    /** The default host this server binds to*/
+    private static final String DEFAULT_HOST = "127.0.0.1";
+
+    /** The default max datagram size - the largest UDP payload possible*/
+    private static final int DEFAULT_MAX_DATAGRAM_SIZE = 65507;
+
+    /** The Netty bootstrap option for the receive buffer size predictor factory*/
+    private static final String RECEIVE_BUFFER_PREDICTOR_OPTION = "receiveBufferSizePredictorFactory";
+
+    /** The host this server binds to*/
+    private String host = DEFAULT_HOST;
+
+    /** The max size of a datagram i.e. of a single Command*/
+    private int maxDatagramSize = DEFAULT_MAX_DATAGRAM_SIZE;
+
+    /** The worker thread pool size*/
+    private int workerPoolSize = INVALID_POOL_SIZE;
+
+    /** The worker ExecutorService instance*/
+    private ExecutorService workerExecutors;
+
+    /**
+     * Interface method implementation. Returns {@link TRANSMISSION_PROTOCOL#UDP}
+     * @see com.flipkart.phantom.runtime.spi.server.NetworkServer#getTransmissionProtocol()
+     */
+    public TransmissionProtocol getTransmissionProtocol() {
+        return TRANSMISSION_PROTOCOL.UDP;
+    }
+
+    /**
+     * Interface method implementation. Creates the worker thread pool if required, sizes the datagram receive buffer and then calls
+     * {@link #afterPropertiesSet()} on the super class
+     * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
+     */
+    public void afterPropertiesSet() throws Exception {
+        if (this.getWorkerExecutors() == null) {  // no executors have been set for workers
+            if (this.getWorkerPoolSize() != DatagramNettyServer.INVALID_POOL_SIZE) { // thread pool size has been set. create and use a fixed thread pool
+                this.setWorkerExecutors(Executors.newFixedThreadPool(this.getWorkerPoolSize(), new NamedThreadFactory("DatagramServer-Worker")));
+            } else { // default behavior of creating and using a cached thread pool
+                this.setWorkerExecutors(Executors.newCachedThreadPool(new NamedThreadFactory("DatagramServer-Worker")));
+            }
+        }
+        // the default predictor reads only 768 bytes and silently truncates larger datagrams
+        if (!this.getBootstrapOptions().containsKey(RECEIVE_BUFFER_PREDICTOR_OPTION)) {
+            this.getBootstrapOptions().put(RECEIVE_BUFFER_PREDICTOR_OPTION, new FixedReceiveBufferSizePredictorFactory(this.getMaxDatagramSize()));
+        }
+        super.afterPropertiesSet();
+        LOGGER.info("Datagram Server startup complete");
+    }
+
+    /**
+     * Overriden superclass method. Starts this server on the specified port of the configured host
+     * @see com.flipkart.phantom.runtime.impl.server.AbstractNetworkServer#startServer(int)
+     */
+    public void startServer(int port) throws RuntimeException {
+        this.portNumber = port;
+        this.startServer(new InetSocketAddress(this.host, port));
+    }
+
+    /**
+     * Overriden super class method. Returns a readable string for this DatagramNettyServer
+     * @see java.lang.Object#toString()
+     */
+    public String toString(){
+        return "DatagramNettyServer [socketAddress=" + socketAddress + ", portNumber=" + portNumber + "] " + this.getPipelineFactory();
+    }
+
+    /**
+     * Interface method implementation. Creates and returns a Netty ConnectionlessBootstrap instance
+     * @see com.flipkart.phantom.runtime.impl.server.netty.AbstractNettyNetworkServer#createServerBootstrap()
+     */
+    protected Bootstrap createServerBootstrap() throws RuntimeException {
+        return new ConnectionlessBootstrap(new OioDatagramChannelFactory(this.getWorkerExecutors()));
+    }
+
+    /**
+     * Abstract method implementation. Creates and returns a Netty Channel from the ConnectionlessBootstrap that was
+     * previously created in {@link DatagramNettyServer#createServerBootstrap()}
+     * @see com.flipkart.phantom.runtime.impl.server.netty.AbstractNettyNetworkServer#createChannel()
+     */
+    protected Channel createChannel() throws RuntimeException {
+        if (this.getServerBootstrap() == null) {
+            throw new RuntimeException("Error creating Channel. Bootstrap instance cannot be null. See DatagramNettyServer#createServerBootstrap()");
+        }
+        return ((ConnectionlessBootstrap)this.serverBootstrap).bind(this.socketAddress);
+    }
+
+    @Override
+    public String getServerType() {
+        return "Datagram Netty Server";
+    }
+
+    @Override
+    public String getServerEndpoint() {
+        return this.host + ":" + this.portNumber;
+    }
+
+    /** Start Getter/Setter methods */
+    public String getHost() {
+        return this.host;
+    }
+    public void setHost(String host) {
+        this.host = host;
+    }
+    public int getMaxDatagramSize() {
+        return this.maxDatagramSize;
+    }
+    public void setMaxDatagramSize(int maxDatagramSize) {
+        this.maxDatagramSize = maxDatagramSize;
+    }
+    public int getWorkerPoolSize() {
+        return this.workerPoolSize;
+    }
+    public void setWorkerPoolSize(int workerPoolSize) {
+        this.workerPoolSize = workerPoolSize;
+    }
+    public ExecutorService getWorkerExecutors() {
+        return this.workerExecutors;
+    }
+    public void setWorkerExecutors(ExecutorService workerExecutors) {
+        this.workerExecutors = workerExecutors;
+    }
+    /** End Getter/Setter methods */
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.runtime.impl.server.netty;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.group.DefaultChannelGroup;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Tests for {@link DatagramNettyServer}
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class DatagramNettyServerTest {
+
+    private final BlockingQueue<ChannelBuffer> received = new LinkedBlockingQueue<ChannelBuffer>();
+    private DatagramNettyServer server;
+    private int port;
+
+    @Before
+    public void setUp() throws Exception {
+        DatagramSocket socket = new DatagramSocket(0);
+        this.port = socket.getLocalPort();
+        socket.close();
+        this.server = new DatagramNettyServer();
+        this.server.setDefaultChannelGroup(new DefaultChannelGroup());
+        this.server.setPipelineFactory(new ChannelHandlerPipelineFactory() {
+            public ChannelPipeline getPipeline() throws Exception {
+                return Channels.pipeline(new SimpleChannelUpstreamHandler() {
+                    public void messageReceived(ChannelHandlerContext ctx, MessageEvent event) {
+                        received.add((ChannelBuffer) event.getMessage());
+                    }
+                });
+            }
+        });
+        this.server.afterPropertiesSet();
+        this.server.startServer(this.port);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.server.stopServer();
+    }
+
+    @Test
+    public void testDatagramsReceivedWhole() throws Exception {
+        byte[] large = newCommand(4000, (byte) 'a'); // larger than the default receive buffer of 768 bytes
+        byte[] small = newCommand(100, (byte) 'b');
+        DatagramSocket client = new DatagramSocket();
+        try {
+            client.send(new DatagramPacket(large, large.length, InetAddress.getByName("127.0.0.1"), this.port));
+            ChannelBuffer first = this.received.poll(5, TimeUnit.SECONDS);
+            assertNotNull("Datagram not received", first);
+            client.send(new DatagramPacket(small, small.length, InetAddress.getByName("127.0.0.1"), this.port));
+            ChannelBuffer second = this.received.poll(5, TimeUnit.SECONDS);
+            assertNotNull("Datagram not received", second);
+            assertArrayEquals("Datagram truncated", large, toBytes(first));
+            assertArrayEquals(small, toBytes(second));
+            assertArrayEquals("Datagram overwritten by the next one received", large, toBytes(first));
+        } finally {
+            client.close();
+        }
+    }
+
+    private static byte[] newCommand(int size, byte fill) {
+        byte[] command = new byte[size];
+        Arrays.fill(command, fill);
+        command[size - 1] = '\n';
+        return command;
+    }
+
+    private static byte[] toBytes(ChannelBuffer buffer) {
+        byte[] bytes = new byte[buffer.readableBytes()];
+        buffer.getBytes(buffer.readerIndex(), bytes);
+        return bytes;
+    }
+
+}
@@ -59,6 +59,8 @@ import com.google.common.base.Optional;
 /**
  * <code>UDSOIOServer</code> is a concrete implementation of the {@link AbstractNetworkServer}
  * for Unix Domain Sockets. Note that this server has to be initialized with a UDS socket file rather than a port no.
+ * Worker threads only read and dispatch Commands - responses are written on completion of execution, so the number of in-flight
+ * Commands is bounded by the handler thread pools and not by the worker pool size.
  *
  * @author Regunath B
  * @version 1.0, 25 Jun 2013
@@ -265,88 +267,118 @@ public class UDSOIOServer extends AbstractNetworkServer {
     }
 
     /**
-     * Helper class that reads and processes Commands from a client Socket. This runs inside a Worker thread.
+     * Helper class that reads and processes Commands from a client Socket. This runs inside a Worker thread only until the Command is read and
+     * dispatched for execution. The response is written and the client Socket closed from the execution completion callback, thereby freeing up
+     * the Worker thread for other clients while the Command executes.
      */
     class CommandProcessor implements Runnable {
         Socket client;
+        long receiveTime;
+        TaskHandlerExecutor<byte[]> executor;
+        CommandInterpreter.ProxyCommand readCommand;
+        ServerRequestInterceptor<TaskRequestWrapper, TaskResult> serverRequestInterceptor;
+        ServerSpan serverSpan;
         CommandProcessor(Socket client) {
             this.client = client;
         }
+        @SuppressWarnings("unchecked")
         public void run() {
-            long receiveTime = System.currentTimeMillis();
-            TaskHandlerExecutor<byte[]> executor = null;
-            CommandInterpreter.ProxyCommand readCommand = null;
-            Optional<RuntimeException> transportError = Optional.absent();
-            TaskResult result = null;
-            ServerRequestInterceptor<TaskRequestWrapper, TaskResult> serverRequestInterceptor = null;
+            this.receiveTime = System.currentTimeMillis();
+            ServerSpan workerSpan = Brave.getServerSpanThreadBinder().getCurrentServerSpan();
             try {
                 CommandInterpreter commandInterpreter = new CommandInterpreter();
-                readCommand = commandInterpreter.readCommand(client.getInputStream());
-                LOGGER.debug("Read Command : " + readCommand);
-                String pool = (String) readCommand.getCommandParams().get("pool");
+                this.readCommand = commandInterpreter.readCommand(client.getInputStream());
+                LOGGER.debug("Read Command : " + this.readCommand);
+                String pool = (String) this.readCommand.getCommandParams().get("pool");
 
                 // Prepare the request Wrapper
                 TaskRequestWrapper<byte[]> taskRequestWrapper = new TaskRequestWrapper<byte[]>();
-                taskRequestWrapper.setCommandName(readCommand.getCommand());
-                taskRequestWrapper.setData(readCommand.getCommandData());
-                taskRequestWrapper.setParams(readCommand.getCommandParams());
+                taskRequestWrapper.setCommandName(this.readCommand.getCommand());
+                taskRequestWrapper.setData(this.readCommand.getCommandData());
+                taskRequestWrapper.setParams(this.readCommand.getCommandParams());
                 // set the service name for the request
                 taskRequestWrapper.setServiceName(Optional.of(serviceName));
 
                 // Create and process a Server request interceptor. This will initialize the server tracing
-                serverRequestInterceptor = initializeServerTracing(taskRequestWrapper);
+                this.serverRequestInterceptor = initializeServerTracing(taskRequestWrapper);
+                this.serverSpan = Brave.getServerSpanThreadBinder().getCurrentServerSpan(); // bound again on the thread that completes execution
 
                 /*Try to execute command using ThreadPool, if "pool" is found in the command, else the command name */
                 if (pool != null) {
-                    executor = (TaskHandlerExecutor) repository.getExecutor(readCommand.getCommand(), pool, taskRequestWrapper);
+                    this.executor = (TaskHandlerExecutor) repository.getExecutor(this.readCommand.getCommand(), pool, taskRequestWrapper);
                 } else {
-                    executor = (TaskHandlerExecutor) repository.getExecutor(readCommand.getCommand(), readCommand.getCommand(), taskRequestWrapper);
+                    this.executor = (TaskHandlerExecutor) repository.getExecutor(this.readCommand.getCommand(), this.readCommand.getCommand(), taskRequestWrapper);
                 }
                 /* execute */
-                if (executor.getCallInvocationType() == TaskHandler.SYNC_CALL) {
-                    result = executor.execute();
+                if (this.executor.getCallInvocationType() == TaskHandler.SYNC_CALL) {
+                    // the response is written from the completion callbacks, on the thread that completes execution
+                    this.executor.observe().subscribe(
+                        (result) -> this.complete(result, Optional.<RuntimeException>absent()),
+                        (exception) -> this.complete(null, Optional.of(new RuntimeException("Error in executing command : " + this.readCommand, exception))));
                 } else {
                     /* dont wait for the result. send back a response that the call has been dispatched for async execution */
-                    executor.queue();
-                    result = new TaskResult(true, TaskHandlerExecutor.ASYNC_QUEUED);
+                    this.executor.queue();
+                    this.complete(new TaskResult(true, TaskHandlerExecutor.ASYNC_QUEUED), Optional.<RuntimeException>absent());
                 }
-                LOGGER.debug("The output is: " + result);
-
-                // write the results to the socket output
-                commandInterpreter.writeCommandExecutionResponse(client.getOutputStream(), result);
             } catch (Exception e) {
-            	RuntimeException runtimeException = new RuntimeException("Error in executing command : " + readCommand, e);
-            	transportError = Optional.of(runtimeException);
+            	RuntimeException runtimeException = new RuntimeException("Error in executing command : " + this.readCommand, e);
+            	this.complete(null, Optional.of(runtimeException));
                 throw runtimeException;
+            } finally {
+                // the Worker thread is reused for other clients
+                Brave.getServerSpanThreadBinder().setCurrentSpan(workerSpan);
+            }
+        }
+
+        /**
+         * Writes the execution result, if any, to the client Socket, informs the server request tracer, publishes the request event and
+         * finally closes the client Socket
+         * @param result the execution result, null if execution failed
+         * @param transportError the execution error, if any
+         */
+        void complete(TaskResult result, Optional<RuntimeException> transportError) {
+            // the server span of the request is bound for tracing, and the span bound earlier is restored as the completing thread is shared
+            ServerSpan boundSpan = Brave.getServerSpanThreadBinder().getCurrentServerSpan();
+            Brave.getServerSpanThreadBinder().setCurrentSpan(this.serverSpan);
+            try {
+                if (!transportError.isPresent()) {
+                    LOGGER.debug("The output is: " + result);
+                    // write the results to the socket output
+                    new CommandInterpreter().writeCommandExecutionResponse(client.getOutputStream(), result);
+                }
+            } catch (Exception e) {
+                transportError = Optional.of(new RuntimeException("Error in writing response for command : " + this.readCommand, e));
+                LOGGER.error("Error in writing response for command : " + this.readCommand + ". Error is : " + e.getMessage(), e);
             } finally {
             	// finally inform the server request tracer
-            	if (serverRequestInterceptor != null) {
-            		serverRequestInterceptor.process(result, transportError);
+            	if (this.serverRequestInterceptor != null) {
+            		this.serverRequestInterceptor.process(result, transportError);
             	}
                 if (eventProducer != null) {
-                    // Publishes event both in case of success and failure.
-                    final Map<String, Object> params = readCommand.getCommandParams();
-                    ServiceProxyEvent.Builder eventBuilder;
-                    if(executor==null) {
-                        eventBuilder = new ServiceProxyEvent.Builder(readCommand.getCommand(), COMMAND_HANDLER).withEventSource(getClass().getName());
-                    } else {
-                        eventBuilder = executor.getEventBuilder().withCommandData(executor).withEventSource(executor.getClass().getName());
-                    }
-                    eventBuilder.withRequestId((String) params.get("requestID")).withRequestReceiveTime(receiveTime);
-                    if(params.containsKey("requestSentTime")) {
-                        eventBuilder.withRequestSentTime(Long.valueOf((String) params.get("requestSentTime")));
+                    if (this.readCommand != null) {
+                        // Publishes event both in case of success and failure.
+                        final Map<String, Object> params = this.readCommand.getCommandParams();
+                        ServiceProxyEvent.Builder eventBuilder;
+                        if (this.executor == null) {
+                            eventBuilder = new ServiceProxyEvent.Builder(this.readCommand.getCommand(), COMMAND_HANDLER).withEventSource(getClass().getName());
+                        } else {
+                            eventBuilder = this.executor.getEventBuilder().withCommandData(this.executor).withEventSource(this.executor.getClass().getName());
+                        }
+                        eventBuilder.withRequestId((String) params.get("requestID")).withRequestReceiveTime(this.receiveTime);
+                        if (params.containsKey("requestSentTime")) {
+                            eventBuilder.withRequestSentTime(Long.valueOf((String) params.get("requestSentTime")));
+                        }
+                        eventProducer.publishEvent(eventBuilder.build());
                     }
-                    eventProducer.publishEvent(eventBuilder.build());
                 } else {
                     LOGGER.debug("eventProducer not set, not publishing event");
                 }
-                if (client != null) {
-                    try {
-                        client.close();
-                    } catch (IOException e) {
-                        LOGGER.error("Error closing client socket : " + e.getMessage(), e);
-                    }
+                try {
+                    client.close();
+                } catch (IOException e) {
+                    LOGGER.error("Error closing client socket : " + e.getMessage(), e);
                 }
+                Brave.getServerSpanThreadBinder().setCurrentSpan(boundSpan);
             }
         }
     }
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.runtime.impl.server.oio;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.flipkart.phantom.task.impl.TaskHandler;
+import com.flipkart.phantom.task.impl.TaskHandlerExecutor;
+import com.flipkart.phantom.task.impl.collector.EventDispatchingSpanCollector;
+import com.flipkart.phantom.task.spi.Executor;
+import com.flipkart.phantom.task.spi.TaskContext;
+import com.flipkart.phantom.task.spi.TaskRequestWrapper;
+import com.flipkart.phantom.task.spi.TaskResult;
+import com.flipkart.phantom.task.spi.registry.AbstractHandlerRegistry;
+import com.flipkart.phantom.task.spi.repository.ExecutorRepository;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the processing of Commands by {@link UDSOIOServer}. Commands are read from TCP sockets here, as the processing does not depend on
+ * the socket type
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class UDSOIOServerTest {
+
+    private final CountDownLatch slowCommandRelease = new CountDownLatch(1);
+    private UDSOIOServer server;
+    private ExecutorService workerExecutors;
+    private ServerSocket listener;
+
+    @Before
+    public void setUp() throws Exception {
+        final TaskHandler taskHandler = new TestTaskHandler();
+        this.server = new UDSOIOServer();
+        this.workerExecutors = Executors.newFixedThreadPool(1); // a single worker, that must not be held while a Command executes
+        this.server.setWorkerExecutors(this.workerExecutors);
+        this.server.setEventDispatchingSpanCollector(new EventDispatchingSpanCollector());
+        this.server.setRepository(new ExecutorRepository<TaskRequestWrapper, TaskResult, TaskHandler>() {
+            public Executor<TaskRequestWrapper, TaskResult> getExecutor(String commandName, String proxyName, TaskRequestWrapper requestWrapper) {
+                return new TaskHandlerExecutor(taskHandler, null, commandName, 5000, requestWrapper);
+            }
+            public AbstractHandlerRegistry<TaskHandler> getRegistry() {
+                return null;
+            }
+            public void setRegistry(AbstractHandlerRegistry<TaskHandler> registry) {
+            }
+            public TaskContext getTaskContext() {
+                return null;
+            }
+            public void setTaskContext(TaskContext taskContext) {
+            }
+        });
+        this.listener = new ServerSocket(0, 10, InetAddress.getByName("127.0.0.1"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.slowCommandRelease.countDown();
+        this.listener.close();
+        this.workerExecutors.shutdownNow();
+    }
+
+    @Test
+    public void testWorkerFreedWhileCommandExecutes() throws Exception {
+        Socket slowClient = this.send("slow\n");
+        Socket fastClient = this.send("fast\n");
+        try {
+            assertEquals("Command not processed while another executes", "fast", readResponse(fastClient));
+            this.slowCommandRelease.countDown();
+            assertEquals("slow", readResponse(slowClient));
+        } finally {
+            slowClient.close();
+            fastClient.close();
+        }
+    }
+
+    /**
+     * Sends the specified Command on a new client socket and hands the server side of the socket to a worker
+     */
+    private Socket send(String command) throws IOException {
+        Socket client = new Socket(this.listener.getInetAddress(), this.listener.getLocalPort());
+        client.setSoTimeout(5000);
+        client.getOutputStream().write(command.getBytes());
+        client.getOutputStream().flush();
+        this.workerExecutors.submit(this.server.new CommandProcessor(this.listener.accept()));
+        return client;
+    }
+
+    /**
+     * Reads the response status line written for a Command
+     */
+    private static String readResponse(Socket client) throws IOException {
+        InputStream input = client.getInputStream();
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int read;
+        while ((read = input.read()) != -1 && read != '\n') {
+            line.write(read);
+        }
+        return line.toString();
+    }
+
+    /**
+     * TaskHandler that responds with the command name, and holds the "slow" command till released
+     */
+    private class TestTaskHandler extends TaskHandler {
+        public String getName() {
+            return "UDSOIOServerTest";
+        }
+        public String[] getCommands() {
+            return new String[] {"slow", "fast"};
+        }
+        public void shutdown(TaskContext taskContext) throws Exception {
+        }
+        public <T, S> TaskResult<T> execute(TaskContext taskContext, String command, Map<String, Object> params, S data) throws RuntimeException {
+            if (command.equals("slow")) {
+                try {
+                    slowCommandRelease.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return new TaskResult<T>(true, command);
+        }
+    }
+
+}
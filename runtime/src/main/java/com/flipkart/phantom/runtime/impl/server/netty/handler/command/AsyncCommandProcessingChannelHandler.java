@@ -28,6 +28,7 @@ import org.jboss.netty.channel.ExceptionEvent;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
 import org.jboss.netty.channel.group.ChannelGroup;
+import org.jboss.netty.channel.socket.DatagramChannel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
@@ -51,7 +52,7 @@ import com.google.common.base.Optional;
 
 /**
  * <code>AsyncCommandProcessingChannelHandler</code> is similar to @link{CommandProcessingChannelHandler} except it executes the
- * commands asynchronously.
+ * commands asynchronously. May also be used on datagram channels where each datagram carries one complete command.
  *
  * @author devashish.shankar
  * @version 1.0, 10 Jun 2013
@@ -202,10 +203,15 @@ public class AsyncCommandProcessingChannelHandler extends SimpleChannelUpstreamH
     }
 
 	/**
-	 * Interface method implementation. Closes the underlying channel after logging a warning message
+	 * Interface method implementation. Closes the underlying channel after logging a warning message. Datagram channels are not closed as they
+	 * are shared by all clients - only the offending datagram is dropped.
 	 * @see org.jboss.netty.channel.SimpleChannelHandler#exceptionCaught(org.jboss.netty.channel.ChannelHandlerContext, org.jboss.netty.channel.ExceptionEvent)
 	 */
 	public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent event) throws Exception {
+		if (DatagramChannel.class.isAssignableFrom(event.getChannel().getClass())) {
+			LOGGER.warn("Exception {} thrown on datagram Channel {}. Datagram dropped",event,event.getChannel());
+			return;
+		}
 		LOGGER.warn("Exception {} thrown on Channel {}. Disconnect initiated",event,event.getChannel());
 		event.getChannel().close();
 	}
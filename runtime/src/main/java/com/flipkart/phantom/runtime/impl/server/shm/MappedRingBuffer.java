@@ -0,0 +1,267 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.runtime.impl.server.shm;
+
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.MappedByteBuffer;
+
+import sun.misc.Unsafe;
+
+/**
+ * <code>MappedRingBuffer</code> is a single producer, single consumer ring of variable length records laid out in a region of a
+ * {@link MappedByteBuffer}. The producer and consumer may be in different processes that have mapped the same file.
+ * The region is laid out as described below :
+ *
+ * <pre>
+ * +---------------------------+---------------------------+--------------------------------------+
+ * | tail (8 bytes, padded 64) | head (8 bytes, padded 64) | record data (capacity bytes)         |
+ * +---------------------------+---------------------------+--------------------------------------+
+ *
+ * Each record is described as below and is aligned to 8 bytes
+ * +----------------------+--------------------+----------------------+------------------------+--------------+
+ * | payload length (int) | record type (int)  | session epoch (long) | correlation id (long)  | payload      |
+ * +----------------------+--------------------+----------------------+------------------------+--------------+
+ * </pre>
+ *
+ * A padding record is written when a record does not fit in the space left before the end of the ring. The tail and head
+ * positions only ever increase and are published using ordered writes so that record bytes are visible before the position is.
+ * The session epoch identifies the client session a record belongs to, so that records left over from an earlier session may be told apart.
+ * Instances of this class are not thread-safe : callers must ensure there is at most one writer and one reader at a time.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+@SuppressWarnings("restriction")
+public class MappedRingBuffer {
+
+	/** The size of the tail and head position fields, padded to avoid false sharing between producer and consumer*/
+	private static final int POSITION_FIELD_SIZE = 64;
+
+	/** The size of the region header i.e. the tail and head positions*/
+	public static final int HEADER_SIZE = 2 * POSITION_FIELD_SIZE;
+
+	/** The size of a record header*/
+	public static final int RECORD_HEADER_SIZE = 24;
+
+	/** The record types*/
+	private static final int TYPE_MESSAGE = 1;
+	private static final int TYPE_PADDING = 2;
+
+	/** The record alignment*/
+	private static final int ALIGNMENT = 8;
+
+	/** Unsafe for ordered and volatile access to the mapped memory, and the offset of the native address field of direct buffers*/
+	private static final Unsafe UNSAFE;
+	private static final long BYTE_ARRAY_OFFSET;
+	private static final long BUFFER_ADDRESS_OFFSET;
+	static {
+		try {
+			Field field = Unsafe.class.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			UNSAFE = (Unsafe) field.get(null);
+			BYTE_ARRAY_OFFSET = UNSAFE.arrayBaseOffset(byte[].class);
+			BUFFER_ADDRESS_OFFSET = UNSAFE.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+		} catch (Exception e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/** The mapped buffer, held on to so that the mapping is not released while this ring is in use*/
+	private final MappedByteBuffer mappedBuffer;
+
+	/** The addresses of the tail and head positions and the start of record data*/
+	private final long tailAddress;
+	private final long headAddress;
+	private final long dataAddress;
+
+	/** The capacity of the record data area and the mask used to wrap positions*/
+	private final int capacity;
+	private final int mask;
+
+	/**
+	 * Constructor for this class
+	 * @param mappedBuffer the mapped buffer containing this ring
+	 * @param offset the offset of this ring's region in the mapped buffer
+	 * @param capacity the capacity of the record data area. Must be a power of 2
+	 */
+	public MappedRingBuffer(MappedByteBuffer mappedBuffer, int offset, int capacity) {
+		if (Integer.bitCount(capacity) != 1 || capacity < ALIGNMENT) {
+			throw new IllegalArgumentException("Ring capacity must be a power of 2. Specified capacity is : " + capacity);
+		}
+		if (offset % ALIGNMENT != 0 || offset + HEADER_SIZE + capacity > mappedBuffer.capacity()) {
+			throw new IllegalArgumentException("Ring region [offset=" + offset + ", capacity=" + capacity + "] does not fit in the mapped buffer");
+		}
+		this.mappedBuffer = mappedBuffer;
+		long baseAddress = UNSAFE.getLong(mappedBuffer, BUFFER_ADDRESS_OFFSET) + offset;
+		this.tailAddress = baseAddress;
+		this.headAddress = baseAddress + POSITION_FIELD_SIZE;
+		this.dataAddress = baseAddress + HEADER_SIZE;
+		this.capacity = capacity;
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * Returns the size of a ring region for the specified capacity
+	 * @param capacity the record data capacity
+	 * @return the region size in bytes
+	 */
+	public static int regionSize(int capacity) {
+		return HEADER_SIZE + capacity;
+	}
+
+	/**
+	 * Returns the largest payload that may be written to this ring
+	 * @return the max payload length
+	 */
+	public int getMaxPayloadLength() {
+		return (this.capacity / 2) - RECORD_HEADER_SIZE;
+	}
+
+	/**
+	 * Resets the tail and head positions. Must only be called when neither producer nor consumer is active
+	 */
+	public void reset() {
+		UNSAFE.putLongVolatile(null, this.tailAddress, 0L);
+		UNSAFE.putLongVolatile(null, this.headAddress, 0L);
+	}
+
+	/**
+	 * Writes a record with the specified session epoch, correlation id and payload, if there is space available in this ring
+	 * @param epoch the session epoch of the record
+	 * @param correlationId the correlation id of the record
+	 * @param payload the payload bytes
+	 * @param offset the offset in the payload array
+	 * @param length the number of payload bytes
+	 * @return true if the record was written, false if the ring is full
+	 * @throws IllegalArgumentException if the payload is larger than {@link #getMaxPayloadLength()}
+	 */
+	public boolean write(long epoch, long correlationId, byte[] payload, int offset, int length) {
+		if (length > this.getMaxPayloadLength()) {
+			throw new IllegalArgumentException("Payload length : " + length + " exceeds max payload length : " + this.getMaxPayloadLength());
+		}
+		int recordLength = align(RECORD_HEADER_SIZE + length);
+		long tail = UNSAFE.getLong(this.tailAddress); // only the producer writes the tail
+		long head = UNSAFE.getLongVolatile(null, this.headAddress);
+		int index = (int) (tail & this.mask);
+		int toEnd = this.capacity - index;
+		int required = recordLength > toEnd ? recordLength + toEnd : recordLength;
+		if (tail + required - head > this.capacity) {
+			return false;
+		}
+		if (recordLength > toEnd) { // pad till the end of the ring and wrap around
+			UNSAFE.putInt(this.dataAddress + index, toEnd);
+			UNSAFE.putInt(this.dataAddress + index + 4, TYPE_PADDING);
+			tail += toEnd;
+			index = 0;
+		}
+		long recordAddress = this.dataAddress + index;
+		UNSAFE.putInt(recordAddress, length);
+		UNSAFE.putInt(recordAddress + 4, TYPE_MESSAGE);
+		UNSAFE.putLong(recordAddress + 8, epoch);
+		UNSAFE.putLong(recordAddress + 16, correlationId);
+		UNSAFE.copyMemory(payload, BYTE_ARRAY_OFFSET + offset, null, recordAddress + RECORD_HEADER_SIZE, length);
+		UNSAFE.putOrderedLong(null, this.tailAddress, tail + recordLength);
+		return true;
+	}
+
+	/**
+	 * Reads the next record, if any, from this ring
+	 * @return the read Record or null if the ring is empty
+	 */
+	public Record read() {
+		long head = UNSAFE.getLong(this.headAddress); // only the consumer writes the head
+		long tail = UNSAFE.getLongVolatile(null, this.tailAddress);
+		while (head < tail) {
+			long recordAddress = this.dataAddress + (int) (head & this.mask);
+			int length = UNSAFE.getInt(recordAddress);
+			if (UNSAFE.getInt(recordAddress + 4) == TYPE_PADDING) {
+				head += length;
+				continue;
+			}
+			long epoch = UNSAFE.getLong(recordAddress + 8);
+			long correlationId = UNSAFE.getLong(recordAddress + 16);
+			byte[] payload = new byte[length];
+			UNSAFE.copyMemory(null, recordAddress + RECORD_HEADER_SIZE, payload, BYTE_ARRAY_OFFSET, length);
+			UNSAFE.putOrderedLong(null, this.headAddress, head + align(RECORD_HEADER_SIZE + length));
+			return new Record(epoch, correlationId, payload);
+		}
+		if (head != UNSAFE.getLong(this.headAddress)) { // only padding was consumed
+			UNSAFE.putOrderedLong(null, this.headAddress, head);
+		}
+		return null;
+	}
+
+	/**
+	 * Returns true if there are no unread records in this ring
+	 * @return true if empty, false otherwise
+	 */
+	public boolean isEmpty() {
+		return UNSAFE.getLongVolatile(null, this.headAddress) == UNSAFE.getLongVolatile(null, this.tailAddress);
+	}
+
+	/**
+	 * Overriden super class method. Returns a readable string for this MappedRingBuffer
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return "MappedRingBuffer [capacity=" + this.capacity + ", tail=" + UNSAFE.getLongVolatile(null, this.tailAddress)
+				+ ", head=" + UNSAFE.getLongVolatile(null, this.headAddress) + ", mappedBuffer=" + this.mappedBuffer + "]";
+	}
+
+	/**
+	 * Helper method to align the specified length to {@link #ALIGNMENT}
+	 */
+	private static int align(int length) {
+		return (length + ALIGNMENT - 1) & ~(ALIGNMENT - 1);
+	}
+
+	/**
+	 * Helper class to hold a record read from the ring
+	 */
+	public static class Record {
+
+		/** The session epoch, correlation id and payload of the record*/
+		private final long epoch;
+		private final long correlationId;
+		private final byte[] payload;
+
+		/**
+		 * Constructor for this class
+		 * @param epoch the record session epoch
+		 * @param correlationId the record correlation id
+		 * @param payload the record payload
+		 */
+		public Record(long epoch, long correlationId, byte[] payload) {
+			this.epoch = epoch;
+			this.correlationId = correlationId;
+			this.payload = payload;
+		}
+
+		/** Start Getter methods */
+		public long getEpoch() {
+			return this.epoch;
+		}
+		public long getCorrelationId() {
+			return this.correlationId;
+		}
+		public byte[] getPayload() {
+			return this.payload;
+		}
+		/** End Getter methods */
+	}
+
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.runtime.impl.server.shm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <code>SharedMemoryChannel</code> is a memory mapped file containing a request {@link MappedRingBuffer} written by a client and read by the
+ * server and a response {@link MappedRingBuffer} written by the server and read by the client. The file is laid out as described below :
+ *
+ * <pre>
+ * +-------------------------------------------------------+--------------+---------------+
+ * | magic (int) | version (int) | ring capacity (int) | pad (int) | session epoch (long) ... | request ring | response ring |
+ * +---------------------------------------------------------------------------------------+--------------+---------------+
+ * </pre>
+ *
+ * The file is created by the server. Only one client may use the channel at a time - this is enforced using an exclusive lock on
+ * the file header that is released by the OS if the client process dies. Each client that opens the channel starts a new session by
+ * incrementing the session epoch. Records carry the epoch of the session they belong to and the server echoes it in responses, so that a
+ * client ignores responses meant for an earlier client. Responses left in the response ring by an earlier client are discarded on open.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class SharedMemoryChannel {
+
+	/** The file header size and fields*/
+	private static final int FILE_HEADER_SIZE = 64;
+	private static final int MAGIC = 0x5048414E; // "PHAN"
+	private static final int VERSION = 2;
+	private static final int MAGIC_OFFSET = 0;
+	private static final int VERSION_OFFSET = 4;
+	private static final int CAPACITY_OFFSET = 8;
+	private static final int EPOCH_OFFSET = 16;
+
+	/** The number of busy spins before yielding and the number of yields before parking, when idle*/
+	private static final int IDLE_SPINS = 100;
+	private static final int IDLE_YIELDS = 200;
+
+	/** The mapped file and its channel*/
+	private final RandomAccessFile mappedFile;
+	private final FileChannel fileChannel;
+
+	/** The request and response rings*/
+	private final MappedRingBuffer requestRing;
+	private final MappedRingBuffer responseRing;
+
+	/** The client lock, if held*/
+	private FileLock clientLock;
+
+	/** The session epoch of the client, if opened by one*/
+	private long epoch;
+
+	/**
+	 * Constructor for this class. Maps the specified file and initializes the rings
+	 */
+	private SharedMemoryChannel(RandomAccessFile mappedFile, MappedByteBuffer mappedBuffer, int ringCapacity) {
+		this.mappedFile = mappedFile;
+		this.fileChannel = mappedFile.getChannel();
+		this.requestRing = new MappedRingBuffer(mappedBuffer, FILE_HEADER_SIZE, ringCapacity);
+		this.responseRing = new MappedRingBuffer(mappedBuffer, FILE_HEADER_SIZE + MappedRingBuffer.regionSize(ringCapacity), ringCapacity);
+	}
+
+	/**
+	 * Creates a new SharedMemoryChannel, replacing the specified file if it exists
+	 * @param file the file to map
+	 * @param ringCapacity the capacity of each of the request and response rings. Must be a power of 2
+	 * @return the created SharedMemoryChannel
+	 * @throws IOException in case of errors creating or mapping the file
+	 */
+	public static SharedMemoryChannel create(File file, int ringCapacity) throws IOException {
+		if (file.exists() && !file.delete()) {
+			throw new IOException("Unable to delete existing shared memory file : " + file.getAbsolutePath());
+		}
+		RandomAccessFile mappedFile = new RandomAccessFile(file, "rw");
+		long fileSize = FILE_HEADER_SIZE + 2L * MappedRingBuffer.regionSize(ringCapacity);
+		mappedFile.setLength(fileSize);
+		MappedByteBuffer mappedBuffer = mappedFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+		SharedMemoryChannel channel = new SharedMemoryChannel(mappedFile, mappedBuffer, ringCapacity);
+		channel.requestRing.reset();
+		channel.responseRing.reset();
+		mappedBuffer.putLong(EPOCH_OFFSET, 0L);
+		mappedBuffer.putInt(CAPACITY_OFFSET, ringCapacity);
+		mappedBuffer.putInt(VERSION_OFFSET, VERSION);
+		mappedBuffer.putInt(MAGIC_OFFSET, MAGIC);
+		mappedBuffer.force();
+		return channel;
+	}
+
+	/**
+	 * Opens an existing SharedMemoryChannel, created by the server, for use by a client. Starts a new session and discards any responses
+	 * left over from the earlier one
+	 * @param file the file to map
+	 * @return the opened SharedMemoryChannel
+	 * @throws IOException in case of errors mapping the file or if the file is already in use by another client
+	 */
+	public static SharedMemoryChannel open(File file) throws IOException {
+		RandomAccessFile mappedFile = new RandomAccessFile(file, "rw");
+		try {
+			MappedByteBuffer mappedBuffer = mappedFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, mappedFile.length());
+			if (mappedBuffer.getInt(MAGIC_OFFSET) != MAGIC || mappedBuffer.getInt(VERSION_OFFSET) != VERSION) {
+				throw new IOException("Not a valid shared memory file : " + file.getAbsolutePath());
+			}
+			SharedMemoryChannel channel = new SharedMemoryChannel(mappedFile, mappedBuffer, mappedBuffer.getInt(CAPACITY_OFFSET));
+			try {
+				channel.clientLock = channel.fileChannel.tryLock(0, FILE_HEADER_SIZE, false);
+			} catch (OverlappingFileLockException e) {
+				// the lock is held by another client in this JVM
+			}
+			if (channel.clientLock == null) {
+				throw new IOException("Shared memory file is in use by another client : " + file.getAbsolutePath());
+			}
+			// the client lock is held, so no other client updates the epoch or reads the response ring
+			channel.epoch = mappedBuffer.getLong(EPOCH_OFFSET) + 1;
+			mappedBuffer.putLong(EPOCH_OFFSET, channel.epoch);
+			while (channel.responseRing.read() != null) {
+				// discard responses meant for the earlier session
+			}
+			return channel;
+		} catch (IOException e) {
+			mappedFile.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Closes this channel and releases the client lock, if held. The mapping itself is released when this channel is garbage collected
+	 */
+	public void close() {
+		try {
+			if (this.clientLock != null) {
+				this.clientLock.release();
+			}
+			this.mappedFile.close();
+		} catch (IOException e) {
+			// nothing to do here. The file will be replaced when the server is restarted
+		}
+	}
+
+	/**
+	 * Idles the calling thread when there is no work - busy spins first, then yields and finally parks for the specified duration
+	 * @param idleCount the number of successive idle iterations so far
+	 * @param parkNanos the park duration once spins and yields are exhausted
+	 * @return the incremented idle count
+	 */
+	public static int idle(int idleCount, long parkNanos) {
+		if (idleCount < IDLE_SPINS) {
+			// busy spin
+		} else if (idleCount < IDLE_SPINS + IDLE_YIELDS) {
+			Thread.yield();
+		} else {
+			LockSupport.parkNanos(parkNanos);
+			return idleCount;
+		}
+		return idleCount + 1;
+	}
+
+	/** Start Getter methods */
+	public long getEpoch() {
+		return this.epoch;
+	}
+	public MappedRingBuffer getRequestRing() {
+		return this.requestRing;
+	}
+	public MappedRingBuffer getResponseRing() {
+		return this.responseRing;
+	}
+	/** End Getter methods */
+
+}
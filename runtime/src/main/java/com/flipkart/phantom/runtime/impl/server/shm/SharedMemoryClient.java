@@ -0,0 +1,139 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.runtime.impl.server.shm;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <code>SharedMemoryClient</code> is a Java client for the {@link SharedMemoryServer}. Commands are written to the request ring following the
+ * Command protocol described in {@link com.flipkart.phantom.runtime.impl.server.netty.handler.command.CommandInterpreter} and the raw response
+ * bytes, also in the Command protocol, are returned. This client is thread-safe : writes to the request ring are serialized and a single
+ * reader thread dispatches responses to callers using the record correlation id. Responses from an earlier session of the channel, which may
+ * carry the same correlation ids, are ignored.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class SharedMemoryClient {
+
+	/** The default park duration for the response reader when idle*/
+	private static final long DEFAULT_IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+	/** The shared memory channel*/
+	private final SharedMemoryChannel channel;
+
+	/** The correlation id generator*/
+	private final AtomicLong correlationIds = new AtomicLong();
+
+	/** The in-flight requests, keyed by correlation id*/
+	private final Map<Long, CompletableFuture<byte[]>> inFlightRequests = new ConcurrentHashMap<Long, CompletableFuture<byte[]>>();
+
+	/** The response reader thread*/
+	private final Thread responseReader;
+
+	/** The running status of this client*/
+	private volatile boolean running = true;
+
+	/**
+	 * Constructor for this class
+	 * @param file the shared memory file created by the {@link SharedMemoryServer}
+	 * @throws IOException in case of errors opening the shared memory file
+	 */
+	public SharedMemoryClient(File file) throws IOException {
+		this.channel = SharedMemoryChannel.open(file);
+		this.responseReader = new Thread(new ResponseReader(), "SharedMemoryClient-ResponseReader");
+		this.responseReader.setDaemon(true);
+		this.responseReader.start();
+	}
+
+	/**
+	 * Sends the specified command and waits for its response
+	 * @param command the command bytes in the Command protocol
+	 * @param timeoutMillis the max time to wait for the response
+	 * @return the response bytes in the Command protocol
+	 * @throws Exception in case of errors or if the response is not received in time
+	 */
+	public byte[] execute(byte[] command, long timeoutMillis) throws Exception {
+		long correlationId = this.correlationIds.incrementAndGet();
+		CompletableFuture<byte[]> response = new CompletableFuture<byte[]>();
+		this.inFlightRequests.put(correlationId, response);
+		try {
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+			MappedRingBuffer requestRing = this.channel.getRequestRing();
+			int idleCount = 0;
+			while (true) {
+				synchronized (requestRing) {
+					if (requestRing.write(this.channel.getEpoch(), correlationId, command, 0, command.length)) {
+						break;
+					}
+				}
+				if (System.nanoTime() > deadline) {
+					throw new TimeoutException("Request ring full. Unable to send command in " + timeoutMillis + " ms");
+				}
+				idleCount = SharedMemoryChannel.idle(idleCount, DEFAULT_IDLE_PARK_NANOS);
+			}
+			return response.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+		} finally {
+			this.inFlightRequests.remove(correlationId);
+		}
+	}
+
+	/**
+	 * Closes this client and stops the response reader
+	 */
+	public void close() {
+		this.running = false;
+		try {
+			this.responseReader.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		this.channel.close();
+	}
+
+	/**
+	 * Reads responses and completes the corresponding in-flight requests
+	 */
+	private class ResponseReader implements Runnable {
+		public void run() {
+			MappedRingBuffer responseRing = channel.getResponseRing();
+			int idleCount = 0;
+			while (running) {
+				MappedRingBuffer.Record record = responseRing.read();
+				if (record == null) {
+					idleCount = SharedMemoryChannel.idle(idleCount, DEFAULT_IDLE_PARK_NANOS);
+					continue;
+				}
+				idleCount = 0;
+				if (record.getEpoch() != channel.getEpoch()) { // a late response to a request of an earlier client
+					continue;
+				}
+				CompletableFuture<byte[]> response = inFlightRequests.get(record.getCorrelationId());
+				if (response != null) { // the request may have timed out already
+					response.complete(record.getPayload());
+				}
+			}
+		}
+	}
+
+}
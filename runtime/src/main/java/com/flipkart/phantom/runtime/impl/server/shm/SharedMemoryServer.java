@@ -0,0 +1,515 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.runtime.impl.server.shm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import com.flipkart.phantom.event.ServiceProxyEvent;
+import com.flipkart.phantom.event.ServiceProxyEventProducer;
+import com.flipkart.phantom.runtime.impl.server.AbstractNetworkServer;
+import com.flipkart.phantom.runtime.impl.server.netty.handler.command.CommandInterpreter;
+import com.flipkart.phantom.task.impl.TaskHandler;
+import com.flipkart.phantom.task.impl.TaskHandlerExecutor;
+import com.flipkart.phantom.task.impl.TaskHandlerExecutorRepository;
+import com.flipkart.phantom.task.impl.collector.EventDispatchingSpanCollector;
+import com.flipkart.phantom.task.impl.interceptor.ServerRequestInterceptor;
+import com.flipkart.phantom.task.spi.Executor;
+import com.flipkart.phantom.task.spi.RequestContext;
+import com.flipkart.phantom.task.spi.TaskRequestWrapper;
+import com.flipkart.phantom.task.spi.TaskResult;
+import com.github.kristofa.brave.Brave;
+import com.github.kristofa.brave.FixedSampleRateTraceFilter;
+import com.github.kristofa.brave.ServerSpan;
+import com.github.kristofa.brave.ServerTracer;
+import com.github.kristofa.brave.TraceFilter;
+import com.google.common.base.Optional;
+
+/**
+ * <code>SharedMemoryServer</code> is an experimental implementation of the {@link AbstractNetworkServer} for clients co-located on the same host.
+ * Commands are exchanged over the request and response rings of a {@link SharedMemoryChannel} i.e. a memory mapped file, using the same
+ * Command protocol as the other servers (see {@link CommandInterpreter}). This avoids the system calls and copies of socket based transports.
+ * A single poller thread reads requests and dispatches them to the {@link TaskHandlerExecutorRepository}. Responses are written from the
+ * execution completion callbacks, or queued for the poller to write when the response ring is full, so that no thread waits for space in it.
+ * Responses too large for the response ring are replaced by an error response. Note that this server has to be initialized with a file rather than a port no. and that it supports one
+ * client process at a time. See {@link SharedMemoryClient} for a Java client.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+@SuppressWarnings("rawtypes")
+public class SharedMemoryServer extends AbstractNetworkServer {
+
+    /** Logger for this class*/
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedMemoryServer.class);
+
+    /** The default name of the server/service this server is serving*/
+    private static final String DEFAULT_SERVICE_NAME = "Shared Memory Server";
+
+    /** Event Type for publishing all events which are generated here */
+    private final static String COMMAND_HANDLER = "COMMAND_HANDLER";
+
+    /** The default value for tracing frequency. This value indicates that tracing if OFF*/
+    private static final TraceFilter NO_TRACING = new FixedSampleRateTraceFilter(-1);
+
+    /** The default capacity of each of the request and response rings*/
+    private static final int DEFAULT_RING_CAPACITY = 1024 * 1024;
+
+    /** The default park duration for the poller when idle*/
+    private static final long DEFAULT_IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /** The default max time to wait for space in the response ring*/
+    private static final long DEFAULT_RESPONSE_WRITE_TIMEOUT_MILLIS = 1000;
+
+	/** Default host name and port where this server is available */
+	public static final String DEFAULT_HOST = "localhost"; // unresolved local host name
+	public static final int DEFAULT_PORT = -1; // no valid port really
+
+    /** The local host name value*/
+    private static String hostName = DEFAULT_HOST;
+    static {
+    	try {
+			hostName = InetAddress.getLocalHost().getHostName();
+		} catch (UnknownHostException e) {
+			LOGGER.warn("Unable to resolve local host name. Will use default host name : " + DEFAULT_HOST);
+		}
+    }
+
+    /** The name for the service/server*/
+    private String serviceName = DEFAULT_SERVICE_NAME;
+
+    /** The name of the shared memory file and the directory containing it*/
+    private String fileName;
+    private String fileDir;
+
+    /** The shared memory file */
+    private File file;
+
+    /** The capacity of each of the request and response rings. Must be a power of 2*/
+    private int ringCapacity = DEFAULT_RING_CAPACITY;
+
+    /** The park duration for the poller when idle*/
+    private long idleParkNanos = DEFAULT_IDLE_PARK_NANOS;
+
+    /** The max time a response is queued for space in the response ring before it is dropped*/
+    private long responseWriteTimeoutMillis = DEFAULT_RESPONSE_WRITE_TIMEOUT_MILLIS;
+
+    /** The shared memory channel*/
+    private SharedMemoryChannel channel;
+
+    /** The request poller thread*/
+    private Thread poller;
+
+    /** The responses waiting for space in the response ring, written by the poller*/
+    private final Queue<PendingResponse> pendingResponses = new ConcurrentLinkedQueue<PendingResponse>();
+
+    /** The running status of this server*/
+    private volatile boolean running;
+
+    /** The TaskRepository to lookup TaskHandlerExecutors from */
+	private TaskHandlerExecutorRepository repository;
+
+    /** The publisher used to broadcast events to Service Proxy Subscribers */
+    private ServiceProxyEventProducer eventProducer;
+
+    /** The request tracing frequency for this server*/
+    private TraceFilter traceFilter = NO_TRACING;
+
+    /** The EventDispatchingSpanCollector instance used in tracing requests*/
+    private EventDispatchingSpanCollector eventDispatchingSpanCollector;
+
+    /**
+     * Interface method implementation. Returns {@link TRANSMISSION_PROTOCOL#SHM} (Shared memory)
+     * @see com.flipkart.phantom.runtime.spi.server.NetworkServer#getTransmissionProtocol()
+     */
+    public TransmissionProtocol getTransmissionProtocol() {
+        return TRANSMISSION_PROTOCOL.SHM;
+    }
+
+    /**
+     * Interface method implementation. Creates the shared memory file and then calls {@link #afterPropertiesSet()} on the super class
+     * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
+     */
+    public void afterPropertiesSet() throws Exception {
+        //Required properties
+        Assert.notNull(this.fileDir, "fileDir is a required property for SharedMemoryServer");
+        Assert.notNull(this.fileName, "fileName is a required property for SharedMemoryServer");
+        Assert.notNull(this.repository, "repository is a required property for SharedMemoryServer");
+        Assert.notNull(this.eventDispatchingSpanCollector, "The 'eventDispatchingSpanCollector' may not be null");
+
+        this.file = new File(new File(this.fileDir), this.fileName);
+        LOGGER.info("Shared memory file: " + this.file.getAbsolutePath());
+        try {
+            this.channel = SharedMemoryChannel.create(this.file, this.ringCapacity);
+        } catch (IOException e) {
+            throw new RuntimeException("Error creating shared memory file. ", e);
+        }
+        super.afterPropertiesSet();
+        LOGGER.info("Shared Memory Server startup complete");
+    }
+
+    /**
+     * Overriden super class method. Returns a readable string for this SharedMemoryServer
+     * @see java.lang.Object#toString()
+     */
+    public String toString(){
+        return "SharedMemoryServer [file=" + this.file.getAbsolutePath() + "] ";
+    }
+
+    /**
+     * Overriden superclass method. Starts the request poller thread
+     * @see com.flipkart.phantom.runtime.impl.server.AbstractNetworkServer#doStartServer()
+     */
+    protected void doStartServer() throws RuntimeException {
+        this.running = true;
+        this.poller = new RequestPoller();
+        this.poller.start();
+    }
+
+    /**
+     * Overriden superclass method. Stops the request poller thread and closes the shared memory channel
+     * @see com.flipkart.phantom.runtime.impl.server.AbstractNetworkServer#doStopServer()
+     */
+    protected void doStopServer() throws RuntimeException {
+        this.running = false;
+        try {
+            this.poller.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.channel.close();
+    }
+
+    @Override
+    public String getServerType() {
+        return "Shared Memory Server";
+    }
+
+    @Override
+    public String getServerEndpoint() {
+        return this.file.toString();
+    }
+
+    /**
+     * The request poller thread
+     */
+    class RequestPoller extends Thread {
+        RequestPoller() {
+            this.setName("SharedMemory_Poller");
+        }
+        public void run() {
+            MappedRingBuffer requestRing = channel.getRequestRing();
+            int idleCount = 0;
+            while (running) {
+                writePendingResponses();
+                MappedRingBuffer.Record record = requestRing.read();
+                if (record == null) {
+                    idleCount = SharedMemoryChannel.idle(idleCount, idleParkNanos);
+                    continue;
+                }
+                idleCount = 0;
+                try {
+                    processRequest(record);
+                } catch (Exception e) {
+                    LOGGER.error("Error processing shared memory request : " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the Command in the specified record and dispatches it for execution. The response is written from the execution completion callback
+     * for {@link TaskHandler#SYNC_CALL} commands and immediately for others.
+     * @param record the request record
+     */
+    private void processRequest(final MappedRingBuffer.Record record) {
+        // the poller thread is bound to the server span of each request in turn, and restored once the request is dispatched
+        ServerSpan pollerSpan = Brave.getServerSpanThreadBinder().getCurrentServerSpan();
+        try {
+            this.dispatchRequest(record);
+        } finally {
+            Brave.getServerSpanThreadBinder().setCurrentSpan(pollerSpan);
+        }
+    }
+
+    /**
+     * Helper method to read the Command in the specified record and dispatch it for execution
+     */
+    private void dispatchRequest(final MappedRingBuffer.Record record) {
+        final long receiveTime = System.currentTimeMillis();
+        CommandInterpreter.ProxyCommand readCommand = null;
+        TaskHandlerExecutor<?> executor = null;
+        ServerRequestInterceptor<TaskRequestWrapper, TaskResult> serverRequestInterceptor = null;
+        ServerSpan serverSpan = null;
+        try {
+            readCommand = new CommandInterpreter().readCommand(new ByteArrayInputStream(record.getPayload()));
+            LOGGER.debug("Read Command : " + readCommand);
+            String pool = (String) readCommand.getCommandParams().get("pool");
+
+            // Prepare the request Wrapper
+            TaskRequestWrapper<byte[]> taskRequestWrapper = new TaskRequestWrapper<byte[]>();
+            taskRequestWrapper.setCommandName(readCommand.getCommand());
+            taskRequestWrapper.setData(readCommand.getCommandData());
+            taskRequestWrapper.setParams(readCommand.getCommandParams());
+            // set the service name for the request
+            taskRequestWrapper.setServiceName(Optional.of(this.serviceName));
+
+            // Create and process a Server request interceptor. This will initialize the server tracing
+            serverRequestInterceptor = this.initializeServerTracing(taskRequestWrapper);
+            serverSpan = Brave.getServerSpanThreadBinder().getCurrentServerSpan();
+
+            /*Try to execute command using ThreadPool, if "pool" is found in the command, else the command name */
+            executor = (TaskHandlerExecutor<?>) (Executor<?, ?>) this.repository.getExecutor(readCommand.getCommand(), pool != null ? pool : readCommand.getCommand(), taskRequestWrapper);
+            if (executor == null) {
+                throw new IllegalStateException("No executor found for command : " + readCommand.getCommand());
+            }
+        } catch (Exception e) {
+            RuntimeException runtimeException = new RuntimeException("Error in executing command : " + readCommand, e);
+            this.completeRequest(record, receiveTime, readCommand, executor, serverRequestInterceptor, serverSpan,
+                    new TaskResult(false, e.getMessage()), Optional.of(runtimeException));
+            return;
+        }
+        final CommandInterpreter.ProxyCommand command = readCommand;
+        final TaskHandlerExecutor<?> commandExecutor = executor;
+        final ServerRequestInterceptor<TaskRequestWrapper, TaskResult> interceptor = serverRequestInterceptor;
+        final ServerSpan span = serverSpan;
+        if (executor.getCallInvocationType() == TaskHandler.SYNC_CALL) {
+            executor.observe().subscribe(
+                (result) -> this.completeRequest(record, receiveTime, command, commandExecutor, interceptor, span,
+                        result, Optional.<RuntimeException>absent()),
+                (exception) -> this.completeRequest(record, receiveTime, command, commandExecutor, interceptor, span,
+                        new TaskResult(false, exception.getMessage()),
+                        Optional.of(new RuntimeException("Error in executing command : " + command, exception))));
+        } else {
+            /* dont wait for the result. send back a response that the call has been dispatched for async execution */
+            executor.queue();
+            this.completeRequest(record, receiveTime, command, executor, interceptor, span,
+                    new TaskResult(true, TaskHandlerExecutor.ASYNC_QUEUED), Optional.<RuntimeException>absent());
+        }
+    }
+
+    /**
+     * Writes the response for a request, informs the server request tracer and publishes the request event. The server span of the request
+     * is bound to the completing thread meanwhile, and the span bound earlier restored after
+     */
+    private void completeRequest(MappedRingBuffer.Record request, long receiveTime, CommandInterpreter.ProxyCommand readCommand, TaskHandlerExecutor<?> executor,
+                                 ServerRequestInterceptor<TaskRequestWrapper, TaskResult> serverRequestInterceptor, ServerSpan serverSpan, TaskResult result,
+                                 Optional<RuntimeException> transportError) {
+        ServerSpan boundSpan = Brave.getServerSpanThreadBinder().getCurrentServerSpan();
+        Brave.getServerSpanThreadBinder().setCurrentSpan(serverSpan);
+        try {
+            this.publishResponse(request, receiveTime, readCommand, executor, serverRequestInterceptor, result, transportError);
+        } finally {
+            Brave.getServerSpanThreadBinder().setCurrentSpan(boundSpan);
+        }
+    }
+
+    /**
+     * Helper method to write the response for a request, inform the server request tracer and publish the request event
+     */
+    private void publishResponse(MappedRingBuffer.Record request, long receiveTime, CommandInterpreter.ProxyCommand readCommand, TaskHandlerExecutor<?> executor,
+                                 ServerRequestInterceptor<TaskRequestWrapper, TaskResult> serverRequestInterceptor, TaskResult result,
+                                 Optional<RuntimeException> transportError) {
+        try {
+            this.writeResponse(request, result);
+        } catch (Exception e) {
+            LOGGER.error("Error writing response for command : " + readCommand + ". Error is : " + e.getMessage(), e);
+        } finally {
+            // finally inform the server request tracer
+            if (serverRequestInterceptor != null) {
+                serverRequestInterceptor.process(result, transportError);
+            }
+            if (this.eventProducer != null) {
+                if (readCommand == null) { // the command could not be read
+                    return;
+                }
+                // Publishes event both in case of success and failure.
+                final Map<String, Object> params = readCommand.getCommandParams();
+                ServiceProxyEvent.Builder eventBuilder;
+                if (executor == null) {
+                    eventBuilder = new ServiceProxyEvent.Builder(readCommand.getCommand(), COMMAND_HANDLER).withEventSource(getClass().getName());
+                } else {
+                    eventBuilder = executor.getEventBuilder().withCommandData(executor).withEventSource(executor.getClass().getName());
+                }
+                eventBuilder.withRequestId((String) params.get("requestID")).withRequestReceiveTime(receiveTime);
+                if (params.containsKey("requestSentTime")) {
+                    eventBuilder.withRequestSentTime(Long.valueOf((String) params.get("requestSentTime")));
+                }
+                this.eventProducer.publishEvent(eventBuilder.build());
+            } else {
+                LOGGER.debug("eventProducer not set, not publishing event");
+            }
+        }
+    }
+
+    /**
+     * Writes the specified result to the response ring following the Command protocol, or queues it for the poller to write if the ring is full.
+     * A result too large for the response ring is replaced by an error response, so that the client does not wait for a response that never arrives
+     */
+    private void writeResponse(MappedRingBuffer.Record request, TaskResult result) throws Exception {
+        MappedRingBuffer responseRing = this.channel.getResponseRing();
+        byte[] response = this.toResponseBytes(result);
+        if (response.length > responseRing.getMaxPayloadLength()) {
+            LOGGER.error("Response of " + response.length + " bytes exceeds the max response length of " + responseRing.getMaxPayloadLength()
+                    + " bytes. Sending an error response for correlation id : " + request.getCorrelationId());
+            response = this.toResponseBytes(new TaskResult(false, "Response of " + response.length + " bytes exceeds the max response length of "
+                    + responseRing.getMaxPayloadLength() + " bytes"));
+        }
+        PendingResponse pendingResponse = new PendingResponse(request.getEpoch(), request.getCorrelationId(), response,
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.responseWriteTimeoutMillis));
+        if (!this.pendingResponses.isEmpty() || !pendingResponse.write(responseRing)) {
+            this.pendingResponses.add(pendingResponse); // the poller writes it once there is space
+        }
+    }
+
+    /**
+     * Writes the queued responses, in order, while there is space in the response ring. Drops the responses that have waited longer than
+     * {@link #responseWriteTimeoutMillis}
+     */
+    private void writePendingResponses() {
+        MappedRingBuffer responseRing = this.channel.getResponseRing();
+        PendingResponse pendingResponse;
+        while ((pendingResponse = this.pendingResponses.peek()) != null) {
+            if (!pendingResponse.write(responseRing)) {
+                if (System.nanoTime() - pendingResponse.deadline < 0) {
+                    return;
+                }
+                LOGGER.error("Response ring full. Dropping response for correlation id : " + pendingResponse.correlationId);
+            }
+            this.pendingResponses.poll();
+        }
+    }
+
+    /**
+     * Helper method to encode the specified result following the Command protocol
+     */
+    private byte[] toResponseBytes(TaskResult result) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new CommandInterpreter().writeCommandExecutionResponse(outputStream, result);
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * A response to be written to the response ring, with the session epoch and correlation id of its request
+     */
+    private static class PendingResponse {
+        private final long epoch;
+        private final long correlationId;
+        private final byte[] response;
+        private final long deadline;
+        PendingResponse(long epoch, long correlationId, byte[] response, long deadline) {
+            this.epoch = epoch;
+            this.correlationId = correlationId;
+            this.response = response;
+            this.deadline = deadline;
+        }
+        boolean write(MappedRingBuffer responseRing) {
+            synchronized (responseRing) { // responses are written from multiple execution threads
+                return responseRing.write(this.epoch, this.correlationId, this.response, 0, this.response.length);
+            }
+        }
+    }
+
+    /**
+     * Initializes server tracing for the specified request
+     * @param executorRequest the Command request
+     * @return the initialized ServerRequestInterceptor
+     */
+    private ServerRequestInterceptor<TaskRequestWrapper, TaskResult> initializeServerTracing(TaskRequestWrapper executorRequest) {
+        ServerRequestInterceptor<TaskRequestWrapper, TaskResult> serverRequestInterceptor = new ServerRequestInterceptor<TaskRequestWrapper, TaskResult>();
+    	List<TraceFilter> traceFilters = Arrays.<TraceFilter>asList(this.traceFilter);
+    	ServerTracer serverTracer = Brave.getServerTracer(this.eventDispatchingSpanCollector, traceFilters);
+    	serverRequestInterceptor.setEndPointSubmitter(Brave.getEndPointSubmitter());
+        serverRequestInterceptor.setServerTracer(serverTracer);
+        serverRequestInterceptor.setServiceHost(SharedMemoryServer.hostName);
+        serverRequestInterceptor.setServicePort(DEFAULT_PORT);
+        serverRequestInterceptor.setServiceName(this.serviceName);
+        // now process the request to initialize tracing
+        serverRequestInterceptor.process(executorRequest);
+		// set the server request context on the received request
+    	ServerSpan serverSpan = Brave.getServerSpanThreadBinder().getCurrentServerSpan();
+    	RequestContext serverRequestContext = new RequestContext();
+    	serverRequestContext.setCurrentServerSpan(serverSpan);
+    	executorRequest.setRequestContext(Optional.of(serverRequestContext));
+        return serverRequestInterceptor;
+    }
+
+    /** Start Getter/Setter methods */
+    public void setServiceName(String serviceName) {
+		this.serviceName = serviceName;
+	}
+    public String getFileDir() {
+        return this.fileDir;
+    }
+    public void setFileDir(String fileDir) {
+        this.fileDir = fileDir;
+    }
+    public String getFileName() {
+        return this.fileName;
+    }
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+    public int getRingCapacity() {
+        return this.ringCapacity;
+    }
+    public void setRingCapacity(int ringCapacity) {
+        this.ringCapacity = ringCapacity;
+    }
+    public long getIdleParkNanos() {
+        return this.idleParkNanos;
+    }
+    public void setIdleParkNanos(long idleParkNanos) {
+        this.idleParkNanos = idleParkNanos;
+    }
+    public long getResponseWriteTimeoutMillis() {
+        return this.responseWriteTimeoutMillis;
+    }
+    public void setResponseWriteTimeoutMillis(long responseWriteTimeoutMillis) {
+        this.responseWriteTimeoutMillis = responseWriteTimeoutMillis;
+    }
+    public TaskHandlerExecutorRepository getRepository() {
+        return this.repository;
+    }
+    public void setRepository(TaskHandlerExecutorRepository repository) {
+        this.repository = repository;
+    }
+    public void setEventProducer(ServiceProxyEventProducer eventProducer) {
+        this.eventProducer = eventProducer;
+    }
+	public void setTraceFilter(TraceFilter traceFilter) {
+		this.traceFilter = traceFilter;
+	}
+	public void setEventDispatchingSpanCollector(EventDispatchingSpanCollector eventDispatchingSpanCollector) {
+		this.eventDispatchingSpanCollector = eventDispatchingSpanCollector;
+	}
+    /** End Getter/Setter methods */
+
+}
@@ -36,7 +36,7 @@ public interface NetworkServer {
 	 * The supported protocols
 	 */
 	public enum TRANSMISSION_PROTOCOL implements TransmissionProtocol {
-		TCP,UDP,UDS;
+		TCP,UDP,UDS,SHM;
 	}
 
 	/**
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.runtime.impl.server.shm;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link MappedRingBuffer} and {@link SharedMemoryChannel}
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class MappedRingBufferTest {
+
+    private File file;
+    private SharedMemoryChannel channel;
+
+    @Before
+    public void setUp() throws Exception {
+        this.file = File.createTempFile("phantom", ".shm");
+        this.channel = SharedMemoryChannel.create(this.file, 256);
+    }
+
+    @After
+    public void tearDown() {
+        this.channel.close();
+        this.file.delete();
+    }
+
+    @Test
+    public void testReadWrite() {
+        MappedRingBuffer ring = this.channel.getRequestRing();
+        assertTrue("Ring not empty on create", ring.isEmpty() && ring.read() == null);
+        assertTrue("Write failed", ring.write(0L, 1L, "testCommand\n".getBytes(), 0, 12));
+        MappedRingBuffer.Record record = ring.read();
+        assertTrue("Read failed", record != null && record.getCorrelationId() == 1L);
+        assertTrue("Payload mismatch: " + new String(record.getPayload()), "testCommand\n".equals(new String(record.getPayload())));
+        assertTrue("Ring not empty after read", ring.isEmpty());
+    }
+
+    @Test
+    public void testWrapAround() {
+        MappedRingBuffer ring = this.channel.getRequestRing();
+        for (int i = 0; i < 100; i++) {
+            String payload = "testCommand p" + i + "=v" + i + "\n";
+            assertTrue("Write failed at : " + i, ring.write(0L, i, payload.getBytes(), 0, payload.length()));
+            MappedRingBuffer.Record record = ring.read();
+            assertTrue("Correlation id mismatch at : " + i, record != null && record.getCorrelationId() == i);
+            assertTrue("Payload mismatch at : " + i, payload.equals(new String(record.getPayload())));
+        }
+    }
+
+    @Test
+    public void testFullRing() {
+        MappedRingBuffer ring = this.channel.getResponseRing();
+        byte[] payload = new byte[ring.getMaxPayloadLength()];
+        assertTrue("Write failed", ring.write(0L, 1L, payload, 0, payload.length));
+        assertTrue("Write failed", ring.write(0L, 2L, payload, 0, payload.length));
+        assertTrue("Write to a full ring passed (which should not)", !ring.write(0L, 3L, payload, 0, payload.length));
+        assertTrue("Read failed", ring.read().getCorrelationId() == 1L);
+        assertTrue("Write failed after read", ring.write(0L, 3L, payload, 0, payload.length));
+    }
+
+    @Test
+    public void testSingleClient() throws Exception {
+        SharedMemoryChannel client = SharedMemoryChannel.open(this.file);
+        try {
+            SharedMemoryChannel.open(this.file);
+            assertTrue("Second client open passed (which should not)", false);
+        } catch (java.io.IOException e) {
+            // expected
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testNewSession() throws Exception {
+        SharedMemoryChannel client = SharedMemoryChannel.open(this.file);
+        long firstEpoch = client.getEpoch();
+        // a response to the first client, left unread when it goes away
+        assertTrue("Write failed", this.channel.getResponseRing().write(firstEpoch, 1L, "response\n".getBytes(), 0, 9));
+        client.close();
+        client = SharedMemoryChannel.open(this.file);
+        try {
+            assertTrue("Epoch not incremented for new session", client.getEpoch() == firstEpoch + 1);
+            assertTrue("Earlier session response not discarded on open", client.getResponseRing().read() == null);
+        } finally {
+            client.close();
+        }
+    }
+
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.http.impl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.HttpClientUtils;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.flipkart.phantom.task.spi.loadbalancer.Endpoint;
+
+/**
+ * <code>AsyncHttpConnectionPool</code> is a sub-type of {@link HttpConnectionPool} that executes requests using a non-blocking (NIO) Http client.
+ * Requests are sent and responses read by a small, fixed set of I/O dispatcher threads (see {@link #setIoThreadCount(int)}) and completion is
+ * signalled via callbacks. No thread is held for the duration of an in-flight request, so a large number of concurrent upstream requests need
+ * only a few threads.
+ * {@link HttpProxy} instances configured with this pool are executed using the {@link AsyncHttpProxyExecutor}.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class AsyncHttpConnectionPool extends HttpConnectionPool {
+
+    /** logger */
+    private static Logger logger = LoggerFactory.getLogger(AsyncHttpConnectionPool.class);
+
+    /** The non-blocking HTTP client */
+    private CloseableHttpAsyncClient asyncClient;
+
+    /** The number of I/O dispatcher threads */
+    private int ioThreadCount = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Overriden superclass method. Initializes the non-blocking client and its connection pool
+     * @see com.flipkart.phantom.http.impl.HttpConnectionPool#initConnectionPool()
+     */
+    public void initConnectionPool() {
+
+        // max concurrent requests = max connections + request queue size
+        this.processQueue = new Semaphore(this.getRequestQueueSize() + this.getMaxConnections());
+
+        IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                .setIoThreadCount(this.ioThreadCount)
+                .setConnectTimeout(this.getConnectionTimeout())
+                .setSoTimeout(this.getOperationTimeout())
+                .build();
+
+        // registry both http and https schemes, as plain connections like the blocking pool does
+        PoolingNHttpClientConnectionManager cm;
+        try {
+            cm = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(ioReactorConfig), null,
+                    RegistryBuilder.<SchemeIOSessionStrategy>create()
+                            .register("http", NoopIOSessionStrategy.INSTANCE)
+                            .register("https", NoopIOSessionStrategy.INSTANCE)
+                            .build(),
+                    null, null, this.getTimeToLiveInSecs(), TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new RuntimeException("Error creating I/O reactor for async http connection pool : " + this.getHost() + ":" + this.getPort(), e);
+        }
+
+        // Max pool size and max connections for host:port
+        cm.setMaxTotal(this.getMaxConnections());
+        cm.setDefaultMaxPerRoute(this.getMaxConnections());
+        cm.setMaxPerRoute(new HttpRoute(new HttpHost(this.getHost(), this.getPort())), this.getMaxConnections());
+
+        // set timeouts
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(this.getConnectionTimeout())
+                .setSocketTimeout(this.getOperationTimeout())
+                .build();
+
+        this.asyncClient = HttpAsyncClients.custom()
+                .setConnectionManager(cm)
+                .setDefaultRequestConfig(requestConfig)
+                .build();
+        this.asyncClient.start();
+
+        this.initEndpoints();
+    }
+
+    /**
+     * Overriden superclass method. Checks the health of the endpoint using the non-blocking client
+     * @see com.flipkart.phantom.http.impl.HttpConnectionPool#checkHealth(com.flipkart.phantom.task.spi.loadbalancer.Endpoint)
+     */
+    protected boolean checkHealth(Endpoint endpoint) {
+        HttpResponse response = null;
+        try {
+            response = this.asyncClient.execute(this.getTarget(endpoint), new HttpGet(this.getHealthCheckUri()), null)
+                    .get(this.getOperationTimeout(), TimeUnit.MILLISECONDS);
+            return isHealthy(response);
+        } catch (Exception e) {
+            return false;
+        } finally {
+            HttpClientUtils.closeQuietly(response);
+        }
+    }
+
+    /**
+     * Overriden superclass method. Executes the request and waits for the response. Provided for callers that need a blocking execution
+     * @see com.flipkart.phantom.http.impl.HttpConnectionPool#execute(org.apache.http.client.methods.HttpRequestBase, java.util.List)
+     */
+    public HttpResponse execute(HttpRequestBase request, List<Map.Entry<String,String>> headers) throws Exception {
+        try {
+            return this.executeAsync(request, headers, null).get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Method to execute a request asynchronously. The specified callback is invoked from an I/O dispatcher thread on completion and
+     * must therefore not block.
+     * @param request HttpRequestBase object
+     * @param headers the List of header tuples which are added to the request
+     * @param callback the callback to notify on completion, may be null
+     * @return Future for the HttpResponse
+     * @throws Exception if the process queue is full
+     */
+    public Future<HttpResponse> executeAsync(HttpRequestBase request, List<Map.Entry<String,String>> headers,
+            final FutureCallback<HttpResponse> callback) throws Exception {
+        return this.executeAsync(request, headers, callback, null);
+    }
+
+    /**
+     * Method to execute an attempt of a request, that may be retried or hedged, asynchronously. The attempt is sent to an endpoint other than
+     * the ones attempted already, if possible. The specified callback is invoked from an I/O dispatcher thread on completion and must
+     * therefore not block.
+     * @param request HttpRequestBase object
+     * @param headers the List of header tuples which are added to the request
+     * @param callback the callback to notify on completion, may be null
+     * @param attemptedEndpoints the endpoints that earlier attempts of the request were sent to. The endpoint selected for this attempt is
+     * added to it. May be null
+     * @return Future for the HttpResponse
+     * @throws Exception if the process queue is full
+     */
+    public Future<HttpResponse> executeAsync(HttpRequestBase request, List<Map.Entry<String,String>> headers,
+            final FutureCallback<HttpResponse> callback, List<Endpoint> attemptedEndpoints) throws Exception {
+        setRequestHeaders(request, headers);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Sending Http request: " + request.getURI());
+            logger.debug("Sending Http headers: " + headers);
+        }
+        if (!processQueue.tryAcquire()) {
+            throw new Exception("Process queue full!");
+        }
+        final Endpoint endpoint = this.selectEndpoint(request, attemptedEndpoints);
+        final long startNanos = System.nanoTime();
+        try {
+            FutureCallback<HttpResponse> releasingCallback = new FutureCallback<HttpResponse>() {
+                public void completed(HttpResponse response) {
+                    processQueue.release();
+                    releaseEndpoint(endpoint, startNanos, response);
+                    if (callback != null) {
+                        callback.completed(response);
+                    }
+                }
+                public void failed(Exception e) {
+                    processQueue.release();
+                    releaseEndpoint(endpoint, startNanos, null);
+                    if (callback != null) {
+                        callback.failed(e);
+                    }
+                }
+                public void cancelled() {
+                    processQueue.release();
+                    releaseEndpoint(endpoint, startNanos, null);
+                    if (callback != null) {
+                        callback.cancelled();
+                    }
+                }
+            };
+            return this.send(request, endpoint, releasingCallback);
+        } catch (Exception e) {
+            processQueue.release();
+            this.releaseEndpoint(endpoint, startNanos, null);
+            throw e;
+        }
+    }
+
+    /**
+     * Sends the specified request to the selected endpoint. Sub-types may override this method to send requests using a different client
+     * @param request the request to send
+     * @param endpoint the selected Endpoint or null if endpoints are not specified
+     * @param callback the callback to notify on completion
+     * @return Future for the HttpResponse
+     * @throws Exception if the request cannot be sent
+     */
+    protected Future<HttpResponse> send(HttpRequestBase request, Endpoint endpoint, FutureCallback<HttpResponse> callback) throws Exception {
+        return this.asyncClient.execute(endpoint == null ? this.getTargetHost() : this.getTarget(endpoint), request, callback);
+    }
+
+    /**
+     * Overriden superclass method. Shuts down the non-blocking client and its I/O dispatcher threads
+     * @see com.flipkart.phantom.http.impl.HttpConnectionPool#shutdown()
+     */
+    public void shutdown() {
+        if (this.endpointGroup != null) {
+            this.endpointGroup.shutdown();
+        }
+        try {
+            this.asyncClient.close();
+        } catch (Exception e) {
+            logger.warn("Error shutting down async http connection pool : " + this.getHost() + ":" + this.getPort(), e);
+        }
+    }
+
+    /** Getters / Setters */
+    public int getIoThreadCount() {
+        return this.ioThreadCount;
+    }
+    public void setIoThreadCount(int ioThreadCount) {
+        this.ioThreadCount = ioThreadCount;
+    }
+    /** Getters / Setters */
+
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.http.impl;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.utils.HttpClientUtils;
+import org.apache.http.concurrent.FutureCallback;
+
+import com.flipkart.phantom.event.ServiceProxyEvent;
+import com.flipkart.phantom.task.spi.Executor;
+import com.flipkart.phantom.task.spi.TaskContext;
+import com.flipkart.phantom.task.spi.interceptor.RequestInterceptor;
+import com.flipkart.phantom.task.spi.interceptor.ResponseInterceptor;
+import com.github.kristofa.brave.Brave;
+import com.github.kristofa.brave.ServerSpan;
+import com.google.common.base.Optional;
+import com.netflix.hystrix.HystrixCommandGroupKey;
+import com.netflix.hystrix.HystrixCommandKey;
+import com.netflix.hystrix.HystrixCommandProperties;
+import com.netflix.hystrix.HystrixObservableCommand;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * <code>AsyncHttpProxyExecutor</code> is a {@link HystrixObservableCommand} for executing HTTP proxy requests using the non-blocking client of
+ * an {@link AsyncHttpConnectionPool}. The observable returned by {@link #observe()} is completed from the I/O callbacks of the client and
+ * no thread is held while the request is in-flight. Concurrency is therefore limited using Hystrix semaphore isolation, sized to the max
+ * connections and request queue size of the pool, instead of a thread pool.
+ * Response interceptors are invoked from the I/O thread that completes the request. Brave keeps client span state in a thread local that is
+ * not visible on this thread, so client traces of requests executed by this command do not record the client receive annotation.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class AsyncHttpProxyExecutor extends HystrixObservableCommand<HttpResponse> implements Executor<HttpRequestWrapper, HttpResponse> {
+
+    /** Event Type for publishing all events which are generated here */
+    private final static String HTTP_HANDLER = "HTTP_HANDLER";
+
+    /** Http Request Wrapper */
+    private HttpRequestWrapper httpRequestWrapper;
+
+    /** the proxy client */
+    private HttpProxy proxy;
+
+    /** Event which records various parameters of this request execution & published later */
+    protected ServiceProxyEvent.Builder eventBuilder;
+
+    /** List of request and response interceptors */
+    private List<RequestInterceptor<HttpRequestWrapper>> requestInterceptors = new LinkedList<RequestInterceptor<HttpRequestWrapper>>();
+    private List<ResponseInterceptor<HttpResponse>> responseInterceptors = new LinkedList<ResponseInterceptor<HttpResponse>>();
+
+    /** only constructor uses the proxy client, task context and the http requestWrapper */
+    public AsyncHttpProxyExecutor(HttpProxy proxy, TaskContext taskContext, HttpRequestWrapper httpRequestWrapper) {
+        super(
+            Setter.withGroupKey(HystrixCommandGroupKey.Factory.asKey(proxy.getGroupKey()))
+                    .andCommandKey(HystrixCommandKey.Factory.asKey(proxy.getCommandKey()))
+                    .andCommandPropertiesDefaults(HystrixCommandProperties.Setter()
+                            .withExecutionIsolationStrategy(HystrixCommandProperties.ExecutionIsolationStrategy.SEMAPHORE)
+                            .withExecutionIsolationSemaphoreMaxConcurrentRequests(proxy.getPool().getMaxConnections() + proxy.getPool().getRequestQueueSize())
+                            .withFallbackIsolationSemaphoreMaxConcurrentRequests(proxy.getPool().getMaxConnections() + proxy.getPool().getRequestQueueSize())
+                            .withExecutionTimeoutInMilliseconds(proxy.getPool().getOperationTimeout())));
+        this.proxy = proxy;
+        this.httpRequestWrapper = httpRequestWrapper;
+        this.eventBuilder = new ServiceProxyEvent.Builder(this.httpRequestWrapper.getUri(), HTTP_HANDLER);
+    }
+
+    /**
+     * Abstract method implementation. Sends the request using the non-blocking client and emits the response from the completion callback.
+     * The in-flight request is cancelled if the returned observable is unsubscribed from, say when the command times out.
+     * @see com.netflix.hystrix.HystrixObservableCommand#construct()
+     */
+    @Override
+    protected Observable<HttpResponse> construct() {
+        return Observable.create(new Observable.OnSubscribe<HttpResponse>() {
+            public void call(final Subscriber<? super HttpResponse> subscriber) {
+                eventBuilder.withRequestExecutionStartTime(System.currentTimeMillis());
+                final ServerSpan serverSpan = httpRequestWrapper.getRequestContext().isPresent() ?
+                        httpRequestWrapper.getRequestContext().get().getCurrentServerSpan() : null;
+                ServerSpan callerSpan = bindSpan(serverSpan);
+                Future<HttpResponse> responseFuture;
+                try {
+                    for (RequestInterceptor<HttpRequestWrapper> requestInterceptor : requestInterceptors) {
+                        requestInterceptor.process(httpRequestWrapper);
+                    }
+                    responseFuture = proxy.doRequestAsync(httpRequestWrapper, new FutureCallback<HttpResponse>() {
+                        public void completed(HttpResponse response) {
+                            processResponse(serverSpan, response, Optional.<RuntimeException>absent());
+                            if (subscriber.isUnsubscribed()) {
+                                // close the response if the command timed out
+                                HttpClientUtils.closeQuietly(response);
+                                return;
+                            }
+                            subscriber.onNext(response);
+                            subscriber.onCompleted();
+                        }
+                        public void failed(Exception e) {
+                            RuntimeException transportException = e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+                            processResponse(serverSpan, null, Optional.of(transportException));
+                            subscriber.onError(transportException);
+                        }
+                        public void cancelled() {
+                            CancellationException cancellationException = new CancellationException("Http request cancelled : " + httpRequestWrapper.getUri());
+                            processResponse(serverSpan, null, Optional.<RuntimeException>of(cancellationException));
+                            subscriber.onError(cancellationException);
+                        }
+                    });
+                } catch (Exception e) {
+                    RuntimeException transportException = e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+                    processResponse(serverSpan, null, Optional.of(transportException));
+                    subscriber.onError(transportException);
+                    return;
+                } finally {
+                    bindSpan(callerSpan);
+                }
+                final Future<HttpResponse> inFlightRequest = responseFuture;
+                subscriber.add(Subscriptions.create(() -> {
+                    if (!inFlightRequest.isDone()) {
+                        inFlightRequest.cancel(true);
+                    }
+                }));
+            }
+        });
+    }
+
+    /**
+     * Executes this command and waits for the response
+     * @see com.flipkart.phantom.task.spi.Executor#execute()
+     */
+    public HttpResponse execute() {
+        return this.observe().toBlocking().single();
+    }
+
+    /**
+     * Interface method implementation. Returns the name of the {@link HttpProxy} used by this Executor
+     * @see com.flipkart.phantom.task.spi.Executor#getServiceName()
+     */
+    public Optional<String> getServiceName() {
+        return Optional.of(this.proxy.getName());
+    }
+
+    /**
+     * Interface method implementation. Returns the HttpRequestWrapper instance that this Executor was created with
+     * @see com.flipkart.phantom.task.spi.Executor#getRequestWrapper()
+     */
+    public HttpRequestWrapper getRequestWrapper() {
+        return this.httpRequestWrapper;
+    }
+
+    /**
+     * Interface method implementation. Adds the RequestInterceptor to the list of request interceptors that will be invoked
+     * @see com.flipkart.phantom.task.spi.Executor#addRequestInterceptor(com.flipkart.phantom.task.spi.interceptor.RequestInterceptor)
+     */
+    public void addRequestInterceptor(RequestInterceptor<HttpRequestWrapper> requestInterceptor) {
+        this.requestInterceptors.add(requestInterceptor);
+    }
+
+    /**
+     * Interface method implementation. Adds the ResponseInterceptor to the list of response interceptors that will be invoked
+     * @see com.flipkart.phantom.task.spi.Executor#addResponseInterceptor(com.flipkart.phantom.task.spi.interceptor.ResponseInterceptor)
+     */
+    public void addResponseInterceptor(ResponseInterceptor<HttpResponse> responseInterceptor) {
+        this.responseInterceptors.add(responseInterceptor);
+    }
+
+    /**
+     * Overriden superclass method. Returns the response from the fallback of the {@link HttpProxy}
+     * @see com.netflix.hystrix.HystrixObservableCommand#resumeWithFallback()
+     */
+    @Override
+    protected Observable<HttpResponse> resumeWithFallback() {
+        Map<String, Object> controlparams = new HashMap<String,Object>();
+        // check and populate execution error root cause, if any, for use in fallback
+        if (this.isFailedExecution()) {
+            controlparams.put(Executor.EXECUTION_ERROR_CAUSE, this.getFailedExecutionException());
+        }
+        return Observable.just(this.proxy.fallbackRequest(this.httpRequestWrapper, controlparams));
+    }
+
+    /**
+     * Retruns the event builder instance
+     */
+    public ServiceProxyEvent.Builder getEventBuilder() {
+        return this.eventBuilder;
+    }
+
+    /**
+     * Helper method to invoke the response interceptors on the I/O thread that completed the request
+     */
+    private void processResponse(ServerSpan serverSpan, HttpResponse response, Optional<RuntimeException> transportException) {
+        ServerSpan callerSpan = bindSpan(serverSpan);
+        try {
+            for (ResponseInterceptor<HttpResponse> responseInterceptor : this.responseInterceptors) {
+                responseInterceptor.process(response, transportException);
+            }
+        } finally {
+            bindSpan(callerSpan);
+        }
+    }
+
+    /**
+     * Helper method to bind the specified server span to the current thread, unbinding any span if null. Returns the span bound earlier, so
+     * that the Hystrix and I/O reactor threads, which are shared across requests, are left as they were
+     */
+    private static ServerSpan bindSpan(ServerSpan serverSpan) {
+        ServerSpan boundSpan = Brave.getServerSpanThreadBinder().getCurrentServerSpan();
+        Brave.getServerSpanThreadBinder().setCurrentSpan(serverSpan);
+        return boundSpan;
+    }
+
+}
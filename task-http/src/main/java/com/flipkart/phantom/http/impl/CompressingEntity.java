@@ -0,0 +1,165 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.http.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.protocol.HTTP;
+
+/**
+ * <code>CompressingEntity</code> is a {@link HttpEntityWrapper} that compresses the wrapped entity using the gzip or deflate content coding.
+ * The content is compressed as it is read, by the blocking client via {@link #writeTo(OutputStream)} and by the non-blocking client via
+ * {@link #getContent()}, and is therefore never fully buffered. The compressed content is sent using chunked transfer encoding as its length
+ * is not known upfront.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+class CompressingEntity extends HttpEntityWrapper {
+
+    /** The supported content codings*/
+    static final String GZIP = ContentEncoder.GZIP;
+    static final String DEFLATE = ContentEncoder.DEFLATE;
+
+    /** The size of the buffer used to read and write content*/
+    private static final int BUFFER_SIZE = 8192;
+
+    /** The content coding*/
+    private final String encoding;
+
+    /**
+     * Constructor for this class
+     * @param entity the entity to compress
+     * @param encoding the content coding, one of {@link #GZIP} or {@link #DEFLATE}
+     */
+    CompressingEntity(HttpEntity entity, String encoding) {
+        super(entity);
+        this.encoding = encoding;
+    }
+
+    /**
+     * Overriden superclass method. Returns the content coding of this entity
+     * @see org.apache.http.entity.HttpEntityWrapper#getContentEncoding()
+     */
+    public Header getContentEncoding() {
+        return new BasicHeader(HTTP.CONTENT_ENCODING, this.encoding);
+    }
+
+    /**
+     * Overriden superclass method. Returns -1 as the length of the compressed content is not known
+     * @see org.apache.http.entity.HttpEntityWrapper#getContentLength()
+     */
+    public long getContentLength() {
+        return -1;
+    }
+
+    /**
+     * Overriden superclass method. Returns true
+     * @see org.apache.http.entity.HttpEntityWrapper#isChunked()
+     */
+    public boolean isChunked() {
+        return true;
+    }
+
+    /**
+     * Overriden superclass method. Returns a stream that compresses the wrapped entity's content as it is read
+     * @see org.apache.http.entity.HttpEntityWrapper#getContent()
+     */
+    public InputStream getContent() throws IOException {
+        return new CompressingInputStream(this.wrappedEntity.getContent(), this.encoding);
+    }
+
+    /**
+     * Overriden superclass method. Writes the compressed content to the specified stream
+     * @see org.apache.http.entity.HttpEntityWrapper#writeTo(java.io.OutputStream)
+     */
+    public void writeTo(OutputStream outStream) throws IOException {
+        InputStream content = this.getContent();
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = content.read(buffer)) != -1) {
+                outStream.write(buffer, 0, read);
+            }
+        } finally {
+            content.close();
+        }
+    }
+
+    /**
+     * An InputStream that compresses the content of another stream as it is read
+     */
+    private static class CompressingInputStream extends InputStream {
+
+        private final InputStream source;
+        private final ContentEncoder encoder;
+        private final byte[] inputBuffer = new byte[BUFFER_SIZE];
+        private final byte[] singleByte = new byte[1];
+        /** The compressed output and the index of the next byte to be read*/
+        private byte[] output = new byte[0];
+        private int outputIndex;
+        private boolean ended;
+
+        CompressingInputStream(InputStream source, String encoding) {
+            this.source = source;
+            this.encoder = new ContentEncoder(encoding, Deflater.DEFAULT_COMPRESSION);
+        }
+
+        public int read() throws IOException {
+            return this.read(this.singleByte, 0, 1) == -1 ? -1 : this.singleByte[0] & 0xff;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (this.outputIndex == this.output.length) {
+                if (this.ended) {
+                    return -1;
+                }
+                int read = this.source.read(this.inputBuffer);
+                if (read == -1) {
+                    this.ended = true;
+                    this.output = this.encoder.finish();
+                } else {
+                    this.output = this.encoder.encode(this.inputBuffer, 0, read);
+                }
+                this.outputIndex = 0;
+            }
+            int read = Math.min(len, this.output.length - this.outputIndex);
+            System.arraycopy(this.output, this.outputIndex, b, off, read);
+            this.outputIndex += read;
+            return read;
+        }
+
+        public void close() throws IOException {
+            if (!this.ended) {
+                this.ended = true;
+                this.encoder.end();
+            }
+            this.source.close();
+        }
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.http.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <code>ContentEncoder</code> compresses content using the gzip or deflate content coding, incrementally, and returns the compressed output as it
+ * becomes available. The compression and gzip framing are done by the JDK {@link GZIPOutputStream} and {@link DeflaterOutputStream}.
+ * Instances are not thread-safe and compress a single stream of content.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class ContentEncoder {
+
+    /** The supported content codings*/
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    /** The size of the buffer for compressed output*/
+    private static final int OUTPUT_BUFFER_SIZE = 8192;
+
+    /** The compressed output that is yet to be returned*/
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream(OUTPUT_BUFFER_SIZE);
+
+    /** The compressing stream and the deflater, if not owned by the stream*/
+    private final DeflaterOutputStream stream;
+    private final Deflater deflater;
+
+    /**
+     * Constructor for this class
+     * @param encoding the content coding, one of {@link #GZIP} or {@link #DEFLATE}
+     * @param level the compression level, 1 to 9 or {@link Deflater#DEFAULT_COMPRESSION}
+     */
+    public ContentEncoder(String encoding, final int level) {
+        try {
+            if (GZIP.equals(encoding)) {
+                this.deflater = null;
+                this.stream = new GZIPOutputStream(this.output, OUTPUT_BUFFER_SIZE) {
+                    {
+                        this.def.setLevel(level);
+                    }
+                };
+            } else if (DEFLATE.equals(encoding)) {
+                this.deflater = new Deflater(level);
+                this.stream = new DeflaterOutputStream(this.output, this.deflater, OUTPUT_BUFFER_SIZE);
+            } else {
+                throw new IllegalArgumentException("Unsupported content coding : " + encoding);
+            }
+        } catch (IOException e) { // not thrown when writing the gzip header to memory
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Compresses the specified content. The returned output may be empty if the deflater needs more input to produce output
+     * @param content the content
+     * @param offset the offset of the content
+     * @param length the length of the content
+     * @return the compressed output that is available
+     */
+    public byte[] encode(byte[] content, int offset, int length) {
+        try {
+            this.stream.write(content, offset, length);
+        } catch (IOException e) { // not thrown when writing to memory
+            throw new IllegalStateException(e);
+        }
+        return this.drain();
+    }
+
+    /**
+     * Completes compression and returns the remaining compressed output. Releases the deflater
+     * @return the remaining compressed output
+     */
+    public byte[] finish() {
+        this.end();
+        return this.drain();
+    }
+
+    /**
+     * Releases the deflater, say when the compressed content could not be written completely. Compressed output that is not yet returned is
+     * discarded
+     */
+    public void end() {
+        try {
+            this.stream.close();
+        } catch (IOException e) { // not thrown when writing to memory
+            throw new IllegalStateException(e);
+        } finally {
+            if (this.deflater != null) {
+                this.deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Helper method to return and clear the compressed output
+     */
+    private byte[] drain() {
+        byte[] compressed = this.output.toByteArray();
+        this.output.reset();
+        return compressed;
+    }
+
+}
@@ -0,0 +1,450 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.http.impl;
+
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestProducer;
+import org.apache.hc.client5.http.async.methods.SimpleResponseConsumer;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.H2AsyncClientBuilder;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.nio.ssl.TlsStrategy;
+import org.apache.hc.core5.http2.config.H2Config;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.net.NamedEndpoint;
+import org.apache.hc.core5.net.URIAuthority;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.reactor.ssl.TransportSecurityLayer;
+import org.apache.hc.core5.util.Timeout;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.flipkart.phantom.task.spi.loadbalancer.Endpoint;
+
+/**
+ * <code>Http2ConnectionPool</code> is a sub-type of {@link AsyncHttpConnectionPool} that sends requests to the upstream service over HTTP/2.
+ * Concurrent requests are multiplexed as streams over a single connection per endpoint instead of each holding a pooled HTTP/1.1 connection,
+ * thereby reducing socket counts, connection setup overhead and queuing for free connections in the pool.
+ * HTTP/2 is spoken over cleartext connections (h2c) using prior knowledge, as the HTTP/1.1 pools also use plain sockets for both the http and
+ * https schemes. The configured scheme is still sent as the request scheme. Support for HTTP/2 is negotiated once per endpoint by sending a probe request to it in the background. Requests to an endpoint
+ * are sent over HTTP/1.1, i.e. as by the {@link AsyncHttpConnectionPool}, until negotiation succeeds and for good if the endpoint does not speak
+ * HTTP/2. Negotiation with an endpoint that could not be reached is retried after a back-off that doubles on each failure.
+ * Request and response content are buffered in memory when sent over HTTP/2. Requests with streamed (non-repeatable) content are always sent
+ * over HTTP/1.1, as reading the stream into memory would block the calling thread.
+ * HTTP/2 connections are served by their own I/O dispatcher threads, see {@link #setHttp2IoThreadCount(int)}.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class Http2ConnectionPool extends AsyncHttpConnectionPool {
+
+    /** logger */
+    private static Logger logger = LoggerFactory.getLogger(Http2ConnectionPool.class);
+
+    /** Http headers that are connection specific and are not allowed in HTTP/2 requests */
+    private static final Set<String> CONNECTION_HEADERS = new HashSet<String>(Arrays.asList(
+            "connection", "keep-alive", "proxy-connection", "transfer-encoding", "upgrade", "te", "content-length", "host"));
+
+    /** The max interval between negotiation attempts with an endpoint that could not be reached */
+    private static final long MAX_NEGOTIATION_BACKOFF_MILLIS = 60000;
+
+    /** TLS strategy that leaves connections in plain text for the https scheme, as the HTTP/1.1 pools do */
+    private static final TlsStrategy PLAIN_TEXT_STRATEGY = new TlsStrategy() {
+        public boolean upgrade(TransportSecurityLayer sessionLayer, org.apache.hc.core5.http.HttpHost host, SocketAddress localAddress,
+                SocketAddress remoteAddress, Object attachment, Timeout handshakeTimeout) {
+            return false;
+        }
+        public void upgrade(TransportSecurityLayer sessionLayer, NamedEndpoint endpoint, Object attachment, Timeout handshakeTimeout,
+                org.apache.hc.core5.concurrent.FutureCallback<TransportSecurityLayer> callback) {
+            if (callback != null) {
+                callback.completed(sessionLayer);
+            }
+        }
+    };
+
+    /** The HTTP/2 client */
+    private CloseableHttpAsyncClient h2Client;
+
+    /** The negotiated upstream protocol and the HTTP/2 target, keyed by endpoint address */
+    private ConcurrentMap<String, Negotiation> negotiations = new ConcurrentHashMap<String, Negotiation>();
+
+    /** The URI used to probe the upstream service for HTTP/2 support */
+    private String negotiationUri = "/";
+
+    /** The interval after which negotiation with an endpoint that could not be reached is first retried */
+    private long negotiationBackoffMillis = 1000;
+
+    /** The HTTP/2 flow control window size for streams*/
+    private int initialWindowSize = 1024 * 1024;
+
+    /** The number of I/O dispatcher threads for HTTP/2 connections, derived from the endpoint count if not set */
+    private int http2IoThreadCount;
+
+    /**
+     * Overriden superclass method. Initializes the HTTP/1.1 client used for fallback and the HTTP/2 client, and starts negotiating the
+     * upstream protocol with the endpoints
+     * @see com.flipkart.phantom.http.impl.AsyncHttpConnectionPool#initConnectionPool()
+     */
+    public void initConnectionPool() {
+        super.initConnectionPool();
+        this.h2Client = H2AsyncClientBuilder.create()
+                .setIOReactorConfig(IOReactorConfig.custom()
+                        .setIoThreadCount(this.getHttp2IoThreadCount())
+                        .setSoTimeout(Timeout.ofMilliseconds(this.getOperationTimeout()))
+                        .build())
+                .setH2Config(H2Config.custom()
+                        .setPushEnabled(false)
+                        .setInitialWindowSize(this.initialWindowSize)
+                        .build())
+                .setTlsStrategy(PLAIN_TEXT_STRATEGY)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(this.getConnectionTimeout()))
+                        .setSocketTimeout(Timeout.ofMilliseconds(this.getOperationTimeout()))
+                        .build())
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setResponseTimeout(Timeout.ofMilliseconds(this.getOperationTimeout()))
+                        .build())
+                .build();
+        this.h2Client.start();
+        if (this.endpointGroup == null) {
+            this.isHttp2(null);
+        } else {
+            for (Endpoint endpoint : this.endpointGroup.getEndpoints()) {
+                this.isHttp2(endpoint);
+            }
+        }
+    }
+
+    /**
+     * Returns true if requests to any of the endpoints are sent over HTTP/2. Does not wait for negotiation of the upstream protocol
+     * @return true if an endpoint is known to speak HTTP/2, false if requests are sent over HTTP/1.1
+     */
+    public boolean isHttp2() {
+        for (Negotiation negotiation : this.negotiations.values()) {
+            if (Boolean.TRUE.equals(negotiation.http2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Overriden superclass method. Sends the request over HTTP/2 if the endpoint is known to support it and the request content, if any,
+     * is repeatable. Sends it over HTTP/1.1 otherwise
+     * @see com.flipkart.phantom.http.impl.AsyncHttpConnectionPool#send(org.apache.http.client.methods.HttpRequestBase, com.flipkart.phantom.task.spi.loadbalancer.Endpoint, org.apache.http.concurrent.FutureCallback)
+     */
+    protected Future<HttpResponse> send(HttpRequestBase request, Endpoint endpoint, final FutureCallback<HttpResponse> callback) throws Exception {
+        if (!this.isHttp2(endpoint) || hasStreamedContent(request)) {
+            return super.send(request, endpoint, callback);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Sending Http/2 request: " + request.getURI());
+        }
+        final BasicFuture<HttpResponse> responseFuture = new BasicFuture<HttpResponse>(callback);
+        final Future<SimpleHttpResponse> h2Future = this.sendRequest(this.createRequest(request, endpoint),
+                new org.apache.hc.core5.concurrent.FutureCallback<SimpleHttpResponse>() {
+            public void completed(SimpleHttpResponse response) {
+                responseFuture.completed(toHttpResponse(response));
+            }
+            public void failed(Exception e) {
+                responseFuture.failed(e);
+            }
+            public void cancelled() {
+                responseFuture.cancel();
+            }
+        });
+        return new Future<HttpResponse>() {
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                boolean cancelled = h2Future.cancel(mayInterruptIfRunning);
+                return responseFuture.cancel(mayInterruptIfRunning) || cancelled;
+            }
+            public boolean isCancelled() {
+                return responseFuture.isCancelled();
+            }
+            public boolean isDone() {
+                return responseFuture.isDone();
+            }
+            public HttpResponse get() throws InterruptedException, ExecutionException {
+                return responseFuture.get();
+            }
+            public HttpResponse get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, java.util.concurrent.TimeoutException {
+                return responseFuture.get(timeout, unit);
+            }
+        };
+    }
+
+    /**
+     * Overriden superclass method. Checks the health of the endpoint over the negotiated protocol
+     * @see com.flipkart.phantom.http.impl.AsyncHttpConnectionPool#checkHealth(com.flipkart.phantom.task.spi.loadbalancer.Endpoint)
+     */
+    protected boolean checkHealth(Endpoint endpoint) {
+        if (!this.isHttp2(endpoint)) {
+            return super.checkHealth(endpoint);
+        }
+        try {
+            SimpleHttpResponse response = this.sendRequest(new SimpleHttpRequest("GET", this.getH2Target(endpoint), this.getHealthCheckUri()), null)
+                    .get(this.getOperationTimeout(), TimeUnit.MILLISECONDS);
+            return response.getCode() >= 200 && response.getCode() < 300;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Overriden superclass method. Shuts down the HTTP/2 client and the HTTP/1.1 client used for fallback
+     * @see com.flipkart.phantom.http.impl.AsyncHttpConnectionPool#shutdown()
+     */
+    public void shutdown() {
+        super.shutdown();
+        if (this.h2Client != null) {
+            this.h2Client.close(CloseMode.GRACEFUL);
+        }
+    }
+
+    /**
+     * Returns true if the specified endpoint is known to speak HTTP/2. Starts negotiating the upstream protocol with the endpoint in the
+     * background, if it is not yet known and the back-off after an earlier failed attempt has elapsed
+     */
+    private boolean isHttp2(Endpoint endpoint) {
+        Negotiation negotiation = this.getNegotiation(endpoint);
+        Boolean http2 = negotiation.http2;
+        if (http2 == null && System.currentTimeMillis() >= negotiation.retryAtMillis && negotiation.inProgress.compareAndSet(false, true)) {
+            this.negotiate(negotiation.target, negotiation);
+        }
+        return Boolean.TRUE.equals(http2);
+    }
+
+    /**
+     * Negotiates the upstream protocol by sending a probe request over HTTP/2 to the specified target. Any response from the target means that
+     * HTTP/2 is supported. The outcome is recorded on the specified negotiation when the probe completes
+     */
+    private void negotiate(final org.apache.hc.core5.http.HttpHost target, final Negotiation negotiation) {
+        try {
+            this.sendRequest(new SimpleHttpRequest("HEAD", target, this.negotiationUri), new org.apache.hc.core5.concurrent.FutureCallback<SimpleHttpResponse>() {
+                public void completed(SimpleHttpResponse response) {
+                    logger.info("Using HTTP/2 for upstream requests to : " + target);
+                    negotiation.http2 = Boolean.TRUE;
+                    negotiation.inProgress.set(false);
+                }
+                public void failed(Exception e) {
+                    if (e instanceof ConnectException || e instanceof InterruptedIOException) {
+                        retryNegotiation(target, negotiation, e);
+                        return;
+                    }
+                    logger.info("Falling back to HTTP/1.1 for upstream requests to : " + target + ". HTTP/2 probe failed with : " + e);
+                    negotiation.http2 = Boolean.FALSE;
+                    negotiation.inProgress.set(false);
+                }
+                public void cancelled() {
+                    retryNegotiation(target, negotiation, null);
+                }
+            });
+        } catch (RuntimeException e) {
+            this.retryNegotiation(target, negotiation, e);
+        }
+    }
+
+    /**
+     * Schedules the next negotiation attempt with the specified target that could not be reached
+     */
+    private void retryNegotiation(org.apache.hc.core5.http.HttpHost target, Negotiation negotiation, Exception cause) {
+        long backoffMillis = Math.min(this.negotiationBackoffMillis << Math.min(negotiation.failures, 16), MAX_NEGOTIATION_BACKOFF_MILLIS);
+        negotiation.failures++;
+        negotiation.retryAtMillis = System.currentTimeMillis() + backoffMillis;
+        negotiation.inProgress.set(false);
+        logger.warn("Unable to negotiate upstream protocol with : " + target + ". Will retry after " + backoffMillis + " ms. Error is : " + cause);
+    }
+
+    /**
+     * Helper method to send the specified request using the HTTP/2 client
+     */
+    private Future<SimpleHttpResponse> sendRequest(SimpleHttpRequest request, org.apache.hc.core5.concurrent.FutureCallback<SimpleHttpResponse> callback) {
+        return this.h2Client.execute(SimpleRequestProducer.create(request), SimpleResponseConsumer.create(), callback);
+    }
+
+    /**
+     * Helper method to create the HTTP/2 request from the specified request. Connection specific headers are dropped and the Host header is
+     * sent as the request authority. Request content must be repeatable, see {@link #hasStreamedContent(HttpRequestBase)}
+     */
+    private SimpleHttpRequest createRequest(HttpRequestBase request, Endpoint endpoint) throws Exception {
+        URI uri = request.getURI();
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        if (uri.getRawQuery() != null) {
+            path += "?" + uri.getRawQuery();
+        }
+        SimpleHttpRequest h2Request = new SimpleHttpRequest(request.getMethod(), this.getH2Target(endpoint), path);
+        for (Header header : request.getAllHeaders()) {
+            if (!CONNECTION_HEADERS.contains(header.getName().toLowerCase(Locale.ENGLISH))) {
+                h2Request.addHeader(header.getName(), header.getValue());
+            }
+        }
+        Header hostHeader = request.getFirstHeader(HTTP.TARGET_HOST);
+        if (hostHeader != null) {
+            h2Request.setAuthority(URIAuthority.create(hostHeader.getValue()));
+        }
+        if (request instanceof HttpEntityEnclosingRequest && ((HttpEntityEnclosingRequest) request).getEntity() != null) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            if (entity.getContentEncoding() != null && !h2Request.containsHeader(entity.getContentEncoding().getName())) {
+                h2Request.addHeader(entity.getContentEncoding().getName(), entity.getContentEncoding().getValue());
+            }
+            h2Request.setBody(EntityUtils.toByteArray(entity),
+                    entity.getContentType() == null ? null : ContentType.parse(entity.getContentType().getValue()));
+        }
+        return h2Request;
+    }
+
+    /**
+     * Helper method to check if the specified request has streamed (non-repeatable) content
+     */
+    private static boolean hasStreamedContent(HttpRequestBase request) {
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            return entity != null && !entity.isRepeatable();
+        }
+        return false;
+    }
+
+    /**
+     * Helper method to create the HttpResponse returned to callers from the HTTP/2 response
+     */
+    private static HttpResponse toHttpResponse(SimpleHttpResponse h2Response) {
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, h2Response.getCode(),
+                EnglishReasonPhraseCatalog.INSTANCE.getReason(h2Response.getCode(), null));
+        for (org.apache.hc.core5.http.Header header : h2Response.getHeaders()) {
+            response.addHeader(header.getName(), header.getValue());
+        }
+        byte[] body = h2Response.getBodyBytes();
+        if (body != null) {
+            ByteArrayEntity entity = new ByteArrayEntity(body);
+            if (h2Response.getContentType() != null) {
+                entity.setContentType(h2Response.getContentType().toString());
+            }
+            response.setEntity(entity);
+        }
+        return response;
+    }
+
+    /**
+     * Helper method to return the HTTP/2 target for the specified endpoint or the configured host and port if the endpoint is null
+     */
+    private org.apache.hc.core5.http.HttpHost getH2Target(Endpoint endpoint) {
+        return this.getNegotiation(endpoint).target;
+    }
+
+    /**
+     * Helper method to return the negotiation state for the specified endpoint or the configured host and port if the endpoint is null
+     */
+    private Negotiation getNegotiation(Endpoint endpoint) {
+        String host = endpoint == null ? this.getHost() : endpoint.getHost();
+        int port = endpoint == null ? this.getPort() : endpoint.getPort();
+        String address = host + ":" + port;
+        Negotiation negotiation = this.negotiations.get(address);
+        if (negotiation == null) {
+            negotiation = new Negotiation(new org.apache.hc.core5.http.HttpHost(this.getSecure() ? "https" : "http", host, port));
+            Negotiation existing = this.negotiations.putIfAbsent(address, negotiation);
+            negotiation = existing == null ? negotiation : existing;
+        }
+        return negotiation;
+    }
+
+    /**
+     * The state of upstream protocol negotiation with an endpoint
+     */
+    private static class Negotiation {
+        /** The HTTP/2 target for the endpoint */
+        private final org.apache.hc.core5.http.HttpHost target;
+        /** The negotiated protocol, true for HTTP/2 and null until negotiated */
+        private volatile Boolean http2;
+        /** Set while a probe is in flight */
+        private final AtomicBoolean inProgress = new AtomicBoolean();
+        /** The time after which negotiation may be retried */
+        private volatile long retryAtMillis;
+        /** The count of consecutive attempts that could not reach the endpoint, updated only by the attempt in progress */
+        private int failures;
+        Negotiation(org.apache.hc.core5.http.HttpHost target) {
+            this.target = target;
+        }
+    }
+
+    /** Getters / Setters */
+    public String getNegotiationUri() {
+        return this.negotiationUri;
+    }
+    public void setNegotiationUri(String negotiationUri) {
+        this.negotiationUri = negotiationUri;
+    }
+    public long getNegotiationBackoffMillis() {
+        return this.negotiationBackoffMillis;
+    }
+    public void setNegotiationBackoffMillis(long negotiationBackoffMillis) {
+        this.negotiationBackoffMillis = negotiationBackoffMillis;
+    }
+    public int getInitialWindowSize() {
+        return this.initialWindowSize;
+    }
+    public void setInitialWindowSize(int initialWindowSize) {
+        this.initialWindowSize = initialWindowSize;
+    }
+    /**
+     * Returns the number of I/O dispatcher threads for HTTP/2 connections. Unless set, this is the number of endpoints capped at
+     * {@link #getIoThreadCount()}, as each endpoint has a single HTTP/2 connection and each connection is served by one thread
+     */
+    public int getHttp2IoThreadCount() {
+        if (this.http2IoThreadCount > 0) {
+            return this.http2IoThreadCount;
+        }
+        int endpoints = this.endpointGroup == null ? 1 : this.endpointGroup.getEndpoints().size();
+        return Math.max(1, Math.min(endpoints, this.getIoThreadCount()));
+    }
+    public void setHttp2IoThreadCount(int http2IoThreadCount) {
+        this.http2IoThreadCount = http2IoThreadCount;
+    }
+    /** Getters / Setters */
+
+}
@@ -16,31 +16,42 @@
 
 package com.flipkart.phantom.http.impl;
 
-import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.HttpClientUtils;
+import org.apache.http.config.RegistryBuilder;
 import org.apache.http.conn.routing.HttpRoute;
-import org.apache.http.conn.scheme.PlainSocketFactory;
-import org.apache.http.conn.scheme.Scheme;
-import org.apache.http.conn.scheme.SchemeRegistry;
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.impl.conn.PoolingClientConnectionManager;
-import org.apache.http.params.BasicHttpParams;
-import org.apache.http.params.HttpConnectionParams;
-import org.apache.http.params.HttpParams;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.protocol.HTTP;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.flipkart.phantom.task.impl.loadbalancer.EndpointGroup;
+import com.flipkart.phantom.task.spi.RequestHeaders;
+import com.flipkart.phantom.task.spi.loadbalancer.Endpoint;
+import com.flipkart.phantom.task.spi.loadbalancer.HealthChecker;
+import com.flipkart.phantom.task.spi.loadbalancer.LoadBalancer;
+
 /**
- * <code>HttpConnectionPool</code> does the connection pool management for HTTP proxy requests
+ * <code>HttpConnectionPool</code> does the connection pool management for HTTP proxy requests.
+ * Requests are sent to {@link #getHost()}:{@link #getPort()} by default. Requests may instead be balanced across replicas of the upstream
+ * service by specifying {@link #setEndpoints(List)}. The endpoint for each request is selected by the {@link #setLoadBalancer(LoadBalancer)}
+ * and endpoints are ejected on consecutive failures or failed health checks, as described in {@link EndpointGroup}.
  *
  * @author kartikbu
  * @created 16/7/13 1:54 AM
@@ -51,8 +62,8 @@ public class HttpConnectionPool {
     /** Default settings for forwarding Http headers*/
     public static final boolean FORWARD_HEADERS = true;
 
-    /** Set of Http headers that we want to remove */
-    public static final Set<String> REMOVE_HEADERS = new HashSet<String>();
+    /** Set of Http headers that we want to remove. Header names are matched ignoring case */
+    public static final Set<String> REMOVE_HEADERS = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
     static {
         HttpConnectionPool.REMOVE_HEADERS.add(HTTP.CONTENT_LEN);
     }
@@ -60,8 +71,9 @@ public class HttpConnectionPool {
     /** logger */
     private static Logger logger = LoggerFactory.getLogger(HttpConnectionPool.class);
 
-    /** The HTTP client */
-    private DefaultHttpClient client;
+    /** The HTTP client and its connection manager */
+    private CloseableHttpClient client;
+    private PoolingHttpClientConnectionManager connectionManager;
 
     /** Host to connect to */
     private String host = "localhost";
@@ -72,6 +84,10 @@ public class HttpConnectionPool {
     /** are the urls secure? */
     private Boolean secure = false;
 
+    /** The target host and its Host header value, parsed once from the host, port and scheme. Requests carry only the request URI*/
+    private HttpHost targetHost = new HttpHost(this.host, this.port, "http");
+    private String targetHostHeader = this.targetHost.toHostString();
+
     /** connection timeout in milis */
     private int connectionTimeout = 1000;
 
@@ -88,7 +104,7 @@ public class HttpConnectionPool {
     private int requestQueueSize = 0;
 
     /** the semaphore to separate the process queue */
-    private Semaphore processQueue;
+    protected Semaphore processQueue;
 
     /** Headers which can be set as part of init */
     private Map<String, String> headers;
@@ -96,6 +112,19 @@ public class HttpConnectionPool {
     /** Setting for forwarding Http headers*/
     private boolean forwardHeaders = HttpConnectionPool.FORWARD_HEADERS;
 
+    /** The upstream endpoints, of the form host:port, to balance requests across. Optional*/
+    private List<String> endpoints;
+
+    /** The load balancer, ejection and health check settings used when endpoints are specified*/
+    private LoadBalancer loadBalancer;
+    private int endpointFailureThreshold = 5;
+    private long endpointEjectionTimeMillis = 30000;
+    private String healthCheckUri;
+    private long healthCheckIntervalMillis = 5000;
+
+    /** The group of endpoints, if endpoints are specified*/
+    protected EndpointGroup endpointGroup;
+
     /**
      * Initialize the connection pool
      */
@@ -104,19 +133,14 @@ public class HttpConnectionPool {
         // max concurrent requests = max connections + request queue size
         this.processQueue = new Semaphore(requestQueueSize + maxConnections);
 
-        // create scheme
-        SchemeRegistry schemeRegistry = new SchemeRegistry();
         // registry both http and https schemes
-        schemeRegistry.register(new Scheme("http", port, PlainSocketFactory.getSocketFactory()));
-        schemeRegistry.register(new Scheme("https", port, PlainSocketFactory.getSocketFactory()));
-
-        PoolingClientConnectionManager cm;
-        // create connection manager
-        if ( getTimeToLiveInSecs() > 0 ) {
-            cm = new PoolingClientConnectionManager(schemeRegistry, getTimeToLiveInSecs(), TimeUnit.SECONDS);
-        } else {
-            cm = new PoolingClientConnectionManager(schemeRegistry);
-        }
+        // create connection manager. Connections live forever if timeToLive is not positive
+        PoolingHttpClientConnectionManager cm = new PoolingHttpClientConnectionManager(
+                RegistryBuilder.<ConnectionSocketFactory>create()
+                        .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                        .register("https", PlainConnectionSocketFactory.getSocketFactory())
+                        .build(),
+                null, null, null, getTimeToLiveInSecs(), TimeUnit.SECONDS);
 
         // Max pool size
         cm.setMaxTotal(maxConnections);
@@ -129,12 +153,67 @@ public class HttpConnectionPool {
         cm.setMaxPerRoute(new HttpRoute(httpHost), maxConnections);
 
         // set timeouts
-        HttpParams httpParams = new BasicHttpParams();
-        HttpConnectionParams.setConnectionTimeout(httpParams, connectionTimeout);
-        HttpConnectionParams.setSoTimeout(httpParams, operationTimeout);
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectionTimeout)
+                .setSocketTimeout(operationTimeout)
+                .build();
+
+        // create client pool. Content compression is left to the clients and the upstream service, as proxied responses are relayed as is
+        this.connectionManager = cm;
+        this.client = HttpClients.custom()
+                .setConnectionManager(cm)
+                .setDefaultRequestConfig(requestConfig)
+                .disableContentCompression()
+                .build();
+
+        this.initEndpoints();
+    }
 
-        // create client pool
-        this.client = new DefaultHttpClient(cm, httpParams);
+    /**
+     * Initializes the group of endpoints to balance requests across, if endpoints are specified
+     */
+    protected void initEndpoints() {
+        if (this.endpoints == null || this.endpoints.isEmpty()) {
+            return;
+        }
+        List<Endpoint> endpointList = new ArrayList<Endpoint>(this.endpoints.size());
+        for (String address : this.endpoints) {
+            endpointList.add(Endpoint.fromAddress(address));
+        }
+        this.endpointGroup = new EndpointGroup();
+        this.endpointGroup.setEndpoints(endpointList);
+        if (this.loadBalancer != null) {
+            this.endpointGroup.setLoadBalancer(this.loadBalancer);
+        }
+        this.endpointGroup.setFailureThreshold(this.endpointFailureThreshold);
+        this.endpointGroup.setEjectionTimeMillis(this.endpointEjectionTimeMillis);
+        if (this.healthCheckUri != null) {
+            this.endpointGroup.setHealthChecker(new HealthChecker() {
+                public boolean isHealthy(Endpoint endpoint) {
+                    return checkHealth(endpoint);
+                }
+            });
+            this.endpointGroup.setHealthCheckIntervalMillis(this.healthCheckIntervalMillis);
+        }
+        this.endpointGroup.init(this.host + ":" + this.port);
+    }
+
+    /**
+     * Checks the health of the specified endpoint by sending a GET request for the health check URI. The endpoint is healthy if the response
+     * status is 2xx. Sub-types that do not use the blocking client must override this method
+     * @param endpoint the Endpoint to check
+     * @return true if healthy, false otherwise
+     */
+    protected boolean checkHealth(Endpoint endpoint) {
+        HttpResponse response = null;
+        try {
+            response = this.client.execute(this.getTarget(endpoint), new HttpGet(this.healthCheckUri));
+            return isHealthy(response);
+        } catch (Exception e) {
+            return false;
+        } finally {
+            HttpClientUtils.closeQuietly(response);
+        }
     }
 
     /**
@@ -143,6 +222,19 @@ public class HttpConnectionPool {
      * @return response HttpResponse object
      */
     public HttpResponse execute(HttpRequestBase request, List<Map.Entry<String,String>> headers) throws Exception {
+        return this.execute(request, headers, null);
+    }
+
+    /**
+     * Method to execute an attempt of a request that may be retried. The attempt is sent to an endpoint other than the ones attempted
+     * already, if possible
+     * @param request HttpRequestBase object
+     * @param headers the List of header tuples which are added to the request
+     * @param attemptedEndpoints the endpoints that earlier attempts of the request were sent to. The endpoint selected for this attempt is
+     * added to it. May be null
+     * @return response HttpResponse object
+     */
+    public HttpResponse execute(HttpRequestBase request, List<Map.Entry<String,String>> headers, List<Endpoint> attemptedEndpoints) throws Exception {
         setRequestHeaders(request, headers);
         if (logger.isDebugEnabled()) {
 	        logger.debug("Sending Http request: " + request.getURI());
@@ -150,13 +242,17 @@ public class HttpConnectionPool {
         }
         if (processQueue.tryAcquire()) {
             HttpResponse response;
+            Endpoint endpoint = this.selectEndpoint(request, attemptedEndpoints);
+            long startNanos = System.nanoTime();
             try {
-                response = client.execute(request);
+                response = client.execute(endpoint == null ? this.targetHost : this.getTarget(endpoint), request);
             } catch (Exception e) {
                 processQueue.release();
+                this.releaseEndpoint(endpoint, startNanos, null);
                 throw e;
             }
             processQueue.release();
+            this.releaseEndpoint(endpoint, startNanos, response);
             return response;
         } else {
             throw new Exception("Process queue full!");
@@ -168,19 +264,27 @@ public class HttpConnectionPool {
      * the headers that came with the specified Http request if {@link HttpConnectionPool#isForwardHeaders()} is set to 'true' and in this case sets the
      * {@link HTTP#TARGET_HOST} to the the value <HttpConnectionPool{@link #getHost()}:HttpConnectionPool{@link #getPort()}. Sub-types may override this method
      * to change this behavior.
+     * Headers in a {@link RequestHeaders} container are read directly from it, without creating intermediate entries.
      *
      * @param request {@link HttpRequestBase} to add headers to.
      * @param requestHeaders the List of header tuples which are added to the request
      */
     protected void setRequestHeaders(HttpRequestBase request, List<Map.Entry<String,String>> requestHeaders) {
-        if(this.headers != null && this.headers.isEmpty()) {
-            for(String headerKey : this.headers.keySet()) {
-                request.addHeader(headerKey, this.headers.get(headerKey));
+        if(this.headers != null && !this.headers.isEmpty()) {
+            for(Map.Entry<String,String> header : this.headers.entrySet()) {
+                request.addHeader(header.getKey(), header.getValue());
             }
         }
         if (this.isForwardHeaders()) { // forward request headers only if specified
 
-            if(requestHeaders != null && !requestHeaders.isEmpty()) {
+            if (requestHeaders instanceof RequestHeaders) {
+                RequestHeaders headers = (RequestHeaders) requestHeaders;
+                for (int i = 0; i < headers.size(); i++) {
+                    if (!HttpConnectionPool.REMOVE_HEADERS.contains(headers.getName(i))) {
+                        request.addHeader(headers.getName(i), headers.getValue(i));
+                    }
+                }
+            } else if(requestHeaders != null && !requestHeaders.isEmpty()) {
                 for(Map.Entry<String,String> headerMap : requestHeaders) {
                     if (!HttpConnectionPool.REMOVE_HEADERS.contains(headerMap.getKey())) {
                         request.addHeader(headerMap.getKey(), headerMap.getValue());
@@ -188,17 +292,100 @@ public class HttpConnectionPool {
                 }
             }
             // replace "Host" header with the that of the real target host
-            request.setHeader(HTTP.TARGET_HOST, this.getHost() + ":" + this.getPort());
+            request.setHeader(HTTP.TARGET_HOST, this.targetHostHeader);
+        }
+    }
+
+    /**
+     * Selects the endpoint for the specified request if endpoints are specified and sets the {@link HTTP#TARGET_HOST} header to its address
+     * @param request the request to send
+     * @return the selected Endpoint or null if endpoints are not specified
+     */
+    protected Endpoint selectEndpoint(HttpRequestBase request) {
+        return this.selectEndpoint(request, null);
+    }
+
+    /**
+     * Selects the endpoint for the specified attempt of a request, avoiding the endpoints attempted already, and sets the {@link HTTP#TARGET_HOST}
+     * header to its address. Adds the selected endpoint to the attempted endpoints
+     * @param request the request to send
+     * @param attemptedEndpoints the endpoints that earlier attempts of the request were sent to, may be null
+     * @return the selected Endpoint or null if endpoints are not specified
+     */
+    protected Endpoint selectEndpoint(HttpRequestBase request, List<Endpoint> attemptedEndpoints) {
+        if (this.endpointGroup == null) {
+            return null;
+        }
+        Endpoint endpoint;
+        if (attemptedEndpoints == null) {
+            endpoint = this.endpointGroup.select();
+        } else {
+            synchronized (attemptedEndpoints) { // hedged attempts may be sent concurrently
+                endpoint = this.endpointGroup.select(attemptedEndpoints);
+                attemptedEndpoints.add(endpoint);
+            }
+        }
+        if (this.isForwardHeaders()) {
+            request.setHeader(HTTP.TARGET_HOST, endpoint.toString());
+        }
+        return endpoint;
+    }
+
+    /**
+     * Records completion of a request on the specified endpoint. The request has failed if there is no response or the response status is 5xx
+     * @param endpoint the Endpoint returned by {@link #selectEndpoint(HttpRequestBase)}, may be null
+     * @param startNanos the request start time
+     * @param response the response, null if the request failed
+     */
+    protected void releaseEndpoint(Endpoint endpoint, long startNanos, HttpResponse response) {
+        if (endpoint != null) {
+            this.endpointGroup.release(endpoint, startNanos, response != null && response.getStatusLine().getStatusCode() < 500);
         }
     }
 
+    /**
+     * Returns the HttpHost to send requests for the specified endpoint to
+     * @param endpoint the Endpoint
+     * @return HttpHost for the endpoint
+     */
+    protected HttpHost getTarget(Endpoint endpoint) {
+        return new HttpHost(endpoint.getHost(), endpoint.getPort(), secure ? "https" : "http");
+    }
+
+    /**
+     * Helper method to check if a health check response is successful i.e. has a 2xx status
+     */
+    protected static boolean isHealthy(HttpResponse response) {
+        int statusCode = response.getStatusLine().getStatusCode();
+        return statusCode >= 200 && statusCode < 300;
+    }
+
+    /**
+     * Returns the target host that requests are sent to when endpoints are not specified
+     * @return HttpHost for the host, port and scheme of this pool
+     */
+    public HttpHost getTargetHost() {
+        return this.targetHost;
+    }
+
+    /**
+     * Helper method to parse the target host once the host, port or scheme change
+     */
+    private void initTargetHost() {
+        this.targetHost = new HttpHost(this.host, this.port, this.secure ? "https" : "http");
+        this.targetHostHeader = this.targetHost.toHostString();
+    }
+
     public String constructUrl(String uri) {
         return "http" + (secure ? "s" : "") + "://" + host + ":" + port + uri;
     }
 
     /** shutdown the client connections */
     public void shutdown() {
-        client.getConnectionManager().shutdown();
+        if (this.endpointGroup != null) {
+            this.endpointGroup.shutdown();
+        }
+        connectionManager.shutdown();
     }
 
     /** Getters / Setters */
@@ -209,6 +396,7 @@ public class HttpConnectionPool {
 
     public void setHost(String host) {
         this.host = host;
+        this.initTargetHost();
     }
 
     public Integer getPort() {
@@ -217,6 +405,7 @@ public class HttpConnectionPool {
 
     public void setPort(Integer port) {
         this.port = port;
+        this.initTargetHost();
     }
 
     public Boolean getSecure() {
@@ -225,6 +414,7 @@ public class HttpConnectionPool {
 
     public void setSecure(Boolean secure) {
         this.secure = secure;
+        this.initTargetHost();
     }
 
     public int getConnectionTimeout() {
@@ -280,6 +470,42 @@ public class HttpConnectionPool {
     public void setTimeToLiveInSecs(int timeToLiveInSecs) {
         this.timeToLiveInSecs = timeToLiveInSecs;
     }
+
+    public List<String> getEndpoints() {
+        return endpoints;
+    }
+
+    public void setEndpoints(List<String> endpoints) {
+        this.endpoints = endpoints;
+    }
+
+    public void setLoadBalancer(LoadBalancer loadBalancer) {
+        this.loadBalancer = loadBalancer;
+    }
+
+    public void setEndpointFailureThreshold(int endpointFailureThreshold) {
+        this.endpointFailureThreshold = endpointFailureThreshold;
+    }
+
+    public void setEndpointEjectionTimeMillis(long endpointEjectionTimeMillis) {
+        this.endpointEjectionTimeMillis = endpointEjectionTimeMillis;
+    }
+
+    public String getHealthCheckUri() {
+        return healthCheckUri;
+    }
+
+    public EndpointGroup getEndpointGroup() {
+        return endpointGroup;
+    }
+
+    public void setHealthCheckUri(String healthCheckUri) {
+        this.healthCheckUri = healthCheckUri;
+    }
+
+    public void setHealthCheckIntervalMillis(long healthCheckIntervalMillis) {
+        this.healthCheckIntervalMillis = healthCheckIntervalMillis;
+    }
     /** Getters / Setters */
 
 }
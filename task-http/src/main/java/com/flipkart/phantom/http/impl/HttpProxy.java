@@ -16,18 +16,24 @@
 
 package com.flipkart.phantom.http.impl;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
-import org.apache.http.client.methods.HttpDelete;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.protocol.HTTP;
 
+import com.flipkart.phantom.http.impl.cache.HttpResponseCache;
+import com.flipkart.phantom.http.impl.retry.HttpRetryPolicy;
 import com.flipkart.phantom.task.spi.AbstractHandler;
+import com.flipkart.phantom.task.spi.RequestHeaders;
 import com.flipkart.phantom.task.spi.TaskContext;
+import com.google.common.base.Optional;
 
 /**
  * Abstract class for handling HTTP proxy requests
@@ -40,6 +46,9 @@ public abstract class HttpProxy extends AbstractHandler {
 
     /** The default thread pool size*/
     public static final int DEFAULT_THREAD_POOL_SIZE = 500;
+
+    /** The default minimum length of request content that is compressed*/
+    public static final long DEFAULT_REQUEST_COMPRESSION_MIN_SIZE = 1024;
     
     /** Name of the proxy */
     private String name;
@@ -49,6 +58,18 @@ public abstract class HttpProxy extends AbstractHandler {
 
     /** The thread pool size for this proxy*/
     private int threadPoolSize = HttpProxy.DEFAULT_THREAD_POOL_SIZE;
+
+    /** The optional cache for responses of this proxy*/
+    private HttpResponseCache responseCache;
+
+    /** The content coding, gzip or deflate, used to compress request content sent upstream. Request content is not compressed if null*/
+    private String requestCompression;
+
+    /** The minimum length of request content that is compressed. Streamed content of unknown length is always compressed*/
+    private long requestCompressionMinSize = HttpProxy.DEFAULT_REQUEST_COMPRESSION_MIN_SIZE;
+
+    /** The optional policy for retrying and hedging requests of this proxy*/
+    private HttpRetryPolicy retryPolicy;
     
     /**
      *  Init hook provided by the HttpProxy
@@ -56,6 +77,11 @@ public abstract class HttpProxy extends AbstractHandler {
     public void init(TaskContext context) throws Exception {
         if (pool == null) {
             throw new AssertionError("HttpConnectionPool object 'pool' must be given");
+        } else if (this.requestCompression != null && !CompressingEntity.GZIP.equals(this.requestCompression)
+                && !CompressingEntity.DEFLATE.equals(this.requestCompression)) {
+            throw new AssertionError("Unsupported 'requestCompression' : " + this.requestCompression + ". Must be one of gzip or deflate");
+        } else if (this.retryPolicy != null && this.retryPolicy.isHedging() && !this.isAsync()) {
+            throw new AssertionError("HttpRetryPolicy with hedging requires an AsyncHttpConnectionPool 'pool'");
         } else {
             pool.initConnectionPool();
         }
@@ -85,50 +111,116 @@ public abstract class HttpProxy extends AbstractHandler {
     }
     
     /**
-     * The main method which makes the HTTP request
+     * The main method which makes the HTTP request. Cacheable requests are served from the {@link HttpResponseCache}, if one is configured
+     */
+    public HttpResponse doRequest(final HttpRequestWrapper httpRequestWrapper) throws Exception {
+        if (this.responseCache != null && this.responseCache.isCacheable(httpRequestWrapper)) {
+            return this.responseCache.execute(httpRequestWrapper, headers -> this.executeRequest(httpRequestWrapper, headers));
+        }
+        return this.executeRequest(httpRequestWrapper, httpRequestWrapper.getHeaders().get());
+    }
+
+    /**
+     * Makes the HTTP request asynchronously. The callback is invoked from an I/O thread of the {@link AsyncHttpConnectionPool} on completion
+     * @param httpRequestWrapper the http Request Wrapper object
+     * @param callback the callback to notify on completion
+     * @return Future for the HttpResponse
+     * @throws Exception in case of errors in sending the request
+     * @throws IllegalStateException if this proxy is not configured with an {@link AsyncHttpConnectionPool}
      */
-    public HttpResponse doRequest(HttpRequestWrapper httpRequestWrapper) throws Exception {
-        /** get necessary data required for the output */
+    public Future<HttpResponse> doRequestAsync(HttpRequestWrapper httpRequestWrapper, FutureCallback<HttpResponse> callback) throws Exception {
+        if (!this.isAsync()) {
+            throw new IllegalStateException("HttpProxy : " + this.name + " is not configured with an AsyncHttpConnectionPool");
+        }
+        if (this.responseCache != null && this.responseCache.isCacheable(httpRequestWrapper)) {
+            return this.responseCache.executeAsync(httpRequestWrapper, (headers, loadCallback) -> this.executeRequestAsync(httpRequestWrapper,
+                    headers, loadCallback), callback);
+        }
+        return this.executeRequestAsync(httpRequestWrapper, httpRequestWrapper.getHeaders().get(), callback);
+    }
+
+    /**
+     * Helper method to make the HTTP request with the specified headers. Retryable requests are executed as per the {@link HttpRetryPolicy},
+     * if one is configured
+     */
+    private HttpResponse executeRequest(final HttpRequestWrapper httpRequestWrapper, final List<Map.Entry<String,String>> headers) throws Exception {
+        if (this.retryPolicy != null && this.retryPolicy.isRetryable(httpRequestWrapper)) {
+            // each attempt sends a new request as requests are not reusable
+            return this.retryPolicy.execute(attemptedEndpoints -> pool.execute(createRequest(httpRequestWrapper.getMethod(),
+                    httpRequestWrapper.getUri(), createEntity(httpRequestWrapper)), headers, attemptedEndpoints));
+        }
         return pool.execute(createRequest(httpRequestWrapper.getMethod(),httpRequestWrapper.getUri(),
-                httpRequestWrapper.getData()), httpRequestWrapper.getHeaders().get());
+                createEntity(httpRequestWrapper)), headers);
+    }
+
+    /**
+     * Helper method to make the HTTP request asynchronously with the specified headers. Retryable requests are executed as per the
+     * {@link HttpRetryPolicy}, if one is configured
+     */
+    private Future<HttpResponse> executeRequestAsync(final HttpRequestWrapper httpRequestWrapper, final List<Map.Entry<String,String>> headers,
+            FutureCallback<HttpResponse> callback) throws Exception {
+        final AsyncHttpConnectionPool asyncPool = (AsyncHttpConnectionPool)pool;
+        if (this.retryPolicy != null && this.retryPolicy.isRetryable(httpRequestWrapper)) {
+            return this.retryPolicy.executeAsync((attemptedEndpoints, attemptCallback) -> asyncPool.executeAsync(createRequest(
+                    httpRequestWrapper.getMethod(), httpRequestWrapper.getUri(), createEntity(httpRequestWrapper)), headers, attemptCallback,
+                    attemptedEndpoints), callback);
+        }
+        return asyncPool.executeAsync(createRequest(httpRequestWrapper.getMethod(),httpRequestWrapper.getUri(),
+                createEntity(httpRequestWrapper)), headers, callback);
     }
 
     /**
-     * Creates a HttpRequestBase object understood by the apache http library
+     * Returns true if this proxy uses the non-blocking http client i.e. is configured with an {@link AsyncHttpConnectionPool}
+     * @return true if requests may be executed asynchronously, false otherwise
+     */
+    public boolean isAsync() {
+        return this.pool instanceof AsyncHttpConnectionPool;
+    }
+
+    /**
+     * Creates a HttpRequestBase object understood by the apache http library, for any HTTP method. The request carries only the request URI
+     * as the pool sends it to its pre-parsed target host
      * @param method HTTP request method
-     * @param uri HTTP request URI
-     * @param data HTTP request data
-     * @return
-     * @throws Exception
-     */
-    private HttpRequestBase createRequest(String method, String uri, byte[] data) throws Exception {
-
-        // get
-        if ("GET".equals(method)) {
-            HttpGet r = new HttpGet(pool.constructUrl(uri));
-            return r;
-
-            // put
-        } else if ("PUT".equals(method)) {
-            HttpPut r = new HttpPut(pool.constructUrl(uri));
-            r.setEntity(new ByteArrayEntity(data));
-            return r;
-
-            // post
-        } else if ("POST".equals(method)) {
-            HttpPost r = new HttpPost(pool.constructUrl(uri));
-            r.setEntity(new ByteArrayEntity(data));
-            return r;
-
-            // delete
-        } else if ("DELETE".equals(method)) {
-            HttpDelete r = new HttpDelete(pool.constructUrl(uri));
-            return r;
-
-            // invalid
+     * @param uri the request URI
+     * @param entity the request content
+     * @return HttpRequestBase object
+     * @throws Exception in case of invalid request URI
+     */
+    private HttpRequestBase createRequest(String method, String uri, HttpEntity entity) throws Exception {
+        return HttpRequestFactory.createRequest(method, uri, entity);
+    }
+
+    /**
+     * Creates the request entity. The request content is streamed if the request wrapper has a data stream and is sent as is otherwise.
+     * The content is compressed, as it is sent, if request compression is turned on and the content is not encoded already and is at least
+     * {@link #setRequestCompressionMinSize(long)} bytes long
+     * @param httpRequestWrapper the http Request Wrapper object
+     * @return the HttpEntity for the request content
+     */
+    private HttpEntity createEntity(HttpRequestWrapper httpRequestWrapper) {
+        HttpEntity entity;
+        long contentLength;
+        if (httpRequestWrapper.getDataStream() != null) {
+            entity = new InputStreamEntity(httpRequestWrapper.getDataStream(), httpRequestWrapper.getContentLength());
+            contentLength = httpRequestWrapper.getContentLength();
         } else {
-            return null;
+            entity = new ByteArrayEntity(httpRequestWrapper.getData());
+            contentLength = httpRequestWrapper.getData().length;
+        }
+        if (this.requestCompression == null || (contentLength >= 0 && contentLength < this.requestCompressionMinSize)
+                || contentLength == 0 || this.isContentEncoded(httpRequestWrapper)) {
+            return entity;
         }
+        return new CompressingEntity(entity, this.requestCompression);
+    }
+
+    /**
+     * Helper method to check if the request content has been encoded by the client already
+     */
+    private boolean isContentEncoded(HttpRequestWrapper httpRequestWrapper) {
+        Optional<RequestHeaders> headers = httpRequestWrapper.getRequestHeaders();
+        String contentEncoding = headers.isPresent() ? headers.get().getHeader(HTTP.CONTENT_ENCODING) : null;
+        return contentEncoding != null && !"identity".equalsIgnoreCase(contentEncoding.trim());
     }
 
     /**
@@ -172,10 +264,29 @@ public abstract class HttpProxy extends AbstractHandler {
         if (pool != null) {
             String details = "Endpoint: ";
             details += (pool.getSecure() ? "https://" : "http://") + pool.getHost() + ":" + pool.getPort() + "\n";
+            if (pool.getEndpointGroup() != null) {
+                details += "Balanced Endpoints: " + pool.getEndpointGroup().getEndpoints() + "\n";
+                details += "Load Balancer: " + pool.getEndpointGroup().getLoadBalancer().getClass().getSimpleName() + "\n";
+            }
             details += "Connection Timeout: " + pool.getConnectionTimeout() + "ms\n";
             details += "Operation Timeout: " + pool.getOperationTimeout() + "ms\n";
             details += "Max Connections: " + pool.getMaxConnections() + "\n";
             details += "Request Queue Size: " + pool.getRequestQueueSize() + "\n";
+            if (this.isAsync()) {
+                details += "Async I/O Threads: " + ((AsyncHttpConnectionPool)pool).getIoThreadCount() + "\n";
+            }
+            if (this.requestCompression != null) {
+                details += "Request Compression: " + this.requestCompression + " (min " + this.requestCompressionMinSize + " bytes)\n";
+            }
+            if (this.retryPolicy != null) {
+                details += "Retry Policy: " + this.retryPolicy.getStatistics() + "\n";
+            }
+            if (this.responseCache != null) {
+                details += "Response Cache: " + this.responseCache.getStatistics() + "\n";
+            }
+            if (pool instanceof Http2ConnectionPool) {
+                details += "Upstream Protocol: " + (((Http2ConnectionPool)pool).isHttp2() ? "HTTP/2" : "HTTP/1.1") + "\n";
+            }
             return details;
         }
         return "No endpoint configured";
@@ -207,6 +318,27 @@ public abstract class HttpProxy extends AbstractHandler {
     public void setThreadPoolSize(int threadPoolSize) {
         this.threadPoolSize = threadPoolSize;
     }
+    public HttpResponseCache getResponseCache() {
+        return this.responseCache;
+    }
+    public void setResponseCache(HttpResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+    public String getRequestCompression() {
+        return this.requestCompression;
+    }
+    public void setRequestCompression(String requestCompression) {
+        this.requestCompression = requestCompression;
+    }
+    public void setRequestCompressionMinSize(long requestCompressionMinSize) {
+        this.requestCompressionMinSize = requestCompressionMinSize;
+    }
+    public HttpRetryPolicy getRetryPolicy() {
+        return this.retryPolicy;
+    }
+    public void setRetryPolicy(HttpRetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
     /** getters / setters */
 
 
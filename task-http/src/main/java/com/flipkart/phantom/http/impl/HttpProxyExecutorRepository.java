@@ -37,12 +37,13 @@ public class HttpProxyExecutorRepository extends AbstractExecutorRepository<Http
      * @param commandName command Name as specified by Executor. Not used in this case.
      * @param proxyName   proxyName the HttpProxy name
      * @param requestWrapper requestWrapper Object containing requestWrapper Data
-     * @return  an {@link HttpProxyExecutor} instance
+     * @return  an {@link HttpProxyExecutor} instance or an {@link AsyncHttpProxyExecutor} instance if the proxy uses the non-blocking http client
      */
     public Executor<HttpRequestWrapper,HttpResponse> getExecutor (String commandName, String proxyName, HttpRequestWrapper requestWrapper)  {
         HttpProxy proxy = (HttpProxy) registry.getHandler(proxyName);
         if (proxy != null && proxy.isActive()) {
-        	HttpProxyExecutor executor = new HttpProxyExecutor(proxy, this.taskContext, requestWrapper);
+        	Executor<HttpRequestWrapper,HttpResponse> executor = proxy.isAsync() ? new AsyncHttpProxyExecutor(proxy, this.taskContext, requestWrapper) :
+        		new HttpProxyExecutor(proxy, this.taskContext, requestWrapper);
             return this.wrapExecutorWithInterceptors(executor,proxy);
         }
         throw new RuntimeException("The HttpProxy is not active.");
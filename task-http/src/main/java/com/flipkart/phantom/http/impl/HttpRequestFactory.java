@@ -0,0 +1,123 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.http.impl;
+
+import java.net.URI;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpOptions;
+import org.apache.http.client.methods.HttpPatch;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpTrace;
+
+/**
+ * <code>HttpRequestFactory</code> creates the requests understood by the apache http library for any HTTP method. Requests are created with
+ * the request URI (path and query) only, as the {@link HttpConnectionPool} sends them to its pre-parsed target host.
+ * Content is sent with POST, PUT and PATCH requests always, and with DELETE, OPTIONS and extension method requests when there is content.
+ * GET, HEAD and TRACE requests are sent without content.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+class HttpRequestFactory {
+
+    /**
+     * Creates a request for the specified method
+     * @param method the HTTP request method, matched case-sensitively as per the HTTP specification
+     * @param uri the request URI i.e. path and query
+     * @param entity the request content, may be null
+     * @return the HttpRequestBase for the request
+     * @throws IllegalArgumentException if the request URI is invalid
+     */
+    static HttpRequestBase createRequest(String method, String uri, HttpEntity entity) {
+        URI requestUri = URI.create(uri);
+        switch (method) {
+            case HttpGet.METHOD_NAME:
+                return new HttpGet(requestUri);
+            case HttpHead.METHOD_NAME:
+                return new HttpHead(requestUri);
+            case HttpTrace.METHOD_NAME:
+                return new HttpTrace(requestUri);
+            case HttpPost.METHOD_NAME:
+                return withEntity(new HttpPost(requestUri), entity);
+            case HttpPut.METHOD_NAME:
+                return withEntity(new HttpPut(requestUri), entity);
+            case HttpPatch.METHOD_NAME:
+                return withEntity(new HttpPatch(requestUri), entity);
+            default: // DELETE, OPTIONS and extension methods carry content only if there is any
+                boolean hasContent = entity != null && entity.getContentLength() != 0;
+                if (hasContent) {
+                    return withEntity(new EntityEnclosingRequest(method, requestUri), entity);
+                } else if (HttpDelete.METHOD_NAME.equals(method)) {
+                    return new HttpDelete(requestUri);
+                } else if (HttpOptions.METHOD_NAME.equals(method)) {
+                    return new HttpOptions(requestUri);
+                }
+                return new Request(method, requestUri);
+        }
+    }
+
+    /**
+     * Helper method to set the specified entity on the request
+     */
+    private static HttpRequestBase withEntity(HttpEntityEnclosingRequestBase request, HttpEntity entity) {
+        request.setEntity(entity);
+        return request;
+    }
+
+    /**
+     * A request without content for an extension method
+     */
+    private static class Request extends HttpRequestBase {
+
+        private final String method;
+
+        Request(String method, URI uri) {
+            this.method = method;
+            this.setURI(uri);
+        }
+
+        public String getMethod() {
+            return this.method;
+        }
+    }
+
+    /**
+     * A request with content for a method that the apache http library models without content, such as DELETE and OPTIONS, or does not
+     * model at all
+     */
+    private static class EntityEnclosingRequest extends HttpEntityEnclosingRequestBase {
+
+        private final String method;
+
+        EntityEnclosingRequest(String method, URI uri) {
+            this.method = method;
+            this.setURI(uri);
+        }
+
+        public String getMethod() {
+            return this.method;
+        }
+    }
+
+}
@@ -16,6 +16,7 @@
 
 package com.flipkart.phantom.http.impl;
 
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
@@ -37,6 +38,12 @@ public class HttpRequestWrapper extends RequestWrapper {
     /** Data */
     private byte[] data;
 
+    /** Data stream, set instead of the data when the request content is streamed*/
+    private InputStream dataStream;
+
+    /** The content length of the data stream, -1 if not known*/
+    private long contentLength = -1;
+
     /** method */
     private String method;
 
@@ -92,6 +99,18 @@ public class HttpRequestWrapper extends RequestWrapper {
     public void setData(byte[] data){
         this.data = data;
     }
+    public InputStream getDataStream(){
+        return dataStream;
+    }
+    public void setDataStream(InputStream dataStream){
+        this.dataStream = dataStream;
+    }
+    public long getContentLength(){
+        return contentLength;
+    }
+    public void setContentLength(long contentLength){
+        this.contentLength = contentLength;
+    }
     public String getMethod(){
         return method;
     }
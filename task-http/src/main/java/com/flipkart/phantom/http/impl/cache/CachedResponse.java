@@ -0,0 +1,170 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.http.impl.cache;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHttpResponse;
+
+/**
+ * <code>CachedResponse</code> is an immutable {@link HttpResponse} stored in a {@link HttpResponseCache}. The response body is held either in a
+ * byte array or, for off-heap storage, in a direct {@link ByteBuffer}.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+class CachedResponse {
+
+    /** The response status line, headers and body*/
+    private final StatusLine statusLine;
+    private final Header[] headers;
+    private final byte[] body;
+    private final ByteBuffer offHeapBody;
+
+    /** The time this response was stored or last revalidated, its age at that time and freshness lifetime, in millis*/
+    private final long storedAtMillis;
+    private final long initialAgeMillis;
+    private final long freshnessLifetimeMillis;
+
+    /**
+     * Constructor for this class
+     */
+    CachedResponse(StatusLine statusLine, Header[] headers, byte[] body, boolean offHeap, long storedAtMillis, long initialAgeMillis,
+            long freshnessLifetimeMillis) {
+        this.statusLine = statusLine;
+        this.headers = headers;
+        if (offHeap) {
+            this.offHeapBody = ByteBuffer.allocateDirect(body.length);
+            this.offHeapBody.put(body).flip();
+            this.body = null;
+        } else {
+            this.offHeapBody = null;
+            this.body = body;
+        }
+        this.storedAtMillis = storedAtMillis;
+        this.initialAgeMillis = initialAgeMillis;
+        this.freshnessLifetimeMillis = freshnessLifetimeMillis;
+    }
+
+    /**
+     * Constructor for this class. Creates a copy of the specified response with the body of the specified response and the headers and freshness
+     * of a revalidation
+     */
+    CachedResponse(CachedResponse response, Header[] headers, long storedAtMillis, long initialAgeMillis, long freshnessLifetimeMillis) {
+        this.statusLine = response.statusLine;
+        this.headers = headers;
+        this.body = response.body;
+        this.offHeapBody = response.offHeapBody;
+        this.storedAtMillis = storedAtMillis;
+        this.initialAgeMillis = initialAgeMillis;
+        this.freshnessLifetimeMillis = freshnessLifetimeMillis;
+    }
+
+    /**
+     * Returns true if this response may be served without revalidation at the specified time
+     */
+    boolean isFresh(long nowMillis) {
+        return this.getAgeMillis(nowMillis) < this.freshnessLifetimeMillis;
+    }
+
+    /**
+     * Creates a new HttpResponse from this cached response, with the Age header set
+     */
+    HttpResponse toResponse(long nowMillis) {
+        BasicHttpResponse response = new BasicHttpResponse(this.statusLine);
+        response.setHeaders(this.headers);
+        response.setHeader(HttpHeaders.AGE, String.valueOf(this.getAgeMillis(nowMillis) / 1000));
+        AbstractHttpEntity entity = this.offHeapBody != null ?
+                new InputStreamEntity(new ByteBufferInputStream(this.offHeapBody.duplicate()), this.offHeapBody.remaining()) :
+                new ByteArrayEntity(this.body);
+        entity.setContentType(response.getFirstHeader(HttpHeaders.CONTENT_TYPE));
+        response.setEntity(entity);
+        return response;
+    }
+
+    /**
+     * Returns the first header with the specified name or null
+     */
+    String getHeader(String name) {
+        for (Header header : this.headers) {
+            if (header.getName().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the approximate memory used by this response, in bytes
+     */
+    int getSize() {
+        int size = this.body != null ? this.body.length : this.offHeapBody.capacity();
+        for (Header header : this.headers) {
+            size += header.getName().length() + header.getValue().length();
+        }
+        return size;
+    }
+
+    /**
+     * Helper method to return the age of this response at the specified time
+     */
+    private long getAgeMillis(long nowMillis) {
+        return this.initialAgeMillis + Math.max(0, nowMillis - this.storedAtMillis);
+    }
+
+    /** Getter methods */
+    Header[] getHeaders() {
+        return this.headers;
+    }
+    /** Getter methods */
+
+    /**
+     * An InputStream over a ByteBuffer
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+        public int read() {
+            return this.buffer.hasRemaining() ? this.buffer.get() & 0xff : -1;
+        }
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!this.buffer.hasRemaining()) {
+                return -1;
+            }
+            int read = Math.min(len, this.buffer.remaining());
+            this.buffer.get(b, off, read);
+            return read;
+        }
+        public int available() {
+            return this.buffer.remaining();
+        }
+    }
+
+}
@@ -0,0 +1,675 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.http.impl.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.util.EntityUtils;
+
+import com.flipkart.phantom.http.impl.HttpRequestWrapper;
+import com.flipkart.phantom.task.spi.RequestHeaders;
+
+/**
+ * <code>HttpResponseCache</code> is a shared HTTP cache for responses of a {@link com.flipkart.phantom.http.impl.HttpProxy}. It follows the caching
+ * rules of HTTP/1.1 for shared caches:
+ * <pre>
+ * Only GET requests without Authorization, Range or conditional headers are served from the cache.
+ * Responses are stored if the status is cacheable, the response does not carry <code>no-store</code>, <code>private</code>, <code>Vary: *</code>
+ * or <code>Set-Cookie</code> and is either explicitly fresh (<code>s-maxage</code>, <code>max-age</code> or <code>Expires</code>) or has a validator (<code>ETag</code> or
+ * <code>Last-Modified</code>).
+ * Stale responses and requests with <code>no-cache</code> are revalidated with a conditional request. A 304 response refreshes the stored response.
+ * Responses are stored per variant, as identified by the request headers named in the <code>Vary</code> response header.
+ * </pre>
+ * Concurrent misses for the same request are coalesced : one request is sent upstream and the others wait for, and share, its response if it
+ * was stored for their variant. Responses that could not be stored are not shared and the waiting requests are then sent upstream. Blocking
+ * callers wait for the shared response for at most the coalescing timeout (see {@link #setCoalescingTimeoutMillis(long)}).
+ * The cache is bounded by the total size of stored responses and evicts the least recently used request URIs, along with all their variants.
+ * Response bodies may optionally be stored off-heap, in direct byte buffers, to reduce GC overhead for large caches. Off-heap memory of evicted
+ * responses is reclaimed when the buffers are garbage collected.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class HttpResponseCache {
+
+    /** Defaults for the cache size and max size of a response*/
+    private static final long DEFAULT_MAX_SIZE_BYTES = 64 * 1024 * 1024;
+    private static final int DEFAULT_MAX_RESPONSE_SIZE_BYTES = 1024 * 1024;
+
+    /** Default max time that a blocking caller waits for the response of a coalesced request*/
+    private static final long DEFAULT_COALESCING_TIMEOUT_MILLIS = 5000;
+
+    /** The cacheable request method and the response status codes that are cacheable by default*/
+    private static final String GET = "GET";
+    private static final Set<Integer> CACHEABLE_STATUS_CODES = new HashSet<Integer>(Arrays.asList(HttpStatus.SC_OK,
+            HttpStatus.SC_NON_AUTHORITATIVE_INFORMATION, HttpStatus.SC_MULTIPLE_CHOICES, HttpStatus.SC_MOVED_PERMANENTLY,
+            HttpStatus.SC_NOT_FOUND, HttpStatus.SC_GONE));
+
+    /** Request headers that bypass the cache*/
+    private static final String[] BYPASS_REQUEST_HEADERS = {HttpHeaders.AUTHORIZATION, HttpHeaders.RANGE, HttpHeaders.IF_NONE_MATCH,
+            HttpHeaders.IF_MODIFIED_SINCE, HttpHeaders.IF_MATCH, HttpHeaders.IF_UNMODIFIED_SINCE, HttpHeaders.IF_RANGE};
+
+    /** Hop-by-hop response headers that are not stored*/
+    private static final Set<String> HOP_BY_HOP_HEADERS = new HashSet<String>(Arrays.asList("connection", "keep-alive", "proxy-connection",
+            "transfer-encoding", "te", "trailer", "upgrade", "proxy-authenticate"));
+
+    /** Response headers that are specific to the client and must not be shared*/
+    private static final Set<String> CLIENT_HEADERS = new HashSet<String>(Arrays.asList("set-cookie", "set-cookie2"));
+
+    /** Cache-Control directives*/
+    private static final String NO_STORE = "no-store";
+    private static final String NO_CACHE = "no-cache";
+    private static final String PRIVATE = "private";
+    private static final String MAX_AGE = "max-age";
+    private static final String S_MAXAGE = "s-maxage";
+    private static final String ANY_VARY = "*";
+
+    /**
+     * Loads a response from the upstream service using the specified request headers
+     */
+    public interface Loader {
+        HttpResponse load(List<Map.Entry<String, String>> headers) throws Exception;
+    }
+
+    /**
+     * Loads a response asynchronously from the upstream service using the specified request headers
+     */
+    public interface AsyncLoader {
+        Future<HttpResponse> load(List<Map.Entry<String, String>> headers, FutureCallback<HttpResponse> callback) throws Exception;
+    }
+
+    /** The max total size of stored responses and the max size of a single response*/
+    private long maxSizeBytes = DEFAULT_MAX_SIZE_BYTES;
+    private int maxResponseSizeBytes = DEFAULT_MAX_RESPONSE_SIZE_BYTES;
+
+    /** The max time that a blocking caller waits for the response of a coalesced request*/
+    private long coalescingTimeoutMillis = DEFAULT_COALESCING_TIMEOUT_MILLIS;
+
+    /** Stores response bodies off-heap when set*/
+    private boolean offHeap;
+
+    /** The stored variants by request URI, in access order, and their total size*/
+    private final LinkedHashMap<String, Variants> entries = new LinkedHashMap<String, Variants>(16, 0.75f, true);
+    private long sizeBytes;
+
+    /** The requests that are in-flight, by cache key*/
+    private final ConcurrentHashMap<String, CompletableFuture<CachedResponse>> inFlightRequests = new ConcurrentHashMap<String, CompletableFuture<CachedResponse>>();
+
+    /** Cache statistics*/
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Returns true if the specified request may be served from this cache
+     * @param request the HttpRequestWrapper
+     * @return true if cacheable, false otherwise
+     */
+    public boolean isCacheable(HttpRequestWrapper request) {
+        if (!GET.equalsIgnoreCase(request.getMethod()) || request.getDataStream() != null) {
+            return false;
+        }
+        List<Map.Entry<String, String>> headers = request.getHeaders().get();
+        for (String header : BYPASS_REQUEST_HEADERS) {
+            if (getHeader(headers, header) != null) {
+                return false;
+            }
+        }
+        return !parseCacheControl(getHeader(headers, HttpHeaders.CACHE_CONTROL)).containsKey(NO_STORE);
+    }
+
+    /**
+     * Returns the response for the specified request, from this cache if fresh or else from the loader
+     * @param request the cacheable HttpRequestWrapper
+     * @param loader the Loader for upstream responses
+     * @return the HttpResponse
+     * @throws Exception in case of errors loading the response
+     */
+    public HttpResponse execute(HttpRequestWrapper request, Loader loader) throws Exception {
+        long now = System.currentTimeMillis();
+        String uri = request.getUri();
+        List<Map.Entry<String, String>> headers = request.getHeaders().get();
+        String key = this.getKey(uri, headers);
+        CachedResponse cached = this.get(uri, headers);
+        if (cached != null && cached.isFresh(now) && !requiresRevalidation(headers)) {
+            this.hits.incrementAndGet();
+            return cached.toResponse(now);
+        }
+        CompletableFuture<CachedResponse> inFlightRequest = new CompletableFuture<CachedResponse>();
+        CompletableFuture<CachedResponse> leader = this.inFlightRequests.putIfAbsent(key, inFlightRequest);
+        if (leader != null) {
+            this.coalesced.incrementAndGet();
+            CachedResponse shared = null;
+            try {
+                shared = leader.get(this.coalescingTimeoutMillis, TimeUnit.MILLISECONDS) == null ? null : this.get(uri, headers);
+            } catch (Exception e) {
+                // the leader failed or timed out. Load the response instead
+            }
+            return shared != null ? shared.toResponse(System.currentTimeMillis()) : loader.load(headers);
+        }
+        try {
+            return this.store(uri, headers, key, cached, loader.load(this.getRequestHeaders(headers, cached)), inFlightRequest);
+        } catch (Exception e) {
+            this.complete(key, inFlightRequest, null);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the response for the specified request, from this cache if fresh or else from the loader. The callback is invoked on completion
+     * @param request the cacheable HttpRequestWrapper
+     * @param loader the AsyncLoader for upstream responses
+     * @param callback the callback to notify on completion
+     * @return Future for the HttpResponse
+     * @throws Exception in case of errors sending the request upstream
+     */
+    public Future<HttpResponse> executeAsync(HttpRequestWrapper request, final AsyncLoader loader, FutureCallback<HttpResponse> callback) throws Exception {
+        long now = System.currentTimeMillis();
+        final String uri = request.getUri();
+        final List<Map.Entry<String, String>> headers = request.getHeaders().get();
+        final String key = this.getKey(uri, headers);
+        final CachedResponse cached = this.get(uri, headers);
+        final AtomicReference<Future<HttpResponse>> upstreamRequest = new AtomicReference<Future<HttpResponse>>();
+        final BasicFuture<HttpResponse> response = new BasicFuture<HttpResponse>(callback) {
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                Future<HttpResponse> upstream = upstreamRequest.get();
+                if (upstream != null) {
+                    upstream.cancel(mayInterruptIfRunning);
+                }
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+        if (cached != null && cached.isFresh(now) && !requiresRevalidation(headers)) {
+            this.hits.incrementAndGet();
+            response.completed(cached.toResponse(now));
+            return response;
+        }
+        final CompletableFuture<CachedResponse> inFlightRequest = new CompletableFuture<CachedResponse>();
+        CompletableFuture<CachedResponse> leader = this.inFlightRequests.putIfAbsent(key, inFlightRequest);
+        if (leader != null) {
+            this.coalesced.incrementAndGet();
+            leader.whenComplete((stored, error) -> {
+                CachedResponse shared = stored == null ? null : get(uri, headers);
+                if (shared != null) {
+                    response.completed(shared.toResponse(System.currentTimeMillis()));
+                    return;
+                }
+                try {
+                    upstreamRequest.set(loader.load(headers, forward(response)));
+                } catch (Exception e) {
+                    response.failed(e);
+                }
+            });
+            return response;
+        }
+        try {
+            upstreamRequest.set(loader.load(this.getRequestHeaders(headers, cached), new FutureCallback<HttpResponse>() {
+                public void completed(HttpResponse upstreamResponse) {
+                    try {
+                        response.completed(store(uri, headers, key, cached, upstreamResponse, inFlightRequest));
+                    } catch (Exception e) {
+                        complete(key, inFlightRequest, null);
+                        response.failed(e);
+                    }
+                }
+                public void failed(Exception e) {
+                    complete(key, inFlightRequest, null);
+                    response.failed(e);
+                }
+                public void cancelled() {
+                    complete(key, inFlightRequest, null);
+                    response.cancel();
+                }
+            }));
+        } catch (Exception e) {
+            this.complete(key, inFlightRequest, null);
+            throw e;
+        }
+        return response;
+    }
+
+    /**
+     * Removes all stored responses
+     */
+    public void clear() {
+        synchronized (this.entries) {
+            this.entries.clear();
+            this.sizeBytes = 0;
+        }
+    }
+
+    /**
+     * Returns a summary of the statistics of this cache
+     * @return cache statistics
+     */
+    public String getStatistics() {
+        synchronized (this.entries) {
+            return "hits=" + this.hits.get() + ", misses=" + this.misses.get() + ", revalidations=" + this.revalidations.get() + ", coalesced=" +
+                    this.coalesced.get() + ", uris=" + this.entries.size() + ", size=" + this.sizeBytes + "/" + this.maxSizeBytes + " bytes" +
+                    (this.offHeap ? " (off-heap)" : "");
+        }
+    }
+
+    /**
+     * Helper method to process the upstream response : refreshes the stored response on a 304 or stores a cacheable response. Completes the in-flight
+     * request with the stored response and returns the response for the caller
+     */
+    private HttpResponse store(String uri, List<Map.Entry<String, String>> requestHeaders, String key, CachedResponse cached,
+            HttpResponse response, CompletableFuture<CachedResponse> inFlightRequest) throws Exception {
+        long now = System.currentTimeMillis();
+        int statusCode = response.getStatusLine().getStatusCode();
+        if (cached != null && statusCode == HttpStatus.SC_NOT_MODIFIED) {
+            this.revalidations.incrementAndGet();
+            EntityUtils.consumeQuietly(response.getEntity());
+            Header[] headers = mergeHeaders(cached.getHeaders(), response.getAllHeaders());
+            long freshnessLifetime = getFreshnessLifetime(headers, now);
+            CachedResponse refreshed = new CachedResponse(cached, headers, now, getInitialAge(headers, now), Math.max(0, freshnessLifetime));
+            this.put(uri, requestHeaders, refreshed);
+            this.complete(key, inFlightRequest, refreshed);
+            HttpResponse refreshedResponse = refreshed.toResponse(now);
+            for (Header header : response.getAllHeaders()) {
+                if (CLIENT_HEADERS.contains(header.getName().toLowerCase())) {
+                    refreshedResponse.addHeader(header);
+                }
+            }
+            return refreshedResponse;
+        }
+        this.misses.incrementAndGet();
+        Header[] headers = filterHeaders(response.getAllHeaders());
+        long freshnessLifetime = getFreshnessLifetime(headers, now);
+        String vary = getHeader(headers, HttpHeaders.VARY);
+        if (!CACHEABLE_STATUS_CODES.contains(statusCode) || freshnessLifetime < 0 || (vary != null && vary.contains(ANY_VARY)) ||
+                hasClientHeaders(headers)) {
+            this.complete(key, inFlightRequest, null);
+            return response;
+        }
+        HttpEntity entity = response.getEntity();
+        byte[] body = new byte[0];
+        if (entity != null) {
+            if (entity.getContentLength() > this.maxResponseSizeBytes) {
+                this.complete(key, inFlightRequest, null);
+                return response;
+            }
+            // read upto max response size. The response is not stored if it is bigger
+            InputStream content = entity.getContent();
+            ByteArrayOutputStream bufferedContent = new ByteArrayOutputStream(entity.getContentLength() > 0 ? (int)entity.getContentLength() : 4096);
+            byte[] buffer = new byte[4096];
+            int read;
+            while (bufferedContent.size() <= this.maxResponseSizeBytes && (read = content.read(buffer)) != -1) {
+                bufferedContent.write(buffer, 0, read);
+            }
+            if (bufferedContent.size() > this.maxResponseSizeBytes) {
+                this.complete(key, inFlightRequest, null);
+                InputStreamEntity remainingEntity = new InputStreamEntity(new SequenceInputStream(
+                        new ByteArrayInputStream(bufferedContent.toByteArray()), content), -1);
+                remainingEntity.setContentType(entity.getContentType());
+                response.setEntity(remainingEntity);
+                return response;
+            }
+            content.close();
+            body = bufferedContent.toByteArray();
+        }
+        CachedResponse stored = new CachedResponse(response.getStatusLine(), headers, body, this.offHeap, now, getInitialAge(headers, now), freshnessLifetime);
+        this.put(uri, requestHeaders, stored);
+        this.complete(key, inFlightRequest, stored);
+        return stored.toResponse(now);
+    }
+
+    /**
+     * Helper method to complete the in-flight request for the specified key
+     */
+    private void complete(String key, CompletableFuture<CachedResponse> inFlightRequest, CachedResponse response) {
+        this.inFlightRequests.remove(key, inFlightRequest);
+        inFlightRequest.complete(response);
+    }
+
+    /**
+     * Helper method to return the stored response variant for the specified request
+     */
+    private CachedResponse get(String uri, List<Map.Entry<String, String>> requestHeaders) {
+        synchronized (this.entries) {
+            Variants variants = this.entries.get(uri);
+            return variants == null ? null : variants.responses.get(getVariantKey(variants.varyHeaders, requestHeaders));
+        }
+    }
+
+    /**
+     * Helper method to store the specified response variant and evict least recently used URIs to stay within the max cache size
+     */
+    private void put(String uri, List<Map.Entry<String, String>> requestHeaders, CachedResponse response) {
+        String[] varyHeaders = getVaryHeaders(response.getHeader(HttpHeaders.VARY));
+        synchronized (this.entries) {
+            Variants variants = this.entries.get(uri);
+            if (variants == null || !Arrays.equals(variants.varyHeaders, varyHeaders)) {
+                if (variants != null) { // the variants have changed. Discard the previously stored ones
+                    this.sizeBytes -= variants.sizeBytes;
+                }
+                variants = new Variants(varyHeaders);
+                this.entries.put(uri, variants);
+            }
+            CachedResponse replaced = variants.responses.put(getVariantKey(varyHeaders, requestHeaders), response);
+            int delta = response.getSize() - (replaced == null ? 0 : replaced.getSize());
+            variants.sizeBytes += delta;
+            this.sizeBytes += delta;
+            Iterator<Variants> iterator = this.entries.values().iterator();
+            while (this.sizeBytes > this.maxSizeBytes && iterator.hasNext()) {
+                Variants eldest = iterator.next();
+                this.sizeBytes -= eldest.sizeBytes;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Helper method to return the key that identifies the specified request for coalescing
+     */
+    private String getKey(String uri, List<Map.Entry<String, String>> requestHeaders) {
+        String[] varyHeaders;
+        synchronized (this.entries) {
+            Variants variants = this.entries.get(uri);
+            varyHeaders = variants == null ? null : variants.varyHeaders;
+        }
+        return varyHeaders == null ? uri : uri + '\n' + getVariantKey(varyHeaders, requestHeaders);
+    }
+
+    /**
+     * Helper method to add the validators of the specified stored response, if any, to the request headers
+     */
+    private List<Map.Entry<String, String>> getRequestHeaders(List<Map.Entry<String, String>> headers, CachedResponse cached) {
+        if (cached == null) {
+            return headers;
+        }
+        String etag = cached.getHeader(HttpHeaders.ETAG);
+        String lastModified = cached.getHeader(HttpHeaders.LAST_MODIFIED);
+        if (etag == null && lastModified == null) {
+            return headers;
+        }
+        RequestHeaders conditionalHeaders = new RequestHeaders(headers);
+        if (etag != null) {
+            conditionalHeaders.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        }
+        if (lastModified != null) {
+            conditionalHeaders.addHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+        }
+        return conditionalHeaders;
+    }
+
+    /**
+     * Helper method to return a callback that forwards completion to the specified future
+     */
+    private static FutureCallback<HttpResponse> forward(final BasicFuture<HttpResponse> future) {
+        return new FutureCallback<HttpResponse>() {
+            public void completed(HttpResponse result) {
+                future.completed(result);
+            }
+            public void failed(Exception e) {
+                future.failed(e);
+            }
+            public void cancelled() {
+                future.cancel();
+            }
+        };
+    }
+
+    /**
+     * Helper method to check if the request requires the stored response to be revalidated
+     */
+    private static boolean requiresRevalidation(List<Map.Entry<String, String>> headers) {
+        Map<String, String> cacheControl = parseCacheControl(getHeader(headers, HttpHeaders.CACHE_CONTROL));
+        return cacheControl.containsKey(NO_CACHE) || "0".equals(cacheControl.get(MAX_AGE)) ||
+                NO_CACHE.equalsIgnoreCase(getHeader(headers, HttpHeaders.PRAGMA));
+    }
+
+    /**
+     * Helper method to return the freshness lifetime of a response with the specified headers in millis. Returns 0 for responses that must
+     * always be revalidated and -1 for responses that may not be stored, including responses that are never fresh and cannot be revalidated
+     */
+    private static long getFreshnessLifetime(Header[] headers, long now) {
+        Map<String, String> cacheControl = parseCacheControl(getHeader(headers, HttpHeaders.CACHE_CONTROL));
+        if (cacheControl.containsKey(NO_STORE) || cacheControl.containsKey(PRIVATE)) {
+            return -1;
+        }
+        boolean hasValidator = getHeader(headers, HttpHeaders.ETAG) != null || getHeader(headers, HttpHeaders.LAST_MODIFIED) != null;
+        if (cacheControl.containsKey(NO_CACHE)) {
+            return hasValidator ? 0 : -1;
+        }
+        long lifetime = -1;
+        if (cacheControl.containsKey(S_MAXAGE)) {
+            lifetime = parseSeconds(cacheControl.get(S_MAXAGE));
+        } else if (cacheControl.containsKey(MAX_AGE)) {
+            lifetime = parseSeconds(cacheControl.get(MAX_AGE));
+        } else if (getHeader(headers, HttpHeaders.EXPIRES) != null) {
+            Date expires = DateUtils.parseDate(getHeader(headers, HttpHeaders.EXPIRES));
+            Date date = getHeader(headers, HttpHeaders.DATE) == null ? null : DateUtils.parseDate(getHeader(headers, HttpHeaders.DATE));
+            lifetime = expires == null ? 0 : Math.max(0, expires.getTime() - (date == null ? now : date.getTime()));
+        }
+        if (lifetime > 0) {
+            return lifetime;
+        }
+        return hasValidator ? 0 : -1;
+    }
+
+    /**
+     * Helper method to return the age of a response, as reported by upstream caches, in millis
+     */
+    private static long getInitialAge(Header[] headers, long now) {
+        String age = getHeader(headers, HttpHeaders.AGE);
+        return age == null ? 0 : Math.max(0, parseSeconds(age));
+    }
+
+    /**
+     * Helper method to parse a delta-seconds value into millis. Returns 0 for invalid values
+     */
+    private static long parseSeconds(String value) {
+        try {
+            return value == null ? 0 : Long.parseLong(value.trim()) * 1000;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Helper method to parse the Cache-Control header value into directives and values
+     */
+    private static Map<String, String> parseCacheControl(String cacheControl) {
+        Map<String, String> directives = new HashMap<String, String>();
+        if (cacheControl == null) {
+            return directives;
+        }
+        for (String directive : cacheControl.split(",")) {
+            int separator = directive.indexOf('=');
+            String name = (separator < 0 ? directive : directive.substring(0, separator)).trim().toLowerCase();
+            String value = separator < 0 ? null : directive.substring(separator + 1).trim().replace("\"", "");
+            directives.put(name, value);
+        }
+        return directives;
+    }
+
+    /**
+     * Helper method to return the lower-case names of the headers in the specified Vary header value
+     */
+    private static String[] getVaryHeaders(String vary) {
+        if (vary == null) {
+            return new String[0];
+        }
+        String[] names = vary.split(",");
+        for (int i = 0; i < names.length; i++) {
+            names[i] = names[i].trim().toLowerCase();
+        }
+        Arrays.sort(names);
+        return names;
+    }
+
+    /**
+     * Helper method to return the key of the variant for the specified request headers
+     */
+    private static String getVariantKey(String[] varyHeaders, List<Map.Entry<String, String>> requestHeaders) {
+        if (varyHeaders.length == 0) {
+            return "";
+        }
+        StringBuilder key = new StringBuilder();
+        for (String name : varyHeaders) {
+            String value = getHeader(requestHeaders, name);
+            key.append(value == null ? "" : value).append('\u0000');
+        }
+        return key.toString();
+    }
+
+    /**
+     * Helper method to remove hop-by-hop headers
+     */
+    private static Header[] filterHeaders(Header[] headers) {
+        List<Header> filtered = new ArrayList<Header>(headers.length);
+        for (Header header : headers) {
+            if (!HOP_BY_HOP_HEADERS.contains(header.getName().toLowerCase())) {
+                filtered.add(header);
+            }
+        }
+        return filtered.toArray(new Header[filtered.size()]);
+    }
+
+    /**
+     * Helper method to check if any of the specified headers are specific to the client
+     */
+    private static boolean hasClientHeaders(Header[] headers) {
+        for (Header header : headers) {
+            if (CLIENT_HEADERS.contains(header.getName().toLowerCase())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Helper method to update the stored headers with the headers of a 304 response. Headers that are specific to the client are not stored
+     */
+    private static Header[] mergeHeaders(Header[] stored, Header[] updated) {
+        Set<String> updatedNames = new HashSet<String>();
+        for (Header header : filterHeaders(updated)) {
+            updatedNames.add(header.getName().toLowerCase());
+        }
+        List<Header> merged = new ArrayList<Header>(stored.length + updated.length);
+        for (Header header : stored) {
+            if (!updatedNames.contains(header.getName().toLowerCase())) {
+                merged.add(header);
+            }
+        }
+        for (Header header : filterHeaders(updated)) {
+            if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(header.getName()) && !CLIENT_HEADERS.contains(header.getName().toLowerCase())) {
+                merged.add(new BasicHeader(header.getName(), header.getValue()));
+            }
+        }
+        return merged.toArray(new Header[merged.size()]);
+    }
+
+    /**
+     * Helper method to return the first header value with the specified name from the request headers
+     */
+    private static String getHeader(List<Map.Entry<String, String>> headers, String name) {
+        if (headers instanceof RequestHeaders) {
+            return ((RequestHeaders) headers).getHeader(name);
+        }
+        for (Map.Entry<String, String> header : headers) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Helper method to return the first header value with the specified name from the response headers
+     */
+    private static String getHeader(Header[] headers, String name) {
+        for (Header header : headers) {
+            if (header.getName().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The stored variants of responses for a request URI
+     */
+    private static class Variants {
+        private final String[] varyHeaders;
+        private final Map<String, CachedResponse> responses = new HashMap<String, CachedResponse>(2);
+        private long sizeBytes;
+        Variants(String[] varyHeaders) {
+            this.varyHeaders = varyHeaders;
+        }
+    }
+
+    /** Start Getter/Setter methods */
+    public long getMaxSizeBytes() {
+        return this.maxSizeBytes;
+    }
+    public void setMaxSizeBytes(long maxSizeBytes) {
+        this.maxSizeBytes = maxSizeBytes;
+    }
+    public int getMaxResponseSizeBytes() {
+        return this.maxResponseSizeBytes;
+    }
+    public void setMaxResponseSizeBytes(int maxResponseSizeBytes) {
+        this.maxResponseSizeBytes = maxResponseSizeBytes;
+    }
+    public long getCoalescingTimeoutMillis() {
+        return this.coalescingTimeoutMillis;
+    }
+    public void setCoalescingTimeoutMillis(long coalescingTimeoutMillis) {
+        this.coalescingTimeoutMillis = coalescingTimeoutMillis;
+    }
+    public boolean isOffHeap() {
+        return this.offHeap;
+    }
+    public void setOffHeap(boolean offHeap) {
+        this.offHeap = offHeap;
+    }
+    /** End Getter/Setter methods */
+
+}
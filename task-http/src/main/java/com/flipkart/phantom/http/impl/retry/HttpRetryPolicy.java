@@ -0,0 +1,516 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.http.impl.retry;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.utils.HttpClientUtils;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.flipkart.phantom.http.impl.HttpRequestWrapper;
+import com.flipkart.phantom.task.spi.loadbalancer.Endpoint;
+
+/**
+ * <code>HttpRetryPolicy</code> retries and hedges upstream requests of a {@link com.flipkart.phantom.http.impl.HttpProxy} to cut tail latency.
+ * Only requests with one of the {@link #setIdempotentMethods(Set)} and content that is not streamed are attempted more than once :
+ * <ul>
+ * <li>Retries : a request that fails with an I/O error or a response with one of the {@link #setRetryableStatusCodes(Set)} is sent again.</li>
+ * <li>Hedging : if turned on, a second attempt of a request is sent when the first has not completed within the
+ * {@link #setHedgeDelayPercentile(double)} latency of recent requests. The first response wins and the other attempt is cancelled.
+ * Hedging needs the non-blocking client of an {@link com.flipkart.phantom.http.impl.AsyncHttpConnectionPool}, as attempts must not hold
+ * threads while in flight.</li>
+ * </ul>
+ * Each request makes at most {@link #setMaxRetries(int)} additional attempts. Additional attempts are sent to endpoints not tried already, if
+ * the pool balances requests across several endpoints. A {@link RetryBudget} caps the additional attempts of all requests to
+ * {@link #setBudgetPercent(int)} of requests, plus {@link #setMinRetriesPerSecond(int)}, so that retries do not amplify the load on a
+ * service that is failing.
+ * Each attempt is admitted by the pool like any other request and takes its own permit of the pool's process queue, as hedged attempts hold
+ * connections at the same time as the first. Additional attempts are therefore not sent when the process queue is full, and the request then
+ * fails with the pool's error instead.
+ * A policy keeps latency and budget state and must not be shared between proxies.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class HttpRetryPolicy {
+
+    /** Logger for this class*/
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpRetryPolicy.class);
+
+    /** Defaults for the retry policy*/
+    private static final int DEFAULT_MAX_RETRIES = 1;
+    private static final double DEFAULT_HEDGE_DELAY_PERCENTILE = 95;
+    private static final long DEFAULT_MIN_HEDGE_DELAY_MILLIS = 1;
+    private static final int DEFAULT_BUDGET_PERCENT = 10;
+    private static final int DEFAULT_MIN_RETRIES_PER_SECOND = 10;
+
+    /** The window over which latencies are tracked and the number of latencies needed before requests are hedged*/
+    private static final long LATENCY_WINDOW_MILLIS = 10000;
+    private static final int MIN_LATENCY_SAMPLES = 20;
+
+    /** The timer used to send hedged attempts. Sending an attempt does not block, so a single thread serves all policies*/
+    private static final ScheduledExecutorService HEDGE_TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "HttpRetryPolicy-Hedge-Timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** The retry policy settings*/
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private Set<String> idempotentMethods = new HashSet<String>(Arrays.asList("GET", "HEAD", "PUT"));
+    private Set<Integer> retryableStatusCodes = new HashSet<Integer>(Arrays.asList(502, 503, 504));
+    private boolean hedging;
+    private double hedgeDelayPercentile = DEFAULT_HEDGE_DELAY_PERCENTILE;
+    private long minHedgeDelayMillis = DEFAULT_MIN_HEDGE_DELAY_MILLIS;
+    private int budgetPercent = DEFAULT_BUDGET_PERCENT;
+    private int minRetriesPerSecond = DEFAULT_MIN_RETRIES_PER_SECOND;
+
+    /** The retry budget and the latencies of recent requests*/
+    private RetryBudget retryBudget = new RetryBudget(DEFAULT_BUDGET_PERCENT, DEFAULT_MIN_RETRIES_PER_SECOND);
+    private final LatencyHistogram latencies = new LatencyHistogram(LATENCY_WINDOW_MILLIS);
+
+    /** Statistics*/
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong budgetExhausted = new AtomicLong();
+
+    /**
+     * Sends an attempt of a request using the blocking client
+     */
+    public interface Attempt {
+        /**
+         * Sends the attempt
+         * @param attemptedEndpoints the endpoints earlier attempts were sent to. The endpoint this attempt is sent to must be added to it
+         * @return the HttpResponse
+         * @throws Exception in case of errors
+         */
+        HttpResponse send(List<Endpoint> attemptedEndpoints) throws Exception;
+    }
+
+    /**
+     * Sends an attempt of a request using the non-blocking client
+     */
+    public interface AsyncAttempt {
+        /**
+         * Sends the attempt
+         * @param attemptedEndpoints the endpoints earlier attempts were sent to. The endpoint this attempt is sent to must be added to it
+         * @param callback the callback to notify on completion
+         * @return Future for the HttpResponse
+         * @throws Exception in case of errors in sending the attempt
+         */
+        Future<HttpResponse> send(List<Endpoint> attemptedEndpoints, FutureCallback<HttpResponse> callback) throws Exception;
+    }
+
+    /**
+     * Returns true if the specified request may be attempted more than once i.e. has an idempotent method and content that is not streamed
+     * @param request the HttpRequestWrapper
+     * @return true if the request may be retried or hedged
+     */
+    public boolean isRetryable(HttpRequestWrapper request) {
+        return this.maxRetries > 0 && this.idempotentMethods.contains(request.getMethod()) && request.getDataStream() == null;
+    }
+
+    /**
+     * Executes a request, retrying it as per this policy. The request must be retryable as per {@link #isRetryable(HttpRequestWrapper)}
+     * @param attempt the Attempt that sends the request
+     * @return the HttpResponse of the last attempt
+     * @throws Exception the failure of the last attempt
+     */
+    public HttpResponse execute(Attempt attempt) throws Exception {
+        this.retryBudget.deposit();
+        List<Endpoint> attemptedEndpoints = new ArrayList<Endpoint>(2);
+        for (int retriesRemaining = this.maxRetries; ; retriesRemaining--) {
+            long startNanos = System.nanoTime();
+            HttpResponse response;
+            try {
+                response = attempt.send(attemptedEndpoints);
+            } catch (Exception e) {
+                if (retriesRemaining > 0 && isRetryable(e) && this.tryRetry()) {
+                    LOGGER.debug("Retrying request after failure : {}", e.toString());
+                    continue;
+                }
+                throw e;
+            }
+            if (retriesRemaining > 0 && this.isRetryable(response) && this.tryRetry()) {
+                LOGGER.debug("Retrying request after response : {}", response.getStatusLine());
+                HttpClientUtils.closeQuietly(response);
+                continue;
+            }
+            this.recordLatency(response, startNanos);
+            return response;
+        }
+    }
+
+    /**
+     * Executes a request asynchronously, retrying and hedging it as per this policy. The request must be retryable as per
+     * {@link #isRetryable(HttpRequestWrapper)}. The callback is invoked from the thread that completes the winning attempt
+     * @param attempt the AsyncAttempt that sends the request
+     * @param callback the callback to notify on completion, may be null
+     * @return Future for the HttpResponse. Cancelling it cancels all attempts in flight
+     * @throws Exception in case of errors in sending the first attempt
+     */
+    public Future<HttpResponse> executeAsync(AsyncAttempt attempt, FutureCallback<HttpResponse> callback) throws Exception {
+        this.retryBudget.deposit();
+        AsyncRequest request = new AsyncRequest(attempt, callback);
+        request.send(false);
+        if (this.hedging) {
+            long hedgeDelayMicros = this.latencies.getPercentileMicros(this.hedgeDelayPercentile, MIN_LATENCY_SAMPLES);
+            if (hedgeDelayMicros >= 0) { // requests are hedged once enough latencies are known
+                request.scheduleHedge(Math.max(TimeUnit.MILLISECONDS.toMicros(this.minHedgeDelayMillis), hedgeDelayMicros));
+            }
+        }
+        return request;
+    }
+
+    /**
+     * Returns statistics of this policy
+     * @return String describing the retries and hedges made
+     */
+    public String getStatistics() {
+        long hedgeDelayMicros = this.latencies.getPercentileMicros(this.hedgeDelayPercentile, MIN_LATENCY_SAMPLES);
+        return "retries=" + this.retries.get() + ", hedges=" + this.hedges.get() + ", hedge wins=" + this.hedgeWins.get() + ", budget exhausted=" +
+                this.budgetExhausted.get() + (this.hedging ? ", hedge delay=" + (hedgeDelayMicros < 0 ? "n/a" :
+                Math.max(this.minHedgeDelayMillis, hedgeDelayMicros / 1000) + "ms") : "");
+    }
+
+    /**
+     * Helper method to check if the specified response is to be retried
+     */
+    private boolean isRetryable(HttpResponse response) {
+        return this.retryableStatusCodes.contains(response.getStatusLine().getStatusCode());
+    }
+
+    /**
+     * Helper method to check if the specified failure is to be retried. Only I/O errors are retried, others such as a full process queue
+     * are not transient
+     */
+    private static boolean isRetryable(Exception e) {
+        Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+        return cause instanceof IOException;
+    }
+
+    /**
+     * Helper method to withdraw from the retry budget for an additional attempt
+     */
+    private boolean tryRetry() {
+        if (this.retryBudget.tryWithdraw()) {
+            this.retries.incrementAndGet();
+            return true;
+        }
+        this.budgetExhausted.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Helper method to record the latency of an attempt that returned a response. Latencies of failed attempts are not representative
+     */
+    private void recordLatency(HttpResponse response, long startNanos) {
+        if (!this.isRetryable(response)) {
+            this.latencies.record(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * A request executed asynchronously. Tracks the attempts in flight and completes with the response of the first attempt that succeeds
+     */
+    private class AsyncRequest implements Future<HttpResponse> {
+
+        private final AsyncAttempt attempt;
+        private final BasicFuture<HttpResponse> result;
+        private final List<Endpoint> attemptedEndpoints = new ArrayList<Endpoint>(2);
+        private final List<Future<HttpResponse>> inFlight = new ArrayList<Future<HttpResponse>>(2);
+        private int retriesRemaining = maxRetries;
+        private int outstanding;
+        private boolean done;
+        /** A response to be retried that is held while other attempts are in flight, in case they fail*/
+        private HttpResponse heldResponse;
+        private ScheduledFuture<?> hedgeTimer;
+
+        AsyncRequest(AsyncAttempt attempt, FutureCallback<HttpResponse> callback) {
+            this.attempt = attempt;
+            this.result = new BasicFuture<HttpResponse>(callback);
+        }
+
+        /**
+         * Sends an attempt. Throws errors in sending the attempt
+         */
+        void send(final boolean hedge) throws Exception {
+            final long startNanos = System.nanoTime();
+            synchronized (this) {
+                this.outstanding++;
+            }
+            Future<HttpResponse> attemptFuture;
+            try {
+                attemptFuture = this.attempt.send(this.attemptedEndpoints, new FutureCallback<HttpResponse>() {
+                    public void completed(HttpResponse response) {
+                        onResponse(response, startNanos, hedge);
+                    }
+                    public void failed(Exception e) {
+                        onFailure(e);
+                    }
+                    public void cancelled() {
+                        onFailure(new CancellationException("Http request attempt cancelled"));
+                    }
+                });
+            } catch (Exception e) {
+                synchronized (this) {
+                    this.outstanding--;
+                }
+                throw e;
+            }
+            boolean cancel;
+            synchronized (this) {
+                cancel = this.done;
+                if (!cancel) {
+                    this.inFlight.add(attemptFuture);
+                }
+            }
+            if (cancel) {
+                attemptFuture.cancel(true);
+            }
+        }
+
+        /**
+         * Schedules a hedged attempt after the specified delay
+         */
+        synchronized void scheduleHedge(long delayMicros) {
+            if (!this.done) {
+                this.hedgeTimer = HEDGE_TIMER.schedule(this::hedge, delayMicros, TimeUnit.MICROSECONDS);
+            }
+        }
+
+        /**
+         * Sends a hedged attempt if the request has not completed and the budget allows
+         */
+        private void hedge() {
+            synchronized (this) {
+                if (this.done || this.retriesRemaining <= 0) {
+                    return;
+                }
+                if (!retryBudget.tryWithdraw()) {
+                    budgetExhausted.incrementAndGet();
+                    return;
+                }
+                this.retriesRemaining--;
+            }
+            hedges.incrementAndGet();
+            try {
+                this.send(true);
+            } catch (Exception e) {
+                // the hedge could not be sent. The earlier attempt is still in flight
+                LOGGER.debug("Unable to send hedged request : {}", e.toString());
+            }
+        }
+
+        /**
+         * Handles the response of an attempt
+         */
+        private void onResponse(HttpResponse response, long startNanos, boolean hedge) {
+            boolean retry = false;
+            synchronized (this) {
+                this.outstanding--;
+                if (this.done) {
+                    HttpClientUtils.closeQuietly(response); // the response of an attempt that lost
+                    return;
+                }
+                if (isRetryable(response)) {
+                    if (this.outstanding > 0) { // another attempt may yet succeed. Hold on to this response in case it does not
+                        HttpClientUtils.closeQuietly(this.heldResponse);
+                        this.heldResponse = response;
+                        return;
+                    }
+                    retry = this.retriesRemaining > 0 && tryRetry();
+                }
+                if (retry) {
+                    this.retriesRemaining--;
+                } else {
+                    this.done = true;
+                }
+            }
+            if (retry) {
+                HttpClientUtils.closeQuietly(response);
+                this.retry();
+                return;
+            }
+            recordLatency(response, startNanos);
+            if (hedge) {
+                hedgeWins.incrementAndGet();
+            }
+            this.complete(response);
+        }
+
+        /**
+         * Handles the failure of an attempt
+         */
+        private void onFailure(Exception e) {
+            HttpResponse response;
+            boolean retry = false;
+            synchronized (this) {
+                this.outstanding--;
+                if (this.done || this.outstanding > 0) { // the request has completed or another attempt may yet succeed
+                    return;
+                }
+                response = this.heldResponse;
+                this.heldResponse = null;
+                if (response == null && isRetryable(e) && this.retriesRemaining > 0 && tryRetry()) {
+                    this.retriesRemaining--;
+                    retry = true;
+                } else {
+                    this.done = true;
+                }
+            }
+            if (retry) {
+                this.retry();
+            } else if (response != null) {
+                this.complete(response);
+            } else {
+                this.cleanup();
+                this.result.failed(e);
+            }
+        }
+
+        /**
+         * Sends a retry attempt. Fails the request if the attempt cannot be sent
+         */
+        private void retry() {
+            try {
+                this.send(false);
+            } catch (Exception e) {
+                synchronized (this) {
+                    if (this.done || this.outstanding > 0) {
+                        return;
+                    }
+                    this.done = true;
+                }
+                this.cleanup();
+                this.result.failed(e);
+            }
+        }
+
+        /**
+         * Completes the request with the specified response and cancels the other attempts
+         */
+        private void complete(HttpResponse response) {
+            this.cleanup();
+            if (!this.result.completed(response)) { // cancelled by the caller
+                HttpClientUtils.closeQuietly(response);
+            }
+        }
+
+        /**
+         * Cancels the hedge timer and the attempts in flight, and releases the held response, once the request is done
+         */
+        private void cleanup() {
+            List<Future<HttpResponse>> attempts;
+            HttpResponse response;
+            synchronized (this) {
+                if (this.hedgeTimer != null) {
+                    this.hedgeTimer.cancel(false);
+                }
+                attempts = new ArrayList<Future<HttpResponse>>(this.inFlight);
+                this.inFlight.clear();
+                response = this.heldResponse;
+                this.heldResponse = null;
+            }
+            HttpClientUtils.closeQuietly(response);
+            for (Future<HttpResponse> attemptFuture : attempts) {
+                if (!attemptFuture.isDone()) {
+                    attemptFuture.cancel(true);
+                }
+            }
+        }
+
+        /** Future methods*/
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            synchronized (this) {
+                this.done = true;
+            }
+            this.cleanup();
+            return this.result.cancel(mayInterruptIfRunning);
+        }
+        public boolean isCancelled() {
+            return this.result.isCancelled();
+        }
+        public boolean isDone() {
+            return this.result.isDone();
+        }
+        public HttpResponse get() throws InterruptedException, ExecutionException {
+            return this.result.get();
+        }
+        public HttpResponse get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            return this.result.get(timeout, unit);
+        }
+    }
+
+    /** Start Getter/Setter methods */
+    public int getMaxRetries() {
+        return this.maxRetries;
+    }
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+    public Set<String> getIdempotentMethods() {
+        return this.idempotentMethods;
+    }
+    public void setIdempotentMethods(Set<String> idempotentMethods) {
+        this.idempotentMethods = idempotentMethods;
+    }
+    public void setRetryableStatusCodes(Set<Integer> retryableStatusCodes) {
+        this.retryableStatusCodes = retryableStatusCodes;
+    }
+    public boolean isHedging() {
+        return this.hedging;
+    }
+    public void setHedging(boolean hedging) {
+        this.hedging = hedging;
+    }
+    public void setHedgeDelayPercentile(double hedgeDelayPercentile) {
+        this.hedgeDelayPercentile = hedgeDelayPercentile;
+    }
+    public void setMinHedgeDelayMillis(long minHedgeDelayMillis) {
+        this.minHedgeDelayMillis = minHedgeDelayMillis;
+    }
+    public void setBudgetPercent(int budgetPercent) {
+        this.budgetPercent = budgetPercent;
+        this.retryBudget = new RetryBudget(this.budgetPercent, this.minRetriesPerSecond);
+    }
+    public void setMinRetriesPerSecond(int minRetriesPerSecond) {
+        this.minRetriesPerSecond = minRetriesPerSecond;
+        this.retryBudget = new RetryBudget(this.budgetPercent, this.minRetriesPerSecond);
+    }
+    /** End Getter/Setter methods */
+
+}
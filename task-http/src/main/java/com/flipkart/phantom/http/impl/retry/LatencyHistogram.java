@@ -0,0 +1,106 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.http.impl.retry;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <code>LatencyHistogram</code> records request latencies in buckets whose bounds grow by 10%, from 1 microsecond to a few minutes, and
+ * estimates latency percentiles within 10%. Latencies are recorded over a sliding window : the histogram covers the current and the previous
+ * window, so percentiles track changes in upstream latency. Recording is lock-free.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+class LatencyHistogram {
+
+    /** The growth factor of bucket bounds and the number of buckets*/
+    private static final double BUCKET_GROWTH = 1.1;
+    private static final double LOG_BUCKET_GROWTH = Math.log(BUCKET_GROWTH);
+    private static final int BUCKETS = 220;
+
+    /** The window length*/
+    private final long windowMillis;
+
+    /** The counts of the current and the previous window, and the start time of the current window*/
+    private volatile AtomicLongArray current = new AtomicLongArray(BUCKETS);
+    private volatile AtomicLongArray previous = new AtomicLongArray(BUCKETS);
+    private final AtomicLong windowStartMillis = new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * Constructor for this class
+     * @param windowMillis the length of the window, in millis
+     */
+    LatencyHistogram(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Records the specified latency
+     * @param latencyNanos the latency, in nanos
+     */
+    void record(long latencyNanos) {
+        this.rotate();
+        long micros = latencyNanos / 1000;
+        int bucket = micros <= 1 ? 0 : Math.min(BUCKETS - 1, (int) Math.ceil(Math.log(micros) / LOG_BUCKET_GROWTH));
+        this.current.incrementAndGet(bucket);
+    }
+
+    /**
+     * Returns the specified percentile of the recorded latencies
+     * @param percentile the percentile, between 0 and 100
+     * @param minSamples the minimum number of recorded latencies for the percentile to be estimated
+     * @return the percentile latency in micros, or -1 if fewer than the minimum number of latencies have been recorded
+     */
+    long getPercentileMicros(double percentile, int minSamples) {
+        this.rotate();
+        AtomicLongArray current = this.current, previous = this.previous;
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = current.get(i) + previous.get(i);
+            total += counts[i];
+        }
+        if (total < minSamples || total == 0) {
+            return -1;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                return (long) Math.ceil(Math.pow(BUCKET_GROWTH, i)); // the upper bound of the bucket
+            }
+        }
+        return (long) Math.ceil(Math.pow(BUCKET_GROWTH, BUCKETS - 1));
+    }
+
+    /**
+     * Helper method to start a new window if the current one has ended. The current window becomes the previous one
+     */
+    private void rotate() {
+        long now = System.currentTimeMillis();
+        long windowStart = this.windowStartMillis.get();
+        if (now - windowStart >= this.windowMillis && this.windowStartMillis.compareAndSet(windowStart, now)) {
+            // a window with no recorded latencies is dropped entirely
+            this.previous = now - windowStart >= 2 * this.windowMillis ? new AtomicLongArray(BUCKETS) : this.current;
+            this.current = new AtomicLongArray(BUCKETS);
+        }
+    }
+
+}
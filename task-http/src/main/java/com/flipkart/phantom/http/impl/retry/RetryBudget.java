@@ -0,0 +1,101 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.http.impl.retry;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <code>RetryBudget</code> caps the additional load that retried and hedged attempts put on an upstream service. Each request deposits a
+ * fraction of a token, each retry or hedge withdraws a whole token, and a minimum number of tokens is added every second so that services with
+ * little traffic may still retry. Retries therefore add no more than the configured percentage of requests plus the minimum rate, even when
+ * every request fails. The balance is capped so that idle periods do not accumulate bursts of retries. Thread-safe and lock-free.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+class RetryBudget {
+
+    /** Tokens are accounted in thousandths*/
+    private static final long TOKEN = 1000;
+
+    /** The number of seconds of minimum rate retries that the balance is capped at*/
+    private static final long CAPACITY_SECONDS = 10;
+
+    /** The deposit per request, the deposit per second and the max balance, in thousandths of a token*/
+    private final long requestDeposit;
+    private final long secondDeposit;
+    private final long maxBalance;
+
+    /** The balance, in thousandths of a token, and the time of the last per-second deposit*/
+    private final AtomicLong balance = new AtomicLong();
+    private final AtomicLong lastDepositMillis = new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * Constructor for this class
+     * @param percent the retries allowed as a percentage of requests
+     * @param minRetriesPerSecond the retries allowed every second irrespective of the number of requests
+     */
+    RetryBudget(int percent, int minRetriesPerSecond) {
+        this.requestDeposit = TOKEN * percent / 100;
+        this.secondDeposit = TOKEN * minRetriesPerSecond;
+        this.maxBalance = Math.max(TOKEN, this.secondDeposit * CAPACITY_SECONDS);
+        this.balance.set(this.secondDeposit);
+    }
+
+    /**
+     * Records a request
+     */
+    void deposit() {
+        this.add(this.requestDeposit);
+    }
+
+    /**
+     * Withdraws a token for a retry, if available
+     * @return true if the retry is within budget, false otherwise
+     */
+    boolean tryWithdraw() {
+        long now = System.currentTimeMillis();
+        long lastDeposit = this.lastDepositMillis.get();
+        long seconds = (now - lastDeposit) / 1000;
+        if (seconds > 0 && this.lastDepositMillis.compareAndSet(lastDeposit, lastDeposit + seconds * 1000)) {
+            this.add(this.secondDeposit * seconds);
+        }
+        while (true) {
+            long current = this.balance.get();
+            if (current < TOKEN) {
+                return false;
+            }
+            if (this.balance.compareAndSet(current, current - TOKEN)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Helper method to add to the balance, up to the max balance
+     */
+    private void add(long amount) {
+        while (true) {
+            long current = this.balance.get();
+            long updated = Math.min(this.maxBalance, current + amount);
+            if (current >= updated || this.balance.compareAndSet(current, updated)) {
+                return;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.http.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link AsyncHttpConnectionPool}, against a server that responds to each request after a delay
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class AsyncHttpConnectionPoolTest {
+
+    private static final List<Map.Entry<String, String>> NO_HEADERS = new ArrayList<Map.Entry<String, String>>();
+    private static final long RESPONSE_DELAY_MILLIS = 300;
+
+    private HttpServer server;
+    private AsyncHttpConnectionPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 50);
+        this.server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    Thread.sleep(RESPONSE_DELAY_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                byte[] body = exchange.getRequestURI().getPath().getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream output = exchange.getResponseBody();
+                output.write(body);
+                output.close();
+            }
+        });
+        this.server.setExecutor(Executors.newCachedThreadPool());
+        this.server.start();
+    }
+
+    @After
+    public void tearDown() {
+        if (this.pool != null) {
+            this.pool.shutdown();
+        }
+        this.server.stop(0);
+    }
+
+    @Test
+    public void testConcurrentRequestsOnOneIoThread() throws Exception {
+        int requests = 10;
+        this.pool = this.createPool(requests, 0);
+        final CountDownLatch completed = new CountDownLatch(requests);
+        final AtomicInteger failures = new AtomicInteger();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < requests; i++) {
+            this.pool.executeAsync(new HttpGet(this.pool.constructUrl("/request" + i)), NO_HEADERS, new FutureCallback<HttpResponse>() {
+                public void completed(HttpResponse response) {
+                    if (response.getStatusLine().getStatusCode() != 200) {
+                        failures.incrementAndGet();
+                    }
+                    completed.countDown();
+                }
+                public void failed(Exception e) {
+                    failures.incrementAndGet();
+                    completed.countDown();
+                }
+                public void cancelled() {
+                    failures.incrementAndGet();
+                    completed.countDown();
+                }
+            });
+        }
+        assertTrue("Requests not completed", completed.await(5, TimeUnit.SECONDS));
+        assertEquals(0, failures.get());
+        assertTrue("Requests were not in flight together", System.currentTimeMillis() - start < requests * RESPONSE_DELAY_MILLIS / 2);
+    }
+
+    @Test
+    public void testBlockingExecute() throws Exception {
+        this.pool = this.createPool(1, 0);
+        HttpResponse response = this.pool.execute(new HttpGet(this.pool.constructUrl("/resource")), NO_HEADERS);
+        assertEquals(200, response.getStatusLine().getStatusCode());
+        assertEquals("/resource", EntityUtils.toString(response.getEntity()));
+    }
+
+    @Test
+    public void testProcessQueueFull() throws Exception {
+        this.pool = this.createPool(1, 0);
+        final CountDownLatch completed = new CountDownLatch(1);
+        Future<HttpResponse> response = this.pool.executeAsync(new HttpGet(this.pool.constructUrl("/first")), NO_HEADERS, new FutureCallback<HttpResponse>() {
+            public void completed(HttpResponse response) {
+                completed.countDown();
+            }
+            public void failed(Exception e) {
+            }
+            public void cancelled() {
+            }
+        });
+        try {
+            this.pool.executeAsync(new HttpGet(this.pool.constructUrl("/second")), NO_HEADERS, null);
+            fail("Request sent beyond max connections and request queue size");
+        } catch (Exception e) {
+            assertEquals("Process queue full!", e.getMessage());
+        }
+        assertTrue("Request not completed", completed.await(5, TimeUnit.SECONDS)); // the permit is released before the callback is notified
+        assertEquals(200, response.get().getStatusLine().getStatusCode());
+        EntityUtils.consume(response.get().getEntity());
+        assertEquals("Process queue permit not released", 200,
+                this.pool.executeAsync(new HttpGet(this.pool.constructUrl("/third")), NO_HEADERS, null).get().getStatusLine().getStatusCode());
+    }
+
+    private AsyncHttpConnectionPool createPool(int maxConnections, int requestQueueSize) {
+        AsyncHttpConnectionPool pool = new AsyncHttpConnectionPool();
+        pool.setHost("127.0.0.1");
+        pool.setPort(this.server.getAddress().getPort());
+        pool.setMaxConnections(maxConnections);
+        pool.setRequestQueueSize(requestQueueSize);
+        pool.setIoThreadCount(1);
+        pool.initConnectionPool();
+        return pool;
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.http.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.InputStreamEntity;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link CompressingEntity}
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class CompressingEntityTest {
+
+    @Test
+    public void testWriteTo() throws Exception {
+        byte[] content = newContent(100000);
+        for (String encoding : new String[] {CompressingEntity.GZIP, CompressingEntity.DEFLATE}) {
+            CompressingEntity entity = new CompressingEntity(new ByteArrayEntity(content), encoding);
+            assertEquals(encoding, entity.getContentEncoding().getValue());
+            assertEquals(-1, entity.getContentLength());
+            assertTrue(entity.isChunked());
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            entity.writeTo(compressed);
+            assertTrue("Content not compressed", compressed.size() < content.length);
+            assertArrayEquals(content, decompress(encoding, compressed.toByteArray()));
+        }
+    }
+
+    @Test
+    public void testGetContent() throws Exception {
+        byte[] content = newContent(100000);
+        for (String encoding : new String[] {CompressingEntity.GZIP, CompressingEntity.DEFLATE}) {
+            HttpEntity streamed = new InputStreamEntity(new ByteArrayInputStream(content), -1);
+            InputStream stream = new CompressingEntity(streamed, encoding).getContent();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1000]; // smaller than the compressed output of a read from the wrapped entity
+            int read;
+            while ((read = stream.read(buffer, 0, buffer.length)) != -1) {
+                compressed.write(buffer, 0, read);
+            }
+            assertEquals(-1, stream.read());
+            stream.close();
+            assertArrayEquals(content, decompress(encoding, compressed.toByteArray()));
+        }
+    }
+
+    @Test
+    public void testEmptyContent() throws Exception {
+        for (String encoding : new String[] {CompressingEntity.GZIP, CompressingEntity.DEFLATE}) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            new CompressingEntity(new ByteArrayEntity(new byte[0]), encoding).writeTo(compressed);
+            assertArrayEquals(new byte[0], decompress(encoding, compressed.toByteArray()));
+        }
+    }
+
+    /**
+     * Creates compressible content of the specified length
+     */
+    private static byte[] newContent(int length) {
+        Random random = new Random(42);
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte) ('a' + random.nextInt(8));
+        }
+        return content;
+    }
+
+    /**
+     * Decompresses the specified content
+     */
+    private static byte[] decompress(String encoding, byte[] compressed) throws IOException {
+        InputStream stream = CompressingEntity.GZIP.equals(encoding) ? new GZIPInputStream(new ByteArrayInputStream(compressed)) :
+                new InflaterInputStream(new ByteArrayInputStream(compressed));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.http.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.impl.bootstrap.HttpAsyncServer;
+import org.apache.hc.core5.http.nio.AsyncRequestConsumer;
+import org.apache.hc.core5.http.nio.AsyncServerRequestHandler;
+import org.apache.hc.core5.http.nio.entity.DiscardingEntityConsumer;
+import org.apache.hc.core5.http.nio.support.BasicRequestConsumer;
+import org.apache.hc.core5.http.nio.support.BasicResponseProducer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http.protocol.HttpCoreContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.http2.impl.nio.bootstrap.H2ServerBootstrap;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link Http2ConnectionPool}, against a server that speaks only HTTP/2 (h2c). The server responds with the protocol and scheme
+ * of each request and closes HTTP/1.1 connections
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class Http2ConnectionPoolTest {
+
+    private static final List<Map.Entry<String, String>> NO_HEADERS = new ArrayList<Map.Entry<String, String>>();
+
+    private HttpAsyncServer server;
+    private int port;
+    private Http2ConnectionPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        this.server = H2ServerBootstrap.bootstrap().setVersionPolicy(HttpVersionPolicy.FORCE_HTTP_2)
+                .register("*", new AsyncServerRequestHandler<Message<HttpRequest, Void>>() {
+                    public AsyncRequestConsumer<Message<HttpRequest, Void>> prepare(HttpRequest request, EntityDetails entityDetails, HttpContext context) {
+                        return new BasicRequestConsumer<Void>(new DiscardingEntityConsumer<Void>());
+                    }
+                    public void handle(Message<HttpRequest, Void> message, ResponseTrigger trigger, HttpContext context) throws HttpException, IOException {
+                        String body = HttpCoreContext.adapt(context).getProtocolVersion() + " " + message.getHead().getScheme();
+                        trigger.submitResponse(new BasicResponseProducer(200, body), context);
+                    }
+                }).create();
+        this.server.start();
+        this.port = ((InetSocketAddress) this.server.listen(new InetSocketAddress(0)).get().getAddress()).getPort();
+    }
+
+    @After
+    public void tearDown() {
+        if (this.pool != null) {
+            this.pool.shutdown();
+        }
+        this.server.close(CloseMode.IMMEDIATE);
+    }
+
+    @Test
+    public void testHttp2AfterNegotiation() throws Exception {
+        this.pool = this.createPool(false);
+        assertEquals("HTTP/2.0 http", this.get());
+        assertEquals("Single endpoint must use a single HTTP/2 I/O thread", 1, this.pool.getHttp2IoThreadCount());
+    }
+
+    @Test
+    public void testConfiguredSchemeIsSent() throws Exception {
+        this.pool = this.createPool(true);
+        assertEquals("HTTP/2.0 https", this.get());
+    }
+
+    @Test
+    public void testStreamedContentFallsBackToHttp11() throws Exception {
+        this.pool = this.createPool(false);
+        HttpPost post = new HttpPost(this.pool.constructUrl("/streamed"));
+        post.setEntity(new InputStreamEntity(new ByteArrayInputStream("content".getBytes("UTF-8"))));
+        Future<HttpResponse> response = this.pool.executeAsync(post, NO_HEADERS, null);
+        try {
+            response.get();
+            fail("Streamed content sent over HTTP/2");
+        } catch (ExecutionException e) {
+            assertTrue("Unexpected failure : " + e.getCause(), e.getCause() instanceof IOException);
+        }
+        assertEquals("HTTP/2 requests must still be served", "HTTP/2.0 http", this.get());
+    }
+
+    private Http2ConnectionPool createPool(boolean secure) throws Exception {
+        Http2ConnectionPool pool = new Http2ConnectionPool();
+        pool.setHost("localhost");
+        pool.setPort(this.port);
+        pool.setSecure(secure);
+        pool.initConnectionPool();
+        for (int i = 0; i < 100 && !pool.isHttp2(); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue("HTTP/2 not negotiated", pool.isHttp2());
+        return pool;
+    }
+
+    private String get() throws Exception {
+        HttpResponse response = this.pool.executeAsync(new HttpGet("/resource"), NO_HEADERS, null).get();
+        assertEquals(200, response.getStatusLine().getStatusCode());
+        assertFalse(response.containsHeader("Connection"));
+        return EntityUtils.toString(response.getEntity());
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.http.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for {@link HttpRequestFactory}
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class HttpRequestFactoryTest {
+
+    private static final List<Map.Entry<String, String>> NO_HEADERS = new ArrayList<Map.Entry<String, String>>();
+
+    @Test
+    public void testMethodsWithoutContent() {
+        HttpEntity entity = new ByteArrayEntity("content".getBytes());
+        for (String method : new String[] {"GET", "HEAD", "TRACE"}) {
+            HttpRequestBase request = HttpRequestFactory.createRequest(method, "/resource?id=1", entity);
+            assertEquals(method, request.getMethod());
+            assertEquals("/resource?id=1", request.getURI().toString());
+            assertFalse(method + " request has content", request instanceof HttpEntityEnclosingRequest);
+        }
+    }
+
+    @Test
+    public void testMethodsWithContent() {
+        HttpEntity entity = new ByteArrayEntity(new byte[0]);
+        for (String method : new String[] {"POST", "PUT", "PATCH"}) {
+            HttpRequestBase request = HttpRequestFactory.createRequest(method, "/resource", entity);
+            assertEquals(method, request.getMethod());
+            assertSame("Empty content not sent with " + method, entity, ((HttpEntityEnclosingRequest) request).getEntity());
+        }
+    }
+
+    @Test
+    public void testMethodsWithOptionalContent() {
+        HttpEntity entity = new ByteArrayEntity("content".getBytes());
+        for (String method : new String[] {"DELETE", "OPTIONS", "PROPFIND"}) {
+            HttpRequestBase request = HttpRequestFactory.createRequest(method, "/resource", entity);
+            assertEquals(method, request.getMethod());
+            assertSame(entity, ((HttpEntityEnclosingRequest) request).getEntity());
+
+            request = HttpRequestFactory.createRequest(method, "/resource", new ByteArrayEntity(new byte[0]));
+            assertEquals(method, request.getMethod());
+            assertFalse("Empty content sent with " + method, request instanceof HttpEntityEnclosingRequest);
+
+            request = HttpRequestFactory.createRequest(method, "/resource", null);
+            assertEquals(method, request.getMethod());
+            assertFalse(request instanceof HttpEntityEnclosingRequest);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidUri() {
+        HttpRequestFactory.createRequest("GET", "/resource with spaces", null);
+    }
+
+    @Test
+    public void testRequestsSentToTargetHost() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 10);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                InputStream input = exchange.getRequestBody();
+                byte[] buffer = new byte[1024];
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    content.write(buffer, 0, read);
+                }
+                byte[] body = (exchange.getRequestMethod() + " " + exchange.getRequestURI() + " " + exchange.getRequestHeaders().getFirst("Host")
+                        + " " + content.toString("UTF-8")).getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream output = exchange.getResponseBody();
+                output.write(body);
+                output.close();
+            }
+        });
+        server.start();
+        HttpConnectionPool pool = new HttpConnectionPool();
+        pool.setHost("127.0.0.1");
+        pool.setPort(server.getAddress().getPort());
+        pool.initConnectionPool();
+        try {
+            String host = "127.0.0.1:" + server.getAddress().getPort();
+            assertEquals("PROPFIND /files?depth=1 " + host + " <propfind/>", this.execute(pool, "PROPFIND", "/files?depth=1", "<propfind/>"));
+            assertEquals("PATCH /users/1 " + host + " {\"name\":\"x\"}", this.execute(pool, "PATCH", "/users/1", "{\"name\":\"x\"}"));
+            assertEquals("DELETE /users/1 " + host + " ", this.execute(pool, "DELETE", "/users/1", ""));
+        } finally {
+            pool.shutdown();
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Sends a request with the specified method, URI and content and returns the response content
+     */
+    private String execute(HttpConnectionPool pool, String method, String uri, String content) throws Exception {
+        HttpResponse response = pool.execute(HttpRequestFactory.createRequest(method, uri, new ByteArrayEntity(content.getBytes("UTF-8"))), NO_HEADERS);
+        assertEquals(200, response.getStatusLine().getStatusCode());
+        return EntityUtils.toString(response.getEntity(), "UTF-8");
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.http.impl.cache;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.flipkart.phantom.http.impl.HttpRequestWrapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link HttpResponseCache}
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class HttpResponseCacheTest {
+
+    private static final String URI = "/items/1";
+
+    private HttpResponseCache cache;
+    private TestLoader loader;
+
+    @Before
+    public void setUp() {
+        this.cache = new HttpResponseCache();
+        this.loader = new TestLoader();
+    }
+
+    @Test
+    public void testCacheableRequests() {
+        assertTrue("GET not cacheable", this.cache.isCacheable(newRequest("GET")));
+        assertFalse("POST cacheable (which should not be)", this.cache.isCacheable(newRequest("POST")));
+        assertFalse("Authorized request cacheable (which should not be)", this.cache.isCacheable(newRequest("GET", HttpHeaders.AUTHORIZATION, "Basic xyz")));
+        assertFalse("Conditional request cacheable (which should not be)", this.cache.isCacheable(newRequest("GET", HttpHeaders.IF_NONE_MATCH, "\"v1\"")));
+        assertFalse("no-store request cacheable (which should not be)", this.cache.isCacheable(newRequest("GET", HttpHeaders.CACHE_CONTROL, "no-store")));
+    }
+
+    @Test
+    public void testFreshResponse() throws Exception {
+        this.loader.next = newResponse(HttpStatus.SC_OK, "v1", HttpHeaders.CACHE_CONTROL, "max-age=60");
+        assertEquals("v1", body(this.cache.execute(newRequest("GET"), this.loader)));
+        assertEquals("v1", body(this.cache.execute(newRequest("GET"), this.loader)));
+        assertEquals("Fresh response not served from the cache", 1, this.loader.loads);
+    }
+
+    @Test
+    public void testRequestNoCache() throws Exception {
+        this.loader.next = newResponse(HttpStatus.SC_OK, "v1", HttpHeaders.CACHE_CONTROL, "max-age=60");
+        this.cache.execute(newRequest("GET"), this.loader);
+        this.loader.next = newResponse(HttpStatus.SC_OK, "v2", HttpHeaders.CACHE_CONTROL, "max-age=60");
+        assertEquals("v2", body(this.cache.execute(newRequest("GET", HttpHeaders.CACHE_CONTROL, "no-cache"), this.loader)));
+        assertEquals("Response not revalidated for a no-cache request", 2, this.loader.loads);
+    }
+
+    @Test
+    public void testNotStored() throws Exception {
+        String[][] responseHeaders = {
+                {HttpHeaders.CACHE_CONTROL, "no-store, max-age=60"},
+                {HttpHeaders.CACHE_CONTROL, "private, max-age=60"},
+                {HttpHeaders.CACHE_CONTROL, "max-age=0"}, // never fresh and without a validator
+                {HttpHeaders.VARY, "*"},
+                {"Set-Cookie", "session=1"},
+        };
+        for (String[] header : responseHeaders) {
+            this.cache.clear();
+            this.loader.loads = 0;
+            String[] headers = header[0].equals(HttpHeaders.CACHE_CONTROL) ? header :
+                    new String[] {HttpHeaders.CACHE_CONTROL, "max-age=60", header[0], header[1]};
+            this.loader.next = newResponse(HttpStatus.SC_OK, "v1", headers);
+            this.cache.execute(newRequest("GET"), this.loader);
+            this.loader.next = newResponse(HttpStatus.SC_OK, "v2", headers);
+            assertEquals("Response stored for : " + header[0] + ": " + header[1], "v2", body(this.cache.execute(newRequest("GET"), this.loader)));
+            assertEquals(2, this.loader.loads);
+        }
+    }
+
+    @Test
+    public void testRevalidation() throws Exception {
+        this.loader.next = newResponse(HttpStatus.SC_OK, "v1", HttpHeaders.CACHE_CONTROL, "max-age=0", HttpHeaders.ETAG, "\"v1\"");
+        this.cache.execute(newRequest("GET"), this.loader);
+        this.loader.next = newResponse(HttpStatus.SC_NOT_MODIFIED, null, HttpHeaders.ETAG, "\"v1\"", "Set-Cookie", "session=2");
+        HttpResponse response = this.cache.execute(newRequest("GET"), this.loader);
+        assertEquals("Stale response not revalidated", "\"v1\"", header(this.loader.headers, HttpHeaders.IF_NONE_MATCH));
+        assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+        assertEquals("v1", body(response));
+        assertEquals("Set-Cookie of the 304 not passed on to its client", "session=2", response.getFirstHeader("Set-Cookie").getValue());
+        // the Set-Cookie of the 304 is not stored with the refreshed response
+        this.loader.next = newResponse(HttpStatus.SC_NOT_MODIFIED, null, HttpHeaders.ETAG, "\"v1\"");
+        response = this.cache.execute(newRequest("GET"), this.loader);
+        assertNull("Set-Cookie of a 304 shared with other clients", response.getFirstHeader("Set-Cookie"));
+        assertEquals(3, this.loader.loads);
+    }
+
+    @Test
+    public void testVary() throws Exception {
+        this.loader.next = newResponse(HttpStatus.SC_OK, "gzip", HttpHeaders.CACHE_CONTROL, "max-age=60", HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        this.cache.execute(newRequest("GET", HttpHeaders.ACCEPT_ENCODING, "gzip"), this.loader);
+        this.loader.next = newResponse(HttpStatus.SC_OK, "identity", HttpHeaders.CACHE_CONTROL, "max-age=60", HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        assertEquals("Response served for another variant", "identity", body(this.cache.execute(newRequest("GET", HttpHeaders.ACCEPT_ENCODING, "identity"), this.loader)));
+        assertEquals("gzip", body(this.cache.execute(newRequest("GET", HttpHeaders.ACCEPT_ENCODING, "gzip"), this.loader)));
+        assertEquals("identity", body(this.cache.execute(newRequest("GET", HttpHeaders.ACCEPT_ENCODING, "identity"), this.loader)));
+        assertEquals("Variants not stored separately", 2, this.loader.loads);
+    }
+
+    @Test
+    public void testMaxResponseSize() throws Exception {
+        this.cache.setMaxResponseSizeBytes(4);
+        this.loader.next = newResponse(HttpStatus.SC_OK, "large body", HttpHeaders.CACHE_CONTROL, "max-age=60");
+        assertEquals("Body of a response too large to store not passed on", "large body", body(this.cache.execute(newRequest("GET"), this.loader)));
+        this.loader.next = newResponse(HttpStatus.SC_OK, "large body", HttpHeaders.CACHE_CONTROL, "max-age=60");
+        this.cache.execute(newRequest("GET"), this.loader);
+        assertEquals("Response larger than the max response size stored", 2, this.loader.loads);
+    }
+
+    /**
+     * Loader that returns the response set on it, and records the request headers it was called with
+     */
+    private static class TestLoader implements HttpResponseCache.Loader {
+        private HttpResponse next;
+        private List<Map.Entry<String, String>> headers;
+        private int loads;
+        public HttpResponse load(List<Map.Entry<String, String>> headers) {
+            this.headers = headers;
+            this.loads++;
+            return this.next;
+        }
+    }
+
+    private static HttpRequestWrapper newRequest(String method, String... headers) {
+        HttpRequestWrapper request = new HttpRequestWrapper();
+        request.setMethod(method);
+        request.setUri(URI);
+        List<Map.Entry<String, String>> requestHeaders = new ArrayList<Map.Entry<String, String>>();
+        for (int i = 0; i < headers.length; i += 2) {
+            requestHeaders.add(new AbstractMap.SimpleEntry<String, String>(headers[i], headers[i + 1]));
+        }
+        request.setHeaders(requestHeaders);
+        return request;
+    }
+
+    private static HttpResponse newResponse(int statusCode, String body, String... headers) {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, statusCode, null);
+        for (int i = 0; i < headers.length; i += 2) {
+            response.addHeader(headers[i], headers[i + 1]);
+        }
+        if (body != null) {
+            response.setEntity(new ByteArrayEntity(body.getBytes()));
+        }
+        return response;
+    }
+
+    private static String body(HttpResponse response) throws Exception {
+        return EntityUtils.toString(response.getEntity());
+    }
+
+    private static String header(List<Map.Entry<String, String>> headers, String name) {
+        for (Map.Entry<String, String> header : headers) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.http.impl.retry;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+
+import com.flipkart.phantom.http.impl.HttpRequestWrapper;
+import com.flipkart.phantom.task.spi.loadbalancer.Endpoint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link HttpRetryPolicy}
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class HttpRetryPolicyTest {
+
+    @Test
+    public void testRetryableRequests() {
+        HttpRetryPolicy policy = new HttpRetryPolicy();
+        assertTrue(policy.isRetryable(newRequest("GET")));
+        assertTrue(policy.isRetryable(newRequest("HEAD")));
+        assertTrue(policy.isRetryable(newRequest("PUT")));
+        assertFalse(policy.isRetryable(newRequest("POST")));
+        HttpRequestWrapper streamed = newRequest("PUT");
+        streamed.setDataStream(new ByteArrayInputStream(new byte[1]));
+        assertFalse("Streamed request is retryable", policy.isRetryable(streamed));
+    }
+
+    @Test
+    public void testRetryAfterFailureAndStatus() throws Exception {
+        HttpRetryPolicy policy = new HttpRetryPolicy();
+        policy.setMaxRetries(2);
+        final AtomicInteger attempts = new AtomicInteger();
+        HttpResponse response = policy.execute(new HttpRetryPolicy.Attempt() {
+            public HttpResponse send(List<Endpoint> attemptedEndpoints) throws Exception {
+                switch (attempts.incrementAndGet()) {
+                case 1:
+                    throw new IOException("Connection reset");
+                case 2:
+                    return newResponse(503);
+                default:
+                    return newResponse(200);
+                }
+            }
+        });
+        assertEquals(200, response.getStatusLine().getStatusCode());
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void testNonTransientFailureIsNotRetried() throws Exception {
+        HttpRetryPolicy policy = new HttpRetryPolicy();
+        final AtomicInteger attempts = new AtomicInteger();
+        try {
+            policy.execute(new HttpRetryPolicy.Attempt() {
+                public HttpResponse send(List<Endpoint> attemptedEndpoints) throws Exception {
+                    attempts.incrementAndGet();
+                    throw new Exception("Process queue full!");
+                }
+            });
+            fail("Failure not thrown");
+        } catch (Exception e) {
+            assertEquals("Process queue full!", e.getMessage());
+        }
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    public void testRetryBudget() throws Exception {
+        HttpRetryPolicy policy = new HttpRetryPolicy();
+        policy.setMinRetriesPerSecond(0);
+        policy.setBudgetPercent(10);
+        final AtomicInteger attempts = new AtomicInteger();
+        HttpRetryPolicy.Attempt failing = new HttpRetryPolicy.Attempt() {
+            public HttpResponse send(List<Endpoint> attemptedEndpoints) throws Exception {
+                attempts.incrementAndGet();
+                return newResponse(503);
+            }
+        };
+        for (int i = 0; i < 100; i++) {
+            policy.execute(failing);
+        }
+        assertEquals("Retries exceeded the budget", 110, attempts.get());
+    }
+
+    @Test
+    public void testHedgedAttemptWins() throws Exception {
+        HttpRetryPolicy policy = new HttpRetryPolicy();
+        policy.setHedging(true);
+        for (int i = 0; i < 50; i++) { // record enough latencies for hedging to start
+            policy.executeAsync(new HttpRetryPolicy.AsyncAttempt() {
+                public Future<HttpResponse> send(List<Endpoint> attemptedEndpoints, FutureCallback<HttpResponse> callback) {
+                    BasicFuture<HttpResponse> future = new BasicFuture<HttpResponse>(callback);
+                    future.completed(newResponse(200));
+                    return future;
+                }
+            }, null).get();
+        }
+        final List<BasicFuture<HttpResponse>> attempts = new ArrayList<BasicFuture<HttpResponse>>();
+        Future<HttpResponse> result = policy.executeAsync(new HttpRetryPolicy.AsyncAttempt() {
+            public Future<HttpResponse> send(List<Endpoint> attemptedEndpoints, FutureCallback<HttpResponse> callback) {
+                BasicFuture<HttpResponse> future = new BasicFuture<HttpResponse>(callback);
+                synchronized (attempts) {
+                    attempts.add(future);
+                }
+                if (attempts.size() > 1) { // the first attempt never completes
+                    future.completed(newResponse(200));
+                }
+                return future;
+            }
+        }, null);
+        assertEquals(200, result.get(5, TimeUnit.SECONDS).getStatusLine().getStatusCode());
+        assertEquals(2, attempts.size());
+        assertTrue("Losing attempt not cancelled", attempts.get(0).isCancelled());
+        assertTrue(policy.getStatistics().contains("hedge wins=1"));
+    }
+
+    private static HttpRequestWrapper newRequest(String method) {
+        HttpRequestWrapper request = new HttpRequestWrapper();
+        request.setMethod(method);
+        request.setUri("/");
+        return request;
+    }
+
+    private static HttpResponse newResponse(int status) {
+        return new BasicHttpResponse(HttpVersion.HTTP_1_1, status, "");
+    }
+}
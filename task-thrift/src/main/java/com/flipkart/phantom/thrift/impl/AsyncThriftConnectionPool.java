@@ -0,0 +1,670 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.thrift.impl;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.thrift.TBase;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolFactory;
+import org.apache.thrift.transport.TMemoryBuffer;
+import org.apache.thrift.transport.TMemoryInputTransport;
+import org.apache.thrift.transport.TTransportException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <code>AsyncThriftConnectionPool</code> sends Thrift calls to a target server over a few non-blocking connections that are serviced by a single
+ * event loop thread. Calls use the framed transport and are matched to responses using the sequence ID of the call, which is assigned by this
+ * pool so that calls from different clients do not clash. A connection carries up to a configured number of calls at
+ * a time, which the target server may process one after the other or concurrently, as servers using the framed transport do. No thread is held
+ * while a call is in flight and calls are completed from the event loop thread.
+ * Calls are failed if a response is not received within the timeout, and all calls on a connection are failed if the connection fails. Failed
+ * connections are re-established on subsequent calls.
+ * Oneway messages, for which the target server sends no response, are queued for writing and not tracked any further. Frames queued on a
+ * connection by the time the event loop gets to it are written together, in a single gathering write.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class AsyncThriftConnectionPool {
+
+    /** Logger for this class*/
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncThriftConnectionPool.class);
+
+    /** The largest frame accepted from the target server, same as the Thrift default*/
+    private static final int MAX_FRAME_SIZE = 16384000;
+
+    /** Interval at which timeouts are checked when there are calls in flight*/
+    private static final long TIMEOUT_CHECK_INTERVAL_MILLIS = 10;
+
+    /** The initial size of buffers used to serialize calls*/
+    private static final int INITIAL_CALL_BUFFER_SIZE = 256;
+
+    /** The maximum number of frames written in a single gathering write*/
+    private static final int MAX_FRAMES_PER_WRITE = 64;
+
+    /** The target server connect details and the protocol*/
+    private final String host;
+    private final int port;
+    private final int timeoutMillis;
+    private final TProtocolFactory protocolFactory;
+
+    /** The connections and the limit of calls in flight on each*/
+    private final Connection[] connections;
+    private final int maxPendingCallsPerConnection;
+
+    /** The event loop, its selector and the tasks submitted to it from other threads*/
+    private final Selector selector;
+    private final Thread eventLoop;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+    private volatile boolean running = true;
+
+    /** Counters for assigning sequence IDs and selecting connections*/
+    private final AtomicInteger nextSeqid = new AtomicInteger();
+    private final AtomicInteger nextConnection = new AtomicInteger();
+
+    /**
+     * Handles the response to a call. Invoked from the event loop thread
+     */
+    public interface ResponseHandler {
+        /**
+         * Handles the response to a call
+         * @param message the response message header, with the sequence ID of the call as sent by this pool
+         * @param protocol the protocol to read the rest of the response from
+         * @throws Exception in case of errors in handling the response. The call is failed with it
+         */
+        void completed(TMessage message, TProtocol protocol) throws Exception;
+        /**
+         * Handles the failure of a call
+         * @param e the cause of the failure
+         */
+        void failed(Exception e);
+    }
+
+    /**
+     * Writes the body of a call, following the message header
+     */
+    public interface MessageBodyWriter {
+        /**
+         * Writes the call arguments and the message end
+         * @param protocol the protocol to write to
+         * @throws TException in case of errors in writing the call
+         */
+        void write(TProtocol protocol) throws TException;
+    }
+
+    /**
+     * A call in flight
+     */
+    public interface Call {
+        /**
+         * Cancels this call. The response handler is not invoked after a call is cancelled and the call no longer counts towards the calls in
+         * flight on its connection
+         * @return true if the call was cancelled, false if it has completed, or is being completed, already
+         */
+        boolean cancel();
+    }
+
+    /**
+     * Constructor for this class. Starts the event loop thread. Connections are established on first use
+     * @param name the name of the pool, used to name the event loop thread
+     * @param host the target server host
+     * @param port the target server port
+     * @param timeoutMillis the connect and call timeout, 0 for none
+     * @param connections the number of connections to the target server
+     * @param maxPendingCallsPerConnection the maximum number of calls in flight on a connection
+     * @param protocolFactory the factory for the protocol spoken with the target server
+     * @throws IOException in case of errors in opening the selector
+     */
+    public AsyncThriftConnectionPool(String name, String host, int port, int timeoutMillis, int connections, int maxPendingCallsPerConnection,
+            TProtocolFactory protocolFactory) throws IOException {
+        this.host = host;
+        this.port = port;
+        this.timeoutMillis = timeoutMillis;
+        this.protocolFactory = protocolFactory;
+        this.maxPendingCallsPerConnection = maxPendingCallsPerConnection;
+        this.connections = new Connection[connections];
+        for (int i = 0; i < connections; i++) {
+            this.connections[i] = new Connection();
+        }
+        this.selector = Selector.open();
+        this.eventLoop = new Thread(this::run, "AsyncThriftConnectionPool-" + name);
+        this.eventLoop.setDaemon(true);
+        this.eventLoop.start();
+    }
+
+    /**
+     * Sends a call to the target server
+     * @param methodName the name of the method called
+     * @param args the call arguments
+     * @param handler the handler for the response
+     * @return the Call in flight
+     * @throws TException in case of errors in serializing the call
+     * @throws RejectedExecutionException if all connections have the maximum number of calls in flight or the pool is shut down
+     */
+    public Call execute(String methodName, final TBase<?, ?> args, ResponseHandler handler) throws TException {
+        return this.execute(methodName, protocol -> {
+            args.write(protocol);
+            protocol.writeMessageEnd();
+        }, handler);
+    }
+
+    /**
+     * Sends a call with arguments that are already encoded, as read from the calling client, to the target server
+     * @param methodName the name of the method called
+     * @param body the encoded call arguments i.e. the message body, encoded using the protocol of this pool
+     * @param handler the handler for the response
+     * @return the Call in flight
+     * @throws TException in case of errors in writing the call
+     * @throws RejectedExecutionException if all connections have the maximum number of calls in flight or the pool is shut down
+     */
+    public Call execute(String methodName, final ThriftMessageBody body, ResponseHandler handler) throws TException {
+        return this.execute(methodName, protocol -> body.write(protocol.getTransport()), handler);
+    }
+
+    /**
+     * Sends a call to the target server, with the call arguments written by the specified writer
+     * @param methodName the name of the method called
+     * @param bodyWriter the writer of the call arguments
+     * @param handler the handler for the response
+     * @return the Call in flight
+     * @throws TException in case of errors in writing the call
+     * @throws RejectedExecutionException if all connections have the maximum number of calls in flight or the pool is shut down
+     */
+    public Call execute(String methodName, MessageBodyWriter bodyWriter, ResponseHandler handler) throws TException {
+        if (!this.running) {
+            throw new RejectedExecutionException("AsyncThriftConnectionPool is shut down");
+        }
+        int seqid = this.nextSeqid.incrementAndGet();
+        // serialize the call on the calling thread
+        ByteBuffer frame = this.createFrame(new TMessage(methodName, TMessageType.CALL, seqid), bodyWriter);
+
+        Connection connection = this.reserveConnection();
+        final PendingCall call = new PendingCall(seqid, connection, handler, this.timeoutMillis > 0 ?
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.timeoutMillis) : Long.MAX_VALUE);
+        this.submit(() -> call.connection.send(call, frame));
+        return call;
+    }
+
+    /**
+     * Sends a oneway message to the target server. No response is expected and the message is not tracked once it is queued for writing. The
+     * message counts towards the calls in flight on a connection until it is written, and is dropped if the connection fails before then
+     * @param methodName the name of the oneway method called
+     * @param bodyWriter the writer of the call arguments
+     * @throws TException in case of errors in writing the call
+     * @throws RejectedExecutionException if all connections have the maximum number of calls in flight or the pool is shut down
+     */
+    public void send(String methodName, MessageBodyWriter bodyWriter) throws TException {
+        if (!this.running) {
+            throw new RejectedExecutionException("AsyncThriftConnectionPool is shut down");
+        }
+        ByteBuffer frame = this.createFrame(new TMessage(methodName, TMessageType.ONEWAY, this.nextSeqid.incrementAndGet()), bodyWriter);
+        Connection connection = this.reserveConnection();
+        this.submit(() -> connection.sendOneway(frame));
+    }
+
+    /**
+     * Shuts down this pool. Calls in flight are failed
+     */
+    public void shutdown() {
+        this.running = false;
+        this.selector.wakeup();
+    }
+
+    /**
+     * Returns the number of calls in flight
+     * @return the number of calls in flight across all connections
+     */
+    public int getPendingCalls() {
+        int pendingCalls = 0;
+        for (Connection connection : this.connections) {
+            pendingCalls += connection.pendingCalls.get();
+        }
+        return pendingCalls;
+    }
+
+    /**
+     * Helper method to serialize a message into a frame, leaving room for the frame size and then setting it
+     */
+    private ByteBuffer createFrame(TMessage message, MessageBodyWriter bodyWriter) throws TException {
+        TMemoryBuffer buffer = new TMemoryBuffer(INITIAL_CALL_BUFFER_SIZE);
+        buffer.write(new byte[4]);
+        TProtocol protocol = this.protocolFactory.getProtocol(buffer);
+        protocol.writeMessageBegin(message);
+        bodyWriter.write(protocol);
+        ByteBuffer frame = ByteBuffer.wrap(buffer.getArray(), 0, buffer.length());
+        frame.putInt(0, buffer.length() - 4);
+        return frame;
+    }
+
+    /**
+     * Helper method to reserve a slot for a call on the next connection that has capacity, in round robin order
+     */
+    private Connection reserveConnection() {
+        int start = this.nextConnection.getAndIncrement() & Integer.MAX_VALUE;
+        for (int i = 0; i < this.connections.length; i++) {
+            Connection connection = this.connections[(start + i) % this.connections.length];
+            int pendingCalls = connection.pendingCalls.get();
+            while (pendingCalls < this.maxPendingCallsPerConnection) {
+                if (connection.pendingCalls.compareAndSet(pendingCalls, pendingCalls + 1)) {
+                    return connection;
+                }
+                pendingCalls = connection.pendingCalls.get();
+            }
+        }
+        throw new RejectedExecutionException("All connections to " + this.host + ":" + this.port + " have " + this.maxPendingCallsPerConnection +
+                " calls in flight");
+    }
+
+    /**
+     * Helper method to run the specified task on the event loop thread
+     */
+    private void submit(Runnable task) {
+        this.tasks.add(task);
+        if (this.wakeupPending.compareAndSet(false, true)) {
+            this.selector.wakeup();
+        }
+    }
+
+    /**
+     * The event loop. Runs submitted tasks, performs I/O on ready connections and fails calls that have timed out
+     */
+    private void run() {
+        while (this.running) {
+            try {
+                this.selector.select(this.getPendingCalls() > 0 && this.timeoutMillis > 0 ? TIMEOUT_CHECK_INTERVAL_MILLIS : 0);
+                this.wakeupPending.set(false);
+                Runnable task;
+                while ((task = this.tasks.poll()) != null) {
+                    task.run();
+                }
+                // write the frames queued by the tasks, together
+                for (Connection connection : this.connections) {
+                    connection.flush();
+                }
+                Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isConnectable()) {
+                            connection.finishConnect();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            connection.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.write();
+                        }
+                    } catch (Exception e) {
+                        connection.fail(e);
+                    }
+                }
+                long now = System.nanoTime();
+                for (Connection connection : this.connections) {
+                    connection.expireCalls(now);
+                }
+            } catch (Throwable e) {
+                LOGGER.error("Error in event loop of AsyncThriftConnectionPool for : " + this.host + ":" + this.port, e);
+            }
+        }
+        // fail all calls, including the ones submitted after shutdown
+        Runnable task;
+        while ((task = this.tasks.poll()) != null) {
+            task.run();
+        }
+        for (Connection connection : this.connections) {
+            connection.fail(new ClosedChannelException());
+        }
+        try {
+            this.selector.close();
+        } catch (IOException e) {
+            LOGGER.warn("Error closing selector : " + e.getMessage());
+        }
+    }
+
+    /**
+     * A call that has been sent or is to be sent. The handler is invoked at most once, on completion, failure or timeout
+     */
+    private static class PendingCall implements Call {
+
+        private final int seqid;
+        private final Connection connection;
+        private final ResponseHandler handler;
+        private final long deadlineNanos;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        PendingCall(int seqid, Connection connection, ResponseHandler handler, long deadlineNanos) {
+            this.seqid = seqid;
+            this.connection = connection;
+            this.handler = handler;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        public boolean cancel() {
+            if (!this.done.compareAndSet(false, true)) {
+                return false;
+            }
+            this.connection.cancel(this);
+            return true;
+        }
+
+        void complete(TMessage message, TProtocol protocol) {
+            if (this.done.compareAndSet(false, true)) {
+                try {
+                    this.handler.completed(message, protocol);
+                } catch (Exception e) {
+                    this.handler.failed(e);
+                }
+            }
+        }
+
+        void fail(Exception e) {
+            if (this.done.compareAndSet(false, true)) {
+                this.handler.failed(e);
+            }
+        }
+    }
+
+    /**
+     * A connection to the target server. All methods other than {@link #cancel(PendingCall)} and the pending call count are accessed only from
+     * the event loop thread
+     */
+    private class Connection {
+
+        /** The number of calls reserved, sent or awaiting a response on this connection*/
+        private final AtomicInteger pendingCalls = new AtomicInteger();
+
+        /** The calls awaiting a response, in the order sent, keyed by sequence ID*/
+        private final Map<Integer, PendingCall> calls = new LinkedHashMap<Integer, PendingCall>();
+
+        /** The frames to write, and the ones among them that are oneway messages*/
+        private final ArrayDeque<ByteBuffer> writeQueue = new ArrayDeque<ByteBuffer>();
+        private final ArrayDeque<ByteBuffer> onewayFrames = new ArrayDeque<ByteBuffer>();
+        private final ByteBuffer[] writeBatch = new ByteBuffer[MAX_FRAMES_PER_WRITE];
+
+        /** Set when frames have been queued, to write them once all submitted tasks have run*/
+        private boolean flushPending;
+
+        /** The frame size and frame being read*/
+        private final ByteBuffer frameSize = ByteBuffer.allocate(4);
+        private ByteBuffer frame;
+
+        private SocketChannel channel;
+        private SelectionKey key;
+        private long connectDeadlineNanos;
+
+        /**
+         * Queues the specified call for sending, connecting if not connected
+         */
+        void send(PendingCall call, ByteBuffer callFrame) {
+            if (call.done.get()) { // cancelled before it could be sent
+                this.pendingCalls.decrementAndGet();
+                return;
+            }
+            if (!running) {
+                this.pendingCalls.decrementAndGet();
+                call.fail(new RejectedExecutionException("AsyncThriftConnectionPool is shut down"));
+                return;
+            }
+            this.calls.put(call.seqid, call);
+            this.queue(callFrame);
+        }
+
+        /**
+         * Stops tracking the specified cancelled call, if it has been sent. A call cancelled before it is sent is dropped by {@link #send(PendingCall, ByteBuffer)}
+         */
+        void cancel(PendingCall call) {
+            submit(() -> {
+                if (this.calls.remove(call.seqid) != null) {
+                    this.pendingCalls.decrementAndGet();
+                }
+            });
+        }
+
+        /**
+         * Queues the specified oneway message frame for sending, connecting if not connected
+         */
+        void sendOneway(ByteBuffer frame) {
+            if (!running) {
+                this.pendingCalls.decrementAndGet();
+                return;
+            }
+            this.onewayFrames.add(frame);
+            this.queue(frame);
+        }
+
+        /**
+         * Queues the specified frame for writing once all submitted tasks have run, connecting if not connected
+         */
+        void queue(ByteBuffer frame) {
+            this.writeQueue.add(frame);
+            if (this.channel == null) {
+                try {
+                    this.connect();
+                } catch (Exception e) {
+                    this.fail(e);
+                }
+            } else {
+                this.flushPending = true;
+            }
+        }
+
+        /**
+         * Writes the queued frames, if any have been queued since the last flush and the connection is established
+         */
+        void flush() {
+            if (!this.flushPending) {
+                return;
+            }
+            this.flushPending = false;
+            try {
+                if (this.channel != null && this.channel.isConnected()) {
+                    this.write();
+                }
+            } catch (Exception e) {
+                this.fail(e);
+            }
+        }
+
+        /**
+         * Starts connecting to the target server
+         */
+        void connect() throws IOException {
+            this.channel = SocketChannel.open();
+            this.channel.configureBlocking(false);
+            this.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            this.connectDeadlineNanos = timeoutMillis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : Long.MAX_VALUE;
+            if (this.channel.connect(new InetSocketAddress(host, port))) {
+                this.key = this.channel.register(selector, SelectionKey.OP_READ, this);
+                this.write();
+            } else {
+                this.key = this.channel.register(selector, SelectionKey.OP_CONNECT, this);
+            }
+        }
+
+        /**
+         * Completes connecting to the target server and writes the queued calls
+         */
+        void finishConnect() throws IOException {
+            if (this.channel.finishConnect()) {
+                LOGGER.info("Connected to Thrift server : {} at port : {}", host, port);
+                this.key.interestOps(SelectionKey.OP_READ);
+                this.write();
+            }
+        }
+
+        /**
+         * Writes queued frames, several at a time, until the socket buffer is full. Oneway messages are done with once written
+         */
+        void write() throws IOException {
+            while (!this.writeQueue.isEmpty()) {
+                int count = 0;
+                for (ByteBuffer frame : this.writeQueue) {
+                    this.writeBatch[count++] = frame;
+                    if (count == MAX_FRAMES_PER_WRITE) {
+                        break;
+                    }
+                }
+                this.channel.write(this.writeBatch, 0, count);
+                boolean socketBufferFull = this.writeBatch[count - 1].hasRemaining();
+                Arrays.fill(this.writeBatch, 0, count, null);
+                while (!this.writeQueue.isEmpty() && !this.writeQueue.peek().hasRemaining()) {
+                    if (this.writeQueue.poll() == this.onewayFrames.peek()) {
+                        this.onewayFrames.poll();
+                        this.pendingCalls.decrementAndGet();
+                    }
+                }
+                if (socketBufferFull) {
+                    this.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            this.key.interestOps(SelectionKey.OP_READ);
+        }
+
+        /**
+         * Reads available response frames and completes the matching calls
+         */
+        void read() throws IOException, TTransportException {
+            while (true) {
+                if (this.frame == null) {
+                    if (this.channel.read(this.frameSize) < 0) {
+                        throw new TTransportException(TTransportException.END_OF_FILE, "Connection closed by Thrift server");
+                    }
+                    if (this.frameSize.hasRemaining()) {
+                        return;
+                    }
+                    int size = this.frameSize.getInt(0);
+                    if (size < 0 || size > MAX_FRAME_SIZE) {
+                        throw new TTransportException(TTransportException.UNKNOWN, "Invalid frame size " + size + ". Is the Thrift server using the framed transport?");
+                    }
+                    this.frameSize.clear();
+                    this.frame = ByteBuffer.allocate(size);
+                }
+                if (this.channel.read(this.frame) < 0) {
+                    throw new TTransportException(TTransportException.END_OF_FILE, "Connection closed by Thrift server");
+                }
+                if (this.frame.hasRemaining()) {
+                    return;
+                }
+                ByteBuffer response = this.frame;
+                this.frame = null;
+                this.dispatch(response.array());
+            }
+        }
+
+        /**
+         * Completes the call that the specified response frame is for
+         */
+        void dispatch(byte[] response) throws IOException {
+            TProtocol protocol = protocolFactory.getProtocol(new TMemoryInputTransport(response));
+            TMessage message;
+            try {
+                message = protocol.readMessageBegin();
+            } catch (TException e) {
+                throw new IOException("Unable to read response from Thrift server : " + e.getMessage(), e);
+            }
+            PendingCall call = this.calls.remove(message.seqid);
+            if (call == null) { // the call has timed out already
+                LOGGER.debug("Discarding response for expired call. Seq Id : {}, Method : {}", message.seqid, message.name);
+                return;
+            }
+            this.pendingCalls.decrementAndGet();
+            call.complete(message, protocol);
+        }
+
+        /**
+         * Fails calls that have not received a response within the timeout and the connection if it has not connected within the timeout
+         */
+        void expireCalls(long now) {
+            if (this.channel != null && this.channel.isConnectionPending() && now - this.connectDeadlineNanos > 0) {
+                this.fail(new ConnectException("Timed out connecting to Thrift server : " + host + ":" + port));
+                return;
+            }
+            Iterator<PendingCall> iterator = this.calls.values().iterator();
+            while (iterator.hasNext()) {
+                PendingCall call = iterator.next();
+                if (now - call.deadlineNanos < 0) {
+                    break; // calls are in the order sent and expire in that order
+                }
+                iterator.remove();
+                this.pendingCalls.decrementAndGet();
+                call.fail(new TTransportException(TTransportException.TIMED_OUT, "Thrift call timed out after " + timeoutMillis + "ms"));
+            }
+        }
+
+        /**
+         * Closes this connection and fails all calls on it
+         */
+        void fail(Exception e) {
+            if (this.channel != null) {
+                LOGGER.warn("Closing connection to Thrift server : {} at port : {}. Error is : {}", host, port, e.toString());
+                try {
+                    this.channel.close();
+                } catch (IOException closeException) {
+                    // ignore
+                }
+            }
+            this.channel = null;
+            this.key = null;
+            this.frame = null;
+            this.frameSize.clear();
+            this.writeQueue.clear();
+            this.flushPending = false;
+            if (!this.onewayFrames.isEmpty()) {
+                LOGGER.warn("Dropping {} unsent oneway messages to Thrift server : {} at port : {}", this.onewayFrames.size(), host, port);
+                this.pendingCalls.addAndGet(-this.onewayFrames.size());
+                this.onewayFrames.clear();
+            }
+            List<PendingCall> failedCalls = new ArrayList<PendingCall>(this.calls.values());
+            this.calls.clear();
+            this.pendingCalls.addAndGet(-failedCalls.size());
+            for (PendingCall call : failedCalls) {
+                call.fail(e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.thrift.impl;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.thrift.async.AsyncMethodCallback;
+import org.apache.thrift.transport.TTransport;
+
+import com.flipkart.phantom.event.ServiceProxyEvent;
+import com.flipkart.phantom.task.spi.Executor;
+import com.flipkart.phantom.task.spi.TaskContext;
+import com.flipkart.phantom.task.spi.interceptor.RequestInterceptor;
+import com.flipkart.phantom.task.spi.interceptor.ResponseInterceptor;
+import com.github.kristofa.brave.Brave;
+import com.github.kristofa.brave.ServerSpan;
+import com.google.common.base.Optional;
+import com.netflix.hystrix.HystrixCommandGroupKey;
+import com.netflix.hystrix.HystrixCommandKey;
+import com.netflix.hystrix.HystrixCommandProperties;
+import com.netflix.hystrix.HystrixObservableCommand;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.subjects.AsyncSubject;
+import rx.subscriptions.Subscriptions;
+
+/**
+ * <code>AsyncThriftProxyExecutor</code> is a {@link HystrixObservableCommand} for relaying Thrift calls using the non-blocking client of a
+ * {@link ThriftProxy} i.e. an {@link AsyncThriftConnectionPool}. The observable returned by {@link #observe()} is completed from the event loop
+ * of the client and no thread is held while the call is in flight. Concurrency is therefore limited using Hystrix semaphore isolation, sized to
+ * the number of calls the connections of the client may carry, to all endpoints if calls are balanced across several, instead of a thread pool.
+ * Response interceptors are invoked from the event loop thread that completes the call.
+ * The fallback writes to the client transport only if the call in flight could be cancelled. If the call completes while the command times
+ * out, the response written by the event loop is emitted instead of the fallback's, once the event loop is done with the client transport.
+ * The same applies if the command times out while the call is being sent, as it may complete before it can be cancelled.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class AsyncThriftProxyExecutor extends HystrixObservableCommand<TTransport> implements Executor<ThriftRequestWrapper, TTransport> {
+
+    /** Event Type for publishing all events which are generated here */
+    private final static String THRIFT_HANDLER = "THRIFT_HANDLER";
+
+    /** The HystrixThriftProxy instance which this Command wraps around */
+    private HystrixThriftProxy thriftProxy;
+
+    /** The client's TTransport*/
+    private TTransport clientTransport;
+
+    /** The Thrift request wrapper*/
+    private ThriftRequestWrapper thriftRequestWrapper;
+
+    /** Event which records various paramenters of this request execution & published later */
+    protected ServiceProxyEvent.Builder eventBuilder;
+
+    /** The call in flight, set while the call is being sent, and the outcome of cancelling it, null until cancelled*/
+    private AsyncThriftConnectionPool.Call inFlightCall;
+    private boolean sending;
+    private Boolean callCancelled;
+
+    /** Emits true once the event loop has written the service response to the client transport, false if the call failed*/
+    private final AsyncSubject<Boolean> callDone = AsyncSubject.create();
+
+    /** List of request and response interceptors */
+    private List<RequestInterceptor<ThriftRequestWrapper>> requestInterceptors = new LinkedList<RequestInterceptor<ThriftRequestWrapper>>();
+    private List<ResponseInterceptor<TTransport>> responseInterceptors = new LinkedList<ResponseInterceptor<TTransport>>();
+
+    /**
+     * Constructor for this class.
+     * @param hystrixThriftProxy the HystrixThriftProxy that must be wrapped by Hystrix
+     * @param taskContext the TaskContext instance that manages the proxies
+     * @param commandName the Hystrix command name.
+     * @param thriftRequestWrapper the Thrift request wrapper
+     */
+    public AsyncThriftProxyExecutor(HystrixThriftProxy hystrixThriftProxy, TaskContext taskContext, String commandName, ThriftRequestWrapper thriftRequestWrapper) {
+        super(Setter.withGroupKey(HystrixCommandGroupKey.Factory.asKey(hystrixThriftProxy.getGroupName()))
+                .andCommandKey(HystrixCommandKey.Factory.asKey(commandName))
+                .andCommandPropertiesDefaults(HystrixCommandProperties.Setter()
+                        .withExecutionIsolationStrategy(HystrixCommandProperties.ExecutionIsolationStrategy.SEMAPHORE)
+                        .withExecutionIsolationSemaphoreMaxConcurrentRequests(getMaxConcurrentCalls(hystrixThriftProxy))
+                        .withFallbackIsolationSemaphoreMaxConcurrentRequests(getMaxConcurrentCalls(hystrixThriftProxy))
+                        .withExecutionTimeoutInMilliseconds(hystrixThriftProxy.getExecutorTimeout(commandName))));
+        this.thriftProxy = hystrixThriftProxy;
+        this.thriftRequestWrapper = thriftRequestWrapper;
+        this.clientTransport = thriftRequestWrapper.getClientSocket();
+        this.eventBuilder = new ServiceProxyEvent.Builder(commandName, THRIFT_HANDLER);
+    }
+
+    /**
+     * Abstract method implementation. Relays the call using the non-blocking client and emits the client transport, with the service response
+     * written to it, from the completion callback. The call in flight is cancelled if the returned observable is unsubscribed from, say when
+     * the command times out.
+     * @see com.netflix.hystrix.HystrixObservableCommand#construct()
+     */
+    @Override
+    protected Observable<TTransport> construct() {
+        return Observable.create(new Observable.OnSubscribe<TTransport>() {
+            public void call(final Subscriber<? super TTransport> subscriber) {
+                if (!startSending()) { // cancelled already
+                    subscriber.onCompleted();
+                    return;
+                }
+                eventBuilder.withRequestExecutionStartTime(System.currentTimeMillis());
+                final ServerSpan serverSpan = thriftRequestWrapper.getRequestContext().isPresent() ?
+                        thriftRequestWrapper.getRequestContext().get().getCurrentServerSpan() : null;
+                ServerSpan callerSpan = bindSpan(serverSpan);
+                AsyncThriftConnectionPool.Call call;
+                try {
+                    for (RequestInterceptor<ThriftRequestWrapper> requestInterceptor : requestInterceptors) {
+                        requestInterceptor.process(thriftRequestWrapper);
+                    }
+                    call = thriftProxy.doRequestAsync(clientTransport, thriftRequestWrapper.getProtocolFactory(), new AsyncMethodCallback<TTransport>() {
+                        public void onComplete(TTransport response) {
+                            processResponse(serverSpan, response, Optional.<RuntimeException>absent());
+                            subscriber.onNext(response);
+                            subscriber.onCompleted();
+                            callDone.onNext(true);
+                            callDone.onCompleted();
+                        }
+                        public void onError(Exception e) {
+                            RuntimeException transportException = e instanceof RuntimeException ? (RuntimeException) e :
+                                    new RuntimeException("Exception executing the proxy service call : " + e.getMessage(), e);
+                            processResponse(serverSpan, null, Optional.of(transportException));
+                            subscriber.onError(transportException);
+                            callDone.onNext(false);
+                            callDone.onCompleted();
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    processResponse(serverSpan, null, Optional.of(e));
+                    setInFlightCall(null); // the call was not sent
+                    subscriber.onError(e);
+                    return;
+                } finally {
+                    bindSpan(callerSpan);
+                }
+                setInFlightCall(call);
+                subscriber.add(Subscriptions.create(AsyncThriftProxyExecutor.this::cancelCall));
+            }
+        });
+    }
+
+    /**
+     * Executes this command and waits for the response
+     * @see com.flipkart.phantom.task.spi.Executor#execute()
+     */
+    public TTransport execute() {
+        return this.observe().toBlocking().single();
+    }
+
+    /**
+     * Overriden superclass method. Writes the response from the fallback of the {@link HystrixThriftProxy} to the client transport
+     * @see com.netflix.hystrix.HystrixObservableCommand#resumeWithFallback()
+     */
+    @Override
+    protected Observable<TTransport> resumeWithFallback() {
+        if (!this.cancelCall()) { // the event loop is writing to the client transport, or has written to it already
+            return this.callDone.flatMap(responseWritten -> responseWritten ? Observable.just(this.clientTransport) : this.writeFallback());
+        }
+        return this.writeFallback();
+    }
+
+    /**
+     * Helper method to write the response from the fallback of the {@link HystrixThriftProxy} to the client transport
+     */
+    private Observable<TTransport> writeFallback() {
+        Map<String, Object> controlparams = new HashMap<String,Object>();
+        // check and populate execution error root cause, if any, for use in fallback
+        if (this.isFailedExecution()) {
+            controlparams.put(Executor.EXECUTION_ERROR_CAUSE, this.getFailedExecutionException());
+        }
+        this.thriftProxy.fallbackThriftRequest(this.clientTransport, controlparams);
+        return Observable.just(this.clientTransport);
+    }
+
+    /**
+     * Interface method implementation. Adds the RequestInterceptor to the list of request interceptors that will be invoked
+     * @see com.flipkart.phantom.task.spi.Executor#addRequestInterceptor(com.flipkart.phantom.task.spi.interceptor.RequestInterceptor)
+     */
+    public void addRequestInterceptor(RequestInterceptor<ThriftRequestWrapper> requestInterceptor) {
+        this.requestInterceptors.add(requestInterceptor);
+    }
+
+    /**
+     * Interface method implementation. Adds the ResponseInterceptor to the list of response interceptors that will be invoked
+     * @see com.flipkart.phantom.task.spi.Executor#addResponseInterceptor(com.flipkart.phantom.task.spi.interceptor.ResponseInterceptor)
+     */
+    public void addResponseInterceptor(ResponseInterceptor<TTransport> responseInterceptor) {
+        this.responseInterceptors.add(responseInterceptor);
+    }
+
+    /**
+     * Interface method implementation. Returns the name of the ThriftProxy used by this Executor
+     * @see com.flipkart.phantom.task.spi.Executor#getServiceName()
+     */
+    public Optional<String> getServiceName() {
+        return Optional.of(this.thriftProxy.getName());
+    }
+
+    /**
+     * Interface method implementation. Returns the ThriftRequestWrapper instance that this Executor was created with
+     * @see com.flipkart.phantom.task.spi.Executor#getRequestWrapper()
+     */
+    public ThriftRequestWrapper getRequestWrapper() {
+        return this.thriftRequestWrapper;
+    }
+
+    /**
+     * Retruns the event builder instance
+     */
+    public ServiceProxyEvent.Builder getEventBuilder() {
+        return this.eventBuilder;
+    }
+
+    /**
+     * Helper method to invoke the response interceptors on the event loop thread that completed the call
+     */
+    private void processResponse(ServerSpan serverSpan, TTransport response, Optional<RuntimeException> transportException) {
+        ServerSpan callerSpan = bindSpan(serverSpan);
+        try {
+            for (ResponseInterceptor<TTransport> responseInterceptor : this.responseInterceptors) {
+                responseInterceptor.process(response, transportException);
+            }
+        } finally {
+            bindSpan(callerSpan);
+        }
+    }
+
+    /**
+     * Helper method to bind the specified server span to the current thread, unbinding any span if null. Returns the span bound earlier, to be
+     * restored once done, as the thread is shared across calls
+     */
+    private static ServerSpan bindSpan(ServerSpan serverSpan) {
+        ServerSpan boundSpan = Brave.getServerSpanThreadBinder().getCurrentServerSpan();
+        Brave.getServerSpanThreadBinder().setCurrentSpan(serverSpan);
+        return boundSpan;
+    }
+
+    /**
+     * Helper method to mark the call as being sent. Returns false if the command has been cancelled already, in which case the call is not sent
+     */
+    private synchronized boolean startSending() {
+        this.sending = this.callCancelled == null;
+        return this.sending;
+    }
+
+    /**
+     * Helper method to record the call in flight once sent, null if it could not be sent. A call that the command was cancelled during the
+     * sending of is cancelled now, and the fallback waiting on it is signalled as the response handler is not invoked for a cancelled call
+     */
+    private void setInFlightCall(AsyncThriftConnectionPool.Call call) {
+        boolean cancelled;
+        synchronized (this) {
+            this.inFlightCall = call;
+            this.sending = false;
+            cancelled = this.callCancelled != null && (call == null || call.cancel());
+        }
+        if (cancelled) {
+            this.callDone.onNext(false);
+            this.callDone.onCompleted();
+        }
+    }
+
+    /**
+     * Helper method to cancel the call in flight, once. Returns true if the client transport may be written to i.e. the call was not sent or
+     * has been cancelled, and false if the call has completed, is being completed from the event loop or is being sent. The outcome of the
+     * call is emitted by {@link #callDone} in the latter cases
+     */
+    private synchronized boolean cancelCall() {
+        if (this.callCancelled == null) {
+            this.callCancelled = this.inFlightCall != null ? this.inFlightCall.cancel() : !this.sending;
+        }
+        return this.callCancelled;
+    }
+
+    /**
+     * Helper method to return the number of calls that the connections of the proxy's non-blocking clients may carry, summed over the endpoints
+     * if calls are balanced across several
+     */
+    private static int getMaxConcurrentCalls(HystrixThriftProxy hystrixThriftProxy) {
+        int endpoints = hystrixThriftProxy.getEndpoints() == null || hystrixThriftProxy.getEndpoints().isEmpty() ? 1 :
+                hystrixThriftProxy.getEndpoints().size();
+        return hystrixThriftProxy.getAsyncConnections() * hystrixThriftProxy.getMaxPendingCallsPerConnection() * endpoints;
+    }
+
+}
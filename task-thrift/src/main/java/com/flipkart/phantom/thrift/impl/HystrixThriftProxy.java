@@ -16,12 +16,14 @@
 package com.flipkart.phantom.thrift.impl;
 
 import com.flipkart.phantom.task.spi.TaskContext;
+import com.flipkart.phantom.task.spi.loadbalancer.Endpoint;
 import com.netflix.hystrix.HystrixCommandProperties;
 import org.apache.thrift.transport.TTransport;
 import org.springframework.util.StringUtils;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An extension of {@link ThriftProxy}. Adds additional methods required by Hystrix. Uses the Thrift call name as the
@@ -84,7 +86,24 @@ public abstract class HystrixThriftProxy extends ThriftProxy {
     public String getDetails() {
         String details = "Service Class: " + this.getThriftServiceClass() + "\n";
         details += "Endpoint: " + this.getThriftServer() + ":" + this.getThriftPort() + "\n";
+        if (this.getEndpointGroup() != null) {
+            long now = System.currentTimeMillis();
+            details += "Balanced Endpoints:\n";
+            for (Endpoint endpoint : this.getEndpointGroup().getEndpoints()) {
+                details += "  " + endpoint + " [outstanding calls: " + endpoint.getOutstandingRequests() +
+                        ", latency: " + TimeUnit.NANOSECONDS.toMillis((long)endpoint.getLatencyEwmaNanos()) + "ms" +
+                        ", consecutive failures: " + endpoint.getConsecutiveFailures() + (endpoint.isEjected(now) ? ", ejected" : "") + "]\n";
+            }
+            details += "Load Balancer: " + this.getEndpointGroup().getLoadBalancer().getClass().getSimpleName() + "\n";
+        }
         details += "Timeout: " + this.getThriftTimeoutMillis() + "ms\n";
+        details += "Protocol: " + this.getProtocol() + (this.isFramed() || this.isAsync() ? ", framed" : "") + "\n";
+        if (this.isAsync()) {
+            details += "Async Connections: " + this.getAsyncConnections() + " (max " + this.getMaxPendingCallsPerConnection() + " pending calls each)\n";
+        }
+        if (this.isPassThrough()) {
+            details += "Pass-through: true\n";
+        }
         details += "Executor Timeout: " + this.getProxyExecutorTimeout() + "ms\n";
         details += "Methods: " + StringUtils.collectionToDelimitedString(processMap.keySet(), ", ") + "\n";
         return details;
@@ -59,8 +59,21 @@ public class ProxyServiceClient extends TServiceClient {
 	 * @see org.apache.thrift.TServiceClient#sendBase(String, org.apache.thrift.TBase)
 	 */
 	public void sendBase(String methodName, TBase args, int sequenceId) throws TException {
+		this.sendBase(methodName, args, sequenceId, TMessageType.CALL);
+	}
+
+	/**
+	 * Sends the call with the specified message type, {@link TMessageType#ONEWAY} for calls to oneway methods that the target service does
+	 * not respond to
+	 * @param methodName the name of the method called
+	 * @param args the call arguments
+	 * @param sequenceId the sequence ID of the calling message
+	 * @param messageType the message type
+	 * @throws TException in case of errors in sending the call
+	 */
+	public void sendBase(String methodName, TBase args, int sequenceId, byte messageType) throws TException {
 		this.seqid_ = sequenceId;
-	    oprot_.writeMessageBegin(new TMessage(methodName, TMessageType.CALL, this.seqid_));
+	    oprot_.writeMessageBegin(new TMessage(methodName, messageType, this.seqid_));
 	    args.write(oprot_);
 	    oprot_.writeMessageEnd();
 	    oprot_.getTransport().flush();
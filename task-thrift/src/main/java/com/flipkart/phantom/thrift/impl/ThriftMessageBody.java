@@ -0,0 +1,194 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.thrift.impl;
+
+import java.util.Arrays;
+
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+
+/**
+ * <code>ThriftMessageBody</code> holds the bytes of a Thrift message that follow the message header i.e. the encoded arguments or result struct
+ * of a call, as is. Used to relay calls and responses without deserializing them into the classes generated by the Thrift compiler.
+ * The body refers to the buffer of the transport it was read from, where the transport exposes one, and is therefore valid only as long as
+ * that buffer is.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class ThriftMessageBody {
+
+    /** The initial size of buffers that message bodies are copied into*/
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    /** The bytes of the message body*/
+    private final byte[] buffer;
+    private final int offset;
+    private final int length;
+
+    /**
+     * Constructor for this class
+     * @param buffer the buffer holding the message body
+     * @param offset the offset of the body in the buffer
+     * @param length the length of the body
+     */
+    public ThriftMessageBody(byte[] buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Reads the rest of the message from a transport that holds exactly one message, such as the transport of a proxied client call or of a
+     * framed response. The buffer of the transport is referred to without copying, if the transport exposes it.
+     * @param transport the transport positioned after the message header
+     * @return the message body
+     * @throws TTransportException in case of errors in reading from the transport
+     */
+    public static ThriftMessageBody readRemaining(TTransport transport) throws TTransportException {
+        int remaining = transport.getBytesRemainingInBuffer();
+        if (remaining >= 0) {
+            ThriftMessageBody body = new ThriftMessageBody(transport.getBuffer(), transport.getBufferPosition(), remaining);
+            transport.consumeBuffer(remaining);
+            return body;
+        }
+        byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+        int length = 0;
+        int bytesRead;
+        while ((bytesRead = transport.read(buffer, length, buffer.length - length)) > 0) {
+            length += bytesRead;
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+        }
+        return new ThriftMessageBody(buffer, 0, length);
+    }
+
+    /**
+     * Writes this message body to the specified transport
+     * @param transport the transport to write to
+     * @throws TTransportException in case of errors in writing to the transport
+     */
+    public void write(TTransport transport) throws TTransportException {
+        transport.write(this.buffer, this.offset, this.length);
+    }
+
+    /**
+     * Returns the length of this message body
+     * @return the message body length in bytes
+     */
+    public int getLength() {
+        return this.length;
+    }
+
+    /**
+     * <code>Recorder</code> is a transport that records the bytes read from the transport it wraps, for capturing the body of a message read
+     * from a stream that does not delimit messages, such as an unframed socket. The body is delimited by skipping over it using the protocol.
+     */
+    public static class Recorder extends TTransport {
+
+        /** The wrapped transport*/
+        private final TTransport transport;
+
+        /** The bytes recorded, null when not recording*/
+        private byte[] recording;
+        private int recordedLength;
+
+        /**
+         * Constructor for this class
+         * @param transport the transport to wrap
+         */
+        public Recorder(TTransport transport) {
+            this.transport = transport;
+        }
+
+        /**
+         * Starts recording the bytes read
+         */
+        public void startRecording() {
+            this.recording = new byte[INITIAL_BUFFER_SIZE];
+            this.recordedLength = 0;
+        }
+
+        /**
+         * Stops recording the bytes read
+         * @return the bytes read since recording started
+         */
+        public ThriftMessageBody stopRecording() {
+            ThriftMessageBody body = new ThriftMessageBody(this.recording, 0, this.recordedLength);
+            this.recording = null;
+            return body;
+        }
+
+        /**
+         * Overriden superclass method. Reads from the wrapped transport, recording the bytes read if recording
+         * @see org.apache.thrift.transport.TTransport#read(byte[], int, int)
+         */
+        public int read(byte[] buffer, int offset, int length) throws TTransportException {
+            int bytesRead = this.transport.read(buffer, offset, length);
+            if (this.recording != null && bytesRead > 0) {
+                if (this.recordedLength + bytesRead > this.recording.length) {
+                    this.recording = Arrays.copyOf(this.recording, Math.max(this.recording.length * 2, this.recordedLength + bytesRead));
+                }
+                System.arraycopy(buffer, offset, this.recording, this.recordedLength, bytesRead);
+                this.recordedLength += bytesRead;
+            }
+            return bytesRead;
+        }
+
+        /**
+         * Overriden superclass method. Writes to the wrapped transport
+         * @see org.apache.thrift.transport.TTransport#write(byte[], int, int)
+         */
+        public void write(byte[] buffer, int offset, int length) throws TTransportException {
+            this.transport.write(buffer, offset, length);
+        }
+
+        /**
+         * Overriden superclass method. Flushes the wrapped transport
+         * @see org.apache.thrift.transport.TTransport#flush()
+         */
+        public void flush() throws TTransportException {
+            this.transport.flush();
+        }
+
+        /**
+         * Overriden superclass method. Returns the open state of the wrapped transport
+         * @see org.apache.thrift.transport.TTransport#isOpen()
+         */
+        public boolean isOpen() {
+            return this.transport.isOpen();
+        }
+
+        /**
+         * Overriden superclass method. Opens the wrapped transport
+         * @see org.apache.thrift.transport.TTransport#open()
+         */
+        public void open() throws TTransportException {
+            this.transport.open();
+        }
+
+        /**
+         * Overriden superclass method. Closes the wrapped transport
+         * @see org.apache.thrift.transport.TTransport#close()
+         */
+        public void close() {
+            this.transport.close();
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.thrift.impl;
+
+import java.lang.reflect.Constructor;
+
+import org.apache.thrift.ProcessFunction;
+import org.apache.thrift.TBase;
+
+/**
+ * <code>ThriftMethod</code> describes a method of a Thrift service, as generated by the Thrift compiler. The classes of the method are looked up
+ * once, when the descriptor is created, so that the arguments and result of each call are instantiated without reflective lookups.
+ * Oneway methods are identified by the absence of a result class, which the Thrift compiler does not generate for them.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+@SuppressWarnings("rawtypes")
+class ThriftMethod {
+
+    /** The Thrift call result class name suffix*/
+    private static final String RESULT_CLASS_SUFFIX = "_result";
+
+    /** The method name*/
+    private final String name;
+
+    /** The generated ProcessFunction of the method, which creates instances of the arguments class*/
+    private final ProcessFunction processFunction;
+
+    /** The constructor of the generated result class, null for oneway methods*/
+    private final Constructor<? extends TBase> resultConstructor;
+
+    /**
+     * Constructor for this class
+     * @param name the method name
+     * @param processFunction the generated ProcessFunction of the method
+     * @param resultConstructor the constructor of the generated result class, null for oneway methods
+     */
+    private ThriftMethod(String name, ProcessFunction processFunction, Constructor<? extends TBase> resultConstructor) {
+        this.name = name;
+        this.processFunction = processFunction;
+        this.resultConstructor = resultConstructor;
+    }
+
+    /**
+     * Creates the descriptor of the specified method
+     * @param thriftServiceClass the fully qualified class name of the generated Thrift service
+     * @param name the method name
+     * @param processFunction the generated ProcessFunction of the method
+     * @return the ThriftMethod
+     * @throws Exception in case of errors in looking up the result class
+     */
+    static ThriftMethod create(String thriftServiceClass, String name, ProcessFunction processFunction) throws Exception {
+        Constructor<? extends TBase> resultConstructor = null;
+        try {
+            Class<?> resultClass = Class.forName(thriftServiceClass + "$" + name + RESULT_CLASS_SUFFIX, true,
+                    processFunction.getClass().getClassLoader());
+            resultConstructor = resultClass.asSubclass(TBase.class).getConstructor();
+        } catch (ClassNotFoundException e) {
+            // no result class, implying a oneway method
+        }
+        return new ThriftMethod(name, processFunction, resultConstructor);
+    }
+
+    /**
+     * Creates an empty arguments instance, to read the arguments of a call into
+     * @return the arguments TBase
+     */
+    TBase newArgs() {
+        return this.processFunction.getEmptyArgsInstance();
+    }
+
+    /**
+     * Creates an empty result instance, to read the result of a call into
+     * @return the result TBase
+     * @throws UnsupportedOperationException if this is a oneway method, which has no result
+     * @throws Exception in case of errors in instantiating the result class
+     */
+    TBase newResult() throws Exception {
+        if (this.resultConstructor == null) {
+            throw new UnsupportedOperationException("Oneway method : " + this.name + " has no result");
+        }
+        return this.resultConstructor.newInstance();
+    }
+
+    /**
+     * Returns true if this is a oneway method, for which the target server sends no response
+     * @return true if oneway, false otherwise
+     */
+    boolean isOneway() {
+        return this.resultConstructor == null;
+    }
+
+    /**
+     * Returns the name of this method
+     * @return the method name
+     */
+    String getName() {
+        return this.name;
+    }
+
+}
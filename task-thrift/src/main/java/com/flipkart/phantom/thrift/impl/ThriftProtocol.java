@@ -0,0 +1,146 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.thrift.impl;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TField;
+import org.apache.thrift.protocol.TList;
+import org.apache.thrift.protocol.TMap;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolException;
+import org.apache.thrift.protocol.TProtocolFactory;
+import org.apache.thrift.protocol.TSet;
+import org.apache.thrift.protocol.TType;
+
+/**
+ * <code>ThriftProtocol</code> enumerates the Thrift protocols that calls may be encoded in, by clients of the proxy and by target servers.
+ * Also provides for transcoding values between protocols without deserializing them into the classes generated by the Thrift compiler, so that
+ * clients and servers using different protocols may be bridged.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public enum ThriftProtocol {
+
+    /** The binary protocol*/
+    BINARY(new TBinaryProtocol.Factory()),
+
+    /** The compact protocol, which encodes integers and field headers in fewer bytes*/
+    COMPACT(new TCompactProtocol.Factory());
+
+    /** The protocol factory, which is stateless and therefore shared*/
+    private final TProtocolFactory protocolFactory;
+
+    /**
+     * Constructor for this enum
+     * @param protocolFactory the factory of the protocol
+     */
+    ThriftProtocol(TProtocolFactory protocolFactory) {
+        this.protocolFactory = protocolFactory;
+    }
+
+    /**
+     * Returns the factory of this protocol
+     * @return the TProtocolFactory
+     */
+    public TProtocolFactory getProtocolFactory() {
+        return this.protocolFactory;
+    }
+
+    /**
+     * Reads a value of the specified type from one protocol and writes it to another, field by field as {@link org.apache.thrift.protocol.TProtocolUtil#skip(TProtocol, byte)}
+     * traverses values
+     * @param in the protocol to read from
+     * @param out the protocol to write to
+     * @param type the type of the value, {@link TType#STRUCT} for the arguments or result of a call
+     * @throws TException in case of errors in reading or writing the value
+     */
+    public static void transcode(TProtocol in, TProtocol out, byte type) throws TException {
+        switch (type) {
+            case TType.BOOL:
+                out.writeBool(in.readBool());
+                break;
+            case TType.BYTE:
+                out.writeByte(in.readByte());
+                break;
+            case TType.I16:
+                out.writeI16(in.readI16());
+                break;
+            case TType.I32:
+                out.writeI32(in.readI32());
+                break;
+            case TType.I64:
+                out.writeI64(in.readI64());
+                break;
+            case TType.DOUBLE:
+                out.writeDouble(in.readDouble());
+                break;
+            case TType.STRING:
+                out.writeBinary(in.readBinary());
+                break;
+            case TType.STRUCT:
+                out.writeStructBegin(in.readStructBegin());
+                while (true) {
+                    TField field = in.readFieldBegin();
+                    if (field.type == TType.STOP) {
+                        break;
+                    }
+                    out.writeFieldBegin(field);
+                    transcode(in, out, field.type);
+                    in.readFieldEnd();
+                    out.writeFieldEnd();
+                }
+                out.writeFieldStop();
+                in.readStructEnd();
+                out.writeStructEnd();
+                break;
+            case TType.MAP:
+                TMap map = in.readMapBegin();
+                out.writeMapBegin(map);
+                for (int i = 0; i < map.size; i++) {
+                    transcode(in, out, map.keyType);
+                    transcode(in, out, map.valueType);
+                }
+                in.readMapEnd();
+                out.writeMapEnd();
+                break;
+            case TType.SET:
+                TSet set = in.readSetBegin();
+                out.writeSetBegin(set);
+                for (int i = 0; i < set.size; i++) {
+                    transcode(in, out, set.elemType);
+                }
+                in.readSetEnd();
+                out.writeSetEnd();
+                break;
+            case TType.LIST:
+                TList list = in.readListBegin();
+                out.writeListBegin(list);
+                for (int i = 0; i < list.size; i++) {
+                    transcode(in, out, list.elemType);
+                }
+                in.readListEnd();
+                out.writeListEnd();
+                break;
+            default:
+                throw new TProtocolException(TProtocolException.INVALID_DATA, "Unknown Thrift type : " + type);
+        }
+    }
+
+}
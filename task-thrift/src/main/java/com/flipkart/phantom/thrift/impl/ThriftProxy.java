@@ -16,18 +16,30 @@
 
 package com.flipkart.phantom.thrift.impl;
 
+import java.io.IOException;
 import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.pool.impl.GenericObjectPool;
 import org.apache.thrift.ProcessFunction;
+import org.apache.thrift.TApplicationException;
 import org.apache.thrift.TBase;
-import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.TException;
+import org.apache.thrift.async.AsyncMethodCallback;
 import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
 import org.apache.thrift.protocol.TProtocol;
 import org.apache.thrift.protocol.TProtocolFactory;
+import org.apache.thrift.protocol.TProtocolUtil;
+import org.apache.thrift.protocol.TType;
+import org.apache.thrift.transport.TFramedTransport;
+import org.apache.thrift.transport.TMemoryBuffer;
 import org.apache.thrift.transport.TSocket;
 import org.apache.thrift.transport.TTransport;
 import org.apache.thrift.transport.TTransportException;
@@ -38,6 +50,10 @@ import org.springframework.util.Assert;
 
 import com.flipkart.phantom.task.spi.AbstractHandler;
 import com.flipkart.phantom.task.spi.TaskContext;
+import com.flipkart.phantom.task.impl.loadbalancer.EndpointGroup;
+import com.flipkart.phantom.task.spi.loadbalancer.Endpoint;
+import com.flipkart.phantom.task.spi.loadbalancer.HealthChecker;
+import com.flipkart.phantom.task.spi.loadbalancer.LoadBalancer;
 import com.flipkart.phantom.thrift.impl.proxy.SocketObjectFactory;
 
 /**
@@ -45,6 +61,14 @@ import com.flipkart.phantom.thrift.impl.proxy.SocketObjectFactory;
  * Note that this class works only with Thrift classes generated using the IDL compiler version 0.9. This is because
  * it uses reflection to determine declared methods on the interface. The target service may be of any version.
  * This implementation has been tested  with Thrift versions 0.6 and 0.2.
+ * Calls may also be relayed in pass-through mode, where only the message header is read and the arguments and results are relayed as encoded.
+ * The generated classes are not needed in this mode and the 'thriftServiceClass' then serves only to name this proxy.
+ * Calls may be balanced across replicas of the target service by specifying {@link #setEndpoints(List)}. Each endpoint has its own pool of
+ * sockets, the endpoint for each call is selected by the {@link #setLoadBalancer(LoadBalancer)}, and endpoints are ejected on consecutive
+ * transport failures as described in {@link EndpointGroup}. Ejected endpoints are probed by connecting to them and are reinstated once
+ * they accept connections again.
+ * Calls to oneway methods are forwarded without waiting for a response, as the target server sends none. Oneway methods are identified from
+ * the generated service classes or, in pass-through mode without them, from the {@link TMessageType#ONEWAY} message type.
  *
  * @author Regunath B
  * @version 1.0, 28 March, 2013
@@ -67,14 +91,16 @@ public abstract class ThriftProxy extends AbstractHandler implements Initializin
     /** The default Thrift TProcessor class name */
     private static final String DEFAULT_PROCESSOR_CLASS_NAME="Processor";
 
-    /** The default Thrift call result class name */
-    private static final String DEFAULT_RESULT_CLASS_NAME="_result";
-
     /** Logger for this class*/
     private static final Logger LOGGER = LoggerFactory.getLogger(ThriftProxy.class);
 
-    /** The Thrift binary protocol factory*/
-    private TProtocolFactory protocolFactory =  new TBinaryProtocol.Factory();
+    /** The call returned for oneway messages, which are done with once sent*/
+    private static final AsyncThriftConnectionPool.Call ONEWAY_CALL = () -> false;
+
+    /** The protocol and transport spoken with the target server*/
+    private ThriftProtocol protocol = ThriftProtocol.BINARY;
+    private TProtocolFactory protocolFactory = ThriftProtocol.BINARY.getProtocolFactory();
+    private boolean framed;
 
     /** The target Thrift server connect details*/
     private String thriftServer;
@@ -88,6 +114,9 @@ public abstract class ThriftProxy extends AbstractHandler implements Initializin
     @SuppressWarnings("rawtypes")
     protected Map<String, ProcessFunction> processMap = new HashMap<String, ProcessFunction>();
 
+    /** Map of the method names and their descriptors, looked up once so that calls are relayed without reflection*/
+    private Map<String, ThriftMethod> methods = new HashMap<String, ThriftMethod>();
+
     /** Properties for initializing Generic Object Pool */
     private int poolSize =10;
     private long maxWait = 100;
@@ -95,8 +124,44 @@ public abstract class ThriftProxy extends AbstractHandler implements Initializin
     private int minIdle = poolSize/2;
     private long timeBetweenEvictionRunsMillis = 20000;
 
-    /** The GenericObjectPool object */
+    /** Sockets that have been idle in the pool for at least this long are checked for closure by the target server when borrowed*/
+    private long idleSocketValidationMillis = 1000;
+
+    /** Validates all idle sockets in each eviction run, so that sockets closed by the target server are not handed out*/
+    private static final int TEST_ALL_IDLE_SOCKETS_PER_EVICTION_RUN = -1;
+
+    /** The initial size of the buffer that call arguments are transcoded into*/
+    private static final int TRANSCODE_BUFFER_SIZE = 1024;
+
+    /** The GenericObjectPool object and the factory of its sockets */
     private GenericObjectPool<Socket> socketPool;
+    private SocketObjectFactory socketObjectFactory;
+
+    /** Settings for relaying calls using the non-blocking client. The framed transport is used always in this case*/
+    private boolean async;
+    private int asyncConnections = 2;
+    private int maxPendingCallsPerConnection = 100;
+
+    /** Relays the arguments and results of calls as encoded, without deserializing them*/
+    private boolean passThrough;
+
+    /** The non-blocking client, if calls are relayed asynchronously*/
+    private AsyncThriftConnectionPool asyncPool;
+
+    /** The upstream endpoints, of the form host:port, to balance calls across. Optional*/
+    private List<String> endpoints;
+
+    /** The load balancer, ejection and probe settings used when endpoints are specified. Probes are disabled if the interval is not positive*/
+    private LoadBalancer loadBalancer;
+    private int endpointFailureThreshold = 5;
+    private long endpointEjectionTimeMillis = 30000;
+    private long healthCheckIntervalMillis = 5000;
+
+    /** The group of endpoints and the socket pools or non-blocking clients of each endpoint, if endpoints are specified*/
+    private EndpointGroup endpointGroup;
+    private Map<Endpoint, GenericObjectPool<Socket>> endpointSocketPools;
+    private Map<Endpoint, SocketObjectFactory> endpointSocketFactories;
+    private Map<Endpoint, AsyncThriftConnectionPool> endpointAsyncPools;
 
     /**
      * Interface method implementation. Checks if all mandatory properties have been set
@@ -114,87 +179,453 @@ public abstract class ThriftProxy extends AbstractHandler implements Initializin
         if(this.thriftServiceClass == null) {
             throw new AssertionError("The 'thriftServiceClass' may not be null");
         }
-        if(this.processMap==null || this.processMap.isEmpty()) {
+        if(!this.passThrough && (this.processMap==null || this.processMap.isEmpty())) {
             throw new AssertionError("ProcessFunctions not populated. Maybe The 'thriftServiceClass' is not a valid class?");
         }
         if (this.thriftTimeoutMillis == -1) { // implying none set
             throw new Exception("'thriftTimeoutMillis' must be set to a non-negative value!");
         }
 
+        if (this.endpoints != null && !this.endpoints.isEmpty()) {
+            this.initEndpoints();
+            return;
+        }
+
+        if (this.async) {
+            this.asyncPool = new AsyncThriftConnectionPool(this.getName(), this.thriftServer, this.thriftPort, this.thriftTimeoutMillis,
+                    this.asyncConnections, this.maxPendingCallsPerConnection, this.protocolFactory);
+            return;
+        }
+
         //Create pool
-        this.socketPool = new GenericObjectPool<Socket>(
-                new SocketObjectFactory(this),
+        this.socketObjectFactory = new SocketObjectFactory(this);
+        this.socketPool = this.createSocketPool(this.socketObjectFactory);
+    }
+
+    /**
+     * Initializes the group of endpoints to balance calls across, and a socket pool or non-blocking client for each endpoint
+     */
+    private void initEndpoints() throws IOException {
+        List<Endpoint> endpointList = new ArrayList<Endpoint>(this.endpoints.size());
+        for (String address : this.endpoints) {
+            endpointList.add(Endpoint.fromAddress(address));
+        }
+        if (this.async) {
+            this.endpointAsyncPools = new HashMap<Endpoint, AsyncThriftConnectionPool>();
+            for (Endpoint endpoint : endpointList) {
+                this.endpointAsyncPools.put(endpoint, new AsyncThriftConnectionPool(this.getName() + "-" + endpoint, endpoint.getHost(),
+                        endpoint.getPort(), this.thriftTimeoutMillis, this.asyncConnections, this.maxPendingCallsPerConnection, this.protocolFactory));
+            }
+        } else {
+            this.endpointSocketPools = new HashMap<Endpoint, GenericObjectPool<Socket>>();
+            this.endpointSocketFactories = new HashMap<Endpoint, SocketObjectFactory>();
+            for (Endpoint endpoint : endpointList) {
+                SocketObjectFactory factory = new SocketObjectFactory(this, endpoint);
+                this.endpointSocketFactories.put(endpoint, factory);
+                this.endpointSocketPools.put(endpoint, this.createSocketPool(factory));
+            }
+        }
+        this.endpointGroup = new EndpointGroup();
+        this.endpointGroup.setEndpoints(endpointList);
+        if (this.loadBalancer != null) {
+            this.endpointGroup.setLoadBalancer(this.loadBalancer);
+        }
+        this.endpointGroup.setFailureThreshold(this.endpointFailureThreshold);
+        this.endpointGroup.setEjectionTimeMillis(this.endpointEjectionTimeMillis);
+        if (this.healthCheckIntervalMillis > 0) {
+            this.endpointGroup.setHealthChecker(new HealthChecker() {
+                public boolean isHealthy(Endpoint endpoint) {
+                    return checkHealth(endpoint);
+                }
+            });
+            this.endpointGroup.setHealthCheckIntervalMillis(this.healthCheckIntervalMillis);
+        }
+        this.endpointGroup.init(this.getName());
+    }
+
+    /**
+     * Checks the health of the specified endpoint by connecting to it. Sub-types may override this method to call a method of the target
+     * service instead
+     * @param endpoint the Endpoint to check
+     * @return true if healthy, false otherwise
+     */
+    protected boolean checkHealth(Endpoint endpoint) {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(endpoint.getHost(), endpoint.getPort()), this.thriftTimeoutMillis);
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Helper method to create a pool of sockets made by the specified factory. Sockets are validated when borrowed, which probes only the
+     * ones that have been idle for {@link #setIdleSocketValidationMillis(long)}, and all idle sockets are validated in each eviction run
+     */
+    private GenericObjectPool<Socket> createSocketPool(SocketObjectFactory socketObjectFactory) {
+        return new GenericObjectPool<Socket>(
+                socketObjectFactory,
                 this.poolSize,
                 GenericObjectPool.WHEN_EXHAUSTED_GROW,
                 this.maxWait ,
                 this.maxIdle ,
-                this.minIdle , false, false,
+                this.minIdle , true, false,
                 this.timeBetweenEvictionRunsMillis,
-                GenericObjectPool.DEFAULT_NUM_TESTS_PER_EVICTION_RUN,
+                ThriftProxy.TEST_ALL_IDLE_SOCKETS_PER_EVICTION_RUN,
                 GenericObjectPool.DEFAULT_MIN_EVICTABLE_IDLE_TIME_MILLIS,
                 true);
     }
 
+    /**
+     * Relays the call read from the specified client transport, assuming the call is encoded in the binary protocol
+     * @see #doRequest(TTransport, TProtocolFactory)
+     */
+    public TTransport doRequest(TTransport clientTransport) {
+        return this.doRequest(clientTransport, ThriftProtocol.BINARY.getProtocolFactory());
+    }
+
     /**
      *
      * Is called by the {@link com.flipkart.phantom.thrift.impl.ThriftProxyExecutor#run()} for processing the request.
-     * Currently not utilizing the generic pooled objects.
+     * The call is relayed over a pooled socket to the target service. The socket is returned to the pool once the service response has been
+     * relayed and is invalidated if the call fails, as the state of its stream is then not known, unless the service responded with an error.
+     * The call is read fully before it is sent and is sent once more, over a fresh socket, if writing it to a socket that had been idle in the
+     * pool fails i.e. the socket turns out to have been closed by the target service. Other failures are not retried, as the target service
+     * may have received the call.
+     * The call and the response are translated if the client and the target service use different protocols.
      *
      * @param clientTransport
+     * @param clientProtocolFactory the protocol that the client's call is encoded in
      * @return transport {@link TTransport} containing clientOutput
      * @throws Exception
      */
     @SuppressWarnings("rawtypes")
-    public TTransport doRequest(TTransport clientTransport)
+    public TTransport doRequest(TTransport clientTransport, TProtocolFactory clientProtocolFactory)
     {
-        TSocket serviceSocket = null;
         try
         {
             //Get Protocol from transport
-            TProtocol clientProtocol = this.protocolFactory.getProtocol(clientTransport);
+            TProtocol clientProtocol = clientProtocolFactory.getProtocol(clientTransport);
 
             TMessage message = clientProtocol.readMessageBegin();
-            //Arguments
-            ProcessFunction invokedProcessFunction = this.getProcessMap().get(message.name);
-            if (invokedProcessFunction == null) {
-                throw new RuntimeException("Unable to find a matching ProcessFunction for invoked method : " + message.name);
+            boolean transcode = !this.isProtocolOf(clientProtocolFactory);
+            ThriftMethod method = null;
+            TBase args = null;
+            AsyncThriftConnectionPool.MessageBodyWriter bodyWriter = null;
+            if (this.passThrough) {
+                bodyWriter = this.readMessageBody(message, clientProtocol, transcode);
+            } else {
+                //Arguments
+                method = this.getMethod(message.name);
+                args = method.newArgs(); // get the empty args. The values will then be read from the client's TProtocol
+                //Read the argument values from the client's TProtocol
+                args.read(clientProtocol);
+                clientProtocol.readMessageEnd();
+            }
+            for (int attempt = 1; ; attempt++) {
+                // borrow an open socket from the pool, instead of connecting afresh for every call
+                TSocket serviceSocket = this.getPooledSocket();
+                boolean isConnectionValid = false;
+                boolean isEndpointHealthy = true;
+                try {
+                    if (this.passThrough) {
+                        if (this.isOneway(message)) {
+                            this.sendMessage(message, bodyWriter, serviceSocket);
+                        } else {
+                            this.relayMessage(message, bodyWriter, clientProtocol, transcode, serviceSocket);
+                        }
+                        isConnectionValid = true;
+                        LOGGER.debug("Relayed message : " + this.getThriftServiceClass() + "." + message.name);
+                        return clientTransport;
+                    }
+                    TProtocol serviceProtocol = this.protocolFactory.getProtocol(this.framed ? new TFramedTransport(serviceSocket) : serviceSocket);
+
+                    //Send the arguments to the server and relay the response back
+                    //Create the custom TServiceClient client which sends request to actual Thrift servers and relays the response back to the client
+                    ProxyServiceClient proxyClient = new ProxyServiceClient(clientProtocol,serviceProtocol,serviceProtocol);
+
+                    if (method.isOneway()) { // the target server sends no response, so there is none to relay
+                        proxyClient.sendBase(message.name, args, message.seqid, TMessageType.ONEWAY);
+                        isConnectionValid = true;
+                        LOGGER.debug("Forwarded oneway message : " + this.getThriftServiceClass() + "." + message.name);
+                        return clientTransport;
+                    }
+
+                    //Send the request
+                    proxyClient.sendBase(message.name, args, message.seqid);
+                    // Instantiate the call result object
+                    TBase result = method.newResult();
+                    //Get the response back (it is written to client's TProtocol)
+                    proxyClient.receiveBase(result, message.name);
+                    isConnectionValid = true;
+
+                    LOGGER.debug("Processed message : " + this.getThriftServiceClass() + "." + message.name);
+                    return clientTransport;
+                } catch (TTransportException e) {
+                    if (attempt == 1 && this.isStale(serviceSocket)) {
+                        LOGGER.info("Pooled socket closed by the target service. Retrying call : " + this.getThriftServiceClass() + "." +
+                                message.name + " over a fresh socket. Error is : " + e.getMessage());
+                        this.clearIdleSockets(serviceSocket);
+                        continue;
+                    }
+                    isEndpointHealthy = false;
+                    throw e;
+                } catch (TApplicationException e) {
+                    // the target server has responded with an error, which has been read fully unless the response is out of sequence
+                    isConnectionValid = e.getType() != TApplicationException.BAD_SEQUENCE_ID;
+                    throw e;
+                } finally {
+                    this.returnPooledSocket(serviceSocket, isConnectionValid, isEndpointHealthy);
+                }
             }
-            TBase args = invokedProcessFunction.getEmptyArgsInstance(); // get the empty args. The values will then be read from the client's TProtocol
-            //Read the argument values from the client's TProtocol
-            args.read(clientProtocol);
-            clientProtocol.readMessageEnd();
-
-            // Instantiate the call result object using the Thrift naming convention used for classes
-            TBase result = (TBase) Class.forName( this.getThriftServiceClass() + "$" + message.name + DEFAULT_RESULT_CLASS_NAME).newInstance();
-
-            serviceSocket = new TSocket(this.getThriftServer(), this.getThriftPort(), this.getThriftTimeoutMillis());
-            TProtocol serviceProtocol = new TBinaryProtocol(serviceSocket);
-            serviceSocket.open();
-
-            //Send the arguments to the server and relay the response back
-            //Create the custom TServiceClient client which sends request to actual Thrift servers and relays the response back to the client
-            ProxyServiceClient proxyClient = new ProxyServiceClient(clientProtocol,serviceProtocol,serviceProtocol);
-
-            //Send the request
-            proxyClient.sendBase(message.name, args, message.seqid);
-            //Get the response back (it is written to client's TProtocol)
-            proxyClient.receiveBase(result, message.name);
-
-            LOGGER.debug("Processed message : " + this.getThriftServiceClass() + "." + message.name);
         } catch (Exception e) {
             if (e.getClass().isAssignableFrom(TTransportException.class)) {
-                //isConnectionValid = false;
                 throw new RuntimeException("Thrift transport exception executing the proxy service call : " +
                         THRIFT_ERRORS.get(((TTransportException)e).getType()), e);
             } else {
                 throw new RuntimeException("Exception executing the proxy service call : " + e.getMessage(), e);
             }
-        } finally {
-            if (serviceSocket != null) {
-                serviceSocket.close();
+        }
+    }
+
+    /**
+     * Relays the call read from the specified client transport to the target server using the non-blocking client, without holding the calling
+     * thread while the call is in flight. The service response is written to the client transport and the callback is notified from the
+     * event loop thread of the {@link AsyncThriftConnectionPool}. Calls to oneway methods are queued for sending and the callback is notified
+     * right away, from the calling thread
+     * @param clientTransport the Thrift {@link TTransport} of the invoking client
+     * @param clientProtocolFactory the protocol that the client's call is encoded in
+     * @param callback the callback to notify on completion
+     * @return the call in flight, which may be cancelled
+     * @throws RuntimeException in case of errors in reading or sending the call
+     * @throws IllegalStateException if this proxy is not configured to relay calls asynchronously
+     */
+    @SuppressWarnings("rawtypes")
+    public AsyncThriftConnectionPool.Call doRequestAsync(final TTransport clientTransport, TProtocolFactory clientProtocolFactory,
+            final AsyncMethodCallback<TTransport> callback) {
+        if (!this.isAsync()) {
+            throw new IllegalStateException("ThriftProxy : " + this.getName() + " is not configured to relay calls asynchronously");
+        }
+        try {
+            final TProtocol clientProtocol = clientProtocolFactory.getProtocol(clientTransport);
+            final TMessage message = clientProtocol.readMessageBegin();
+            final boolean transcode = !this.isProtocolOf(clientProtocolFactory);
+            final ThriftMethod method = this.passThrough ? null : this.getMethod(message.name);
+            final AsyncThriftConnectionPool.MessageBodyWriter bodyWriter = this.readMessageBody(message, clientProtocol, transcode);
+            AsyncThriftConnectionPool.ResponseHandler handler = new AsyncThriftConnectionPool.ResponseHandler() {
+                public void completed(TMessage response, TProtocol serviceProtocol) throws Exception {
+                    if (response.type == TMessageType.EXCEPTION) {
+                        TApplicationException x = TApplicationException.read(serviceProtocol);
+                        serviceProtocol.readMessageEnd();
+                        throw x;
+                    }
+                    // relay the response to the client with the sequence ID of the client's call
+                    clientProtocol.writeMessageBegin(new TMessage(response.name, response.type, message.seqid));
+                    if (passThrough && !transcode) {
+                        ThriftMessageBody.readRemaining(serviceProtocol.getTransport()).write(clientTransport);
+                    } else if (passThrough) {
+                        ThriftProtocol.transcode(serviceProtocol, clientProtocol, TType.STRUCT);
+                        serviceProtocol.readMessageEnd();
+                        clientProtocol.writeMessageEnd();
+                    } else {
+                        TBase result = method.newResult();
+                        result.read(serviceProtocol);
+                        serviceProtocol.readMessageEnd();
+                        result.write(clientProtocol);
+                        clientProtocol.writeMessageEnd();
+                    }
+                    clientTransport.flush();
+                    LOGGER.debug("Processed message : " + getThriftServiceClass() + "." + message.name);
+                    callback.onComplete(clientTransport);
+                }
+                public void failed(Exception e) {
+                    callback.onError(e);
+                }
+            };
+            AsyncThriftConnectionPool pool = this.asyncPool;
+            EndpointCall endpointCall = null;
+            if (this.endpointGroup != null) {
+                Endpoint endpoint = this.endpointGroup.select();
+                pool = this.endpointAsyncPools.get(endpoint);
+                handler = endpointCall = new EndpointCall(endpoint, handler);
+            }
+            try {
+                if (this.isOneway(message)) {
+                    pool.send(message.name, bodyWriter);
+                    if (endpointCall != null) {
+                        endpointCall.release(true);
+                    }
+                    LOGGER.debug("Forwarded oneway message : " + this.getThriftServiceClass() + "." + message.name);
+                    callback.onComplete(clientTransport);
+                    return ONEWAY_CALL;
+                }
+                AsyncThriftConnectionPool.Call call = pool.execute(message.name, bodyWriter, handler);
+                return endpointCall == null ? call : endpointCall.setCall(call);
+            } catch (Exception e) {
+                if (endpointCall != null) { // the call was not sent
+                    endpointCall.release(true);
+                }
+                throw e;
             }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Exception executing the proxy service call : " + e.getMessage(), e);
         }
-        return clientTransport;
+    }
+
+    /**
+     * Helper method to relay the specified call to the target service over the specified socket, with its arguments as encoded by the client.
+     * The response is relayed to the client as encoded by the target service. The arguments and the response are transcoded, field by field, if
+     * the client and the target service use different protocols. The response of a target service that does not use the framed transport
+     * is delimited by skipping over the result struct, which does not deserialize it.
+     */
+    private void relayMessage(TMessage message, AsyncThriftConnectionPool.MessageBodyWriter bodyWriter, TProtocol clientProtocol, boolean transcode,
+            TSocket serviceSocket) throws TException {
+        ThriftMessageBody.Recorder recorder = null;
+        TTransport serviceTransport;
+        if (this.framed) {
+            serviceTransport = new TFramedTransport(serviceSocket);
+        } else if (!transcode) {
+            serviceTransport = recorder = new ThriftMessageBody.Recorder(serviceSocket);
+        } else {
+            serviceTransport = serviceSocket;
+        }
+        TProtocol serviceProtocol = this.protocolFactory.getProtocol(serviceTransport);
+        this.writeMessage(message, bodyWriter, serviceProtocol);
+
+        TMessage response = serviceProtocol.readMessageBegin();
+        if (response.type == TMessageType.EXCEPTION) {
+            TApplicationException x = TApplicationException.read(serviceProtocol);
+            serviceProtocol.readMessageEnd();
+            throw x;
+        }
+        if (response.seqid != message.seqid) {
+            throw new TApplicationException(TApplicationException.BAD_SEQUENCE_ID, message.name + " failed: out of sequence response");
+        }
+        clientProtocol.writeMessageBegin(response);
+        if (transcode) {
+            ThriftProtocol.transcode(serviceProtocol, clientProtocol, TType.STRUCT);
+            serviceProtocol.readMessageEnd();
+            clientProtocol.writeMessageEnd();
+        } else if (this.framed) {
+            ThriftMessageBody.readRemaining(serviceTransport).write(clientProtocol.getTransport());
+        } else {
+            recorder.startRecording();
+            TProtocolUtil.skip(serviceProtocol, TType.STRUCT);
+            serviceProtocol.readMessageEnd();
+            recorder.stopRecording().write(clientProtocol.getTransport());
+        }
+        clientProtocol.getTransport().flush();
+    }
+
+    /**
+     * Helper method to send the specified message to the target service over the specified socket, with its arguments as encoded by the client,
+     * without waiting for a response. Used for oneway messages, to which the target service does not respond
+     */
+    private void sendMessage(TMessage message, AsyncThriftConnectionPool.MessageBodyWriter bodyWriter, TSocket serviceSocket) throws TException {
+        TTransport serviceTransport = this.framed ? new TFramedTransport(serviceSocket) : serviceSocket;
+        this.writeMessage(message, bodyWriter, this.protocolFactory.getProtocol(serviceTransport));
+    }
+
+    /**
+     * Helper method to write the specified message, with its arguments as read from the client, to the target service and flush it
+     */
+    private void writeMessage(TMessage message, AsyncThriftConnectionPool.MessageBodyWriter bodyWriter, TProtocol serviceProtocol) throws TException {
+        serviceProtocol.writeMessageBegin(message);
+        bodyWriter.write(serviceProtocol);
+        serviceProtocol.getTransport().flush();
+    }
+
+    /**
+     * Helper method to read the arguments of the specified call from the client. The arguments are read as encoded by the client if relayed as is,
+     * transcoded into the protocol of the target service if the protocols differ, or else deserialized. The returned writer writes the arguments
+     * and the message end to the target service and may be used more than once, as when a call is sent again over a fresh socket
+     */
+    @SuppressWarnings("rawtypes")
+    private AsyncThriftConnectionPool.MessageBodyWriter readMessageBody(TMessage message, TProtocol clientProtocol, boolean transcode) throws TException {
+        if (this.passThrough && !transcode) {
+            final ThriftMessageBody body = ThriftMessageBody.readRemaining(clientProtocol.getTransport());
+            return serviceProtocol -> body.write(serviceProtocol.getTransport());
+        }
+        if (this.passThrough) {
+            final TMemoryBuffer buffer = new TMemoryBuffer(TRANSCODE_BUFFER_SIZE);
+            TProtocol bufferProtocol = this.protocolFactory.getProtocol(buffer);
+            ThriftProtocol.transcode(clientProtocol, bufferProtocol, TType.STRUCT);
+            clientProtocol.readMessageEnd();
+            bufferProtocol.writeMessageEnd();
+            return serviceProtocol -> serviceProtocol.getTransport().write(buffer.getArray(), 0, buffer.length());
+        }
+        final TBase args = this.getMethod(message.name).newArgs();
+        args.read(clientProtocol);
+        clientProtocol.readMessageEnd();
+        return serviceProtocol -> {
+            args.write(serviceProtocol);
+            serviceProtocol.writeMessageEnd();
+        };
+    }
+
+    /**
+     * Helper method to check if the specified call failure is due to the pooled socket having been closed by the target service, in which case
+     * the socket had been idle in the pool and the call could not be written to it
+     */
+    private boolean isStale(TSocket socket) {
+        return socket instanceof PooledSocket && ((PooledSocket)socket).idle && ((PooledSocket)socket).writeFailed;
+    }
+
+    /**
+     * Helper method to destroy the idle sockets of the pool that the specified socket was borrowed from, as these have likely been closed by
+     * the target service as well
+     */
+    private void clearIdleSockets(TSocket socket) {
+        GenericObjectPool<Socket> pool = socket instanceof EndpointSocket ? this.endpointSocketPools.get(((EndpointSocket)socket).endpoint) : this.socketPool;
+        try {
+            pool.clear();
+        } catch (Exception e) {
+            LOGGER.warn("Error while clearing idle TSockets : " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Helper method to check if the specified message is a call to a oneway method. The generated service classes are used to check, if
+     * available, as older Thrift clients send oneway messages with the {@link TMessageType#CALL} type
+     */
+    private boolean isOneway(TMessage message) {
+        ThriftMethod method = this.methods.get(message.name);
+        return method != null ? method.isOneway() : message.type == TMessageType.ONEWAY;
+    }
+
+    /**
+     * Helper method to check if the specified protocol is the one spoken with the target server, in which case encoded values may be relayed as is
+     */
+    private boolean isProtocolOf(TProtocolFactory clientProtocolFactory) {
+        return clientProtocolFactory.getClass() == this.protocolFactory.getClass();
+    }
+
+    /**
+     * Helper method to get the descriptor of the specified method of the Thrift service
+     */
+    private ThriftMethod getMethod(String methodName) {
+        ThriftMethod method = this.methods.get(methodName);
+        if (method == null) {
+            throw new RuntimeException("Unable to find a matching ProcessFunction for invoked method : " + methodName);
+        }
+        return method;
+    }
+
+    /**
+     * Returns true if this proxy relays calls using the non-blocking client
+     * @return true if calls may be relayed asynchronously, false otherwise
+     */
+    public boolean isAsync() {
+        return this.asyncPool != null || this.endpointAsyncPools != null;
     }
 
     /**
@@ -202,29 +633,73 @@ public abstract class ThriftProxy extends AbstractHandler implements Initializin
      * @return a TSocket instance
      */
     public TSocket getPooledSocket() {
+        if (this.endpointGroup != null) {
+            return this.getEndpointSocket();
+        }
         try {
-            return new TSocket(this.socketPool.borrowObject());
+            Socket socket = this.socketPool.borrowObject();
+            return new PooledSocket(socket, this.socketObjectFactory.hasBeenIdle(socket));
         } catch (Exception e) {
             LOGGER.error("Error while borrowing TSocket : " + e.getMessage(),e);
             throw new RuntimeException("Error while borrowing TSocket : " + e.getMessage(),e);
         }
     }
 
+    /**
+     * Helper method to get a pooled socket of the endpoint selected for a call. Other endpoints are tried if a socket cannot be borrowed, as
+     * nothing has been sent then
+     */
+    private TSocket getEndpointSocket() {
+        List<Endpoint> attemptedEndpoints = new ArrayList<Endpoint>(1);
+        while (true) {
+            Endpoint endpoint = this.endpointGroup.select(attemptedEndpoints);
+            long startNanos = System.nanoTime();
+            try {
+                Socket socket = this.endpointSocketPools.get(endpoint).borrowObject();
+                return new EndpointSocket(socket, this.endpointSocketFactories.get(endpoint).hasBeenIdle(socket), endpoint, startNanos);
+            } catch (Exception e) {
+                this.endpointGroup.release(endpoint, startNanos, false);
+                attemptedEndpoints.add(endpoint);
+                if (attemptedEndpoints.size() >= this.endpointGroup.getEndpoints().size()) {
+                    LOGGER.error("Error while borrowing TSocket : " + e.getMessage(),e);
+                    throw new RuntimeException("Error while borrowing TSocket : " + e.getMessage(),e);
+                }
+                LOGGER.warn("Error while borrowing TSocket for endpoint : " + endpoint + ". Trying another endpoint. Error is : " + e.getMessage());
+            }
+        }
+    }
+
     /**
      * Returns the specified TSocket back to the pool
      * @param socket the pooled TSocket instance
      * @param isConnectionValid flag to indicate if the socket was found to be invalid during use
      */
     public void returnPooledSocket(TSocket socket, boolean isConnectionValid) {
+        this.returnPooledSocket(socket, isConnectionValid, isConnectionValid);
+    }
+
+    /**
+     * Returns the specified TSocket back to the pool and records the outcome of the call on the endpoint it is connected to, if calls are
+     * balanced across endpoints. Errors in returning the socket are logged and not thrown, so that they do not mask the outcome of the call
+     * @param socket the pooled TSocket instance
+     * @param isConnectionValid flag to indicate if the socket was found to be invalid during use
+     * @param isEndpointHealthy flag to indicate if the endpoint responded to the call, even if with an error
+     */
+    public void returnPooledSocket(TSocket socket, boolean isConnectionValid, boolean isEndpointHealthy) {
+        GenericObjectPool<Socket> pool = this.socketPool;
+        if (socket instanceof EndpointSocket) {
+            EndpointSocket endpointSocket = (EndpointSocket)socket;
+            pool = this.endpointSocketPools.get(endpointSocket.endpoint);
+            this.endpointGroup.release(endpointSocket.endpoint, endpointSocket.startNanos, isEndpointHealthy);
+        }
         try {
             if (isConnectionValid) {
-                this.socketPool.returnObject(socket.getSocket());
+                pool.returnObject(socket.getSocket());
             } else {
-                this.socketPool.invalidateObject(socket.getSocket());
+                pool.invalidateObject(socket.getSocket());
             }
-        } catch (Exception e) {
+        } catch (Exception e) { // logged and not thrown, as this is called once the outcome of the call is known
             LOGGER.error("Error while returning TSocket : " + e.getMessage(),e);
-            throw new RuntimeException("Error while borrowing TSocket : " + e.getMessage(),e);
         }
     }
 
@@ -265,6 +740,120 @@ public abstract class ThriftProxy extends AbstractHandler implements Initializin
      */
     public void shutdown(TaskContext context) throws Exception {
         super.deactivate();
+        if (this.socketPool != null) {
+            this.socketPool.close();
+        }
+        if (this.asyncPool != null) {
+            this.asyncPool.shutdown();
+        }
+        if (this.endpointGroup != null) {
+            this.endpointGroup.shutdown();
+        }
+        if (this.endpointSocketPools != null) {
+            for (GenericObjectPool<Socket> pool : this.endpointSocketPools.values()) {
+                pool.close();
+            }
+        }
+        if (this.endpointAsyncPools != null) {
+            for (AsyncThriftConnectionPool pool : this.endpointAsyncPools.values()) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * A pooled socket that records if a call could not be written to it, to know if the target service may have received the call
+     */
+    private static class PooledSocket extends TSocket {
+
+        /** True if the socket had been idle in the pool, false if it was connected for the call*/
+        private final boolean idle;
+        private boolean writeFailed;
+
+        PooledSocket(Socket socket, boolean idle) throws TTransportException {
+            super(socket);
+            this.idle = idle;
+        }
+
+        public void write(byte[] buf, int off, int len) throws TTransportException {
+            try {
+                super.write(buf, off, len);
+            } catch (TTransportException e) {
+                this.writeFailed = true;
+                throw e;
+            }
+        }
+
+        public void flush() throws TTransportException {
+            try {
+                super.flush();
+            } catch (TTransportException e) {
+                this.writeFailed = true;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * A pooled socket connected to one of the balanced endpoints, along with the start time of the call it is borrowed for
+     */
+    private static class EndpointSocket extends PooledSocket {
+
+        private final Endpoint endpoint;
+        private final long startNanos;
+
+        EndpointSocket(Socket socket, boolean idle, Endpoint endpoint, long startNanos) throws TTransportException {
+            super(socket, idle);
+            this.endpoint = endpoint;
+            this.startNanos = startNanos;
+        }
+    }
+
+    /**
+     * A call relayed asynchronously to one of the balanced endpoints. Records the outcome of the call on the endpoint once, when the call
+     * completes, fails or is cancelled. Only transport failures count as failures of the endpoint
+     */
+    private class EndpointCall implements AsyncThriftConnectionPool.ResponseHandler, AsyncThriftConnectionPool.Call {
+
+        private final Endpoint endpoint;
+        private final AsyncThriftConnectionPool.ResponseHandler handler;
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+        private AsyncThriftConnectionPool.Call call;
+
+        EndpointCall(Endpoint endpoint, AsyncThriftConnectionPool.ResponseHandler handler) {
+            this.endpoint = endpoint;
+            this.handler = handler;
+        }
+
+        EndpointCall setCall(AsyncThriftConnectionPool.Call call) {
+            this.call = call;
+            return this;
+        }
+
+        void release(boolean success) {
+            if (this.released.compareAndSet(false, true)) {
+                endpointGroup.release(this.endpoint, this.startNanos, success);
+            }
+        }
+
+        public void completed(TMessage message, TProtocol protocol) throws Exception {
+            this.release(true);
+            this.handler.completed(message, protocol);
+        }
+
+        public void failed(Exception e) {
+            this.release(!(e instanceof TTransportException || e instanceof IOException));
+            this.handler.failed(e);
+        }
+
+        public boolean cancel() {
+            boolean cancelled = this.call.cancel();
+            if (cancelled) {
+                this.release(true);
+            }
+            return cancelled;
+        }
     }
 
     /** Getter/Setter methods */
@@ -296,12 +885,20 @@ public abstract class ThriftProxy extends AbstractHandler implements Initializin
             Method[] methods = serviceClass.getDeclaredMethods();
             for (Method method : methods) {
                 String processFunctionClass = this.thriftServiceClass + "$" + DEFAULT_PROCESSOR_CLASS_NAME + "$" + method.getName();
-                this.processMap.put(method.getName(), (ProcessFunction)Class.forName(processFunctionClass).newInstance());
+                ProcessFunction processFunction = (ProcessFunction)Class.forName(processFunctionClass).newInstance();
+                this.processMap.put(method.getName(), processFunction);
+                this.methods.put(method.getName(), ThriftMethod.create(this.thriftServiceClass, method.getName(), processFunction));
             }
+        } catch (ClassNotFoundException e) {
+            // the generated classes are not needed to relay calls in pass-through mode. #init() fails otherwise, as the processMap is empty
+            LOGGER.info("Thrift service class not found : " + serviceInterfaceClass + ". Calls may be relayed only in pass-through mode");
+            this.processMap.clear();
+            this.methods.clear();
         } catch (Exception e) {
             LOGGER.error("Unable to inspect specified Thrift service class. Error is : " + e.getMessage(), e);
             // empty the processMap. This will fail the init of this handler in #afterPropertiesSet()
             this.processMap.clear();
+            this.methods.clear();
         }
     }
     public String getThriftServiceClass() {
@@ -341,6 +938,68 @@ public abstract class ThriftProxy extends AbstractHandler implements Initializin
     public void setTimeBetweenEvictionRunsMillis(long timeBetweenEvictionRunsMillis) {
         this.timeBetweenEvictionRunsMillis = timeBetweenEvictionRunsMillis;
     }
+    public long getIdleSocketValidationMillis() {
+        return idleSocketValidationMillis;
+    }
+    public void setIdleSocketValidationMillis(long idleSocketValidationMillis) {
+        this.idleSocketValidationMillis = idleSocketValidationMillis;
+    }
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+    public int getAsyncConnections() {
+        return asyncConnections;
+    }
+    public void setAsyncConnections(int asyncConnections) {
+        this.asyncConnections = asyncConnections;
+    }
+    public int getMaxPendingCallsPerConnection() {
+        return maxPendingCallsPerConnection;
+    }
+    public void setMaxPendingCallsPerConnection(int maxPendingCallsPerConnection) {
+        this.maxPendingCallsPerConnection = maxPendingCallsPerConnection;
+    }
+
+    public ThriftProtocol getProtocol() {
+        return protocol;
+    }
+    public void setProtocol(ThriftProtocol protocol) {
+        this.protocol = protocol;
+        this.protocolFactory = protocol.getProtocolFactory();
+    }
+    public boolean isFramed() {
+        return framed;
+    }
+    public void setFramed(boolean framed) {
+        this.framed = framed;
+    }
+    public boolean isPassThrough() {
+        return passThrough;
+    }
+    public void setPassThrough(boolean passThrough) {
+        this.passThrough = passThrough;
+    }
+    public List<String> getEndpoints() {
+        return endpoints;
+    }
+    public void setEndpoints(List<String> endpoints) {
+        this.endpoints = endpoints;
+    }
+    public void setLoadBalancer(LoadBalancer loadBalancer) {
+        this.loadBalancer = loadBalancer;
+    }
+    public void setEndpointFailureThreshold(int endpointFailureThreshold) {
+        this.endpointFailureThreshold = endpointFailureThreshold;
+    }
+    public void setEndpointEjectionTimeMillis(long endpointEjectionTimeMillis) {
+        this.endpointEjectionTimeMillis = endpointEjectionTimeMillis;
+    }
+    public void setHealthCheckIntervalMillis(long healthCheckIntervalMillis) {
+        this.healthCheckIntervalMillis = healthCheckIntervalMillis;
+    }
+    public EndpointGroup getEndpointGroup() {
+        return endpointGroup;
+    }
 
     /** End Getter/Setter methods */
 
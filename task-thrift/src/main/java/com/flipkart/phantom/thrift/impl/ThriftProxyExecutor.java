@@ -107,7 +107,7 @@ public class ThriftProxyExecutor extends HystrixCommand<TTransport> implements E
         TTransport response = null;
         Optional<RuntimeException> transportException = Optional.absent();
         try {
-        	response = thriftProxy.doRequest(this.clientTransport);
+        	response = thriftProxy.doRequest(this.clientTransport, this.thriftRequestWrapper.getProtocolFactory());
         }  catch (RuntimeException e) {
         	transportException = Optional.of(e);
         	throw e; // rethrow this for it to handled by other layers in the call stack
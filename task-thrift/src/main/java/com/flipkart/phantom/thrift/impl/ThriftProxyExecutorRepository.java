@@ -32,18 +32,21 @@ import com.flipkart.phantom.thrift.impl.interceptor.ThriftClientResponseIntercep
 public class ThriftProxyExecutorRepository extends AbstractExecutorRepository<ThriftRequestWrapper,TTransport, ThriftProxy> {
 
     /**
-     *  Returns a {@link ThriftProxyExecutor} for the specified ThriftProxy and command name
+     *  Returns a {@link ThriftProxyExecutor} for the specified ThriftProxy and command name, or an {@link AsyncThriftProxyExecutor} if the
+     *  ThriftProxy relays calls using the non-blocking client
      *
      * @param commandName  commandName the name of the HystrixComman
      * @param proxyName proxyName the HttpProxy name
      * @param requestWrapper requestWrapper Payload
-     * @return  a ThriftProxyExecutor instance
+     * @return  a ThriftProxyExecutor or AsyncThriftProxyExecutor instance
      */
      @Override
      public Executor<ThriftRequestWrapper,TTransport> getExecutor(String commandName, String proxyName, ThriftRequestWrapper requestWrapper) {
     	 HystrixThriftProxy proxy = (HystrixThriftProxy) registry.getHandler(proxyName);
     	 if (proxy.isActive()) { // check if the ThriftProxy is indeed active
-    		 ThriftProxyExecutor executor = new ThriftProxyExecutor(proxy, this.taskContext, commandName, requestWrapper);
+    		 Executor<ThriftRequestWrapper,TTransport> executor = proxy.isAsync() ?
+    				 new AsyncThriftProxyExecutor(proxy, this.taskContext, commandName, requestWrapper) :
+    				 new ThriftProxyExecutor(proxy, this.taskContext, commandName, requestWrapper);
     		 return this.wrapExecutorWithInterceptors(executor, proxy);
     	 }
     	 throw new RuntimeException("The ThriftProxy is not active.");
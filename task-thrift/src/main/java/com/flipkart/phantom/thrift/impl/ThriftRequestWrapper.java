@@ -22,6 +22,7 @@ import java.util.Map;
 import com.flipkart.phantom.task.spi.RequestWrapper;
 import com.google.common.base.Optional;
 
+import org.apache.thrift.protocol.TProtocolFactory;
 import org.apache.thrift.transport.TTransport;
 
 /**
@@ -38,6 +39,9 @@ public class ThriftRequestWrapper extends RequestWrapper {
     
     /** The method being invoked */
     private String methodName;
+
+    /** The protocol that the call is encoded in */
+    private TProtocolFactory protocolFactory = ThriftProtocol.BINARY.getProtocolFactory();
     
     /**
      * Interface method implementation. Returns the Thrift method name being invoked
@@ -84,5 +88,11 @@ public class ThriftRequestWrapper extends RequestWrapper {
 	public void setMethodName(String methodName) {
 		this.methodName = methodName;
 	}    
+	public TProtocolFactory getProtocolFactory() {
+		return protocolFactory;
+	}
+	public void setProtocolFactory(TProtocolFactory protocolFactory) {
+		this.protocolFactory = protocolFactory;
+	}
     /**End Getter/Setter methods */
 }
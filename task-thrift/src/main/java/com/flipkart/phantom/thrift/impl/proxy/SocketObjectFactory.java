@@ -16,17 +16,24 @@
 
 package com.flipkart.phantom.thrift.impl.proxy;
 
+import com.flipkart.phantom.task.spi.loadbalancer.Endpoint;
 import com.flipkart.phantom.thrift.impl.ThriftProxy;
 import org.apache.commons.pool.PoolableObjectFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * <code>SocketObjectFactory</code> is a @link{PoolableObjectFactory} for Socket instances meant to be used with {@link org.apache.commons.pool.impl.GenericObjectPool}
- * It is initialized with a Thrift proxy or it's parameters and is passed onto a GenericObjectPool object
+ * It is initialized with a Thrift proxy or it's parameters and is passed onto a GenericObjectPool object. Sockets are connected to the Thrift
+ * server of the proxy or, if one is specified, to an {@link Endpoint} of the proxy's balanced endpoints. The time each socket was last returned
+ * to the pool is tracked, so that only sockets that have been idle for a while are probed when validated
  *
  * @author devashishshankar
  * @author Regunath B
@@ -38,9 +45,18 @@ public class SocketObjectFactory implements PoolableObjectFactory<Socket> {
 	/** Logger for this class*/
 	private static final Logger LOGGER = LoggerFactory.getLogger(SocketObjectFactory.class);
 
+    /** The time to wait for data when checking if a socket is idle*/
+    private static final int IDLE_CHECK_TIMEOUT_MILLIS = 1;
+
     /** Thrift Proxy instance for initializing the Factory */
     private ThriftProxy thriftProxy;
 
+    /** The endpoint to connect to, if not the Thrift server of the proxy*/
+    private Endpoint endpoint;
+
+    /** The time each socket was last returned to the pool. Sockets that have not been returned yet are not in this map*/
+    private ConcurrentMap<Socket, Long> idleSinceMillis = new ConcurrentHashMap<Socket, Long>();
+
     /**
      * Constructor for initializing this Factory with a ThriftProxy
      * @param thriftProxy
@@ -49,6 +65,16 @@ public class SocketObjectFactory implements PoolableObjectFactory<Socket> {
         this.setThriftProxy(thriftProxy);
     }
 
+    /**
+     * Constructor for initializing this Factory with a ThriftProxy and one of its endpoints
+     * @param thriftProxy the ThriftProxy
+     * @param endpoint the Endpoint to connect to
+     */
+    public SocketObjectFactory(ThriftProxy thriftProxy, Endpoint endpoint) {
+        this.setThriftProxy(thriftProxy);
+        this.endpoint = endpoint;
+    }
+
     /**
      * Interface method implementation. Creates and returns a new {@link java.net.Socket}
      * @see org.apache.commons.pool.PoolableObjectFactory#makeObject()
@@ -56,8 +82,8 @@ public class SocketObjectFactory implements PoolableObjectFactory<Socket> {
     public Socket makeObject() throws Exception {
        Socket socket = new Socket();
        socket.setSoTimeout(this.getThriftProxy().getThriftTimeoutMillis());
-       socket.connect(new InetSocketAddress(this.getThriftProxy().getThriftServer(),  this.getThriftProxy().getThriftPort()));
-       LOGGER.info("Creating a new socket for server : {} at port : {}", this.getThriftProxy().getThriftServer(), this.getThriftProxy().getThriftPort());
+       socket.connect(new InetSocketAddress(this.getServer(),  this.getPort()));
+       LOGGER.info("Creating a new socket for server : {} at port : {}", this.getServer(), this.getPort());
        return socket;
     }
 
@@ -66,25 +92,32 @@ public class SocketObjectFactory implements PoolableObjectFactory<Socket> {
      * @see org.apache.commons.pool.PoolableObjectFactory#destroyObject(Object)
      */
     public void destroyObject(Socket socket) throws Exception {
-        LOGGER.info("Closing a socket for server : {} at port : {}", this.getThriftProxy().getThriftServer(), this.getThriftProxy().getThriftPort());
+        LOGGER.info("Closing a socket for server : {} at port : {}", this.getServer(), this.getPort());
+        this.idleSinceMillis.remove(socket);
         socket.close();
     }
 
     /**
-     * Interface method implementation. Checks if the socket is open and then attempts to set Thrift specific socket properties.
-     * An error in any of these operations will invalidate the specified Socket.
+     * Interface method implementation. Checks if the socket is open and has not been closed by the server, and then attempts to set Thrift specific
+     * socket properties. An idle socket that has been closed by the server reads end of stream, and one that has unread data is out of sequence.
+     * Only sockets that have been idle for {@link ThriftProxy#getIdleSocketValidationMillis()} are checked this way, as the check waits for a read
+     * to time out. An error in any of these operations will invalidate the specified Socket.
      * @see org.apache.commons.pool.PoolableObjectFactory#validateObject(Object)
      */
     public boolean validateObject(Socket socket) {
-    	if (socket.isClosed()) {
+    	if (socket.isClosed() || !socket.isConnected() || socket.isInputShutdown() || socket.isOutputShutdown()) {
     		return false;
     	}
     	try {
+    	  if (this.hasBeenIdleFor(socket, this.getThriftProxy().getIdleSocketValidationMillis()) && !this.isIdle(socket)) {
+    	      LOGGER.info("Socket closed by server : {} at port : {}", this.getServer(), this.getPort());
+    	      return false;
+    	  }
 	      socket.setSoLinger(false, 0);
 	      socket.setTcpNoDelay(true);
 	      return true;
     	} catch (Exception e) {
-	        LOGGER.info("Socket is not valid for server : {} at port : {}", this.getThriftProxy().getThriftServer(), this.getThriftProxy().getThriftPort());
+	        LOGGER.info("Socket is not valid for server : {} at port : {}", this.getServer(), this.getPort());
 			return false;
 		}
     }
@@ -98,11 +131,61 @@ public class SocketObjectFactory implements PoolableObjectFactory<Socket> {
     }
 
     /**
-     * Interface method implementation. Does nothing
+     * Interface method implementation. Records the time the socket is returned to the pool
      * @see org.apache.commons.pool.PoolableObjectFactory#passivateObject(Object)
      */
     public void passivateObject(Socket socket) throws Exception {
-    	// no op
+    	this.idleSinceMillis.put(socket, System.currentTimeMillis());
+    }
+
+    /**
+     * Checks if the specified socket has been idle in the pool i.e. was not connected for the call it is borrowed for
+     * @param socket the Socket borrowed from the pool
+     * @return true if the socket has been returned to the pool at least once, false otherwise
+     */
+    public boolean hasBeenIdle(Socket socket) {
+        return this.idleSinceMillis.containsKey(socket);
+    }
+
+    /**
+     * Helper method to check if the specified socket was last returned to the pool at least the specified time ago
+     */
+    private boolean hasBeenIdleFor(Socket socket, long millis) {
+        Long idleSince = this.idleSinceMillis.get(socket);
+        return idleSince != null && System.currentTimeMillis() - idleSince >= millis;
+    }
+
+    /**
+     * Helper method to check that the specified socket has nothing to read, by attempting a read that times out almost immediately
+     */
+    private boolean isIdle(Socket socket) throws IOException {
+        if (socket.getInputStream().available() > 0) {
+            return false;
+        }
+        int soTimeout = socket.getSoTimeout();
+        socket.setSoTimeout(IDLE_CHECK_TIMEOUT_MILLIS);
+        try {
+            socket.getInputStream().read();
+            return false; // end of stream or unexpected data
+        } catch (SocketTimeoutException e) {
+            return true;
+        } finally {
+            socket.setSoTimeout(soTimeout);
+        }
+    }
+
+    /**
+     * Helper method to get the host to connect to
+     */
+    private String getServer() {
+        return this.endpoint != null ? this.endpoint.getHost() : this.getThriftProxy().getThriftServer();
+    }
+
+    /**
+     * Helper method to get the port to connect to
+     */
+    private int getPort() {
+        return this.endpoint != null ? this.endpoint.getPort() : this.getThriftProxy().getThriftPort();
     }
 
     /** Getter/Setter Methods */
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.thrift.impl;
+
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.TProcessor;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolUtil;
+import org.apache.thrift.protocol.TStruct;
+import org.apache.thrift.protocol.TType;
+import org.apache.thrift.server.THsHaServer;
+import org.apache.thrift.server.TServer;
+import org.apache.thrift.transport.TMemoryBuffer;
+import org.apache.thrift.transport.TNonblockingServerSocket;
+import org.apache.thrift.transport.TTransport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link AsyncThriftProxyExecutor}, relaying calls in pass-through mode to a target server that responds to calls named "slow"
+ * after a delay
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class AsyncThriftProxyExecutorTest {
+
+    private static final long SLOW_CALL_MILLIS = 500;
+
+    private TServer server;
+    private int port;
+    private HystrixThriftProxy proxy;
+
+    @Before
+    public void setUp() throws Exception {
+        ServerSocket socket = new ServerSocket(0);
+        this.port = socket.getLocalPort();
+        socket.close();
+        THsHaServer.Args args = new THsHaServer.Args(new TNonblockingServerSocket(this.port));
+        args.processor(new TProcessor() {
+            public boolean process(TProtocol in, TProtocol out) throws TException {
+                TMessage call = in.readMessageBegin();
+                TProtocolUtil.skip(in, TType.STRUCT);
+                in.readMessageEnd();
+                if (call.name.startsWith("slow")) {
+                    try {
+                        Thread.sleep(SLOW_CALL_MILLIS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                writeReply(out, call.name, call.seqid);
+                return true;
+            }
+        });
+        args.workerThreads(4);
+        this.server = new THsHaServer(args);
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                server.serve();
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        while (!this.server.isServing()) {
+            Thread.sleep(10);
+        }
+        this.proxy = new HystrixThriftProxy() {
+            public void fallbackThriftRequest(TTransport clientTransport, Map<String, Object> controlParams) {
+                try {
+                    writeReply(new TBinaryProtocol(clientTransport), "fallback", 0);
+                } catch (TException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        this.proxy.setThriftServer("127.0.0.1");
+        this.proxy.setThriftPort(this.port);
+        this.proxy.setThriftTimeoutMillis(0);
+        this.proxy.setThriftServiceClass("com.flipkart.phantom.thrift.test.AsyncService");
+        this.proxy.setPassThrough(true);
+        this.proxy.setAsync(true);
+        this.proxy.setAsyncConnections(1);
+        this.proxy.setMaxPendingCallsPerConnection(4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.proxy.shutdown(null);
+        this.server.stop();
+    }
+
+    @Test
+    public void testResponseRelayed() throws Exception {
+        this.proxy.init(null);
+        TMemoryBuffer client = newCall("fast", 3);
+        AsyncThriftProxyExecutor executor = new AsyncThriftProxyExecutor(this.proxy, null, "fast", newRequest(client));
+        executor.execute();
+        assertFalse(executor.isResponseFromFallback());
+        TMessage response = new TBinaryProtocol(client).readMessageBegin();
+        assertEquals("fast", response.name);
+        assertEquals(3, response.seqid);
+    }
+
+    @Test
+    public void testTimedOutCallWritesFallbackOnly() throws Exception {
+        this.proxy.getExecutorTimeouts().put("slowTimeout", 100);
+        this.proxy.init(null);
+        TMemoryBuffer client = newCall("slowTimeout", 5);
+        AsyncThriftProxyExecutor executor = new AsyncThriftProxyExecutor(this.proxy, null, "slowTimeout", newRequest(client));
+        executor.execute();
+        assertTrue(executor.isResponseTimedOut());
+        assertTrue(executor.isResponseFromFallback());
+        int written = client.length();
+        Thread.sleep(SLOW_CALL_MILLIS * 2); // the cancelled call must not be written once the target server responds
+        assertEquals("Response of a cancelled call written", written, client.length());
+        assertEquals("fallback", new TBinaryProtocol(client).readMessageBegin().name);
+    }
+
+    @Test
+    public void testConcurrencySizedForAllEndpoints() throws Exception {
+        this.proxy.setEndpoints(Arrays.asList("127.0.0.1:" + this.port, "localhost:" + this.port));
+        this.proxy.init(null);
+        AsyncThriftProxyExecutor executor = new AsyncThriftProxyExecutor(this.proxy, null, "endpoints", newRequest(newCall("endpoints", 1)));
+        assertEquals(8, executor.getProperties().executionIsolationSemaphoreMaxConcurrentRequests().get().intValue());
+        executor.execute();
+        assertFalse(executor.isResponseFromFallback());
+    }
+
+    private static ThriftRequestWrapper newRequest(TTransport client) {
+        ThriftRequestWrapper request = new ThriftRequestWrapper();
+        request.setClientSocket(client);
+        return request;
+    }
+
+    private static TMemoryBuffer newCall(String name, int seqid) throws TException {
+        TMemoryBuffer buffer = new TMemoryBuffer(64);
+        TProtocol protocol = new TBinaryProtocol(buffer);
+        protocol.writeMessageBegin(new TMessage(name, TMessageType.CALL, seqid));
+        protocol.writeStructBegin(new TStruct(name + "_args"));
+        protocol.writeFieldStop();
+        protocol.writeStructEnd();
+        protocol.writeMessageEnd();
+        return buffer;
+    }
+
+    private static void writeReply(TProtocol protocol, String name, int seqid) throws TException {
+        protocol.writeMessageBegin(new TMessage(name, TMessageType.REPLY, seqid));
+        protocol.writeStructBegin(new TStruct(name + "_result"));
+        protocol.writeFieldStop();
+        protocol.writeStructEnd();
+        protocol.writeMessageEnd();
+        protocol.getTransport().flush();
+    }
+}
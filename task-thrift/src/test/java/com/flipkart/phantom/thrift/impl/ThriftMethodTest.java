@@ -0,0 +1,151 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.thrift.impl;
+
+import org.apache.thrift.TBase;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
+import org.junit.After;
+import org.junit.Test;
+
+import com.flipkart.phantom.thrift.impl.proxy.DefaultThriftProxy;
+import com.flipkart.phantom.thrift.test.ClientTransport;
+import com.flipkart.phantom.thrift.test.EchoServer;
+import com.flipkart.phantom.thrift.test.EchoService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link ThriftMethod} and the method descriptors cached by {@link ThriftProxy}
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+@SuppressWarnings("rawtypes")
+public class ThriftMethodTest {
+
+    private EchoServer server;
+    private DefaultThriftProxy proxy;
+
+    @After
+    public void tearDown() throws Exception {
+        if (this.proxy != null) {
+            this.proxy.shutdown(null);
+        }
+        if (this.server != null) {
+            this.server.close();
+        }
+    }
+
+    @Test
+    public void testMethodWithResult() throws Exception {
+        ThriftMethod method = ThriftMethod.create(EchoService.class.getName(), "echo", new EchoService.Processor.echo());
+        assertEquals("echo", method.getName());
+        assertFalse(method.isOneway());
+        TBase args = method.newArgs();
+        assertTrue(args instanceof EchoService.echo_args);
+        assertNotSame("Arguments instance reused across calls", args, method.newArgs());
+        TBase result = method.newResult();
+        assertTrue(result instanceof EchoService.echo_result);
+        assertNotSame("Result instance reused across calls", result, method.newResult());
+    }
+
+    @Test
+    public void testOnewayMethod() throws Exception {
+        ThriftMethod method = ThriftMethod.create(EchoService.class.getName(), "publish", new EchoService.Processor.publish());
+        assertTrue("Method without a result class not oneway", method.isOneway());
+        assertTrue(method.newArgs() instanceof EchoService.publish_args);
+        try {
+            method.newResult();
+            fail("Result created for a oneway method");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMethodsOfServiceClass() throws Exception {
+        DefaultThriftProxy proxy = new DefaultThriftProxy();
+        proxy.setThriftServiceClass(EchoService.class.getName());
+        assertEquals(2, proxy.getProcessMap().size());
+        assertTrue(proxy.getProcessMap().get("echo") instanceof EchoService.Processor.echo);
+        assertTrue(proxy.getProcessMap().get("publish") instanceof EchoService.Processor.publish);
+        proxy.setThriftServiceClass("com.flipkart.phantom.thrift.test.UnknownService");
+        assertTrue("Methods of the earlier service class retained", proxy.getProcessMap().isEmpty());
+    }
+
+    @Test
+    public void testCallsRelayedUsingDescriptors() throws Exception {
+        this.startProxy();
+        for (String message : new String[] {"hello", "world"}) {
+            ClientTransport client = newEchoCall(message);
+            this.proxy.doRequest(client);
+            assertEquals(message, client.getClient().recv_echo());
+        }
+        assertEquals(2, this.server.calls.get());
+    }
+
+    @Test
+    public void testUnknownMethod() throws Exception {
+        this.startProxy();
+        ClientTransport client = new ClientTransport(ThriftProtocol.BINARY.getProtocolFactory(), new ClientTransport.Call() {
+            public void write(EchoService.Client client) throws TException {
+                client.getOutputProtocol().writeMessageBegin(new TMessage("unknown", TMessageType.CALL, 1));
+                new EchoService.echo_args().write(client.getOutputProtocol());
+                client.getOutputProtocol().writeMessageEnd();
+                client.getOutputProtocol().getTransport().flush();
+            }
+        });
+        try {
+            this.proxy.doRequest(client);
+            fail("Call to a method not in the service class relayed");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("unknown"));
+        }
+        assertEquals("Call sent to the target server", 0, this.server.calls.get());
+    }
+
+    /**
+     * Starts a target server and a proxy to it, that uses the generated classes of the service
+     */
+    private void startProxy() throws Exception {
+        this.server = new EchoServer(ThriftProtocol.BINARY.getProtocolFactory(), false);
+        this.proxy = new DefaultThriftProxy();
+        this.proxy.setThriftServer("127.0.0.1");
+        this.proxy.setThriftPort(this.server.getPort());
+        this.proxy.setThriftTimeoutMillis(2000);
+        this.proxy.setThriftServiceClass(EchoService.class.getName());
+        this.proxy.setTimeBetweenEvictionRunsMillis(-1);
+        this.proxy.init(null);
+    }
+
+    /**
+     * Creates the transport of a client that calls echo with the specified message
+     */
+    private static ClientTransport newEchoCall(final String message) throws TException {
+        return new ClientTransport(ThriftProtocol.BINARY.getProtocolFactory(), new ClientTransport.Call() {
+            public void write(EchoService.Client client) throws TException {
+                client.send_echo(message);
+            }
+        });
+    }
+}
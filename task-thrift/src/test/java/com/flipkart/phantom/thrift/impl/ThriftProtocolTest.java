@@ -0,0 +1,149 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.thrift.impl;
+
+import java.util.Arrays;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TField;
+import org.apache.thrift.protocol.TList;
+import org.apache.thrift.protocol.TMap;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolException;
+import org.apache.thrift.protocol.TSet;
+import org.apache.thrift.protocol.TStruct;
+import org.apache.thrift.protocol.TType;
+import org.apache.thrift.transport.TMemoryBuffer;
+import org.apache.thrift.transport.TMemoryInputTransport;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for transcoding values between protocols using {@link ThriftProtocol}
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class ThriftProtocolTest {
+
+    @Test
+    public void testTranscodeAllTypes() throws Exception {
+        for (ThriftProtocol from : ThriftProtocol.values()) {
+            for (ThriftProtocol to : ThriftProtocol.values()) {
+                byte[] expected = writeStruct(to);
+                assertArrayEquals(from + " to " + to, expected, transcode(writeStruct(from), from, to));
+            }
+        }
+    }
+
+    @Test
+    public void testCompactIsSmaller() throws Exception {
+        byte[] binary = writeStruct(ThriftProtocol.BINARY);
+        assertTrue(transcode(binary, ThriftProtocol.BINARY, ThriftProtocol.COMPACT).length < binary.length);
+    }
+
+    @Test
+    public void testUnknownType() throws Exception {
+        TMemoryBuffer buffer = new TMemoryBuffer(16);
+        try {
+            ThriftProtocol.transcode(new TBinaryProtocol(buffer), new TCompactProtocol(buffer), (byte) 99);
+            fail("Unknown type transcoded");
+        } catch (TProtocolException e) {
+            assertEquals(TProtocolException.INVALID_DATA, e.getType());
+        }
+    }
+
+    @Test
+    public void testProtocolFactories() {
+        assertEquals(TBinaryProtocol.Factory.class, ThriftProtocol.BINARY.getProtocolFactory().getClass());
+        assertEquals(TCompactProtocol.Factory.class, ThriftProtocol.COMPACT.getProtocolFactory().getClass());
+    }
+
+    /**
+     * Transcodes the specified struct from one protocol to another
+     */
+    private static byte[] transcode(byte[] struct, ThriftProtocol from, ThriftProtocol to) throws TException {
+        TMemoryBuffer output = new TMemoryBuffer(256);
+        ThriftProtocol.transcode(from.getProtocolFactory().getProtocol(new TMemoryInputTransport(struct)),
+                to.getProtocolFactory().getProtocol(output), TType.STRUCT);
+        return Arrays.copyOf(output.getArray(), output.length());
+    }
+
+    /**
+     * Writes a struct with fields of all types in the specified protocol
+     */
+    private static byte[] writeStruct(ThriftProtocol protocol) throws TException {
+        TMemoryBuffer buffer = new TMemoryBuffer(256);
+        TProtocol out = protocol.getProtocolFactory().getProtocol(buffer);
+        out.writeStructBegin(new TStruct("AllTypes"));
+        out.writeFieldBegin(new TField("flag", TType.BOOL, (short) 1));
+        out.writeBool(true);
+        out.writeFieldEnd();
+        out.writeFieldBegin(new TField("b", TType.BYTE, (short) 2));
+        out.writeByte((byte) -7);
+        out.writeFieldEnd();
+        out.writeFieldBegin(new TField("s", TType.I16, (short) 3));
+        out.writeI16((short) 300);
+        out.writeFieldEnd();
+        out.writeFieldBegin(new TField("i", TType.I32, (short) 20));
+        out.writeI32(-70000);
+        out.writeFieldEnd();
+        out.writeFieldBegin(new TField("l", TType.I64, (short) 5));
+        out.writeI64(Long.MAX_VALUE);
+        out.writeFieldEnd();
+        out.writeFieldBegin(new TField("d", TType.DOUBLE, (short) 6));
+        out.writeDouble(3.14);
+        out.writeFieldEnd();
+        out.writeFieldBegin(new TField("name", TType.STRING, (short) 7));
+        out.writeString("phantom");
+        out.writeFieldEnd();
+        out.writeFieldBegin(new TField("nested", TType.STRUCT, (short) 8));
+        out.writeStructBegin(new TStruct("Nested"));
+        out.writeFieldBegin(new TField("flag", TType.BOOL, (short) 1));
+        out.writeBool(false);
+        out.writeFieldEnd();
+        out.writeFieldStop();
+        out.writeStructEnd();
+        out.writeFieldEnd();
+        out.writeFieldBegin(new TField("map", TType.MAP, (short) 9));
+        out.writeMapBegin(new TMap(TType.STRING, TType.LIST, 2));
+        for (String key : new String[] {"a", "b"}) {
+            out.writeString(key);
+            out.writeListBegin(new TList(TType.I32, 2));
+            out.writeI32(1);
+            out.writeI32(2);
+            out.writeListEnd();
+        }
+        out.writeMapEnd();
+        out.writeFieldEnd();
+        out.writeFieldBegin(new TField("set", TType.SET, (short) 10));
+        out.writeSetBegin(new TSet(TType.BOOL, 2));
+        out.writeBool(true);
+        out.writeBool(false);
+        out.writeSetEnd();
+        out.writeFieldEnd();
+        out.writeFieldStop();
+        out.writeStructEnd();
+        return Arrays.copyOf(buffer.getArray(), buffer.length());
+    }
+}
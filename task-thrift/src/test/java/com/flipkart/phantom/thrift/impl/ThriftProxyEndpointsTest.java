@@ -0,0 +1,192 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.thrift.impl;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.async.AsyncMethodCallback;
+import org.apache.thrift.transport.TTransport;
+import org.junit.After;
+import org.junit.Test;
+
+import com.flipkart.phantom.task.spi.loadbalancer.Endpoint;
+import com.flipkart.phantom.thrift.impl.proxy.DefaultThriftProxy;
+import com.flipkart.phantom.thrift.test.ClientTransport;
+import com.flipkart.phantom.thrift.test.EchoServer;
+import com.flipkart.phantom.thrift.test.EchoService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for balancing the calls of a {@link ThriftProxy} across the endpoints of the target service
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class ThriftProxyEndpointsTest {
+
+    private EchoServer first;
+    private EchoServer second;
+    private DefaultThriftProxy proxy;
+
+    @After
+    public void tearDown() throws Exception {
+        if (this.proxy != null) {
+            this.proxy.shutdown(null);
+        }
+        this.first.close();
+        this.second.close();
+    }
+
+    @Test
+    public void testCallsBalancedAcrossEndpoints() throws Exception {
+        this.startProxy(false, false);
+        for (int i = 0; i < 10; i++) {
+            assertEquals("hello" + i, this.echo("hello" + i));
+        }
+        assertEquals(5, this.first.calls.get());
+        assertEquals(5, this.second.calls.get());
+    }
+
+    @Test
+    public void testUnreachableEndpointSkipped() throws Exception {
+        this.startProxy(false, false);
+        this.second.close();
+        for (int i = 0; i < 4; i++) {
+            assertEquals("hello" + i, this.echo("hello" + i));
+        }
+        assertEquals("Calls not relayed to the reachable endpoint", 4, this.first.calls.get());
+        Endpoint unreachable = this.getEndpoint(this.second);
+        assertTrue("Unreachable endpoint not ejected", unreachable.isEjected(System.currentTimeMillis()));
+        assertFalse(this.getEndpoint(this.first).isEjected(System.currentTimeMillis()));
+    }
+
+    @Test
+    public void testUnreachableEndpointEjectedByHealthCheck() throws Exception {
+        this.first = new EchoServer(ThriftProtocol.BINARY.getProtocolFactory(), false);
+        this.second = new EchoServer(ThriftProtocol.BINARY.getProtocolFactory(), false);
+        this.second.close();
+        this.proxy = this.newProxy(false);
+        this.proxy.setHealthCheckIntervalMillis(50);
+        this.proxy.init(null);
+        Endpoint unreachable = this.getEndpoint(this.second);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!unreachable.isEjected(System.currentTimeMillis()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue("Unreachable endpoint not ejected", unreachable.isEjected(System.currentTimeMillis()));
+        assertEquals("Failed call counted against the ejected endpoint", 0, unreachable.getConsecutiveFailures());
+        assertEquals("hello", this.echo("hello"));
+        assertEquals(1, this.first.calls.get());
+    }
+
+    @Test
+    public void testAsyncCallsBalancedAcrossEndpoints() throws Exception {
+        this.startProxy(true, true);
+        for (int i = 0; i < 4; i++) {
+            assertEquals("hello" + i, this.echoAsync("hello" + i));
+        }
+        assertEquals(2, this.first.calls.get());
+        assertEquals(2, this.second.calls.get());
+    }
+
+    /**
+     * Starts two target servers and a proxy that balances calls across them. Health checks are disabled, and one failure ejects an endpoint
+     */
+    private void startProxy(boolean framed, boolean async) throws Exception {
+        this.first = new EchoServer(ThriftProtocol.BINARY.getProtocolFactory(), framed);
+        this.second = new EchoServer(ThriftProtocol.BINARY.getProtocolFactory(), framed);
+        this.proxy = this.newProxy(async);
+        this.proxy.setFramed(framed);
+        this.proxy.setHealthCheckIntervalMillis(0);
+        this.proxy.setEndpointFailureThreshold(1);
+        this.proxy.init(null);
+    }
+
+    /**
+     * Creates a proxy with the target servers as its endpoints
+     */
+    private DefaultThriftProxy newProxy(boolean async) {
+        DefaultThriftProxy proxy = new DefaultThriftProxy();
+        proxy.setThriftTimeoutMillis(2000);
+        proxy.setThriftServiceClass(EchoService.class.getName());
+        proxy.setEndpoints(Arrays.asList("127.0.0.1:" + this.first.getPort(), "127.0.0.1:" + this.second.getPort()));
+        proxy.setAsync(async);
+        proxy.setTimeBetweenEvictionRunsMillis(-1);
+        return proxy;
+    }
+
+    /**
+     * Returns the endpoint of the specified target server
+     */
+    private Endpoint getEndpoint(EchoServer server) {
+        for (Endpoint endpoint : this.proxy.getEndpointGroup().getEndpoints()) {
+            if (endpoint.getPort() == server.getPort()) {
+                return endpoint;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Relays a call to echo the specified message and returns the response
+     */
+    private String echo(String message) throws TException {
+        ClientTransport client = newEchoCall(message);
+        this.proxy.doRequest(client);
+        return client.getClient().recv_echo();
+    }
+
+    /**
+     * Relays a call to echo the specified message asynchronously and returns the response
+     */
+    private String echoAsync(String message) throws Exception {
+        ClientTransport client = newEchoCall(message);
+        final CountDownLatch completed = new CountDownLatch(1);
+        final AtomicReference<Exception> error = new AtomicReference<Exception>();
+        this.proxy.doRequestAsync(client, ThriftProtocol.BINARY.getProtocolFactory(), new AsyncMethodCallback<TTransport>() {
+            public void onComplete(TTransport response) {
+                completed.countDown();
+            }
+            public void onError(Exception e) {
+                error.set(e);
+                completed.countDown();
+            }
+        });
+        assertTrue("Call not completed", completed.await(5, TimeUnit.SECONDS));
+        assertNull(error.get());
+        return client.getClient().recv_echo();
+    }
+
+    /**
+     * Creates the transport of a client that calls echo with the specified message
+     */
+    private static ClientTransport newEchoCall(final String message) throws TException {
+        return new ClientTransport(ThriftProtocol.BINARY.getProtocolFactory(), new ClientTransport.Call() {
+            public void write(EchoService.Client client) throws TException {
+                client.send_echo(message);
+            }
+        });
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.thrift.impl;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.async.AsyncMethodCallback;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TTransport;
+import org.junit.After;
+import org.junit.Test;
+
+import com.flipkart.phantom.thrift.impl.proxy.DefaultThriftProxy;
+import com.flipkart.phantom.thrift.test.ClientTransport;
+import com.flipkart.phantom.thrift.test.EchoServer;
+import com.flipkart.phantom.thrift.test.EchoService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for forwarding calls to oneway methods by a {@link ThriftProxy}, without waiting for a response
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class ThriftProxyOnewayTest {
+
+    private EchoServer server;
+    private DefaultThriftProxy proxy;
+
+    @After
+    public void tearDown() throws Exception {
+        if (this.proxy != null) {
+            this.proxy.shutdown(null);
+        }
+        if (this.server != null) {
+            this.server.close();
+        }
+    }
+
+    @Test
+    public void testOnewayCallWithGeneratedClasses() throws Exception {
+        this.startProxy(EchoService.class.getName(), false, false);
+        this.assertForwarded(this.publish(TMessageType.CALL, "hello"), "hello");
+        assertEquals("Socket not reused after a oneway call", "world", this.echo("world"));
+        assertEquals(1, this.server.connections.get());
+    }
+
+    @Test
+    public void testOnewayCallInPassThroughMode() throws Exception {
+        this.startProxy(EchoService.class.getName(), true, false);
+        this.assertForwarded(this.publish(TMessageType.CALL, "hello"), "hello");
+        assertEquals("world", this.echo("world"));
+        assertEquals(1, this.server.connections.get());
+    }
+
+    @Test
+    public void testOnewayMessageTypeWithoutGeneratedClasses() throws Exception {
+        this.startProxy("com.flipkart.phantom.thrift.test.UnknownService", true, false);
+        this.assertForwarded(this.publish(TMessageType.ONEWAY, "hello"), "hello");
+        assertEquals("world", this.echo("world"));
+        assertEquals(1, this.server.connections.get());
+    }
+
+    @Test
+    public void testAsyncOnewayCall() throws Exception {
+        this.startProxy(EchoService.class.getName(), false, true);
+        ClientTransport client = newPublishCall(TMessageType.CALL, "hello");
+        final CountDownLatch completed = new CountDownLatch(1);
+        this.proxy.doRequestAsync(client, ThriftProtocol.BINARY.getProtocolFactory(), new AsyncMethodCallback<TTransport>() {
+            public void onComplete(TTransport response) {
+                completed.countDown();
+            }
+            public void onError(Exception e) {
+            }
+        });
+        assertEquals("Callback not notified before returning", 0, completed.getCount());
+        this.assertForwarded(client, "hello");
+    }
+
+    /**
+     * Starts a target server and a proxy to it. The non-blocking client always uses the framed transport
+     */
+    private void startProxy(String thriftServiceClass, boolean passThrough, boolean async) throws Exception {
+        this.server = new EchoServer(ThriftProtocol.BINARY.getProtocolFactory(), async);
+        this.proxy = new DefaultThriftProxy();
+        this.proxy.setThriftServer("127.0.0.1");
+        this.proxy.setThriftPort(this.server.getPort());
+        this.proxy.setThriftTimeoutMillis(2000);
+        this.proxy.setThriftServiceClass(thriftServiceClass);
+        this.proxy.setFramed(async);
+        this.proxy.setPassThrough(passThrough);
+        this.proxy.setAsync(async);
+        this.proxy.setTimeBetweenEvictionRunsMillis(-1);
+        this.proxy.init(null);
+    }
+
+    /**
+     * Checks that nothing was relayed to the client and that the target server received the published message
+     */
+    private void assertForwarded(ClientTransport client, String message) throws InterruptedException {
+        assertEquals("Response relayed for a oneway call", 0, client.getResponseLength());
+        assertEquals(message, this.server.published.poll(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Relays a call to publish the specified message, sent with the specified message type, and returns the client transport
+     */
+    private ClientTransport publish(byte messageType, String message) throws TException {
+        ClientTransport client = newPublishCall(messageType, message);
+        this.proxy.doRequest(client);
+        return client;
+    }
+
+    /**
+     * Relays a call to echo the specified message and returns the response
+     */
+    private String echo(final String message) throws TException {
+        ClientTransport client = new ClientTransport(ThriftProtocol.BINARY.getProtocolFactory(), new ClientTransport.Call() {
+            public void write(EchoService.Client client) throws TException {
+                client.send_echo(message);
+            }
+        });
+        this.proxy.doRequest(client);
+        assertTrue(client.getResponseLength() > 0);
+        return client.getClient().recv_echo();
+    }
+
+    /**
+     * Creates the transport of a client that calls publish with the specified message, sent with the specified message type. Clients
+     * generated by Thrift 0.9.0 send oneway calls with the CALL type and later ones with the ONEWAY type
+     */
+    private static ClientTransport newPublishCall(final byte messageType, final String message) throws TException {
+        return new ClientTransport(ThriftProtocol.BINARY.getProtocolFactory(), new ClientTransport.Call() {
+            public void write(EchoService.Client client) throws TException {
+                TProtocol protocol = client.getOutputProtocol();
+                protocol.writeMessageBegin(new TMessage("publish", messageType, 1));
+                EchoService.publish_args args = new EchoService.publish_args();
+                args.setFieldValue(EchoService._Fields.MESSAGE, message);
+                args.write(protocol);
+                protocol.writeMessageEnd();
+                protocol.getTransport().flush();
+            }
+        });
+    }
+}
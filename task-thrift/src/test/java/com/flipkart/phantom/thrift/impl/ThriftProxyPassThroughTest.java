@@ -0,0 +1,196 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.thrift.impl;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.thrift.TApplicationException;
+import org.apache.thrift.TException;
+import org.apache.thrift.async.AsyncMethodCallback;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TMemoryBuffer;
+import org.apache.thrift.transport.TMemoryInputTransport;
+import org.apache.thrift.transport.TTransport;
+import org.junit.After;
+import org.junit.Test;
+
+import com.flipkart.phantom.thrift.impl.proxy.DefaultThriftProxy;
+import com.flipkart.phantom.thrift.test.ClientTransport;
+import com.flipkart.phantom.thrift.test.EchoServer;
+import com.flipkart.phantom.thrift.test.EchoService;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for relaying calls in pass-through mode, by a {@link ThriftProxy} that does not have the classes generated for the target service
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class ThriftProxyPassThroughTest {
+
+    private EchoServer server;
+    private DefaultThriftProxy proxy;
+
+    @After
+    public void tearDown() throws Exception {
+        if (this.proxy != null) {
+            this.proxy.shutdown(null);
+        }
+        if (this.server != null) {
+            this.server.close();
+        }
+    }
+
+    @Test
+    public void testRelay() throws Exception {
+        this.startProxy(false);
+        assertEquals("hello", this.echo("hello"));
+        assertEquals("world", this.echo("world"));
+        assertEquals(2, this.server.calls.get());
+        assertEquals(1, this.server.connections.get());
+    }
+
+    @Test
+    public void testLargeMessageRelay() throws Exception {
+        this.startProxy(false);
+        char[] message = new char[100000];
+        Arrays.fill(message, 'x');
+        assertEquals(new String(message), this.echo(new String(message)));
+    }
+
+    @Test
+    public void testAsyncRelay() throws Exception {
+        this.startProxy(true);
+        final ClientTransport client = newEchoCall("hello");
+        final CountDownLatch completed = new CountDownLatch(1);
+        final AtomicReference<Object> outcome = new AtomicReference<Object>();
+        this.proxy.doRequestAsync(client, new TBinaryProtocol.Factory(), new AsyncMethodCallback<TTransport>() {
+            public void onComplete(TTransport response) {
+                outcome.set(response);
+                completed.countDown();
+            }
+            public void onError(Exception e) {
+                outcome.set(e);
+                completed.countDown();
+            }
+        });
+        assertTrue("Call not completed", completed.await(5, TimeUnit.SECONDS));
+        assertSame(client, outcome.get());
+        assertEquals("hello", client.getClient().recv_echo());
+    }
+
+    @Test
+    public void testServerErrorFailsCall() throws Exception {
+        this.startProxy(false);
+        TMemoryBuffer call = new TMemoryBuffer(64);
+        TProtocol protocol = new TBinaryProtocol(call);
+        protocol.writeMessageBegin(new TMessage("unknownMethod", TMessageType.CALL, 1));
+        new EchoService.echo_args().write(protocol);
+        protocol.writeMessageEnd();
+        try {
+            this.proxy.doRequest(new TMemoryInputTransport(call.getArray(), 0, call.length()));
+            fail("Call to an unknown method did not fail");
+        } catch (RuntimeException e) {
+            assertEquals(TApplicationException.class, e.getCause().getClass());
+            assertEquals(TApplicationException.UNKNOWN_METHOD, ((TApplicationException) e.getCause()).getType());
+        }
+        assertEquals("Socket not reused after an error response", "hello", this.echo("hello"));
+        assertEquals(1, this.server.connections.get());
+    }
+
+    @Test
+    public void testMessageBodyRefersToTransportBuffer() throws Exception {
+        byte[] message = {1, 2, 3, 4, 5, 6};
+        TMemoryInputTransport transport = new TMemoryInputTransport(message, 0, message.length);
+        transport.consumeBuffer(2); // the message header
+        ThriftMessageBody body = ThriftMessageBody.readRemaining(transport);
+        assertEquals(4, body.getLength());
+        assertEquals(0, transport.getBytesRemainingInBuffer());
+        message[5] = 9;
+        TMemoryBuffer output = new TMemoryBuffer(8);
+        body.write(output);
+        assertArrayEquals(new byte[] {3, 4, 5, 9}, Arrays.copyOf(output.getArray(), output.length()));
+    }
+
+    @Test
+    public void testRecorderRecordsBytesRead() throws Exception {
+        byte[] message = new byte[1000];
+        for (int i = 0; i < message.length; i++) {
+            message[i] = (byte) i;
+        }
+        ThriftMessageBody.Recorder recorder = new ThriftMessageBody.Recorder(new TMemoryInputTransport(message));
+        byte[] buffer = new byte[400];
+        recorder.readAll(buffer, 0, 100); // not recorded
+        recorder.startRecording();
+        recorder.readAll(buffer, 0, 400);
+        recorder.readAll(buffer, 0, 300);
+        ThriftMessageBody body = recorder.stopRecording();
+        recorder.readAll(buffer, 0, 200); // not recorded
+        TMemoryBuffer output = new TMemoryBuffer(700);
+        body.write(output);
+        assertArrayEquals(Arrays.copyOfRange(message, 100, 800), Arrays.copyOf(output.getArray(), output.length()));
+    }
+
+    /**
+     * Starts a target server and a pass-through proxy to it. The server uses the framed transport if calls are relayed asynchronously
+     */
+    private void startProxy(boolean async) throws Exception {
+        this.server = new EchoServer(new TBinaryProtocol.Factory(), async);
+        this.proxy = new DefaultThriftProxy();
+        this.proxy.setThriftServer("127.0.0.1");
+        this.proxy.setThriftPort(this.server.getPort());
+        this.proxy.setThriftTimeoutMillis(2000);
+        this.proxy.setThriftServiceClass("com.flipkart.phantom.thrift.test.UnknownService");
+        this.proxy.setPassThrough(true);
+        this.proxy.setAsync(async);
+        this.proxy.setTimeBetweenEvictionRunsMillis(-1);
+        this.proxy.init(null);
+        assertNull("Generated classes found", this.proxy.getProcessMap().get("echo"));
+    }
+
+    /**
+     * Relays a call to echo the specified message and returns the response
+     */
+    private String echo(String message) throws TException {
+        ClientTransport client = newEchoCall(message);
+        assertSame(client, this.proxy.doRequest(client));
+        return client.getClient().recv_echo();
+    }
+
+    /**
+     * Creates the transport of a client that calls echo with the specified message, in the binary protocol
+     */
+    private static ClientTransport newEchoCall(final String message) throws TException {
+        return new ClientTransport(new TBinaryProtocol.Factory(), new ClientTransport.Call() {
+            public void write(EchoService.Client client) throws TException {
+                client.send_echo(message);
+            }
+        });
+    }
+}
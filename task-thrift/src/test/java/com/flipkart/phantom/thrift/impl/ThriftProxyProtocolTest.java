@@ -0,0 +1,155 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.thrift.impl;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.async.AsyncMethodCallback;
+import org.apache.thrift.transport.TTransport;
+import org.junit.After;
+import org.junit.Test;
+
+import com.flipkart.phantom.thrift.impl.proxy.DefaultThriftProxy;
+import com.flipkart.phantom.thrift.test.ClientTransport;
+import com.flipkart.phantom.thrift.test.EchoServer;
+import com.flipkart.phantom.thrift.test.EchoService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for bridging clients and target servers that use different protocols and transports, by a {@link ThriftProxy}
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class ThriftProxyProtocolTest {
+
+    private EchoServer server;
+    private DefaultThriftProxy proxy;
+
+    @After
+    public void tearDown() throws Exception {
+        if (this.proxy != null) {
+            this.proxy.shutdown(null);
+        }
+        if (this.server != null) {
+            this.server.close();
+        }
+    }
+
+    @Test
+    public void testCompactClientToBinaryServer() throws Exception {
+        this.startProxy(ThriftProtocol.BINARY, false, true, false);
+        assertEquals("hello", this.echo(ThriftProtocol.COMPACT, "hello"));
+        assertEquals("Call not relayed as is", "world", this.echo(ThriftProtocol.BINARY, "world"));
+    }
+
+    @Test
+    public void testBinaryClientToFramedCompactServer() throws Exception {
+        this.startProxy(ThriftProtocol.COMPACT, true, true, false);
+        assertEquals("hello", this.echo(ThriftProtocol.BINARY, "hello"));
+        assertEquals("world", this.echo(ThriftProtocol.COMPACT, "world"));
+        assertEquals(1, this.server.connections.get());
+    }
+
+    @Test
+    public void testGeneratedClassesWithFramedCompactServer() throws Exception {
+        this.startProxy(ThriftProtocol.COMPACT, true, false, false);
+        assertEquals("hello", this.echo(ThriftProtocol.BINARY, "hello"));
+        assertEquals("world", this.echo(ThriftProtocol.COMPACT, "world"));
+    }
+
+    @Test
+    public void testAsyncCompactClientToBinaryServer() throws Exception {
+        this.startProxy(ThriftProtocol.BINARY, true, true, true);
+        assertEquals("hello", this.echoAsync(ThriftProtocol.COMPACT, "hello"));
+        assertEquals("world", this.echoAsync(ThriftProtocol.BINARY, "world"));
+    }
+
+    @Test
+    public void testAsyncBinaryClientToCompactServer() throws Exception {
+        this.startProxy(ThriftProtocol.COMPACT, true, false, true);
+        assertEquals("hello", this.echoAsync(ThriftProtocol.BINARY, "hello"));
+    }
+
+    /**
+     * Starts a target server that speaks the specified protocol and transport, and a proxy to it. The non-blocking client always uses the
+     * framed transport
+     */
+    private void startProxy(ThriftProtocol protocol, boolean framed, boolean passThrough, boolean async) throws Exception {
+        this.server = new EchoServer(protocol.getProtocolFactory(), framed);
+        this.proxy = new DefaultThriftProxy();
+        this.proxy.setThriftServer("127.0.0.1");
+        this.proxy.setThriftPort(this.server.getPort());
+        this.proxy.setThriftTimeoutMillis(2000);
+        this.proxy.setThriftServiceClass(EchoService.class.getName());
+        this.proxy.setProtocol(protocol);
+        this.proxy.setFramed(framed);
+        this.proxy.setPassThrough(passThrough);
+        this.proxy.setAsync(async);
+        this.proxy.setTimeBetweenEvictionRunsMillis(-1);
+        this.proxy.init(null);
+    }
+
+    /**
+     * Relays a call to echo the specified message, from a client using the specified protocol, and returns the response
+     */
+    private String echo(ThriftProtocol clientProtocol, String message) throws TException {
+        ClientTransport client = newEchoCall(clientProtocol, message);
+        assertSame(client, this.proxy.doRequest(client, clientProtocol.getProtocolFactory()));
+        return client.getClient().recv_echo();
+    }
+
+    /**
+     * Relays a call to echo the specified message asynchronously, from a client using the specified protocol, and returns the response
+     */
+    private String echoAsync(ThriftProtocol clientProtocol, String message) throws Exception {
+        ClientTransport client = newEchoCall(clientProtocol, message);
+        final CountDownLatch completed = new CountDownLatch(1);
+        final AtomicReference<Exception> error = new AtomicReference<Exception>();
+        this.proxy.doRequestAsync(client, clientProtocol.getProtocolFactory(), new AsyncMethodCallback<TTransport>() {
+            public void onComplete(TTransport response) {
+                completed.countDown();
+            }
+            public void onError(Exception e) {
+                error.set(e);
+                completed.countDown();
+            }
+        });
+        assertTrue("Call not completed", completed.await(5, TimeUnit.SECONDS));
+        if (error.get() != null) {
+            throw error.get();
+        }
+        return client.getClient().recv_echo();
+    }
+
+    /**
+     * Creates the transport of a client that calls echo with the specified message, in the specified protocol
+     */
+    private static ClientTransport newEchoCall(ThriftProtocol clientProtocol, final String message) throws TException {
+        return new ClientTransport(clientProtocol.getProtocolFactory(), new ClientTransport.Call() {
+            public void write(EchoService.Client client) throws TException {
+                client.send_echo(message);
+            }
+        });
+    }
+}
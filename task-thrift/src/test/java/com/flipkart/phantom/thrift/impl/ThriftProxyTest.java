@@ -0,0 +1,267 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.thrift.impl;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolUtil;
+import org.apache.thrift.protocol.TStruct;
+import org.apache.thrift.protocol.TType;
+import org.apache.thrift.transport.TMemoryBuffer;
+import org.apache.thrift.transport.TMemoryInputTransport;
+import org.apache.thrift.transport.TSocket;
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.flipkart.phantom.thrift.impl.proxy.DefaultThriftProxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the pooled upstream sockets of {@link ThriftProxy}, relaying calls in pass-through mode to a target server that may close its
+ * connections or not respond
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class ThriftProxyTest {
+
+    private UpstreamServer server;
+    private DefaultThriftProxy proxy;
+
+    @Before
+    public void setUp() throws Exception {
+        this.server = new UpstreamServer();
+        this.proxy = new DefaultThriftProxy();
+        this.proxy.setThriftServer("127.0.0.1");
+        this.proxy.setThriftPort(this.server.serverSocket.getLocalPort());
+        this.proxy.setThriftTimeoutMillis(2000);
+        this.proxy.setThriftServiceClass("com.flipkart.phantom.thrift.test.EchoService");
+        this.proxy.setPassThrough(true);
+        this.proxy.setTimeBetweenEvictionRunsMillis(-1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.proxy.shutdown(null);
+        this.server.close();
+    }
+
+    @Test
+    public void testCallsReuseSocket() throws Exception {
+        this.proxy.init(null);
+        for (int i = 0; i < 3; i++) {
+            this.call(i);
+        }
+        assertEquals(1, this.server.connections.get());
+        assertEquals(3, this.server.calls.get());
+    }
+
+    @Test
+    public void testIdleSocketClosedByServerIsNotUsed() throws Exception {
+        this.proxy.setIdleSocketValidationMillis(0);
+        this.proxy.init(null);
+        this.call(1);
+        this.server.closeConnections(false);
+        Thread.sleep(100);
+        this.call(2);
+        assertEquals(2, this.server.connections.get());
+        assertEquals(2, this.server.calls.get());
+    }
+
+    @Test
+    public void testCallIsResentWhenWriteToIdleSocketFails() throws Exception {
+        this.proxy.setIdleSocketValidationMillis(Long.MAX_VALUE);
+        this.proxy.init(null);
+        this.call(1);
+        this.server.closeConnections(true);
+        Thread.sleep(100);
+        this.call(2);
+        assertEquals(2, this.server.connections.get());
+        assertEquals(2, this.server.calls.get());
+    }
+
+    @Test
+    public void testCallReceivedByServerIsNotResent() throws Exception {
+        this.proxy.setIdleSocketValidationMillis(Long.MAX_VALUE);
+        this.proxy.init(null);
+        this.server.respond = false;
+        this.callAndFail(1); // over a socket connected for the call
+        assertEquals(1, this.server.calls.get());
+        this.server.respond = true;
+        this.call(2);
+        this.server.respond = false;
+        this.callAndFail(3); // over a socket that had been idle in the pool
+        assertEquals(3, this.server.calls.get());
+    }
+
+    private void call(int seqid) throws Exception {
+        ClientTransport client = new ClientTransport(seqid);
+        this.proxy.doRequest(client);
+        TMessage response = new TBinaryProtocol(client.output).readMessageBegin();
+        assertEquals(TMessageType.REPLY, response.type);
+        assertEquals(seqid, response.seqid);
+    }
+
+    private void callAndFail(int seqid) throws Exception {
+        try {
+            this.proxy.doRequest(new ClientTransport(seqid));
+            fail("Call did not fail");
+        } catch (RuntimeException e) {
+            // expected
+        }
+    }
+
+    /**
+     * A client transport that reads a call encoded in the binary protocol and collects the response
+     */
+    private static class ClientTransport extends TTransport {
+
+        private final TMemoryInputTransport input;
+        private final TMemoryBuffer output = new TMemoryBuffer(64);
+
+        ClientTransport(int seqid) throws TException {
+            TMemoryBuffer call = new TMemoryBuffer(64);
+            TProtocol protocol = new TBinaryProtocol(call);
+            protocol.writeMessageBegin(new TMessage("echo", TMessageType.CALL, seqid));
+            protocol.writeStructBegin(new TStruct("echo_args"));
+            protocol.writeFieldStop();
+            protocol.writeStructEnd();
+            protocol.writeMessageEnd();
+            this.input = new TMemoryInputTransport(call.getArray(), 0, call.length());
+        }
+
+        public boolean isOpen() {
+            return true;
+        }
+        public void open() {
+        }
+        public void close() {
+        }
+        public int read(byte[] buf, int off, int len) throws TTransportException {
+            return this.input.read(buf, off, len);
+        }
+        public void write(byte[] buf, int off, int len) throws TTransportException {
+            this.output.write(buf, off, len);
+        }
+        public byte[] getBuffer() {
+            return this.input.getBuffer();
+        }
+        public int getBufferPosition() {
+            return this.input.getBufferPosition();
+        }
+        public int getBytesRemainingInBuffer() {
+            return this.input.getBytesRemainingInBuffer();
+        }
+        public void consumeBuffer(int len) {
+            this.input.consumeBuffer(len);
+        }
+    }
+
+    /**
+     * A target server that replies to each call with an empty result, or closes the connection without replying
+     */
+    private static class UpstreamServer implements Runnable {
+
+        private final ServerSocket serverSocket = new ServerSocket(0);
+        private final List<Socket> accepted = new CopyOnWriteArrayList<Socket>();
+        private final AtomicInteger connections = new AtomicInteger();
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile boolean respond = true;
+
+        UpstreamServer() throws IOException {
+            Thread thread = new Thread(this, "UpstreamServer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        public void run() {
+            while (!this.serverSocket.isClosed()) {
+                try {
+                    final Socket socket = this.serverSocket.accept();
+                    this.connections.incrementAndGet();
+                    this.accepted.add(socket);
+                    Thread thread = new Thread(new Runnable() {
+                        public void run() {
+                            serve(socket);
+                        }
+                    });
+                    thread.setDaemon(true);
+                    thread.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void serve(Socket socket) {
+            try {
+                TProtocol protocol = new TBinaryProtocol(new TSocket(socket));
+                while (true) {
+                    TMessage call = protocol.readMessageBegin();
+                    TProtocolUtil.skip(protocol, TType.STRUCT);
+                    protocol.readMessageEnd();
+                    this.calls.incrementAndGet();
+                    if (!this.respond) {
+                        socket.close();
+                        return;
+                    }
+                    protocol.writeMessageBegin(new TMessage(call.name, TMessageType.REPLY, call.seqid));
+                    protocol.writeStructBegin(new TStruct("echo_result"));
+                    protocol.writeFieldStop();
+                    protocol.writeStructEnd();
+                    protocol.writeMessageEnd();
+                    protocol.getTransport().flush();
+                }
+            } catch (Exception e) {
+                // connection closed
+            }
+        }
+
+        /**
+         * Closes the accepted connections, with a reset if specified
+         */
+        void closeConnections(boolean reset) throws IOException {
+            for (Socket socket : this.accepted) {
+                if (reset) {
+                    socket.setSoLinger(true, 0);
+                }
+                socket.close();
+            }
+            this.accepted.clear();
+        }
+
+        void close() throws IOException {
+            this.serverSocket.close();
+            this.closeConnections(false);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.thrift.test;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TProtocolFactory;
+import org.apache.thrift.transport.TMemoryBuffer;
+import org.apache.thrift.transport.TMemoryInputTransport;
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+
+/**
+ * <code>ClientTransport</code> is the transport of a proxied client, for use in tests. It holds a single call, written using an
+ * {@link EchoService.Client}, exposes the buffer of the call as the transport of a client connection does and collects the response
+ * relayed to it.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class ClientTransport extends TTransport {
+
+    private final TMemoryInputTransport input;
+    private final TMemoryBuffer output = new TMemoryBuffer(64);
+
+    /** The client that wrote the call, which reads the response*/
+    private final EchoService.Client client;
+
+    /**
+     * Constructor for this class
+     * @param protocolFactory the protocol of the client
+     * @param call writes the call using the specified client
+     */
+    public ClientTransport(TProtocolFactory protocolFactory, Call call) throws TException {
+        TMemoryBuffer buffer = new TMemoryBuffer(64);
+        this.client = new EchoService.Client(protocolFactory.getProtocol(this.output), protocolFactory.getProtocol(buffer));
+        call.write(this.client);
+        this.input = new TMemoryInputTransport(buffer.getArray(), 0, buffer.length());
+    }
+
+    /**
+     * Returns the client that wrote the call, to read the response relayed to this transport with
+     */
+    public EchoService.Client getClient() {
+        return this.client;
+    }
+
+    /**
+     * Returns the number of bytes relayed to this transport
+     */
+    public int getResponseLength() {
+        return this.output.length();
+    }
+
+    public boolean isOpen() {
+        return true;
+    }
+    public void open() {
+    }
+    public void close() {
+    }
+    public int read(byte[] buf, int off, int len) throws TTransportException {
+        return this.input.read(buf, off, len);
+    }
+    public void write(byte[] buf, int off, int len) throws TTransportException {
+        this.output.write(buf, off, len);
+    }
+    public byte[] getBuffer() {
+        return this.input.getBuffer();
+    }
+    public int getBufferPosition() {
+        return this.input.getBufferPosition();
+    }
+    public int getBytesRemainingInBuffer() {
+        return this.input.getBytesRemainingInBuffer();
+    }
+    public void consumeBuffer(int len) {
+        this.input.consumeBuffer(len);
+    }
+
+    /**
+     * Writes the call held by a ClientTransport
+     */
+    public interface Call {
+        public void write(EchoService.Client client) throws TException;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.thrift.test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.thrift.TProcessor;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolFactory;
+import org.apache.thrift.transport.TFramedTransport;
+import org.apache.thrift.transport.TSocket;
+import org.apache.thrift.transport.TTransport;
+
+/**
+ * <code>EchoServer</code> is a target server of the {@link EchoService}, for use in tests. It speaks the specified protocol over framed or
+ * unframed sockets and counts the connections it accepts and the calls it serves. Messages published to it are queued for inspection.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class EchoServer implements EchoService.Iface {
+
+    /** The number of connections accepted and calls to echo() served*/
+    public final AtomicInteger connections = new AtomicInteger();
+    public final AtomicInteger calls = new AtomicInteger();
+
+    /** The messages published*/
+    public final BlockingQueue<String> published = new LinkedBlockingQueue<String>();
+
+    private final ServerSocket serverSocket = new ServerSocket(0);
+    private final List<Socket> accepted = new CopyOnWriteArrayList<Socket>();
+    private final TProtocolFactory protocolFactory;
+    private final boolean framed;
+    private final TProcessor processor = new EchoService.Processor<EchoServer>(this);
+
+    /**
+     * Constructor for this class. Starts accepting connections
+     * @param protocolFactory the protocol to speak
+     * @param framed true if the framed transport is to be used
+     */
+    public EchoServer(TProtocolFactory protocolFactory, boolean framed) throws IOException {
+        this.protocolFactory = protocolFactory;
+        this.framed = framed;
+        this.startThread("EchoServer-" + this.getPort(), new Runnable() {
+            public void run() {
+                accept();
+            }
+        });
+    }
+
+    public String echo(String message) {
+        this.calls.incrementAndGet();
+        return message;
+    }
+
+    public void publish(String message) {
+        this.published.add(message);
+    }
+
+    /**
+     * Returns the port this server is listening on
+     */
+    public int getPort() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    /**
+     * Stops accepting connections and closes the accepted ones
+     */
+    public void close() throws IOException {
+        this.serverSocket.close();
+        for (Socket socket : this.accepted) {
+            socket.close();
+        }
+    }
+
+    private void accept() {
+        while (!this.serverSocket.isClosed()) {
+            try {
+                final Socket socket = this.serverSocket.accept();
+                this.connections.incrementAndGet();
+                this.accepted.add(socket);
+                this.startThread("EchoServer-Connection", new Runnable() {
+                    public void run() {
+                        serve(socket);
+                    }
+                });
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try {
+            TTransport transport = new TSocket(socket);
+            if (this.framed) {
+                transport = new TFramedTransport(transport);
+            }
+            TProtocol protocol = this.protocolFactory.getProtocol(transport);
+            while (this.processor.process(protocol, protocol)) {
+                // serve calls till the connection is closed
+            }
+        } catch (Exception e) {
+            // connection closed
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    private void startThread(String name, Runnable runnable) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.thrift.test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.thrift.ProcessFunction;
+import org.apache.thrift.TApplicationException;
+import org.apache.thrift.TBase;
+import org.apache.thrift.TBaseProcessor;
+import org.apache.thrift.TException;
+import org.apache.thrift.TFieldIdEnum;
+import org.apache.thrift.TServiceClient;
+import org.apache.thrift.protocol.TField;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolUtil;
+import org.apache.thrift.protocol.TStruct;
+import org.apache.thrift.protocol.TType;
+
+/**
+ * <code>EchoService</code> is a Thrift service laid out as the Thrift compiler generates it, for use in tests. It has a method that returns
+ * the message it is called with and a oneway method :
+ * <pre>
+ * service EchoService {
+ *     string echo(1:string message),
+ *     oneway void publish(1:string message)
+ * }
+ * </pre>
+ * The argument and result structs share an implementation, as they each have a single string field.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class EchoService {
+
+    public interface Iface {
+
+        public String echo(String message) throws TException;
+
+        public void publish(String message) throws TException;
+
+    }
+
+    public static class Client extends TServiceClient implements Iface {
+
+        public Client(TProtocol prot) {
+            super(prot, prot);
+        }
+
+        public Client(TProtocol iprot, TProtocol oprot) {
+            super(iprot, oprot);
+        }
+
+        public String echo(String message) throws TException {
+            this.send_echo(message);
+            return this.recv_echo();
+        }
+
+        public void send_echo(String message) throws TException {
+            echo_args args = new echo_args();
+            args.value = message;
+            this.sendBase("echo", args);
+        }
+
+        public String recv_echo() throws TException {
+            echo_result result = new echo_result();
+            this.receiveBase(result, "echo");
+            if (result.value != null) {
+                return result.value;
+            }
+            throw new TApplicationException(TApplicationException.MISSING_RESULT, "echo failed: unknown result");
+        }
+
+        public void publish(String message) throws TException {
+            this.send_publish(message);
+        }
+
+        public void send_publish(String message) throws TException {
+            publish_args args = new publish_args();
+            args.value = message;
+            this.sendBase("publish", args); // sent with the CALL message type, as by clients generated by Thrift 0.9.0
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    public static class Processor<I extends Iface> extends TBaseProcessor<I> {
+
+        public Processor(I iface) {
+            super(iface, getProcessMap(new HashMap<String, ProcessFunction<I, ? extends TBase>>()));
+        }
+
+        private static <I extends Iface> Map<String, ProcessFunction<I, ? extends TBase>> getProcessMap(
+                Map<String, ProcessFunction<I, ? extends TBase>> processMap) {
+            processMap.put("echo", new echo<I>());
+            processMap.put("publish", new publish<I>());
+            return processMap;
+        }
+
+        public static class echo<I extends Iface> extends ProcessFunction<I, echo_args> {
+            public echo() {
+                super("echo");
+            }
+            public echo_args getEmptyArgsInstance() {
+                return new echo_args();
+            }
+            protected boolean isOneway() {
+                return false;
+            }
+            public echo_result getResult(I iface, echo_args args) throws TException {
+                echo_result result = new echo_result();
+                result.value = iface.echo(args.value);
+                return result;
+            }
+        }
+
+        public static class publish<I extends Iface> extends ProcessFunction<I, publish_args> {
+            public publish() {
+                super("publish");
+            }
+            public publish_args getEmptyArgsInstance() {
+                return new publish_args();
+            }
+            protected boolean isOneway() {
+                return true;
+            }
+            public TBase getResult(I iface, publish_args args) throws TException {
+                iface.publish(args.value);
+                return null;
+            }
+        }
+    }
+
+    public static class echo_args extends StringStruct<echo_args> {
+        public echo_args() {
+            super("echo_args", _Fields.MESSAGE);
+        }
+        protected echo_args newInstance() {
+            return new echo_args();
+        }
+        public String getMessage() {
+            return this.value;
+        }
+    }
+
+    public static class echo_result extends StringStruct<echo_result> {
+        public echo_result() {
+            super("echo_result", _Fields.SUCCESS);
+        }
+        protected echo_result newInstance() {
+            return new echo_result();
+        }
+        public String getSuccess() {
+            return this.value;
+        }
+    }
+
+    public static class publish_args extends StringStruct<publish_args> {
+        public publish_args() {
+            super("publish_args", _Fields.MESSAGE);
+        }
+        protected publish_args newInstance() {
+            return new publish_args();
+        }
+        public String getMessage() {
+            return this.value;
+        }
+    }
+
+    /** The fields of the argument and result structs*/
+    public enum _Fields implements TFieldIdEnum {
+        SUCCESS((short) 0, "success"),
+        MESSAGE((short) 1, "message");
+
+        private final short thriftId;
+        private final String fieldName;
+
+        _Fields(short thriftId, String fieldName) {
+            this.thriftId = thriftId;
+            this.fieldName = fieldName;
+        }
+
+        public short getThriftFieldId() {
+            return this.thriftId;
+        }
+        public String getFieldName() {
+            return this.fieldName;
+        }
+    }
+
+    /**
+     * A struct with a single, optional string field
+     */
+    private static abstract class StringStruct<T extends StringStruct<T>> implements TBase<T, _Fields> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final TStruct struct;
+        private final _Fields field;
+        protected String value;
+
+        StringStruct(String name, _Fields field) {
+            this.struct = new TStruct(name);
+            this.field = field;
+        }
+
+        protected abstract T newInstance();
+
+        public void read(TProtocol iprot) throws TException {
+            iprot.readStructBegin();
+            while (true) {
+                TField field = iprot.readFieldBegin();
+                if (field.type == TType.STOP) {
+                    break;
+                }
+                if (field.id == this.field.getThriftFieldId() && field.type == TType.STRING) {
+                    this.value = iprot.readString();
+                } else {
+                    TProtocolUtil.skip(iprot, field.type);
+                }
+                iprot.readFieldEnd();
+            }
+            iprot.readStructEnd();
+        }
+
+        public void write(TProtocol oprot) throws TException {
+            oprot.writeStructBegin(this.struct);
+            if (this.value != null) {
+                oprot.writeFieldBegin(new TField(this.field.getFieldName(), TType.STRING, this.field.getThriftFieldId()));
+                oprot.writeString(this.value);
+                oprot.writeFieldEnd();
+            }
+            oprot.writeFieldStop();
+            oprot.writeStructEnd();
+        }
+
+        public _Fields fieldForId(int fieldId) {
+            return fieldId == this.field.getThriftFieldId() ? this.field : null;
+        }
+        public boolean isSet(_Fields field) {
+            return field == this.field && this.value != null;
+        }
+        public Object getFieldValue(_Fields field) {
+            return field == this.field ? this.value : null;
+        }
+        public void setFieldValue(_Fields field, Object value) {
+            if (field == this.field) {
+                this.value = (String) value;
+            }
+        }
+        public T deepCopy() {
+            T copy = this.newInstance();
+            copy.value = this.value;
+            return copy;
+        }
+        public void clear() {
+            this.value = null;
+        }
+        public int compareTo(T other) {
+            if (this.value == null) {
+                return other.value == null ? 0 : -1;
+            }
+            return other.value == null ? 1 : this.value.compareTo(other.value);
+        }
+        public String toString() {
+            return this.struct.name + "(" + this.field.getFieldName() + ":" + this.value + ")";
+        }
+    }
+}
@@ -23,7 +23,7 @@ import java.util.List;
 import org.trpr.platform.model.event.PlatformEvent;
 
 import com.flipkart.phantom.task.spi.Executor;
-import com.netflix.hystrix.HystrixCommand;
+import com.netflix.hystrix.HystrixInvokableInfo;
 import com.netflix.hystrix.HystrixEventType;
 import com.twitter.zipkin.gen.Span;
 
@@ -240,7 +240,7 @@ public class ServiceProxyEvent extends PlatformEvent {
          */
         @SuppressWarnings({ "rawtypes", "unchecked" })
 		public Builder withCommandData(Executor executor) {
-            HystrixCommand command = (HystrixCommand) executor;
+            HystrixInvokableInfo<?> command = (HystrixInvokableInfo<?>) executor;
             withEventList(command.getExecutionEvents())
                     .withExecutionTime(command.getExecutionTimeInMilliseconds())
                     .withException((Exception) command.getFailedExecutionException());
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.event;
+
+import java.util.List;
+
+/**
+ * <code>ServiceProxyEventBatchConsumer</code> consumes {@link ServiceProxyEvent} instances a batch at a time. Batch consumers are called by a
+ * {@link ServiceProxyEventDispatcher} with the events its dispatcher threads take from the ring buffer, in the order they were dispatched.
+ * Batch consumers pick the events they are interested in from each batch, usually by the endpoint URIs they subscribe to.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public interface ServiceProxyEventBatchConsumer {
+
+    /**
+     * Consumes the specified batch of events
+     * @param events the ServiceProxyEvent instances, in the order they were dispatched
+     */
+    public void consumeEvents(List<ServiceProxyEvent> events);
+
+}
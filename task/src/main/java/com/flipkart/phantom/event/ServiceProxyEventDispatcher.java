@@ -0,0 +1,412 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+import org.trpr.platform.core.spi.event.EndpointEventProducer;
+
+/**
+ * <code>ServiceProxyEventDispatcher</code> publishes {@link ServiceProxyEvent} instances from dispatcher threads, so that the threads handling requests
+ * only hand events over and do not wait on the consumers of the events. Events are held in a bounded ring buffer that publishing threads add to and
+ * dispatcher threads take from without locks. Each dispatcher thread takes up to {@link #setBatchSize(int)} events at a time and delivers them, in the
+ * order taken :
+ * <ul>
+ * <li>To each of the configured {@link ServiceProxyEventBatchConsumer}s, such as the {@link com.flipkart.phantom.event.consumer.RequestLogger}, as one
+ * batch. Batch consumers are called directly and not through the event multicaster, so events are not also published to the endpoints
+ * in this case.</li>
+ * <li>Otherwise to the endpoints of their event types, one event at a time, using the configured {@link EndpointEventProducer}.</li>
+ * </ul>
+ * <p/>
+ * When the ring buffer is full, events are either dropped and counted ({@link OverflowPolicy#DROP_NEWEST}) or the publishing thread waits for space
+ * ({@link OverflowPolicy#BLOCK}). BLOCK stalls whichever thread dispatches the event, so it must not be used when events are dispatched from Netty
+ * I/O threads, as they are by the asynchronous proxies : a stalled I/O thread stops serving all of its channels. Idle dispatcher threads, and
+ * publishing threads waiting for space, park until they are signalled and do not poll. Events in the ring buffer are published before the
+ * dispatcher threads stop on {@link #destroy()}, and events dispatched afterwards are published on the calling thread.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class ServiceProxyEventDispatcher implements InitializingBean, DisposableBean {
+
+    /** Logger for this class*/
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServiceProxyEventDispatcher.class);
+
+    /** The policies for events dispatched when the ring buffer is full*/
+    public enum OverflowPolicy {
+        /** Drop the event being dispatched, and count it*/
+        DROP_NEWEST,
+        /** Wait for the dispatcher threads to make space for the event. Not to be used when events are dispatched from I/O threads*/
+        BLOCK
+    }
+
+    /** Default values of the properties*/
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final int DEFAULT_BATCH_SIZE = 256;
+    private static final long DEFAULT_SHUTDOWN_TIMEOUT_MILLIS = 5000;
+
+    /** The number of times an idle dispatcher thread looks for events before parking*/
+    private static final int IDLE_SPINS = 100;
+
+    /** The EndpointEventProducer that events are published to, if no batch consumers are set*/
+    private EndpointEventProducer eventProducer;
+
+    /** The consumers that batches of events are delivered to*/
+    private List<ServiceProxyEventBatchConsumer> batchConsumers = Collections.emptyList();
+
+    /** The capacity of the ring buffer, rounded up to a power of two*/
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+    /** The number of dispatcher threads*/
+    private int dispatcherThreads = 1;
+
+    /** The most events a dispatcher thread takes from the ring buffer at a time*/
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /** The policy for events dispatched when the ring buffer is full*/
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_NEWEST;
+
+    /** The longest time to wait for the dispatcher threads to publish the buffered events on shutdown*/
+    private long shutdownTimeoutMillis = DEFAULT_SHUTDOWN_TIMEOUT_MILLIS;
+
+    /** The ring buffer of events*/
+    private RingBuffer ringBuffer;
+
+    /** The dispatcher threads*/
+    private Thread[] threads;
+
+    /** The dispatcher threads parked while the ring buffer is empty, and the publishing threads parked while it is full under the BLOCK policy*/
+    private final Queue<Thread> idleThreads = new ConcurrentLinkedQueue<Thread>();
+    private final Queue<Thread> blockedThreads = new ConcurrentLinkedQueue<Thread>();
+
+    /** The number of events dropped because the ring buffer was full*/
+    private final AtomicLong droppedEvents = new AtomicLong();
+
+    /** Flag that is true while the dispatcher threads run*/
+    private volatile boolean running;
+
+    /**
+     * Interface method implementation. Checks for mandatory properties and starts the dispatcher threads
+     * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
+     */
+    public void afterPropertiesSet() throws Exception {
+        Assert.isTrue(this.eventProducer != null || !this.batchConsumers.isEmpty(), "The 'eventProducer' may not be null, if no 'batchConsumers' are set");
+        Assert.isTrue(this.bufferSize > 0, "The 'bufferSize' must be greater than 0");
+        Assert.isTrue(this.dispatcherThreads > 0, "The 'dispatcherThreads' must be greater than 0");
+        Assert.isTrue(this.batchSize > 0, "The 'batchSize' must be greater than 0");
+        Assert.notNull(this.overflowPolicy, "The 'overflowPolicy' may not be null");
+        this.ringBuffer = new RingBuffer(this.bufferSize);
+        this.running = true;
+        this.threads = new Thread[this.dispatcherThreads];
+        for (int i = 0; i < this.threads.length; i++) {
+            this.threads[i] = new Thread(this::dispatchEvents, "ServiceProxyEventDispatcher-" + i);
+            this.threads[i].setDaemon(true);
+            this.threads[i].start();
+        }
+    }
+
+    /**
+     * Interface method implementation. Stops the dispatcher threads once they have published the buffered events, or the shutdown timeout elapses
+     * @see org.springframework.beans.factory.DisposableBean#destroy()
+     */
+    public void destroy() throws Exception {
+        if (!this.running) {
+            return;
+        }
+        this.running = false;
+        long deadline = System.currentTimeMillis() + this.shutdownTimeoutMillis;
+        unparkAll(this.blockedThreads); // the blocked publishing threads publish their events themselves
+        for (Thread thread : this.threads) {
+            LockSupport.unpark(thread);
+            thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+        }
+        int remaining = this.ringBuffer.size();
+        if (remaining > 0) {
+            LOGGER.warn("Service proxy events not published on shutdown : " + remaining);
+        }
+        if (this.droppedEvents.get() > 0) {
+            LOGGER.warn("Service proxy events dropped as the ring buffer was full : " + this.droppedEvents.get());
+        }
+    }
+
+    /**
+     * Dispatches the specified event, to be published by a dispatcher thread. The event is published on the calling thread if the dispatcher has
+     * been shut down
+     * @param event the ServiceProxyEvent to publish
+     */
+    public void dispatch(ServiceProxyEvent event) {
+        if (!this.running) {
+            this.publish(Collections.singletonList(event));
+            return;
+        }
+        while (!this.ringBuffer.offer(event)) {
+            if (this.overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+                long dropped = this.droppedEvents.incrementAndGet();
+                if ((dropped & (dropped - 1)) == 0) { // logged at every power of two, to not flood the logs
+                    LOGGER.warn("Service proxy event dropped as the ring buffer is full. Dropped events : " + dropped);
+                }
+                return;
+            }
+            if (!this.running) {
+                this.publish(Collections.singletonList(event));
+                return;
+            }
+            // wait to be signalled by a dispatcher thread once it has taken events. Queued before looking again, so that the signal is not missed
+            Thread thread = Thread.currentThread();
+            this.blockedThreads.add(thread);
+            if (this.ringBuffer.isFull() && this.running) {
+                LockSupport.park(this);
+            }
+            this.blockedThreads.remove(thread);
+        }
+        if (!this.running) { // the dispatcher threads may have stopped before the event was added
+            this.drain();
+            return;
+        }
+        Thread idleThread = this.idleThreads.poll(); // a dispatcher thread is parked only while the ring buffer is empty
+        if (idleThread != null) {
+            LockSupport.unpark(idleThread);
+        }
+    }
+
+    /**
+     * The loop run by the dispatcher threads. Takes batches of events from the ring buffer and publishes them, parking until an event is
+     * dispatched when there are none. Exits once the dispatcher is shut down and the ring buffer is empty
+     */
+    private void dispatchEvents() {
+        List<ServiceProxyEvent> batch = new ArrayList<ServiceProxyEvent>(this.batchSize);
+        int idleCount = 0;
+        while (true) {
+            this.ringBuffer.drainTo(batch, this.batchSize);
+            if (batch.isEmpty()) {
+                if (!this.running) {
+                    break;
+                }
+                if (++idleCount > IDLE_SPINS) {
+                    // queued before looking again, so that an event dispatched meanwhile is not missed
+                    Thread thread = Thread.currentThread();
+                    this.idleThreads.add(thread);
+                    if (this.ringBuffer.isEmpty() && this.running) {
+                        LockSupport.park(this);
+                    }
+                    this.idleThreads.remove(thread);
+                }
+                continue;
+            }
+            idleCount = 0;
+            unparkAll(this.blockedThreads); // there is space in the ring buffer now
+            this.publish(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Unparks the threads in the specified queue
+     * @param parkedThreads the queue of parked threads
+     */
+    private static void unparkAll(Queue<Thread> parkedThreads) {
+        Thread thread;
+        while ((thread = parkedThreads.poll()) != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Publishes the events left in the ring buffer on the calling thread
+     */
+    private void drain() {
+        List<ServiceProxyEvent> batch = new ArrayList<ServiceProxyEvent>();
+        this.ringBuffer.drainTo(batch, Integer.MAX_VALUE);
+        if (!batch.isEmpty()) {
+            this.publish(batch);
+        }
+    }
+
+    /**
+     * Delivers the specified batch of events to the batch consumers, or publishes each event to the endpoint of its event type if there are none.
+     * Errors in consuming the events are logged, so that they do not stop dispatching
+     * @param batch the ServiceProxyEvent instances to publish
+     */
+    private void publish(List<ServiceProxyEvent> batch) {
+        if (!this.batchConsumers.isEmpty()) {
+            for (ServiceProxyEventBatchConsumer batchConsumer : this.batchConsumers) {
+                try {
+                    batchConsumer.consumeEvents(batch);
+                } catch (Exception e) {
+                    LOGGER.error("Error consuming service proxy events in : " + batchConsumer.getClass().getName(), e);
+                }
+            }
+            return;
+        }
+        for (ServiceProxyEvent event : batch) {
+            try {
+                this.eventProducer.publishEvent(event, ServiceProxyEventProducer.EVENT_PUBLISHING_URI + event.getEventType());
+            } catch (Exception e) {
+                LOGGER.error("Error publishing service proxy event of type : " + event.getEventType(), e);
+            }
+        }
+    }
+
+    /**
+     * A bounded ring buffer that many threads may add to and take from without locks. Each slot has a sequence number that tells whether it
+     * is free to be written at, or holds an event to be read at, a position of the ring buffer. Positions are claimed by compare-and-set.
+     * Package-private for tests
+     */
+    static class RingBuffer {
+
+        private final AtomicReferenceArray<ServiceProxyEvent> events;
+        private final AtomicLongArray sequences;
+        private final int mask;
+        private final AtomicLong writePosition = new AtomicLong();
+        private final AtomicLong readPosition = new AtomicLong();
+
+        RingBuffer(int size) {
+            int capacity = Integer.highestOneBit(size);
+            if (capacity < size) {
+                capacity <<= 1;
+            }
+            this.events = new AtomicReferenceArray<ServiceProxyEvent>(capacity);
+            this.sequences = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) {
+                this.sequences.set(i, i);
+            }
+            this.mask = capacity - 1;
+        }
+
+        /**
+         * Adds the specified event, returning false if the ring buffer is full
+         */
+        boolean offer(ServiceProxyEvent event) {
+            while (true) {
+                long position = this.writePosition.get();
+                int index = (int) position & this.mask;
+                long difference = this.sequences.get(index) - position;
+                if (difference == 0) {
+                    if (this.writePosition.compareAndSet(position, position + 1)) {
+                        this.events.lazySet(index, event);
+                        this.sequences.set(index, position + 1); // the event may now be read
+                        return true;
+                    }
+                } else if (difference < 0) {
+                    return false; // the slot still holds the event written one lap earlier
+                }
+            }
+        }
+
+        /**
+         * Takes up to the specified number of events, adding them to the specified list
+         */
+        void drainTo(List<ServiceProxyEvent> batch, int maxEvents) {
+            while (batch.size() < maxEvents) {
+                long position = this.readPosition.get();
+                int index = (int) position & this.mask;
+                long difference = this.sequences.get(index) - (position + 1);
+                if (difference == 0) {
+                    if (this.readPosition.compareAndSet(position, position + 1)) {
+                        batch.add(this.events.get(index));
+                        this.events.lazySet(index, null);
+                        this.sequences.set(index, position + this.mask + 1); // the slot may now be written in the next lap
+                    }
+                } else if (difference < 0) {
+                    return; // no event written at this position yet
+                }
+            }
+        }
+
+        /**
+         * Returns the number of events in the ring buffer
+         */
+        int size() {
+            return (int) Math.max(0, this.writePosition.get() - this.readPosition.get());
+        }
+
+        /**
+         * Returns true if the ring buffer holds no events. Positions claimed by writers count as events, even if not yet readable
+         */
+        boolean isEmpty() {
+            return this.size() == 0;
+        }
+
+        /**
+         * Returns true if all positions of the ring buffer are claimed
+         */
+        boolean isFull() {
+            return this.size() > this.mask;
+        }
+    }
+
+    /** Start Getter/Setter methods*/
+    public EndpointEventProducer getEventProducer() {
+        return this.eventProducer;
+    }
+    public void setEventProducer(EndpointEventProducer eventProducer) {
+        this.eventProducer = eventProducer;
+    }
+    public List<ServiceProxyEventBatchConsumer> getBatchConsumers() {
+        return this.batchConsumers;
+    }
+    public void setBatchConsumers(List<ServiceProxyEventBatchConsumer> batchConsumers) {
+        this.batchConsumers = batchConsumers;
+    }
+    public int getBufferSize() {
+        return this.bufferSize;
+    }
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+    public int getDispatcherThreads() {
+        return this.dispatcherThreads;
+    }
+    public void setDispatcherThreads(int dispatcherThreads) {
+        this.dispatcherThreads = dispatcherThreads;
+    }
+    public int getBatchSize() {
+        return this.batchSize;
+    }
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+    public OverflowPolicy getOverflowPolicy() {
+        return this.overflowPolicy;
+    }
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+    public long getShutdownTimeoutMillis() {
+        return this.shutdownTimeoutMillis;
+    }
+    public void setShutdownTimeoutMillis(long shutdownTimeoutMillis) {
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+    }
+    public long getDroppedEvents() {
+        return this.droppedEvents.get();
+    }
+    /** End Getter/Setter methods*/
+}
@@ -22,6 +22,7 @@ import org.trpr.platform.core.spi.event.EndpointEventProducer;
  * The <Code>ServiceProxyEventProducer</Code> class which encodes publishing logic of {@link ServiceProxyEvent}
  * This method used to prepare {@link ServiceProxyEvent} and push it to proper
  * end point based on the source of event.
+ * Events are published on the calling thread, or handed over to a {@link ServiceProxyEventDispatcher} to be published by its threads, if one is set.
  *
  * @author amanpreet.singh
  * @version 1.0.0
@@ -34,11 +35,18 @@ public class ServiceProxyEventProducer {
 
     private EndpointEventProducer eventProducer;
 
+    /** The optional dispatcher that publishes events asynchronously*/
+    private ServiceProxyEventDispatcher eventDispatcher;
+
     /**
      * Publishes service proxy event to appropriate end point based on event type.
      * @param event Service Proxy event to be published.
      */
     public void publishEvent(ServiceProxyEvent event) {
+        if (this.eventDispatcher != null) {
+            this.eventDispatcher.dispatch(event);
+            return;
+        }
         final String endpointURI = EVENT_PUBLISHING_URI + event.getEventType();
         eventProducer.publishEvent(event, endpointURI);
     }
@@ -47,5 +55,8 @@ public class ServiceProxyEventProducer {
     public void setEventProducer(EndpointEventProducer eventProducer) {
         this.eventProducer = eventProducer;
     }
+    public void setEventDispatcher(ServiceProxyEventDispatcher eventDispatcher) {
+        this.eventDispatcher = eventDispatcher;
+    }
     /** End Getter/Setter methods */
 }
@@ -15,21 +15,25 @@
  */
 package com.flipkart.phantom.event.consumer;
 
+import java.util.List;
+
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.util.Assert;
 import org.trpr.platform.core.impl.event.AbstractEndpointEventConsumerImpl;
 import org.trpr.platform.model.event.PlatformEvent;
 
 import com.flipkart.phantom.event.ServiceProxyEvent;
+import com.flipkart.phantom.event.ServiceProxyEventBatchConsumer;
 import com.github.kristofa.brave.SpanCollector;
 
 /**
  * <code>PushToZipkinEventConsumer</code> is a sub-type of {@link AbstractEndpointEventConsumerImpl} that pushes consumed events to a Zipkin collector.
+ * Also consumes batches of events, forwarded by the {@link RequestLogger} it is registered with.
  * 
  * @author Regunath B
  * @version 1.0, 21st Nov, 2014
  */
-public class PushToZipkinEventConsumer extends AbstractEndpointEventConsumerImpl implements InitializingBean {
+public class PushToZipkinEventConsumer extends AbstractEndpointEventConsumerImpl implements InitializingBean, ServiceProxyEventBatchConsumer {
 
     /** The SpanCollector instance*/
     private SpanCollector spanCollector;
@@ -59,6 +63,16 @@ public class PushToZipkinEventConsumer extends AbstractEndpointEventConsumerImpl
         }		
 	}
 
+	/**
+	 * Interface method implementation. Pushes the tracing information contained in each of the events to a Zipkin collector
+	 * @see com.flipkart.phantom.event.ServiceProxyEventBatchConsumer#consumeEvents(java.util.List)
+	 */
+	public void consumeEvents(List<ServiceProxyEvent> events) {
+		for (ServiceProxyEvent event : events) {
+			this.spanCollector.collect(event.getSpan());
+		}
+	}
+
 	/** Getter/Setter methods */
 	public void setSpanCollector(SpanCollector spanCollector) {
 		this.spanCollector = spanCollector;
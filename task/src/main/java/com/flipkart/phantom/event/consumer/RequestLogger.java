@@ -15,9 +15,11 @@
  */
 package com.flipkart.phantom.event.consumer;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -32,6 +34,7 @@ import org.trpr.platform.core.spi.event.EndpointEventConsumer;
 import org.trpr.platform.model.event.PlatformEvent;
 
 import com.flipkart.phantom.event.ServiceProxyEvent;
+import com.flipkart.phantom.event.ServiceProxyEventBatchConsumer;
 import com.flipkart.phantom.event.ServiceProxyEventProducer;
 import com.netflix.hystrix.HystrixEventType;
 
@@ -48,13 +51,16 @@ import com.netflix.hystrix.HystrixEventType;
  * <p/>
  * To enable this request logger, declare it in application context with
  * events to log as subscriptions.
+ * <p/>
+ * Batches of events delivered by a {@link com.flipkart.phantom.event.ServiceProxyEventDispatcher} are filtered by the subscriptions, and the
+ * events for registered consumers that are batch consumers too are forwarded to them as one batch per consumer.
  *
  * @author kartikbu
  * @author amanpreet.singh
  * @version 1.0
  * @created 10/10/13 5:48 PM
  */
-public class RequestLogger extends AbstractEndpointEventConsumerImpl {
+public class RequestLogger extends AbstractEndpointEventConsumerImpl implements ServiceProxyEventBatchConsumer {
 
     /** Logger for this class */
     private static final Logger LOGGER = LoggerFactory.getLogger(RequestLogger.class);
@@ -81,6 +87,42 @@ public class RequestLogger extends AbstractEndpointEventConsumerImpl {
         }
     }
     
+    /**
+     * Interface method implementation. Logs or forwards the events in the specified batch that match the subscriptions of this consumer
+     * @see com.flipkart.phantom.event.ServiceProxyEventBatchConsumer#consumeEvents(java.util.List)
+     */
+    public void consumeEvents(List<ServiceProxyEvent> events) {
+        String[] subscriptions = this.getSubscriptions();
+        if (subscriptions == null) {
+            return;
+        }
+        List<String> subscribedEndpoints = Arrays.asList(subscriptions);
+        Map<ServiceProxyEventBatchConsumer, List<ServiceProxyEvent>> forwardedBatches = new LinkedHashMap<ServiceProxyEventBatchConsumer, List<ServiceProxyEvent>>();
+        for (ServiceProxyEvent serviceProxyEvent : events) {
+            String subscriptionKey = ServiceProxyEventProducer.EVENT_PUBLISHING_URI + serviceProxyEvent.getEventType();
+            if (!subscribedEndpoints.contains(subscriptionKey)) {
+                continue;
+            }
+            EndpointEventConsumer eventConsumer = this.subscriptionConsumers.get(subscriptionKey);
+            if (eventConsumer instanceof ServiceProxyEventBatchConsumer) {
+                ServiceProxyEventBatchConsumer batchConsumer = (ServiceProxyEventBatchConsumer) eventConsumer;
+                List<ServiceProxyEvent> forwardedBatch = forwardedBatches.get(batchConsumer);
+                if (forwardedBatch == null) {
+                    forwardedBatch = new ArrayList<ServiceProxyEvent>();
+                    forwardedBatches.put(batchConsumer, forwardedBatch);
+                }
+                forwardedBatch.add(serviceProxyEvent);
+            } else if (eventConsumer != null) {
+                eventConsumer.onApplicationEvent(new PlatformApplicationEvent(serviceProxyEvent));
+            } else {
+                log(serviceProxyEvent);
+            }
+        }
+        for (Map.Entry<ServiceProxyEventBatchConsumer, List<ServiceProxyEvent>> forwardedBatch : forwardedBatches.entrySet()) {
+            forwardedBatch.getKey().consumeEvents(forwardedBatch.getValue());
+        }
+    }
+
     /**
      * Adds the specified endpoint URI to the subscriptions list of this consumer. Forwards all received matching callbacks to the specified EndpointEventConsumer
      * @param endpointURI the subscription to add to the list of subscriptions
@@ -15,11 +15,10 @@
  */
 package com.flipkart.phantom.task.impl.interceptor;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import com.flipkart.phantom.task.impl.collector.EventDispatchingSpanCollector;
+import com.flipkart.phantom.task.spi.RequestHeaders;
 import com.flipkart.phantom.task.spi.RequestWrapper;
 import com.flipkart.phantom.task.spi.interceptor.RequestInterceptor;
 import com.flipkart.phantom.task.spi.interceptor.SpanNameFilter;
@@ -29,7 +28,6 @@ import com.github.kristofa.brave.ClientTracer;
 import com.github.kristofa.brave.SpanId;
 import com.github.kristofa.brave.TraceFilter;
 import com.google.common.base.Optional;
-import com.google.common.collect.Lists;
 
 /**
  * <code>ClientRequestInterceptor</code> is an implementation of {@link RequestInterceptor} that traces client requests to services and task handlers.
@@ -104,48 +102,38 @@ public class ClientRequestInterceptor<T extends RequestWrapper> implements Reque
 	 * @return an optional span name from the request
 	 */
     protected Optional<String> getSpanNameFromRequest(T request) {
-        Optional<String> spanName = Optional.absent();
-		if (request.getHeaders().isPresent()) {
-			for (Map.Entry<String, String> entry : request.getHeaders().get()) {
-				if (entry.getKey().equalsIgnoreCase(BraveHttpHeaders.SpanName.getName())) {
-					spanName = Optional.of(entry.getValue());
-					break;
-				}
-			}
-		}
-        return spanName;
+        Optional<RequestHeaders> headers = request.getRequestHeaders();
+        return headers.isPresent() ? Optional.fromNullable(headers.get().getHeader(BraveHttpHeaders.SpanName.getName())) :
+        	Optional.<String>absent();
     }	
 	
 	/**
-	 * Adds tracing headers to the request wrapper for the specified span.
+	 * Adds tracing headers to the request wrapper for the specified span, replacing existing tracing headers in place.
 	 * This implementation is based on the Brave ClientRequestHeaders class code
 	 * @param request the request wrapper to add tracing headers to 
 	 * @param spanId the span being executed
 	 * @param spanName the name of the span
 	 */
 	protected void addTracingHeaders(T request, SpanId spanId, String spanName) {
-		Map<String, String> headers = new HashMap<String,String>();
-		// get all existing headers and then add the trace headers
-		if (request.getHeaders().isPresent()) {
-			List<Map.Entry<String, String>>existingHeaders = request.getHeaders().get();
-			for(Map.Entry<String, String> e: existingHeaders) {
-				headers.put(e.getKey(), e.getValue());
-			}
-		}
+		// add the trace headers to the existing headers, if any
+		Optional<RequestHeaders> existingHeaders = request.getRequestHeaders();
+		RequestHeaders headers = existingHeaders.isPresent() ? existingHeaders.get() : new RequestHeaders();
         if (spanId != null) {
-        	headers.put(BraveHttpHeaders.Sampled.getName(), TRUE);
-        	headers.put(BraveHttpHeaders.TraceId.getName(), Long.toString(spanId.getTraceId(), 16));
-        	headers.put(BraveHttpHeaders.SpanId.getName(), Long.toString(spanId.getSpanId(), 16));
+        	headers.setHeader(BraveHttpHeaders.Sampled.getName(), TRUE);
+        	headers.setHeader(BraveHttpHeaders.TraceId.getName(), Long.toString(spanId.getTraceId(), 16));
+        	headers.setHeader(BraveHttpHeaders.SpanId.getName(), Long.toString(spanId.getSpanId(), 16));
             if (spanId.getParentSpanId() != null) {
-            	headers.put(BraveHttpHeaders.ParentSpanId.getName(),Long.toString(spanId.getParentSpanId(), 16));
+            	headers.setHeader(BraveHttpHeaders.ParentSpanId.getName(),Long.toString(spanId.getParentSpanId(), 16));
             }
             if (spanName != null) {
-            	headers.put(BraveHttpHeaders.SpanName.getName(), spanName);
+            	headers.setHeader(BraveHttpHeaders.SpanName.getName(), spanName);
             }
         } else {
-        	headers.put(BraveHttpHeaders.Sampled.getName(), FALSE);
+        	headers.setHeader(BraveHttpHeaders.Sampled.getName(), FALSE);
+        }
+        if (!existingHeaders.isPresent()) {
+        	request.setHeaders(headers);
         }
-        request.setHeaders(Lists.newArrayList(headers.entrySet()));
 	}
 
 	/** Getter/Setter methods */
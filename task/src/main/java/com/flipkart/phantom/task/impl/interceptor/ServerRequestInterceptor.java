@@ -15,10 +15,7 @@
  */
 package com.flipkart.phantom.task.impl.interceptor;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
-
+import com.flipkart.phantom.task.spi.RequestHeaders;
 import com.flipkart.phantom.task.spi.RequestWrapper;
 import com.flipkart.phantom.task.spi.interceptor.RequestInterceptor;
 import com.flipkart.phantom.task.spi.interceptor.ResponseInterceptor;
@@ -97,17 +94,14 @@ public class ServerRequestInterceptor<T extends RequestWrapper, S> implements Re
 	 */
     private TraceData getTraceDataFromHeaders(T request) {
         TraceData traceData = new TraceData();
-        if (request.getHeaders().isPresent()) {
-        	Map<String,String> headersMap = new HashMap<String,String>();
-        	for (Iterator<Map.Entry<String, String>> headers=request.getHeaders().get().iterator(); headers.hasNext();) {
-        		Map.Entry<String, String> entry = headers.next();
-            	headersMap.put(entry.getKey(), entry.getValue());
-        	}
-	        traceData.setTraceId(longOrNull(headersMap.get(BraveHttpHeaders.TraceId.getName())));
-	        traceData.setSpanId(longOrNull(headersMap.get(BraveHttpHeaders.SpanId.getName())));
-	        traceData.setParentSpanId(longOrNull(headersMap.get(BraveHttpHeaders.ParentSpanId.getName())));
-	        traceData.setShouldBeSampled(nullOrBoolean(headersMap.get(BraveHttpHeaders.Sampled.getName())));
-	        traceData.setSpanName(headersMap.get(BraveHttpHeaders.SpanName.getName()));
+        Optional<RequestHeaders> requestHeaders = request.getRequestHeaders();
+        if (requestHeaders.isPresent()) {
+        	RequestHeaders headers = requestHeaders.get();
+	        traceData.setTraceId(longOrNull(headers.getHeader(BraveHttpHeaders.TraceId.getName())));
+	        traceData.setSpanId(longOrNull(headers.getHeader(BraveHttpHeaders.SpanId.getName())));
+	        traceData.setParentSpanId(longOrNull(headers.getHeader(BraveHttpHeaders.ParentSpanId.getName())));
+	        traceData.setShouldBeSampled(nullOrBoolean(headers.getHeader(BraveHttpHeaders.Sampled.getName())));
+	        traceData.setSpanName(headers.getHeader(BraveHttpHeaders.SpanName.getName()));
         }
         return traceData;
     }
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.task.impl.loadbalancer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.flipkart.phantom.task.spi.loadbalancer.Endpoint;
+import com.flipkart.phantom.task.spi.loadbalancer.HealthChecker;
+import com.flipkart.phantom.task.spi.loadbalancer.LoadBalancer;
+
+/**
+ * <code>EndpointGroup</code> is a group of {@link Endpoint}s i.e. replicas of an upstream service, that requests are balanced across using a
+ * {@link LoadBalancer}. Endpoints are ejected from selection :
+ * <ul>
+ * <li>When the number of consecutive failed requests reaches {@link #setFailureThreshold(int)}. The endpoint is ejected for
+ * {@link #setEjectionTimeMillis(long)} and no more than {@link #setMaxEjectionPercent(int)} of the endpoints are ejected this way.</li>
+ * <li>When the optional {@link HealthChecker} reports the endpoint as unhealthy. Health is checked every {@link #setHealthCheckIntervalMillis(long)}
+ * and the endpoint is reinstated once it is reported healthy again.</li>
+ * </ul>
+ * Ejections of either kind count towards the max ejection percent.
+ * All endpoints are available for selection if all of them are ejected.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class EndpointGroup {
+
+	/** Logger for this class*/
+	private static final Logger LOGGER = LoggerFactory.getLogger(EndpointGroup.class);
+
+	/** Default values for the ejection and health check settings*/
+	private static final int DEFAULT_FAILURE_THRESHOLD = 5;
+	private static final long DEFAULT_EJECTION_TIME_MILLIS = 30000;
+	private static final int DEFAULT_MAX_EJECTION_PERCENT = 50;
+	private static final long DEFAULT_HEALTH_CHECK_INTERVAL_MILLIS = 5000;
+
+	/** The endpoints of this group*/
+	private List<Endpoint> endpoints = Collections.emptyList();
+
+	/** The load balancer used to select endpoints*/
+	private LoadBalancer loadBalancer = new RoundRobinLoadBalancer();
+
+	/** The ejection settings*/
+	private int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+	private long ejectionTimeMillis = DEFAULT_EJECTION_TIME_MILLIS;
+	private int maxEjectionPercent = DEFAULT_MAX_EJECTION_PERCENT;
+
+	/** The optional health checker and the health check interval*/
+	private HealthChecker healthChecker;
+	private long healthCheckIntervalMillis = DEFAULT_HEALTH_CHECK_INTERVAL_MILLIS;
+
+	/** The health check scheduler, if health checks are enabled*/
+	private ScheduledExecutorService healthCheckScheduler;
+
+	/**
+	 * Initializes this group. Starts health checks if a {@link HealthChecker} is set
+	 * @param name the name of this group, used to name the health check thread
+	 */
+	public void init(final String name) {
+		if (this.endpoints.isEmpty()) {
+			throw new IllegalStateException("EndpointGroup : " + name + " must have at least one endpoint");
+		}
+		if (this.healthChecker != null) {
+			this.healthCheckScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "HealthCheck-" + name);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			this.healthCheckScheduler.scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					checkHealth();
+				}
+			}, 0, this.healthCheckIntervalMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Shuts down this group. Stops health checks, if any
+	 */
+	public void shutdown() {
+		if (this.healthCheckScheduler != null) {
+			this.healthCheckScheduler.shutdownNow();
+		}
+	}
+
+	/**
+	 * Selects the endpoint for a request and records the start of the request on it. Callers must call {@link #release(Endpoint, long, boolean)}
+	 * once the request completes
+	 * @return the selected Endpoint
+	 */
+	public Endpoint select() {
+		return this.select(null);
+	}
+
+	/**
+	 * Selects the endpoint for a request, avoiding the specified endpoints if others are available, and records the start of the request on it.
+	 * Used to send retried and hedged attempts of a request to an endpoint other than the ones tried already. Callers must call
+	 * {@link #release(Endpoint, long, boolean)} once the request completes
+	 * @param excluded the endpoints to avoid, may be null
+	 * @return the selected Endpoint
+	 */
+	public Endpoint select(Collection<Endpoint> excluded) {
+		List<Endpoint> available = this.endpoints;
+		long now = System.currentTimeMillis();
+		for (Endpoint endpoint : this.endpoints) {
+			if (endpoint.isEjected(now) || (excluded != null && excluded.contains(endpoint))) { // create the list of available endpoints only if required
+				available = this.getAvailable(now, excluded);
+				if (available.isEmpty() && excluded != null) { // all others are ejected. Prefer an endpoint tried already to an ejected one
+					available = this.getAvailable(now, null);
+				}
+				if (available.isEmpty()) {
+					available = this.endpoints;
+				}
+				break;
+			}
+		}
+		Endpoint selected = this.loadBalancer.select(available);
+		selected.requestStarted();
+		return selected;
+	}
+
+	/**
+	 * Records the completion of a request on the specified endpoint. Ejects the endpoint if the failure threshold is reached
+	 * @param endpoint the Endpoint returned by {@link #select()}
+	 * @param startNanos the request start time, from {@link System#nanoTime()}
+	 * @param success true if the request succeeded, false otherwise
+	 */
+	public void release(Endpoint endpoint, long startNanos, boolean success) {
+		int consecutiveFailures = endpoint.requestCompleted(System.nanoTime() - startNanos, success);
+		if (consecutiveFailures >= this.failureThreshold) {
+			long now = System.currentTimeMillis();
+			if (!endpoint.isEjected(now) && this.canEject(now)) {
+				LOGGER.warn("Ejecting endpoint : " + endpoint + " for " + this.ejectionTimeMillis + " ms after " + consecutiveFailures + " consecutive failures");
+				endpoint.eject(now + this.ejectionTimeMillis);
+			}
+		}
+	}
+
+	/**
+	 * Checks the health of all endpoints, ejecting the unhealthy ones and reinstating the ones that are healthy again
+	 */
+	private void checkHealth() {
+		for (Endpoint endpoint : this.endpoints) {
+			boolean healthy;
+			try {
+				healthy = this.healthChecker.isHealthy(endpoint);
+			} catch (Exception e) {
+				healthy = false;
+			}
+			long now = System.currentTimeMillis();
+			if (healthy) {
+				if (endpoint.isEjected(now)) {
+					LOGGER.info("Reinstating endpoint : " + endpoint + " after successful health check");
+					endpoint.reinstate();
+				}
+			} else if (!endpoint.isEjected(now)) {
+				if (this.canEject(now)) {
+					LOGGER.warn("Ejecting endpoint : " + endpoint + " after failed health check");
+					endpoint.eject(Long.MAX_VALUE); // until the next successful health check
+				} else {
+					LOGGER.warn("Not ejecting endpoint : " + endpoint + " after failed health check, as " + this.maxEjectionPercent
+							+ "% of the endpoints are ejected already");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Helper method to return the endpoints that are not ejected and not excluded
+	 */
+	private List<Endpoint> getAvailable(long now, Collection<Endpoint> excluded) {
+		List<Endpoint> available = new ArrayList<Endpoint>(this.endpoints.size());
+		for (Endpoint candidate : this.endpoints) {
+			if (!candidate.isEjected(now) && (excluded == null || !excluded.contains(candidate))) {
+				available.add(candidate);
+			}
+		}
+		return available;
+	}
+
+	/**
+	 * Helper method to check if one more endpoint may be ejected without exceeding the max ejection percent
+	 */
+	private boolean canEject(long now) {
+		int ejected = 1;
+		for (Endpoint endpoint : this.endpoints) {
+			if (endpoint.isEjected(now)) {
+				ejected++;
+			}
+		}
+		return ejected * 100 <= this.maxEjectionPercent * this.endpoints.size();
+	}
+
+	/** Start Getter/Setter methods */
+	public List<Endpoint> getEndpoints() {
+		return this.endpoints;
+	}
+	public void setEndpoints(List<Endpoint> endpoints) {
+		this.endpoints = Collections.unmodifiableList(new ArrayList<Endpoint>(endpoints));
+	}
+	public LoadBalancer getLoadBalancer() {
+		return this.loadBalancer;
+	}
+	public void setLoadBalancer(LoadBalancer loadBalancer) {
+		this.loadBalancer = loadBalancer;
+	}
+	public void setFailureThreshold(int failureThreshold) {
+		this.failureThreshold = failureThreshold;
+	}
+	public void setEjectionTimeMillis(long ejectionTimeMillis) {
+		this.ejectionTimeMillis = ejectionTimeMillis;
+	}
+	public void setMaxEjectionPercent(int maxEjectionPercent) {
+		this.maxEjectionPercent = maxEjectionPercent;
+	}
+	public void setHealthChecker(HealthChecker healthChecker) {
+		this.healthChecker = healthChecker;
+	}
+	public void setHealthCheckIntervalMillis(long healthCheckIntervalMillis) {
+		this.healthCheckIntervalMillis = healthCheckIntervalMillis;
+	}
+	/** End Getter/Setter methods */
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.task.impl.loadbalancer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.flipkart.phantom.task.spi.loadbalancer.Endpoint;
+import com.flipkart.phantom.task.spi.loadbalancer.LoadBalancer;
+
+/**
+ * <code>LeastOutstandingRequestsLoadBalancer</code> is an implementation of {@link LoadBalancer} that selects the endpoint with the fewest
+ * outstanding requests. Ties are broken by starting the scan at a random endpoint.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class LeastOutstandingRequestsLoadBalancer implements LoadBalancer {
+
+	/**
+	 * Interface method implementation. Selects the endpoint with the fewest outstanding requests
+	 * @see com.flipkart.phantom.task.spi.loadbalancer.LoadBalancer#select(java.util.List)
+	 */
+	public Endpoint select(List<Endpoint> endpoints) {
+		int size = endpoints.size();
+		int start = ThreadLocalRandom.current().nextInt(size);
+		Endpoint selected = endpoints.get(start);
+		for (int i = 1; i < size; i++) {
+			Endpoint endpoint = endpoints.get((start + i) % size);
+			if (endpoint.getOutstandingRequests() < selected.getOutstandingRequests()) {
+				selected = endpoint;
+			}
+		}
+		return selected;
+	}
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.task.impl.loadbalancer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.flipkart.phantom.task.spi.loadbalancer.Endpoint;
+import com.flipkart.phantom.task.spi.loadbalancer.LoadBalancer;
+
+/**
+ * <code>PowerOfTwoChoicesLoadBalancer</code> is an implementation of {@link LoadBalancer} that picks two endpoints at random and selects the one
+ * with the lower cost, where cost is the latency EWMA of the endpoint scaled by its outstanding requests. Endpoints that are yet to respond
+ * have no latency EWMA and are costed at the mean latency EWMA of the endpoints, so that they are probed without winning every pick until
+ * their first responses.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class PowerOfTwoChoicesLoadBalancer implements LoadBalancer {
+
+	/**
+	 * Interface method implementation. Selects the lower cost endpoint of two random picks
+	 * @see com.flipkart.phantom.task.spi.loadbalancer.LoadBalancer#select(java.util.List)
+	 */
+	public Endpoint select(List<Endpoint> endpoints) {
+		int size = endpoints.size();
+		if (size == 1) {
+			return endpoints.get(0);
+		}
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int first = random.nextInt(size);
+		int second = random.nextInt(size - 1);
+		if (second >= first) { // ensure two distinct picks
+			second++;
+		}
+		Endpoint a = endpoints.get(first);
+		Endpoint b = endpoints.get(second);
+		double defaultLatency = a.getLatencyEwmaNanos() == 0 || b.getLatencyEwmaNanos() == 0 ? this.meanLatency(endpoints) : 0;
+		return this.cost(a, defaultLatency) <= this.cost(b, defaultLatency) ? a : b;
+	}
+
+	/**
+	 * Helper method to compute the cost of an endpoint, using the specified latency for endpoints that are yet to respond
+	 */
+	private double cost(Endpoint endpoint, double defaultLatency) {
+		double latency = endpoint.getLatencyEwmaNanos();
+		return (latency == 0 ? defaultLatency : latency) * (endpoint.getOutstandingRequests() + 1);
+	}
+
+	/**
+	 * Helper method to compute the mean latency EWMA of the endpoints that have responded. Returns a nominal latency if none have, so that
+	 * endpoints are then compared by their outstanding requests
+	 */
+	private double meanLatency(List<Endpoint> endpoints) {
+		double total = 0;
+		int responded = 0;
+		for (Endpoint endpoint : endpoints) {
+			double latency = endpoint.getLatencyEwmaNanos();
+			if (latency > 0) {
+				total += latency;
+				responded++;
+			}
+		}
+		return responded == 0 ? 1 : total / responded;
+	}
+
+}
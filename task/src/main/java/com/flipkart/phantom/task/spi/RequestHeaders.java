@@ -0,0 +1,269 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.task.spi;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * <code>RequestHeaders</code> is a mutable, ordered container of request headers where header names are matched ignoring case. Names and values
+ * are held in a single array, so headers may be looked up, added, replaced and removed in place and iterated by index using
+ * {@link #getName(int)} and {@link #getValue(int)} without creating any objects. Multiple headers with the same name are retained.
+ * <p>
+ * This class is also a {@link List} of header name-value entries so that it may be used wherever a list of headers is expected, see
+ * {@link RequestWrapper#getHeaders()}. Entries are created on access via the list methods and do not write through to this container.
+ * Instances are not thread-safe.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class RequestHeaders extends AbstractList<Map.Entry<String, String>> implements RandomAccess {
+
+    /** The default number of headers that may be held without growing*/
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /** The header names and values, at even and odd indices respectively*/
+    private String[] namesAndValues;
+
+    /** The number of headers*/
+    private int size;
+
+    /**
+     * Constructor for this class
+     */
+    public RequestHeaders() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor for this class
+     * @param capacity the number of headers that may be held without growing
+     */
+    public RequestHeaders(int capacity) {
+        this.namesAndValues = new String[Math.max(1, capacity) * 2];
+    }
+
+    /**
+     * Constructor for this class. Copies the specified headers
+     * @param headers the headers to copy
+     */
+    public RequestHeaders(List<Map.Entry<String, String>> headers) {
+        this(headers.size() + 2); // room for a few more
+        if (headers instanceof RequestHeaders) {
+            RequestHeaders requestHeaders = (RequestHeaders) headers;
+            System.arraycopy(requestHeaders.namesAndValues, 0, this.namesAndValues, 0, requestHeaders.size * 2);
+            this.size = requestHeaders.size;
+        } else {
+            for (Map.Entry<String, String> header : headers) {
+                this.addHeader(header.getKey(), header.getValue());
+            }
+        }
+    }
+
+    /**
+     * Returns the value of the first header with the specified name
+     * @param name the header name, matched ignoring case
+     * @return the header value or null if there is no such header
+     */
+    public String getHeader(String name) {
+        int index = this.indexOf(name, 0);
+        return index < 0 ? null : this.namesAndValues[index * 2 + 1];
+    }
+
+    /**
+     * Returns true if there is at least one header with the specified name
+     * @param name the header name, matched ignoring case
+     * @return true if the header exists, false otherwise
+     */
+    public boolean containsHeader(String name) {
+        return this.indexOf(name, 0) >= 0;
+    }
+
+    /**
+     * Adds a header with the specified name and value, retaining existing headers with the same name
+     * @param name the header name
+     * @param value the header value
+     */
+    public void addHeader(String name, String value) {
+        if (this.size * 2 == this.namesAndValues.length) {
+            this.namesAndValues = Arrays.copyOf(this.namesAndValues, this.namesAndValues.length * 2);
+        }
+        this.namesAndValues[this.size * 2] = name;
+        this.namesAndValues[this.size * 2 + 1] = value;
+        this.size++;
+        this.modCount++;
+    }
+
+    /**
+     * Sets the value of the header with the specified name. Replaces the value of the first existing header with the name, in place, and
+     * removes the others. Adds the header if it does not exist
+     * @param name the header name, matched ignoring case
+     * @param value the header value
+     */
+    public void setHeader(String name, String value) {
+        int index = this.indexOf(name, 0);
+        if (index < 0) {
+            this.addHeader(name, value);
+            return;
+        }
+        this.namesAndValues[index * 2 + 1] = value;
+        this.removeHeader(name, index + 1);
+    }
+
+    /**
+     * Removes all headers with the specified name
+     * @param name the header name, matched ignoring case
+     * @return true if a header was removed, false otherwise
+     */
+    public boolean removeHeader(String name) {
+        return this.removeHeader(name, 0);
+    }
+
+    /**
+     * Returns the name of the header at the specified index
+     * @param index the index of the header
+     * @return the header name
+     */
+    public String getName(int index) {
+        this.checkIndex(index);
+        return this.namesAndValues[index * 2];
+    }
+
+    /**
+     * Returns the value of the header at the specified index
+     * @param index the index of the header
+     * @return the header value
+     */
+    public String getValue(int index) {
+        this.checkIndex(index);
+        return this.namesAndValues[index * 2 + 1];
+    }
+
+    /**
+     * Interface method implementation. Returns the number of headers
+     * @see java.util.AbstractCollection#size()
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Interface method implementation. Returns an entry for the header at the specified index
+     * @see java.util.AbstractList#get(int)
+     */
+    public Map.Entry<String, String> get(int index) {
+        return new AbstractMap.SimpleImmutableEntry<String, String>(this.getName(index), this.getValue(index));
+    }
+
+    /**
+     * Overriden superclass method. Replaces the header at the specified index
+     * @see java.util.AbstractList#set(int, java.lang.Object)
+     */
+    public Map.Entry<String, String> set(int index, Map.Entry<String, String> header) {
+        Map.Entry<String, String> previous = this.get(index);
+        this.namesAndValues[index * 2] = header.getKey();
+        this.namesAndValues[index * 2 + 1] = header.getValue();
+        return previous;
+    }
+
+    /**
+     * Overriden superclass method. Inserts a header at the specified index
+     * @see java.util.AbstractList#add(int, java.lang.Object)
+     */
+    public void add(int index, Map.Entry<String, String> header) {
+        if (index < 0 || index > this.size) {
+            throw new IndexOutOfBoundsException("Index : " + index + ", Size : " + this.size);
+        }
+        this.addHeader(header.getKey(), header.getValue());
+        if (index < this.size - 1) { // shift the headers after the index and insert
+            System.arraycopy(this.namesAndValues, index * 2, this.namesAndValues, index * 2 + 2, (this.size - 1 - index) * 2);
+            this.namesAndValues[index * 2] = header.getKey();
+            this.namesAndValues[index * 2 + 1] = header.getValue();
+        }
+    }
+
+    /**
+     * Overriden superclass method. Removes the header at the specified index
+     * @see java.util.AbstractList#remove(int)
+     */
+    public Map.Entry<String, String> remove(int index) {
+        Map.Entry<String, String> previous = this.get(index);
+        System.arraycopy(this.namesAndValues, index * 2 + 2, this.namesAndValues, index * 2, (this.size - 1 - index) * 2);
+        this.size--;
+        this.namesAndValues[this.size * 2] = null;
+        this.namesAndValues[this.size * 2 + 1] = null;
+        this.modCount++;
+        return previous;
+    }
+
+    /**
+     * Overriden superclass method. Removes all headers
+     * @see java.util.AbstractList#clear()
+     */
+    public void clear() {
+        Arrays.fill(this.namesAndValues, 0, this.size * 2, null);
+        this.size = 0;
+        this.modCount++;
+    }
+
+    /**
+     * Helper method to return the index of the first header with the specified name, starting at the specified index
+     */
+    private int indexOf(String name, int from) {
+        for (int i = from; i < this.size; i++) {
+            if (name.equalsIgnoreCase(this.namesAndValues[i * 2])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Helper method to remove all headers with the specified name, starting at the specified index. Compacts the array in a single pass
+     */
+    private boolean removeHeader(String name, int from) {
+        int retained = from;
+        for (int i = from; i < this.size; i++) {
+            if (!name.equalsIgnoreCase(this.namesAndValues[i * 2])) {
+                this.namesAndValues[retained * 2] = this.namesAndValues[i * 2];
+                this.namesAndValues[retained * 2 + 1] = this.namesAndValues[i * 2 + 1];
+                retained++;
+            }
+        }
+        if (retained == this.size) {
+            return false;
+        }
+        Arrays.fill(this.namesAndValues, retained * 2, this.size * 2, null);
+        this.size = retained;
+        this.modCount++;
+        return true;
+    }
+
+    /**
+     * Helper method to check the specified index
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index : " + index + ", Size : " + this.size);
+        }
+    }
+
+}
@@ -61,6 +61,25 @@ public abstract class RequestWrapper {
 	 */
 	public abstract Optional<List<Map.Entry<String, String>>> getHeaders();
 
+	/**
+	 * Returns the request headers as a case-insensitive {@link RequestHeaders} container that may be read and modified in place. Headers set
+	 * as any other list are copied into a container once, which is then set on this request, so that all readers and writers of the headers
+	 * share the same container thereafter
+	 * @return optional request headers, absent if headers are not supported or have not been set
+	 */
+	public Optional<RequestHeaders> getRequestHeaders() {
+		Optional<List<Map.Entry<String, String>>> headers = this.getHeaders();
+		if (!headers.isPresent() || headers.get() == null) {
+			return Optional.absent();
+		}
+		if (headers.get() instanceof RequestHeaders) {
+			return Optional.of((RequestHeaders) headers.get());
+		}
+		RequestHeaders requestHeaders = new RequestHeaders(headers.get());
+		this.setHeaders(requestHeaders);
+		return Optional.of(requestHeaders);
+	}
+
 	/** Setter/Getter methods */
 	public Optional<RequestContext> getRequestContext() {
 		return requestContext;
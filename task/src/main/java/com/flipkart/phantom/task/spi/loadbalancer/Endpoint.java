@@ -0,0 +1,160 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.task.spi.loadbalancer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <code>Endpoint</code> is a host and port of an upstream service replica along with the request statistics used by a {@link LoadBalancer}
+ * to select between replicas : the number of outstanding requests, an exponentially weighted moving average (EWMA) of the response latency
+ * and the count of consecutive failures. An endpoint may be ejected i.e. excluded from selection for a period of time.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class Endpoint {
+
+	/** The weight given to the latest latency sample in the latency EWMA*/
+	private static final double LATENCY_EWMA_ALPHA = 0.3;
+
+	/** The host and port of this endpoint*/
+	private final String host;
+	private final int port;
+
+	/** The number of outstanding requests*/
+	private final AtomicInteger outstandingRequests = new AtomicInteger();
+
+	/** The latency EWMA in nanos, zero until the first response*/
+	private volatile double latencyEwmaNanos;
+
+	/** The number of consecutive failures*/
+	private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+	/** The time till which this endpoint is ejected, in millis*/
+	private volatile long ejectedUntil;
+
+	/**
+	 * Constructor for this class
+	 * @param host the endpoint host
+	 * @param port the endpoint port
+	 */
+	public Endpoint(String host, int port) {
+		this.host = host;
+		this.port = port;
+	}
+
+	/**
+	 * Creates an Endpoint from the specified address of the form host:port
+	 * @param address the endpoint address
+	 * @return the Endpoint
+	 * @throws IllegalArgumentException if the address is not of the form host:port
+	 */
+	public static Endpoint fromAddress(String address) {
+		int separator = address.lastIndexOf(':');
+		if (separator <= 0 || separator == address.length() - 1) {
+			throw new IllegalArgumentException("Endpoint address must be of the form host:port. Specified address is : " + address);
+		}
+		return new Endpoint(address.substring(0, separator).trim(), Integer.parseInt(address.substring(separator + 1).trim()));
+	}
+
+	/**
+	 * Records the start of a request to this endpoint
+	 */
+	public void requestStarted() {
+		this.outstandingRequests.incrementAndGet();
+	}
+
+	/**
+	 * Records the completion of a request to this endpoint. Only successful requests update the latency EWMA, as failures
+	 * (connect errors, resets) are often fast and would otherwise make a failing endpoint look like the least loaded one.
+	 * The consecutive failure count starts afresh once a timed ejection has lapsed, so that the endpoint gets the full failure
+	 * threshold again before being ejected a second time.
+	 * @param latencyNanos the request latency
+	 * @param success true if the request succeeded, false otherwise
+	 * @return the number of consecutive failures, including this request
+	 */
+	public int requestCompleted(long latencyNanos, boolean success) {
+		this.outstandingRequests.decrementAndGet();
+		if (success) {
+			synchronized (this) {
+				this.latencyEwmaNanos = this.latencyEwmaNanos == 0 ? latencyNanos :
+					(LATENCY_EWMA_ALPHA * latencyNanos) + ((1 - LATENCY_EWMA_ALPHA) * this.latencyEwmaNanos);
+			}
+			this.consecutiveFailures.set(0);
+			return 0;
+		}
+		synchronized (this) {
+			long ejectedUntil = this.ejectedUntil;
+			if (ejectedUntil != 0 && ejectedUntil <= System.currentTimeMillis()) { // the ejection has lapsed
+				this.ejectedUntil = 0;
+				this.consecutiveFailures.set(0);
+			}
+			return this.consecutiveFailures.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Ejects this endpoint till the specified time
+	 * @param ejectedUntil the time in millis till which this endpoint is ejected
+	 */
+	public void eject(long ejectedUntil) {
+		this.ejectedUntil = ejectedUntil;
+	}
+
+	/**
+	 * Reinstates this endpoint, if ejected, and resets the consecutive failure count
+	 */
+	public void reinstate() {
+		this.ejectedUntil = 0;
+		this.consecutiveFailures.set(0);
+	}
+
+	/**
+	 * Returns true if this endpoint is ejected at the specified time
+	 * @param now the current time in millis
+	 * @return true if ejected, false otherwise
+	 */
+	public boolean isEjected(long now) {
+		return this.ejectedUntil > now;
+	}
+
+	/**
+	 * Overriden super class method. Returns the address of this endpoint
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return this.host + ":" + this.port;
+	}
+
+	/** Start Getter methods */
+	public String getHost() {
+		return this.host;
+	}
+	public int getPort() {
+		return this.port;
+	}
+	public int getOutstandingRequests() {
+		return this.outstandingRequests.get();
+	}
+	public double getLatencyEwmaNanos() {
+		return this.latencyEwmaNanos;
+	}
+	public int getConsecutiveFailures() {
+		return this.consecutiveFailures.get();
+	}
+	/** End Getter methods */
+
+}
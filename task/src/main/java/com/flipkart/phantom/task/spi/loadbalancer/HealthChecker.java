@@ -0,0 +1,33 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.task.spi.loadbalancer;
+
+/**
+ * <code>HealthChecker</code> checks the health of an {@link Endpoint}. Used to eject unhealthy endpoints and reinstate ejected ones.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public interface HealthChecker {
+
+	/**
+	 * Checks the health of the specified endpoint
+	 * @param endpoint the Endpoint to check
+	 * @return true if the endpoint is healthy, false otherwise
+	 */
+	public boolean isHealthy(Endpoint endpoint);
+
+}
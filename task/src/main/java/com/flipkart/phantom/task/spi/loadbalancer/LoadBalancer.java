@@ -0,0 +1,35 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.flipkart.phantom.task.spi.loadbalancer;
+
+import java.util.List;
+
+/**
+ * <code>LoadBalancer</code> selects the {@link Endpoint} to send a request to. Implementations must be thread-safe.
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public interface LoadBalancer {
+
+	/**
+	 * Selects an endpoint from the specified endpoints
+	 * @param endpoints the endpoints available for selection. Is never empty
+	 * @return the selected Endpoint
+	 */
+	public Endpoint select(List<Endpoint> endpoints);
+
+}
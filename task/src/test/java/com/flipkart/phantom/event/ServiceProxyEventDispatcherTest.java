@@ -0,0 +1,196 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the {@link ServiceProxyEventDispatcher} and its {@link ServiceProxyEventDispatcher.RingBuffer}
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class ServiceProxyEventDispatcherTest {
+
+    @Test
+    public void testCapacity() {
+        ServiceProxyEventDispatcher.RingBuffer ring = new ServiceProxyEventDispatcher.RingBuffer(5);
+        for (int i = 0; i < 8; i++) {
+            assertTrue("Offer failed at : " + i, ring.offer(newEvent(i)));
+        }
+        assertTrue("Ring not full at capacity rounded up to a power of two", ring.isFull());
+        assertFalse("Offer to a full ring passed (which should not)", ring.offer(newEvent(8)));
+        assertEquals(8, ring.size());
+    }
+
+    @Test
+    public void testOrderAndWrapAround() {
+        ServiceProxyEventDispatcher.RingBuffer ring = new ServiceProxyEventDispatcher.RingBuffer(4);
+        List<ServiceProxyEvent> batch = new ArrayList<ServiceProxyEvent>();
+        int next = 0;
+        for (int lap = 0; lap < 10; lap++) {
+            for (int i = 0; i < 3; i++) {
+                assertTrue("Offer failed in lap : " + lap, ring.offer(newEvent(lap * 3 + i)));
+            }
+            ring.drainTo(batch, 2);
+            assertEquals("Batch size not limited", 2, batch.size());
+            ring.drainTo(batch, Integer.MAX_VALUE);
+            assertEquals(3, batch.size());
+            for (ServiceProxyEvent event : batch) {
+                assertEquals("Events out of order", "event" + next++, event.getCommandName());
+            }
+            batch.clear();
+            assertTrue("Ring not empty after drain", ring.isEmpty());
+        }
+    }
+
+    @Test
+    public void testConcurrentOfferAndDrain() throws Exception {
+        final int producers = 4;
+        final int eventsPerProducer = 20000;
+        final ServiceProxyEventDispatcher.RingBuffer ring = new ServiceProxyEventDispatcher.RingBuffer(64);
+        final ServiceProxyEvent[][] events = new ServiceProxyEvent[producers][eventsPerProducer];
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            for (int i = 0; i < eventsPerProducer; i++) {
+                events[p][i] = newEvent(p * eventsPerProducer + i);
+            }
+            final ServiceProxyEvent[] producerEvents = events[p];
+            threads[p] = new Thread(new Runnable() {
+                public void run() {
+                    for (ServiceProxyEvent event : producerEvents) {
+                        while (!ring.offer(event)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            });
+            threads[p].start();
+        }
+        Set<ServiceProxyEvent> taken = new HashSet<ServiceProxyEvent>();
+        List<ServiceProxyEvent> batch = new ArrayList<ServiceProxyEvent>();
+        long deadline = System.currentTimeMillis() + 30000;
+        while (taken.size() < producers * eventsPerProducer && System.currentTimeMillis() < deadline) {
+            ring.drainTo(batch, 16);
+            for (ServiceProxyEvent event : batch) {
+                assertTrue("Event taken twice : " + event.getCommandName(), taken.add(event));
+            }
+            batch.clear();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals("Events lost", producers * eventsPerProducer, taken.size());
+        assertTrue("Ring not empty after all events were taken", ring.isEmpty());
+    }
+
+    @Test
+    public void testBatchesDeliveredToBatchConsumers() throws Exception {
+        BlockingBatchConsumer consumer = new BlockingBatchConsumer();
+        ServiceProxyEventDispatcher dispatcher = newDispatcher(consumer, 16);
+        dispatcher.dispatch(newEvent(0));
+        assertTrue("First batch not delivered", consumer.entered.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 10; i++) { // buffered while the consumer is blocked on the first batch
+            dispatcher.dispatch(newEvent(i));
+        }
+        consumer.release.countDown();
+        dispatcher.destroy();
+        assertEquals(4, consumer.batchSizes.size());
+        assertEquals(Integer.valueOf(1), consumer.batchSizes.get(0));
+        assertEquals("Batch size not limited", Integer.valueOf(4), consumer.batchSizes.get(1));
+        assertEquals(Integer.valueOf(4), consumer.batchSizes.get(2));
+        assertEquals(Integer.valueOf(2), consumer.batchSizes.get(3));
+        assertEquals(11, consumer.events.size());
+        for (int i = 0; i < consumer.events.size(); i++) {
+            assertEquals("Events out of order", "event" + i, consumer.events.get(i).getCommandName());
+        }
+    }
+
+    @Test
+    public void testDropNewestCountsDroppedEvents() throws Exception {
+        BlockingBatchConsumer consumer = new BlockingBatchConsumer();
+        ServiceProxyEventDispatcher dispatcher = newDispatcher(consumer, 2);
+        dispatcher.dispatch(newEvent(0));
+        assertTrue("First batch not delivered", consumer.entered.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 5; i++) { // two fit in the ring buffer while the consumer is blocked
+            dispatcher.dispatch(newEvent(i));
+        }
+        assertEquals(3, dispatcher.getDroppedEvents());
+        consumer.release.countDown();
+        dispatcher.destroy();
+        assertEquals(3, consumer.events.size());
+        assertEquals("event2", consumer.events.get(2).getCommandName());
+    }
+
+    @Test
+    public void testEventsPublishedAfterShutdown() throws Exception {
+        BlockingBatchConsumer consumer = new BlockingBatchConsumer();
+        consumer.release.countDown();
+        ServiceProxyEventDispatcher dispatcher = newDispatcher(consumer, 16);
+        dispatcher.destroy();
+        dispatcher.dispatch(newEvent(0));
+        assertEquals("Event not published on the calling thread", 1, consumer.events.size());
+    }
+
+    private static ServiceProxyEventDispatcher newDispatcher(ServiceProxyEventBatchConsumer consumer, int bufferSize) throws Exception {
+        ServiceProxyEventDispatcher dispatcher = new ServiceProxyEventDispatcher();
+        dispatcher.setBatchConsumers(Collections.singletonList(consumer));
+        dispatcher.setBufferSize(bufferSize);
+        dispatcher.setBatchSize(4);
+        dispatcher.afterPropertiesSet();
+        return dispatcher;
+    }
+
+    private static ServiceProxyEvent newEvent(int id) {
+        return new ServiceProxyEvent.Builder("event" + id, "TEST").build();
+    }
+
+    /**
+     * Batch consumer that records the batches delivered to it, and blocks on the first batch till released
+     */
+    private static class BlockingBatchConsumer implements ServiceProxyEventBatchConsumer {
+
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+        private final List<ServiceProxyEvent> events = Collections.synchronizedList(new ArrayList<ServiceProxyEvent>());
+
+        public void consumeEvents(List<ServiceProxyEvent> batch) {
+            this.batchSizes.add(batch.size());
+            this.events.addAll(batch);
+            this.entered.countDown();
+            try {
+                this.release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+}
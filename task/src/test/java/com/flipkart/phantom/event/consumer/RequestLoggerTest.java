@@ -0,0 +1,85 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.event.consumer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.trpr.platform.core.impl.event.AbstractEndpointEventConsumerImpl;
+import org.trpr.platform.model.event.PlatformEvent;
+
+import com.flipkart.phantom.event.ServiceProxyEvent;
+import com.flipkart.phantom.event.ServiceProxyEventBatchConsumer;
+import com.flipkart.phantom.event.ServiceProxyEventProducer;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the batch consumption of {@link RequestLogger}
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class RequestLoggerTest {
+
+    @Test
+    public void testBatchForwardedToSubscribedBatchConsumer() {
+        RequestLogger requestLogger = new RequestLogger();
+        requestLogger.setSubscriptions(new String[] {ServiceProxyEventProducer.EVENT_PUBLISHING_URI + "THRIFT_HANDLER"});
+        RecordingBatchConsumer tracingConsumer = new RecordingBatchConsumer();
+        requestLogger.addSubscriptionAndConsumer(ServiceProxyEventProducer.EVENT_PUBLISHING_URI + "TRACING_COLLECTOR", tracingConsumer);
+        RecordingBatchConsumer unsubscribedConsumer = new RecordingBatchConsumer();
+        requestLogger.addSubscriptionAndConsumer(ServiceProxyEventProducer.EVENT_PUBLISHING_URI + "HTTP_HANDLER", unsubscribedConsumer);
+        // unsubscribes from HTTP_HANDLER events, leaving the consumer registered for them
+        requestLogger.setSubscriptions(new String[] {ServiceProxyEventProducer.EVENT_PUBLISHING_URI + "THRIFT_HANDLER",
+                ServiceProxyEventProducer.EVENT_PUBLISHING_URI + "TRACING_COLLECTOR"});
+
+        requestLogger.consumeEvents(Arrays.asList(newEvent("span1", "TRACING_COLLECTOR"), newEvent("getUser", "THRIFT_HANDLER"),
+                newEvent("span2", "TRACING_COLLECTOR"), newEvent("get", "HTTP_HANDLER"), newEvent("span3", "TRACING_COLLECTOR")));
+
+        assertEquals("Tracing events not forwarded as one batch", 1, tracingConsumer.batches.size());
+        List<ServiceProxyEvent> batch = tracingConsumer.batches.get(0);
+        assertEquals(3, batch.size());
+        assertEquals("span1", batch.get(0).getCommandName());
+        assertEquals("span2", batch.get(1).getCommandName());
+        assertEquals("span3", batch.get(2).getCommandName());
+        assertEquals("Events of an endpoint not subscribed to were forwarded", 0, unsubscribedConsumer.batches.size());
+    }
+
+    private static ServiceProxyEvent newEvent(String commandName, String eventType) {
+        return new ServiceProxyEvent.Builder(commandName, eventType).build();
+    }
+
+    /**
+     * Batch consumer that records the batches forwarded to it
+     */
+    private static class RecordingBatchConsumer extends AbstractEndpointEventConsumerImpl implements ServiceProxyEventBatchConsumer {
+
+        private final List<List<ServiceProxyEvent>> batches = new ArrayList<List<ServiceProxyEvent>>();
+
+        public void consumeEvents(List<ServiceProxyEvent> events) {
+            this.batches.add(events);
+        }
+
+        protected void handlePlatformEvent(PlatformEvent platformEvent) {
+            throw new AssertionError("Event forwarded one at a time");
+        }
+    }
+
+}
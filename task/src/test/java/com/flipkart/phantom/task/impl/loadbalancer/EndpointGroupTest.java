@@ -0,0 +1,100 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.task.impl.loadbalancer;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.flipkart.phantom.task.spi.loadbalancer.Endpoint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the {@link EndpointGroup} and the {@link Endpoint} failure accounting
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class EndpointGroupTest {
+
+    @Test
+    public void testFailuresDoNotUpdateLatency() {
+        Endpoint endpoint = new Endpoint("localhost", 8080);
+        endpoint.requestStarted();
+        endpoint.requestCompleted(1000, true);
+        assertEquals(1000, endpoint.getLatencyEwmaNanos(), 0);
+        endpoint.requestStarted();
+        assertEquals(1, endpoint.requestCompleted(1, false));
+        assertEquals("Latency EWMA updated by a failure", 1000, endpoint.getLatencyEwmaNanos(), 0);
+        assertEquals(0, endpoint.getOutstandingRequests());
+    }
+
+    @Test
+    public void testEjectionAndLapse() throws Exception {
+        Endpoint a = new Endpoint("a", 1);
+        Endpoint b = new Endpoint("b", 1);
+        EndpointGroup group = new EndpointGroup();
+        group.setEndpoints(Arrays.asList(a, b));
+        group.setFailureThreshold(2);
+        group.setEjectionTimeMillis(50);
+        group.init("test");
+        fail(group, a, 2);
+        assertTrue("Endpoint not ejected at the failure threshold", a.isEjected(System.currentTimeMillis()));
+        for (int i = 0; i < 10; i++) {
+            Endpoint selected = group.select();
+            assertSame("Ejected endpoint selected", b, selected);
+            group.release(selected, System.nanoTime(), true);
+        }
+        Thread.sleep(100);
+        assertFalse(a.isEjected(System.currentTimeMillis()));
+        // the first failure after the ejection lapses must not eject the endpoint again
+        fail(group, a, 1);
+        assertEquals(1, a.getConsecutiveFailures());
+        assertFalse("Endpoint ejected again by a single failure", a.isEjected(System.currentTimeMillis()));
+        group.shutdown();
+    }
+
+    @Test
+    public void testMaxEjectionPercent() {
+        Endpoint a = new Endpoint("a", 1);
+        Endpoint b = new Endpoint("b", 1);
+        EndpointGroup group = new EndpointGroup();
+        group.setEndpoints(Arrays.asList(a, b));
+        group.setFailureThreshold(1);
+        group.init("test");
+        fail(group, a, 1);
+        fail(group, b, 1);
+        long now = System.currentTimeMillis();
+        assertTrue(a.isEjected(now));
+        assertFalse("Ejections exceeded the max ejection percent", b.isEjected(now));
+        assertNotSame(a, group.select(Collections.singleton(b)));
+        group.shutdown();
+    }
+
+    private static void fail(EndpointGroup group, Endpoint endpoint, int times) {
+        for (int i = 0; i < times; i++) {
+            endpoint.requestStarted();
+            group.release(endpoint, System.nanoTime(), false);
+        }
+    }
+}
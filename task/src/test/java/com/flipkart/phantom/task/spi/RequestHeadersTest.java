@@ -0,0 +1,202 @@
+/*
+ * Copyright 2012-2015, the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flipkart.phantom.task.spi;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.base.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link RequestHeaders} and its use by {@link RequestWrapper}
+ *
+ * @author phantom contributors
+ * @version 1.0, 19 Oct 2026
+ */
+public class RequestHeadersTest {
+
+    @Test
+    public void testNamesMatchedIgnoringCase() {
+        RequestHeaders headers = new RequestHeaders();
+        headers.addHeader("Content-Type", "application/json");
+        assertEquals("application/json", headers.getHeader("content-type"));
+        assertTrue(headers.containsHeader("CONTENT-TYPE"));
+        assertFalse(headers.containsHeader("Content-Length"));
+        assertNull(headers.getHeader("Content-Length"));
+    }
+
+    @Test
+    public void testRepeatedHeadersRetained() {
+        RequestHeaders headers = new RequestHeaders();
+        headers.addHeader("Accept", "text/html");
+        headers.addHeader("Host", "example.com");
+        headers.addHeader("accept", "application/json");
+        assertEquals(3, headers.size());
+        assertEquals("First header value not returned", "text/html", headers.getHeader("Accept"));
+        assertEquals("accept", headers.getName(2));
+        assertEquals("application/json", headers.getValue(2));
+    }
+
+    @Test
+    public void testSetHeader() {
+        RequestHeaders headers = new RequestHeaders();
+        headers.addHeader("X-Trace", "1");
+        headers.addHeader("Host", "example.com");
+        headers.addHeader("x-trace", "2");
+        headers.setHeader("X-TRACE", "3");
+        assertEquals(2, headers.size());
+        assertEquals("Value not replaced in place", "X-Trace", headers.getName(0));
+        assertEquals("3", headers.getValue(0));
+        assertEquals("Host", headers.getName(1));
+        headers.setHeader("Accept", "*/*");
+        assertEquals(3, headers.size());
+        assertEquals("*/*", headers.getValue(2));
+    }
+
+    @Test
+    public void testRemoveHeader() {
+        RequestHeaders headers = new RequestHeaders();
+        headers.addHeader("Connection", "keep-alive");
+        headers.addHeader("Host", "example.com");
+        headers.addHeader("connection", "Upgrade");
+        headers.addHeader("Accept", "*/*");
+        assertTrue(headers.removeHeader("CONNECTION"));
+        assertFalse(headers.removeHeader("Connection"));
+        assertEquals(Arrays.asList(entry("Host", "example.com"), entry("Accept", "*/*")), new ArrayList<Map.Entry<String, String>>(headers));
+    }
+
+    @Test
+    public void testGrowsBeyondCapacity() {
+        RequestHeaders headers = new RequestHeaders(1);
+        for (int i = 0; i < 100; i++) {
+            headers.addHeader("Header-" + i, String.valueOf(i));
+        }
+        assertEquals(100, headers.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(String.valueOf(i), headers.getHeader("header-" + i));
+        }
+    }
+
+    @Test
+    public void testListMethods() {
+        RequestHeaders headers = new RequestHeaders();
+        headers.add(entry("Host", "example.com"));
+        headers.add(entry("Accept", "*/*"));
+        headers.add(0, entry("X-First", "1"));
+        headers.add(2, entry("X-Third", "3"));
+        assertEquals(Arrays.asList(entry("X-First", "1"), entry("Host", "example.com"), entry("X-Third", "3"), entry("Accept", "*/*")),
+                new ArrayList<Map.Entry<String, String>>(headers));
+        assertEquals(entry("Host", "example.com"), headers.set(1, entry("Host", "example.org")));
+        assertEquals("example.org", headers.getHeader("host"));
+        assertEquals(entry("X-Third", "3"), headers.remove(2));
+        assertEquals(3, headers.size());
+        assertEquals("*/*", headers.getValue(2));
+        try {
+            headers.getName(3);
+            fail("Header read beyond the size");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+        headers.clear();
+        assertEquals(0, headers.size());
+        assertNull(headers.getHeader("Host"));
+    }
+
+    @Test
+    public void testIterationFailsFastOnModification() {
+        RequestHeaders headers = new RequestHeaders();
+        headers.addHeader("Host", "example.com");
+        headers.addHeader("Accept", "*/*");
+        Iterator<Map.Entry<String, String>> iterator = headers.iterator();
+        iterator.next();
+        headers.removeHeader("Accept");
+        try {
+            iterator.next();
+            fail("Modification during iteration not detected");
+        } catch (ConcurrentModificationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCopy() {
+        List<Map.Entry<String, String>> list = new ArrayList<Map.Entry<String, String>>();
+        list.add(entry("Host", "example.com"));
+        list.add(entry("Accept", "*/*"));
+        RequestHeaders headers = new RequestHeaders(list);
+        assertEquals(list, headers);
+        RequestHeaders copy = new RequestHeaders(headers);
+        copy.addHeader("X-Copy", "true");
+        assertEquals(list, headers);
+        assertEquals(3, copy.size());
+    }
+
+    @Test
+    public void testRequestWrapperSharesHeaders() {
+        TestRequestWrapper requestWrapper = new TestRequestWrapper();
+        assertFalse(requestWrapper.getRequestHeaders().isPresent());
+        List<Map.Entry<String, String>> list = new ArrayList<Map.Entry<String, String>>();
+        list.add(entry("Host", "example.com"));
+        requestWrapper.setHeaders(list);
+        RequestHeaders headers = requestWrapper.getRequestHeaders().get();
+        assertEquals("example.com", headers.getHeader("host"));
+        assertSame("Converted headers not set on the request", headers, requestWrapper.getHeaders().get());
+        assertSame(headers, requestWrapper.getRequestHeaders().get());
+        headers.addHeader("X-Trace", "1");
+        assertEquals(2, requestWrapper.getHeaders().get().size());
+    }
+
+    /**
+     * Creates a header entry
+     */
+    private static Map.Entry<String, String> entry(String name, String value) {
+        return new AbstractMap.SimpleEntry<String, String>(name, value);
+    }
+
+    /**
+     * RequestWrapper that holds the headers set on it
+     */
+    private static class TestRequestWrapper extends RequestWrapper {
+        private List<Map.Entry<String, String>> headers;
+        public String getRequestName() {
+            return "test";
+        }
+        public Optional<String> getRequestMetaData() {
+            return Optional.absent();
+        }
+        public void setHeaders(List<Map.Entry<String, String>> headers) {
+            this.headers = headers;
+        }
+        public Optional<List<Map.Entry<String, String>>> getHeaders() {
+            return Optional.fromNullable(this.headers);
+        }
+    }
+}